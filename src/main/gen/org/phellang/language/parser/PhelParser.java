@@ -4,7 +4,7 @@ package org.phellang.language.parser;
 import com.intellij.lang.PsiBuilder;
 import com.intellij.lang.PsiBuilder.Marker;
 import static org.phellang.language.psi.PhelTypes.*;
-import static com.intellij.lang.parser.GeneratedParserUtilBase.*;
+import static org.phellang.language.parser.PhelParserUtil.*;
 import com.intellij.psi.tree.IElementType;
 import com.intellij.lang.ASTNode;
 import com.intellij.psi.tree.TokenSet;
@@ -32,7 +32,23 @@ public class PhelParser implements PsiParser, LightPsiParser {
   }
 
   static boolean parse_root_(IElementType root_, PsiBuilder builder_, int level_) {
-    return root(builder_, level_ + 1);
+    boolean result_;
+    if (root_ == LIST) {
+      result_ = list(builder_, level_ + 1);
+    }
+    else if (root_ == MAP) {
+      result_ = map(builder_, level_ + 1);
+    }
+    else if (root_ == SET) {
+      result_ = set(builder_, level_ + 1);
+    }
+    else if (root_ == VEC) {
+      result_ = vec(builder_, level_ + 1);
+    }
+    else {
+      result_ = root(builder_, level_ + 1);
+    }
+    return result_;
   }
 
   public static final TokenSet[] EXTENDS_SETS_ = new TokenSet[] {
@@ -74,7 +90,7 @@ public class PhelParser implements PsiParser, LightPsiParser {
   }
 
   /* ********************************************************** */
-  // form_prefix form_prefix * form_upper | form_inner | form_comment_macro | line_comment
+  // form_prefix form_prefix * form_body | form_inner | form_comment_macro | line_comment
   public static boolean form(PsiBuilder builder_, int level_) {
     if (!recursion_guard_(builder_, level_, "form")) return false;
     boolean result_;
@@ -87,7 +103,7 @@ public class PhelParser implements PsiParser, LightPsiParser {
     return result_;
   }
 
-  // form_prefix form_prefix * form_upper
+  // form_prefix form_prefix * form_body
   private static boolean form_0(PsiBuilder builder_, int level_) {
     if (!recursion_guard_(builder_, level_, "form_0")) return false;
     boolean result_, pinned_;
@@ -95,7 +111,7 @@ public class PhelParser implements PsiParser, LightPsiParser {
     result_ = form_prefix(builder_, level_ + 1);
     pinned_ = result_; // pin = 1
     result_ = result_ && report_error_(builder_, form_0_1(builder_, level_ + 1));
-    result_ = pinned_ && form_upper(builder_, level_ + 1) && result_;
+    result_ = pinned_ && form_body(builder_, level_ + 1) && result_;
     exit_section_(builder_, level_, marker_, result_, pinned_, null);
     return result_ || pinned_;
   }
@@ -111,6 +127,16 @@ public class PhelParser implements PsiParser, LightPsiParser {
     return true;
   }
 
+  /* ********************************************************** */
+  // <<dataLiteral>> | form_upper
+  static boolean form_body(PsiBuilder builder_, int level_) {
+    if (!recursion_guard_(builder_, level_, "form_body")) return false;
+    boolean result_;
+    result_ = dataLiteral(builder_, level_ + 1);
+    if (!result_) result_ = form_upper(builder_, level_ + 1);
+    return result_;
+  }
+
   /* ********************************************************** */
   // "#_" form
   public static boolean form_comment_macro(PsiBuilder builder_, int level_) {
@@ -170,6 +196,16 @@ public class PhelParser implements PsiParser, LightPsiParser {
     return result_ || pinned_;
   }
 
+  /* ********************************************************** */
+  // <<dataLiteral>> | form
+  static boolean item(PsiBuilder builder_, int level_) {
+    if (!recursion_guard_(builder_, level_, "item")) return false;
+    boolean result_;
+    result_ = dataLiteral(builder_, level_ + 1);
+    if (!result_) result_ = form(builder_, level_ + 1);
+    return result_;
+  }
+
   /* ********************************************************** */
   // <<items_entry <<recover>> <<param>>>> *
   static boolean items(PsiBuilder builder_, int level_, Parser recover, Parser param) {
@@ -255,9 +291,9 @@ public class PhelParser implements PsiParser, LightPsiParser {
   }
 
   /* ********************************************************** */
-  // <<items !')' form>>
+  // <<items !')' item>>
   static boolean list_body(PsiBuilder builder_, int level_) {
-    return items(builder_, level_ + 1, PhelParser::list_body_0_0, PhelParser::form);
+    return items(builder_, level_ + 1, PhelParser::list_body_0_0, PhelParser::item);
   }
 
   // !')'
@@ -325,13 +361,13 @@ public class PhelParser implements PsiParser, LightPsiParser {
   }
 
   /* ********************************************************** */
-  // form form
+  // item item
   static boolean map_entry(PsiBuilder builder_, int level_) {
     if (!recursion_guard_(builder_, level_, "map_entry")) return false;
     boolean result_;
     Marker marker_ = enter_section_(builder_);
-    result_ = form(builder_, level_ + 1);
-    result_ = result_ && form(builder_, level_ + 1);
+    result_ = item(builder_, level_ + 1);
+    result_ = result_ && item(builder_, level_ + 1);
     exit_section_(builder_, marker_, null, result_);
     return result_;
   }
@@ -446,17 +482,27 @@ public class PhelParser implements PsiParser, LightPsiParser {
   }
 
   /* ********************************************************** */
-  // form *
+  // root_entry *
   static boolean root(PsiBuilder builder_, int level_) {
     if (!recursion_guard_(builder_, level_, "root")) return false;
     while (true) {
       int pos_ = current_position_(builder_);
-      if (!form(builder_, level_ + 1)) break;
+      if (!root_entry(builder_, level_ + 1)) break;
       if (!empty_element_parsed_guard_(builder_, "root", pos_)) break;
     }
     return true;
   }
 
+  /* ********************************************************** */
+  // <<topLevelList>> | item
+  static boolean root_entry(PsiBuilder builder_, int level_) {
+    if (!recursion_guard_(builder_, level_, "root_entry")) return false;
+    boolean result_;
+    result_ = topLevelList(builder_, level_ + 1);
+    if (!result_) result_ = item(builder_, level_ + 1);
+    return result_;
+  }
+
   /* ********************************************************** */
   // symbol access_left? | keyword | literal | access
   static boolean s_forms(PsiBuilder builder_, int level_) {
@@ -504,9 +550,9 @@ public class PhelParser implements PsiParser, LightPsiParser {
   }
 
   /* ********************************************************** */
-  // <<items !'}' form>>
+  // <<items !'}' item>>
   static boolean set_body(PsiBuilder builder_, int level_) {
-    return items(builder_, level_ + 1, PhelParser::set_body_0_0, PhelParser::form);
+    return items(builder_, level_ + 1, PhelParser::set_body_0_0, PhelParser::item);
   }
 
   // !'}'
@@ -604,9 +650,9 @@ public class PhelParser implements PsiParser, LightPsiParser {
   }
 
   /* ********************************************************** */
-  // <<items !']' form>>
+  // <<items !']' item>>
   static boolean vec_body(PsiBuilder builder_, int level_) {
-    return items(builder_, level_ + 1, PhelParser::vec_body_0_0, PhelParser::form);
+    return items(builder_, level_ + 1, PhelParser::vec_body_0_0, PhelParser::item);
   }
 
   // !']'
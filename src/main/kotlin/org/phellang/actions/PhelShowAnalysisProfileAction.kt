@@ -0,0 +1,54 @@
+package org.phellang.actions
+
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.fileChooser.FileChooserFactory
+import com.intellij.openapi.fileChooser.FileSaverDescriptor
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.ui.Messages
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import java.io.IOException
+import java.nio.file.Files
+
+/**
+ * "Phel: Show Analysis Profile": what [PhelAnalysisProfiler] has recorded since it was last reset,
+ * with buttons to export it as JSON or start over.
+ */
+class PhelShowAnalysisProfileAction : DumbAwareAction() {
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project
+
+        val choice = Messages.showDialog(
+            project,
+            PhelAnalysisProfiler.toText(),
+            "Phel Analysis Profile",
+            arrayOf(EXPORT, RESET, CLOSE),
+            2,
+            Messages.getInformationIcon(),
+        )
+
+        when (choice) {
+            0 -> export(e)
+            1 -> PhelAnalysisProfiler.reset()
+        }
+    }
+
+    private fun export(e: AnActionEvent) {
+        val descriptor = FileSaverDescriptor("Export Phel Analysis Profile", "Save the profile as JSON", "json")
+        val target = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, e.project)
+            .save("phel-analysis-profile.json")
+            ?: return
+
+        try {
+            Files.writeString(target.file.toPath(), PhelAnalysisProfiler.toJson())
+        } catch (ex: IOException) {
+            Messages.showErrorDialog(e.project, "Could not write ${target.file}: ${ex.message}", "Phel Analysis Profile")
+        }
+    }
+
+    private companion object {
+        const val EXPORT = "Export JSON…"
+        const val RESET = "Reset"
+        const val CLOSE = "Close"
+    }
+}
@@ -9,11 +9,21 @@ import org.phellang.annotator.highlighters.PhelElementHighlighter
 import org.phellang.annotator.highlighters.PhelRequireHighlighter
 import org.phellang.annotator.highlighters.PhelSymbolHighlighter
 import org.phellang.annotator.infrastructure.PhelAnnotationUtils
+import org.phellang.language.infrastructure.PhelLargeFileMode
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import org.phellang.language.profiling.PhelAnalysisProfiler.Category
 import org.phellang.language.psi.*
 
 class PhelAnnotator : Annotator {
     override fun annotate(element: PsiElement, holder: AnnotationHolder) {
-        if (PhelCommentAnalyzer.isCommentedOutByFormComment(element)) {
+        // Lexer colouring is all a file over the large-file threshold gets.
+        val file = element.containingFile
+        if (file != null && PhelLargeFileMode.isLimited(file)) return
+
+        val commentedOut = PhelAnalysisProfiler.measure(Category.ANNOTATOR, "PhelCommentAnalyzer") {
+            PhelCommentAnalyzer.isCommentedOutByFormComment(element)
+        }
+        if (commentedOut) {
             PhelAnnotationUtils.createAnnotation(holder, element, COMMENTED_OUT_FORM)
             return  // Don't apply other highlighting to commented-out forms
         }
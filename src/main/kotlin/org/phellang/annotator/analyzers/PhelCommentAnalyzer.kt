@@ -1,6 +1,8 @@
 package org.phellang.annotator.analyzers
 
 import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.TextRange
+import com.intellij.openapi.util.text.StringUtil
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiFile
 import com.intellij.psi.util.CachedValue
@@ -8,6 +10,15 @@ import org.phellang.language.psi.*
 import org.phellang.language.psi.utils.PhelPsiUtils
 import org.phellang.language.psi.utils.cachedPerPsi
 
+/**
+ * Whether an element is discarded by `#_` or sits inside an anonymous function — asked by the
+ * annotator for nearly every element it visits.
+ *
+ * Each answer comes from a per-file table of the outermost discarded forms and anonymous functions,
+ * built in one walk the first time the file is asked and dropped on the next PSI edit. A query is
+ * then a binary search over those ranges, where it used to be an ancestor walk with a sibling scan
+ * at every level.
+ */
 object PhelCommentAnalyzer {
     private const val FORM_COMMENT_MARKER = "#_"
 
@@ -15,29 +26,64 @@ object PhelCommentAnalyzer {
     // plain symbol and never produces one.
     private const val ANON_FN_MARKER = "#("
 
-    private val HAS_FORM_COMMENT_KEY: Key<CachedValue<Boolean>> = Key.create("phel.hasFormComment")
+    private val DISCARDED_RANGES_KEY: Key<CachedValue<SortedRanges>> = Key.create("phel.discardedRanges")
 
-    private val HAS_ANON_FN_KEY: Key<CachedValue<Boolean>> = Key.create("phel.hasAnonFn")
+    private val ANON_FN_RANGES_KEY: Key<CachedValue<SortedRanges>> = Key.create("phel.anonFnRanges")
+
+    /** Disjoint ranges in document order, so the only candidate for an offset is the last one starting at or before it. */
+    private class SortedRanges(private val starts: IntArray, private val ends: IntArray) {
+
+        /** Whether [range] lies within one of these; [strictly] leaves out the range itself. */
+        fun encloses(range: TextRange, strictly: Boolean): Boolean {
+            var low = 0
+            var high = starts.size - 1
+            var candidate = -1
+            while (low <= high) {
+                val mid = (low + high) ushr 1
+                if (starts[mid] <= range.startOffset) {
+                    candidate = mid
+                    low = mid + 1
+                } else {
+                    high = mid - 1
+                }
+            }
+            if (candidate < 0 || range.endOffset > ends[candidate]) return false
+
+            return !strictly || range.startOffset != starts[candidate] || range.endOffset != ends[candidate]
+        }
+
+        companion object {
+            val EMPTY = SortedRanges(IntArray(0), IntArray(0))
+
+            fun of(elements: List<PsiElement>): SortedRanges {
+                if (elements.isEmpty()) return EMPTY
+                val ranges = elements.map { it.textRange }
+                return SortedRanges(IntArray(ranges.size) { ranges[it].startOffset }, IntArray(ranges.size) { ranges[it].endOffset })
+            }
+        }
+    }
 
     fun isCommentedOutByFormComment(element: PsiElement): Boolean {
-        // Fast path: a file with no `#_` marker anywhere can't comment out any form, so skip
-        // the ancestor walk that otherwise runs for every element.
         val file = element.containingFile ?: return false
-        if (!fileHasFormComment(file)) return false
-
-        return PhelPsiUtils.isDiscardedByFormComment(element)
+        return discardedRanges(file).encloses(element.textRange ?: return false, strictly = false)
     }
 
-    private fun fileHasFormComment(file: PsiFile): Boolean {
-        return cachedPerPsi(file, HAS_FORM_COMMENT_KEY) { file.text.contains(FORM_COMMENT_MARKER) }
+    private fun discardedRanges(file: PsiFile): SortedRanges = cachedPerPsi(file, DISCARDED_RANGES_KEY) {
+        // A file with no `#_` anywhere has nothing to walk for. The view provider's contents are
+        // the document's own characters, so the check copies nothing.
+        if (!StringUtil.contains(file.viewProvider.contents, FORM_COMMENT_MARKER)) {
+            SortedRanges.EMPTY
+        } else {
+            SortedRanges.of(PhelPsiUtils.discardedForms(file))
+        }
     }
 
     fun isInsideAnonFunction(element: PsiElement): Boolean {
-        // Fast path: a file with no `#(` can't contain an anonymous function, so skip the
-        // ancestor walk that otherwise runs for every annotated symbol/keyword. When no
-        // containing file is available we fall through to the walk.
+        // When no containing file is available we fall back to the ancestor walk.
         val file = element.containingFile
-        if (file != null && !fileHasAnonFunction(file)) return false
+        if (file != null) {
+            return anonFunctionRanges(file).encloses(element.textRange ?: return false, strictly = true)
+        }
 
         var current = element.parent
         while (current != null) {
@@ -49,7 +95,18 @@ object PhelCommentAnalyzer {
         return false
     }
 
-    private fun fileHasAnonFunction(file: PsiFile): Boolean {
-        return cachedPerPsi(file, HAS_ANON_FN_KEY) { file.text.contains(ANON_FN_MARKER) }
+    private fun anonFunctionRanges(file: PsiFile): SortedRanges = cachedPerPsi(file, ANON_FN_RANGES_KEY) {
+        if (!StringUtil.contains(file.viewProvider.contents, ANON_FN_MARKER)) {
+            SortedRanges.EMPTY
+        } else {
+            // Document order; a nested one starts before its parent ends and is already covered.
+            val outermost = mutableListOf<PsiElement>()
+            for (hashFn in PhelPsiUtils.findCodeChildrenOfType(file, PhelHashFn::class.java)) {
+                if (outermost.isEmpty() || hashFn.textRange.startOffset >= outermost.last().textRange.endOffset) {
+                    outermost.add(hashFn)
+                }
+            }
+            SortedRanges.of(outermost)
+        }
     }
 }
@@ -1,10 +1,10 @@
 package org.phellang.annotator.analyzers
 
 import com.intellij.psi.PsiElement
-import org.phellang.language.psi.PhelAccess
 import org.phellang.language.psi.PhelForm
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.utils.PhelPsiUtils
 
 object PhelSymbolPositionAnalyzer {
 
@@ -14,15 +14,7 @@ object PhelSymbolPositionAnalyzer {
             current = current.parent
         }
 
-        if (current is PhelList) {
-            when (val firstForm = current.forms.firstOrNull()) {
-                is PhelSymbol -> return firstForm === symbol
-                is PhelAccess -> return firstForm.children.firstOrNull() === symbol
-                else -> return findFirstSymbol(firstForm) === symbol
-            }
-        }
-
-        return false
+        return current is PhelList && PhelPsiUtils.headSymbol(current.forms.firstOrNull()) === symbol
     }
 
     private fun findFirstSymbol(element: PsiElement?): PhelSymbol? {
@@ -54,9 +46,7 @@ object PhelSymbolPositionAnalyzer {
         val forms = list.forms
         if (forms.size < 2) return false
 
-        val head = forms[0]
-        val headSymbol = head as? PhelSymbol ?: findFirstSymbol(head) ?: return false
-        val headText = headSymbol.text ?: return false
+        val headText = PhelPsiUtils.headSymbol(forms[0])?.text ?: return false
         if (headText != "new" && headText != "php/new") return false
 
         val argSymbol = forms[1] as? PhelSymbol ?: findFirstSymbol(forms[1]) ?: return false
@@ -16,6 +16,8 @@ import org.phellang.annotator.highlighters.rules.QualifiedSymbolRule
 import org.phellang.annotator.highlighters.rules.RegularSymbolRule
 import org.phellang.annotator.highlighters.rules.VariadicMarkerRule
 import org.phellang.annotator.infrastructure.PhelAnnotationUtils
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import org.phellang.language.profiling.PhelAnalysisProfiler.Category
 import org.phellang.language.psi.PhelSymbol
 
 /**
@@ -46,7 +48,9 @@ object PhelSymbolHighlighter {
         if (!PhelAnnotationUtils.isValidText(text)) return
 
         val context = PhelSymbolContext(symbol, text)
-        val decision = RULES.firstNotNullOfOrNull { it.decide(context) } ?: return
+        val decision = RULES.firstNotNullOfOrNull { rule ->
+            PhelAnalysisProfiler.measure(Category.HIGHLIGHT_RULE, rule.javaClass.simpleName) { rule.decide(context) }
+        } ?: return
 
         apply(decision, symbol, holder)
     }
@@ -2,6 +2,7 @@ package org.phellang.annotator.highlighters.rules
 
 import org.phellang.core.highlighting.PhelAnnotationConstants.FUNCTION_PARAMETER
 import org.phellang.core.highlighting.PhelAnnotationConstants.VARIADIC_PARAMETER
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
 
 /**
@@ -27,7 +28,7 @@ object VariadicMarkerRule : PhelHighlightRule {
  */
 object LocalBindingRule : PhelHighlightRule {
     override fun decide(context: PhelSymbolContext): PhelHighlightDecision? {
-        if (!PhelSymbolAnalyzer.isLocalBindingOrReference(context.symbol)) return null
+        if (PhelFileAnalysis.of(context.symbol)?.isLocalBindingOrReference(context.symbol) != true) return null
 
         return PhelHighlightDecision.Paint(FUNCTION_PARAMETER)
     }
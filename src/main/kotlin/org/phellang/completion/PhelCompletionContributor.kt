@@ -5,6 +5,7 @@ import com.intellij.patterns.PlatformPatterns
 import org.phellang.language.infrastructure.PhelLanguage
 import org.phellang.completion.engine.PhelMainCompletionProvider
 import org.phellang.completion.engine.PhelNsKeywordCompletionProvider
+import org.phellang.completion.engine.PhelPhpCompletionProvider
 import org.phellang.language.psi.PhelTypes
 
 class PhelCompletionContributor : CompletionContributor() {
@@ -16,6 +17,13 @@ class PhelCompletionContributor : CompletionContributor() {
             PhelMainCompletionProvider()
         )
 
+        // After the main provider, so no Phel candidate waits on the PHP index.
+        extend(
+            CompletionType.BASIC,
+            PlatformPatterns.psiElement(PhelTypes.SYM).withLanguage(PhelLanguage),
+            PhelPhpCompletionProvider()
+        )
+
         extend(
             CompletionType.BASIC,
             PlatformPatterns.psiElement(PhelTypes.KEYWORD_TOKEN).withLanguage(PhelLanguage),
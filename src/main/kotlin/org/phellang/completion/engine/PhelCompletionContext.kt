@@ -31,6 +31,16 @@ class PhelCompletionContext(parameters: CompletionParameters) {
                 PhelBindingPositions.isAwaitingVector(element) ||
                 PhelNamePositions.isDefinitionName(element)
 
+    /**
+     * Where ordinary symbols are completed: not a name being declared, not inside `ns`, not a
+     * `:refer` vector and not at file level, each of which has completions of its own.
+     */
+    fun isGeneralPosition(): Boolean =
+        !shouldSuppressCompletions() &&
+                PhelNsKeywordCompletionProvider.detectNsContext(element) == null &&
+                !isInsideReferVector() &&
+                !shouldSuggestNewForm()
+
     fun isInsideReferVector(): Boolean = PhelReferUtils.isInsideReferVector(element)
 
     fun getReferNamespace(): String? = PhelReferUtils.getReferNamespace(element)
@@ -3,18 +3,19 @@ package org.phellang.completion.engine
 import com.intellij.codeInsight.completion.CompletionParameters
 import com.intellij.codeInsight.completion.CompletionProvider
 import com.intellij.codeInsight.completion.CompletionResultSet
-import com.intellij.codeInsight.completion.PlainPrefixMatcher
 import com.intellij.codeInsight.lookup.LookupElementBuilder
 import com.intellij.psi.PsiElement
 import com.intellij.util.ProcessingContext
 import org.phellang.completion.engine.context.PhelCallPosition
 import org.phellang.completion.handlers.PhelTemplateInsertHandler
+import org.phellang.completion.infrastructure.PhelCompletionBudget
 import org.phellang.completion.infrastructure.PhelProjectCompletionHelper
 import org.phellang.completion.infrastructure.PhelReferCompletionHelper
 import org.phellang.completion.infrastructure.PhelRegistryCompletionHelper
-import org.phellang.completion.infrastructure.PhelUsedClassCompletionHelper
 import org.phellang.core.utils.PhelErrorHandler
 import org.phellang.language.infrastructure.PhelIcons
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import org.phellang.language.profiling.PhelAnalysisProfiler.Category
 import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.files.PhelFile
 
@@ -46,42 +47,20 @@ class PhelMainCompletionProvider : CompletionProvider<CompletionParameters?>() {
         when {
             completionContext.isInsideReferVector() -> addReferCompletions(completionContext, result)
             completionContext.shouldSuggestNewForm() -> addTemplateCompletions(result)
-            else -> addGeneralCompletions(element, result)
+            else -> addGeneralCompletions(parameters, element, result)
         }
     }
 
-    /**
-     * Re-derives the completion prefix using Phel's identifier alphabet.
-     *
-     * The platform computes the initial prefix with Java's rules, so it stops at the first character
-     * that is not a Java identifier part. In Phel that severs a symbol at `/`, `-`, `?`, `!` and the
-     * rest of [PhelCompletionCharFilter]'s alphabet: invoking completion at `(s/|)` yields an *empty*
-     * prefix, so nothing filters on `s/` and the whole registry is offered. Typing the same text
-     * works only because the char filter widens the prefix while a lookup is already open — which is
-     * why this is invisible until you ask for completion at an existing symbol.
-     *
-     * [PlainPrefixMatcher] rather than the default: `s/upper-case` must match the literal prefix
-     * `s/`, and camel-hump matching has nothing to offer kebab-case Phel names anyway.
-     */
-    private fun CompletionResultSet.withPhelPrefix(parameters: CompletionParameters): CompletionResultSet {
-        val position = parameters.position
-        val caretInElement = parameters.offset - position.textRange.startOffset
-        if (caretInElement <= 0 || caretInElement > position.text.length) return this
-
-        val prefix = position.text.take(caretInElement)
-        if (prefix == prefixMatcher.prefix) return this
-
-        return withPrefixMatcher(PlainPrefixMatcher(prefix))
-    }
-
     /** Inside a `:refer` vector, only the required namespace's own symbols make sense. */
     private fun addReferCompletions(completionContext: PhelCompletionContext, result: CompletionResultSet) {
         val namespace = completionContext.getReferNamespace() ?: return
         val psiFile = completionContext.element.containingFile as? PhelFile
 
-        PhelReferCompletionHelper.addReferCompletions(
-            result, namespace, psiFile, completionContext.getAlreadyReferredSymbols()
-        )
+        helper("PhelReferCompletionHelper") {
+            PhelReferCompletionHelper.addReferCompletions(
+                result, namespace, psiFile, completionContext.getAlreadyReferredSymbols()
+            )
+        }
     }
 
     private fun addTemplateCompletions(result: CompletionResultSet) {
@@ -95,23 +74,48 @@ class PhelMainCompletionProvider : CompletionProvider<CompletionParameters?>() {
         }
     }
 
-    private fun addGeneralCompletions(element: PsiElement, result: CompletionResultSet) {
+    /**
+     * Sources run in the order their candidates rank, because the lookup shows items as soon as
+     * they are added: what is in scope first, the cheap in-memory registry next, and the
+     * project-wide source last, where a large project spends its time. That one stops when the
+     * run's [PhelCompletionBudget] is spent, and the rest follow in a second run. PHP classes come after
+     * all of these, from [PhelPhpCompletionProvider].
+     */
+    private fun addGeneralCompletions(
+        parameters: CompletionParameters,
+        element: PsiElement,
+        result: CompletionResultSet,
+    ) {
         val psiFile = element.containingFile as? PhelFile
         val aliasMap = psiFile?.let { PhelNamespaceUtils.extractAliasMap(it) } ?: emptyMap()
+        val budget = PhelCompletionBudget.start(parameters)
 
         // In Lisp the head of a form is what gets called and the rest are values, so the two
         // positions accept different things — see PhelCallPosition.
         val position = PhelCallPosition.of(element)
 
-        PhelLocalSymbolCompletions.addLocalSymbols(result, element)
-        PhelRegistryCompletionHelper.addStandardLibraryFunctions(result, aliasMap, position)
+        helper("PhelLocalSymbolCompletions") { PhelLocalSymbolCompletions.addLocalSymbols(result, element) }
+        if (psiFile != null) {
+            helper("PhelProjectCompletionHelper (required)") {
+                PhelProjectCompletionHelper.addImportedCompletions(result, psiFile, aliasMap)
+            }
+        }
+        helper("PhelRegistryCompletionHelper") {
+            PhelRegistryCompletionHelper.addStandardLibraryFunctions(result, aliasMap, position)
+        }
 
         if (psiFile != null) {
-            PhelProjectCompletionHelper.addProjectCompletions(result, psiFile, aliasMap)
-            PhelUsedClassCompletionHelper.addUsedClassCompletions(result, psiFile)
+            helper("PhelProjectCompletionHelper (not required)") {
+                PhelProjectCompletionHelper.addUnimportedCompletions(result, psiFile, budget)
+            }
         }
+
+        budget.finish(parameters, result, "project symbols")
     }
 
+    private inline fun helper(name: String, block: () -> Unit) =
+        PhelAnalysisProfiler.measure(Category.COMPLETION_HELPER, name, block)
+
     /** A structural suggestion offered at top level, where there is no form to complete against. */
     private class FormTemplate(
         val lookupString: String,
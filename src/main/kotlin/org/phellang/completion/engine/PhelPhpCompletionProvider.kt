@@ -0,0 +1,60 @@
+package org.phellang.completion.engine
+
+import com.intellij.codeInsight.completion.CompletionParameters
+import com.intellij.codeInsight.completion.CompletionProvider
+import com.intellij.codeInsight.completion.CompletionResultSet
+import com.intellij.psi.util.PsiTreeUtil
+import com.intellij.util.ProcessingContext
+import org.phellang.completion.infrastructure.PhelCompletionBudget
+import org.phellang.completion.infrastructure.PhelPhpClassNameCompletionHelper
+import org.phellang.completion.infrastructure.PhelUsedClassCompletionHelper
+import org.phellang.core.utils.PhelErrorHandler
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import org.phellang.language.profiling.PhelAnalysisProfiler.Category
+import org.phellang.language.psi.PhelNamespaceUtils
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * PHP classes brought in by `(:use …)` and their members, as a provider of their own, and the
+ * project's autoloadable class names where a class is written out in full.
+ *
+ * Registered after [PhelMainCompletionProvider] for the same positions, so it runs once every Phel
+ * candidate is already in the lookup: a slow PHP index can only hold up PHP candidates. It starts
+ * its own [PhelCompletionBudget], so time spent on the project-wide Phel source does not eat into
+ * it.
+ */
+class PhelPhpCompletionProvider : CompletionProvider<CompletionParameters?>() {
+
+    override fun addCompletions(
+        parameters: CompletionParameters,
+        context: ProcessingContext,
+        rawResult: CompletionResultSet,
+    ) {
+        PhelErrorHandler.safeOperation("PHP completion") {
+            val file = parameters.position.containingFile as? PhelFile ?: return@safeOperation
+            val result = rawResult.withPhelPrefix(parameters)
+
+            val symbol = PsiTreeUtil.getParentOfType(parameters.position, PhelSymbol::class.java, false)
+            if (symbol != null && PhelNamespaceUtils.isUseClassSymbol(symbol)) {
+                addClassNames(result, file, qualified = result.prefixMatcher.prefix.startsWith("\\"))
+                return@safeOperation
+            }
+            if (!PhelCompletionContext(parameters).isGeneralPosition()) return@safeOperation
+            if (result.prefixMatcher.prefix.startsWith("\\")) addClassNames(result, file, qualified = true)
+
+            val budget = PhelCompletionBudget.start(parameters)
+            PhelAnalysisProfiler.measure(Category.COMPLETION_HELPER, "PhelUsedClassCompletionHelper") {
+                PhelUsedClassCompletionHelper.addUsedClassCompletions(result, file, budget)
+            }
+
+            budget.finish(parameters, result, "PHP members")
+        }
+    }
+
+    private fun addClassNames(result: CompletionResultSet, file: PhelFile, qualified: Boolean) {
+        PhelAnalysisProfiler.measure(Category.COMPLETION_HELPER, "PhelPhpClassNameCompletionHelper") {
+            PhelPhpClassNameCompletionHelper.addClassNameCompletions(result, file.project, qualified)
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.phellang.completion.engine.context
 
 import com.intellij.psi.PsiElement
 import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.language.psi.PhelFormKind
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelSpecialForms
 import org.phellang.language.psi.PhelVec
@@ -15,17 +16,6 @@ import org.phellang.language.psi.utils.PhelPsiUtils
  */
 internal object PhelBindingPositions {
 
-    private val MULTI_ARITY_FORMS = setOf("defn", "defn-", "defmacro", "defmacro-")
-
-    /**
-     * Forms whose second element must be a vector, per their registry signatures —
-     * `(fn [params*] expr*)`, `(let [bindings*] expr*)`, `(foreach [value valueExpr] expr*)`.
-     *
-     * The `defn` family is absent: it names itself first, and slot 1 also accepts a docstring or a
-     * metadata map, so no single continuation is required there.
-     */
-    private val VECTOR_HEADED_FORMS = PhelSpecialForms.LET_LIKE + "fn"
-
     /**
      * `(let <caret>)` — the slot a binding or parameter vector belongs in, before one is typed.
      *
@@ -38,8 +28,7 @@ internal object PhelBindingPositions {
         val children = list.children
         if (children.size < 2) return false
 
-        val head = PhelFormHead.symbolTextOf(children[0]) ?: return false
-        if (head !in VECTOR_HEADED_FORMS) return false
+        if (!isVectorHeaded(list)) return false
 
         return PhelFormHead.occupiesSlot(element, children[1])
     }
@@ -50,15 +39,24 @@ internal object PhelBindingPositions {
         val list = PsiTreeUtil.getParentOfType(vector, PhelList::class.java) ?: return false
 
         val children = list.children
-        val head = PhelFormHead.symbolTextOf(children.firstOrNull()) ?: return false
 
-        return when {
-            head == "fn" -> children.size >= 2 && children[1] === vector
-            head in MULTI_ARITY_FORMS -> isDeclaredParameterVector(children, vector)
+        return when (list.formKind) {
+            PhelFormKind.FUNCTION -> children.size >= 2 && children[1] === vector
+            PhelFormKind.FUNCTION_DEFINITION -> isDeclaredParameterVector(children, vector)
             else -> false
         }
     }
 
+    /**
+     * Forms whose second element must be a vector, per their registry signatures —
+     * `(fn [params*] expr*)`, `(let [bindings*] expr*)`, `(foreach [value valueExpr] expr*)`.
+     *
+     * The `defn` family is absent: it names itself first, and slot 1 also accepts a docstring or a
+     * metadata map, so no single continuation is required there.
+     */
+    private fun isVectorHeaded(list: PhelList): Boolean =
+        list.formKind == PhelFormKind.BINDING || list.formKind == PhelFormKind.FUNCTION
+
     /**
      * For the `defn` family the name occupies slot 1, so parameters start at slot 2. Only the first
      * vector counts: a later one is a value inside the body, not a parameter list.
@@ -88,9 +86,7 @@ internal object PhelBindingPositions {
         val children = list.children
         if (children.size < 2) return false
 
-        val head = PhelFormHead.symbolTextOf(children[0]) ?: return false
-        if (head !in PhelSpecialForms.LET_LIKE) return false
-        if (children[1] !== vector) return false
+        if (list.formKind != PhelFormKind.BINDING || children[1] !== vector) return false
 
         return isNameHalfOfAPair(element, vector)
     }
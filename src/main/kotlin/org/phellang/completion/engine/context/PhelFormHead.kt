@@ -1,24 +1,13 @@
 package org.phellang.completion.engine.context
 
 import com.intellij.psi.PsiElement
-import org.phellang.language.psi.PhelAccess
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelMap
-import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVec
 
-/** The two reads every declaration-position predicate performs. */
+/** The slot reads every declaration-position predicate performs; the head is the list's [PhelList.formKind]. */
 internal object PhelFormHead {
 
-    /**
-     * The text of [element] when it is a symbol.
-     *
-     * A bare symbol reaches PSI as either `PhelSymbol` or `PhelAccess` depending on where it sits,
-     * so both have to be accepted for a head or name slot to be recognised at all.
-     */
-    fun symbolTextOf(element: PsiElement?): String? =
-        if (element is PhelSymbol || element is PhelAccess) element.text else null
-
     /**
      * True when [element] sits inside [form] without crossing into a nested collection.
      *
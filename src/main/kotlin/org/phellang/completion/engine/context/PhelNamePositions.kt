@@ -2,6 +2,7 @@ package org.phellang.completion.engine.context
 
 import com.intellij.psi.PsiElement
 import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.language.psi.PhelFormKind
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelMap
 import org.phellang.language.psi.PhelSpecialForms
@@ -25,9 +26,7 @@ internal object PhelNamePositions {
         val forms = list.forms
         if (forms.isEmpty()) return false
 
-        val head = PhelFormHead.symbolTextOf(forms[0]) ?: return false
-        if (head !in PhelSpecialForms.NAME_DECLARING) return false
-        if (forms.size < 2) return false
+        if (!declaresName(list) || forms.size < 2) return false
 
         return PhelFormHead.occupiesSlot(element, forms[1])
     }
@@ -38,9 +37,12 @@ internal object PhelNamePositions {
         val children = list.children
         if (children.size < 2) return false
 
-        val head = PhelFormHead.symbolTextOf(children[0]) ?: return false
-        if (head !in PhelSpecialForms.NAME_DECLARING) return false
+        if (!declaresName(list)) return false
 
         return PhelFormHead.occupiesSlot(element, children[1])
     }
+
+    /** [PhelSpecialForms.NAME_DECLARING] as kinds: every definition, and `ns`. */
+    private fun declaresName(list: PhelList): Boolean =
+        list.formKind.isDefinition || list.formKind == PhelFormKind.NAMESPACE
 }
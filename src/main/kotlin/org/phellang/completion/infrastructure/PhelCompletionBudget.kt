@@ -0,0 +1,147 @@
+package org.phellang.completion.infrastructure
+
+import com.intellij.codeInsight.completion.CodeCompletionHandlerBase
+import com.intellij.codeInsight.completion.CompletionParameters
+import com.intellij.codeInsight.completion.CompletionResultSet
+import com.intellij.codeInsight.completion.CompletionType
+import com.intellij.codeInsight.lookup.LookupManager
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.actionSystem.IdeActions
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ModalityState
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.keymap.KeymapUtil
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.jetbrains.annotations.TestOnly
+
+/**
+ * How long a lower-priority completion source — project symbols not yet imported, PHP members —
+ * may keep adding before the lookup settles for what it has. Each source starts its own.
+ *
+ * The lookup shows items as they are added, so the sources run in priority order and the popup
+ * fills in behind the first ones. The budget only caps the tail, and what it cuts is not lost:
+ * [finish] leaves the sources' [deferred][defer] work to the background and, once that is done,
+ * runs completion again with no budget while the lookup is still open. Pressing completion a
+ * second time lifts the budget at once, the same way the platform widens basic completion on a
+ * repeated invocation.
+ */
+class PhelCompletionBudget private constructor(
+    private val deadlineNanos: Long?,
+    private val clock: () -> Long = System::nanoTime,
+) {
+
+    /** Whether a source stopped because the budget ran out, rather than finishing or being closed. */
+    var wasCut: Boolean = false
+        private set
+
+    private val deferred = ArrayList<() -> Unit>()
+
+    /**
+     * True once [result] has been closed or filled up, or the budget is spent. Checked by the
+     * sources between items, so it also gives cancellation its chance.
+     */
+    fun isSpent(result: CompletionResultSet): Boolean {
+        ProgressManager.checkCanceled()
+        if (result.isStopped) return true
+        if (deadlineNanos == null || clock() - deadlineNanos < 0) return false
+
+        wasCut = true
+        return true
+    }
+
+    /**
+     * Work a cut source leaves for [finish] to run off the completion thread, in a read action,
+     * before completion runs again: filling caches, so the second run finds its candidates ready.
+     */
+    fun defer(work: () -> Unit) {
+        deferred += work
+    }
+
+    /**
+     * Called by a provider once its sources have run. After a cut, the next keystroke recomputes
+     * rather than filtering what was offered, the lookup notes how to see all [what], and the rest
+     * is added once the [deferred][defer] work is done: completion runs again with no budget if the
+     * lookup is still showing.
+     */
+    fun finish(parameters: CompletionParameters, result: CompletionResultSet, what: String) {
+        if (!wasCut) return
+
+        result.restartCompletionOnAnyPrefixChange()
+        result.addLookupAdvertisement(advertisement(what))
+        completeAgainLater(parameters.editor, parameters.position.project, deferred.toList())
+    }
+
+    /** The lookup's note that [what] was cut short, naming the shortcut that lifts the budget. */
+    private fun advertisement(what: String): String {
+        val shortcut = KeymapUtil.getFirstKeyboardShortcutText(IdeActions.ACTION_CODE_COMPLETION)
+        return "Press $shortcut again to see all $what"
+    }
+
+    companion object {
+        const val REGISTRY_KEY = "phel.completion.budget.ms"
+
+        private const val DEFAULT_MILLIS = 300
+
+        /** No deadline: only a closed lookup stops the sources. */
+        val UNLIMITED = PhelCompletionBudget(null)
+
+        /** Set on an editor while a run without budget is scheduled for it, so two cut sources ask once. */
+        private val COMPLETING_AGAIN = Key.create<Boolean>("phel.completion.budget.again")
+
+        @Volatile
+        private var testBudget: (() -> PhelCompletionBudget)? = null
+
+        /**
+         * Starts the clock for one completion run. A repeated invocation gets no deadline, and nor do
+         * tests unless they [ask for one][useInTests]: their assertions are usually about which
+         * candidates exist rather than how fast a slow CI machine finds them.
+         */
+        fun start(parameters: CompletionParameters): PhelCompletionBudget {
+            if (parameters.invocationCount >= 2) return UNLIMITED
+            if (ApplicationManager.getApplication().isUnitTestMode) return testBudget?.invoke() ?: UNLIMITED
+
+            val millis = Registry.intValue(REGISTRY_KEY, DEFAULT_MILLIS)
+            if (millis <= 0) return UNLIMITED
+
+            return PhelCompletionBudget(System.nanoTime() + millis * 1_000_000L)
+        }
+
+        /** A budget that is spent on its [checks]th check rather than on the clock, for a test to force a cut. */
+        @TestOnly
+        fun afterChecks(checks: Int): PhelCompletionBudget {
+            var ticks = 0L
+            return PhelCompletionBudget(checks.toLong()) { ticks++ }
+        }
+
+        /** Has every first-invocation run until [parentDisposable] goes start a budget from [budget]. */
+        @TestOnly
+        fun useInTests(parentDisposable: Disposable, budget: () -> PhelCompletionBudget) {
+            testBudget = budget
+            Disposer.register(parentDisposable) { testBudget = null }
+        }
+
+        private fun completeAgainLater(editor: Editor, project: Project, work: List<() -> Unit>) {
+            if (editor.getUserData(COMPLETING_AGAIN) == true) return
+            editor.putUserData(COMPLETING_AGAIN, true)
+
+            ReadAction.nonBlocking<Unit> { work.forEach { it() } }
+                .inSmartMode(project)
+                .expireWhen { editor.isDisposed || project.isDisposed }
+                .finishOnUiThread(ModalityState.defaultModalityState()) {
+                    editor.putUserData(COMPLETING_AGAIN, null)
+                    if (LookupManager.getActiveLookup(editor) == null) return@finishOnUiThread
+
+                    val synchronous = ApplicationManager.getApplication().isUnitTestMode
+                    CodeCompletionHandlerBase.createHandler(CompletionType.BASIC, true, false, synchronous)
+                        .invokeCompletion(project, editor, 2)
+                }
+                .submit(AppExecutorUtil.getAppExecutorService())
+        }
+    }
+}
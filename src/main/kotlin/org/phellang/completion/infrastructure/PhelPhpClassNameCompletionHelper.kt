@@ -0,0 +1,37 @@
+package org.phellang.completion.infrastructure
+
+import com.intellij.codeInsight.completion.CompletionResultSet
+import com.intellij.codeInsight.completion.PrioritizedLookupElement
+import com.intellij.codeInsight.lookup.LookupElementBuilder
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import org.phellang.language.infrastructure.PhelIcons
+import org.phellang.language.psi.references.PhpClassResolver
+import org.phellang.registry.PhelCompletionPriority
+
+/**
+ * PHP class names from the project's Composer autoload maps, offered where a class is named in
+ * full: a symbol typed with a leading `\`, and a class entry in `(:use ...)`. Elsewhere only the
+ * classes the file already uses are offered, by [PhelUsedClassCompletionHelper].
+ */
+object PhelPhpClassNameCompletionHelper {
+
+    /** Adds every autoloadable class matching the prefix, spelled with a leading `\` when [qualified]. */
+    fun addClassNameCompletions(result: CompletionResultSet, project: Project, qualified: Boolean) {
+        for (name in PhpClassResolver.listClassNames(project)) {
+            ProgressManager.checkCanceled()
+            if (result.isStopped) return
+
+            val text = if (qualified) "\\$name" else name
+            if (!result.prefixMatcher.prefixMatches(text)) continue
+            result.addElement(classNameLookup(text))
+        }
+    }
+
+    private fun classNameLookup(text: String) = PrioritizedLookupElement.withPriority(
+        LookupElementBuilder.create(text)
+            .withIcon(PhelIcons.FILE)
+            .withTypeText("PHP class", true),
+        PhelCompletionPriority.PHP_INTEROP.value
+    )
+}
@@ -9,35 +9,23 @@ import org.phellang.registry.PhelCompletionPriority
 import org.phellang.registry.PhelProjectSymbol
 import org.phellang.registry.SymbolType
 
-/** Offers symbols defined elsewhere in the project, spelled the way they would have to be typed. */
+/**
+ * Offers symbols defined elsewhere in the project, spelled the way they would have to be typed.
+ *
+ * In two passes, so the completion engine can put other sources between them: the namespaces the
+ * file already requires come early, and the rest of the project — the bulk, on a large one — last,
+ * under the run's [PhelCompletionBudget].
+ */
 object PhelProjectCompletionHelper {
 
+    /** Namespaces the file already requires, spelled with whatever alias is in force. */
     @JvmStatic
-    fun addProjectCompletions(result: CompletionResultSet, file: PhelFile, aliasMap: Map<String, String>) {
+    fun addImportedCompletions(result: CompletionResultSet, file: PhelFile, aliasMap: Map<String, String>) {
         val index = PhelProjectSymbolIndex.getInstance(file.project)
         val current = CurrentFile(file)
 
-        val imported = addImportedSymbols(result, index, file, aliasMap, current)
-        addUnimportedSymbols(result, index, current, imported)
-    }
-
-    /**
-     * Namespaces the file already requires, spelled with whatever alias is in force.
-     *
-     * Returns the short namespaces handled here, so the second pass does not offer them again
-     * fully-qualified.
-     */
-    private fun addImportedSymbols(
-        result: CompletionResultSet,
-        index: PhelProjectSymbolIndex,
-        file: PhelFile,
-        aliasMap: Map<String, String>,
-        current: CurrentFile,
-    ): Set<String> {
-        val handled = mutableSetOf<String>()
-
         for (import in PhelRequireClauseAnalyzer.imports(file)) {
-            handled += import.shortNamespace
+            if (result.isStopped) return
 
             for (symbol in index.getSymbolsForNamespace(import.shortNamespace)) {
                 // The edited file's own symbols come from local completions, unqualified.
@@ -46,18 +34,22 @@ object PhelProjectCompletionHelper {
                 addCompletion(result, symbol, aliasedName(symbol, import, aliasMap))
             }
         }
-
-        return handled
     }
 
-    /** Everything else in the project, offered fully qualified and auto-imported on acceptance. */
-    private fun addUnimportedSymbols(
-        result: CompletionResultSet,
-        index: PhelProjectSymbolIndex,
-        current: CurrentFile,
-        handled: Set<String>,
-    ) {
+    /**
+     * Everything else in the project, offered fully qualified and auto-imported on acceptance.
+     *
+     * The required namespaces were offered by [addImportedCompletions] with their alias and are
+     * skipped here, so they are not offered again fully qualified.
+     */
+    @JvmStatic
+    fun addUnimportedCompletions(result: CompletionResultSet, file: PhelFile, budget: PhelCompletionBudget) {
+        val index = PhelProjectSymbolIndex.getInstance(file.project)
+        val current = CurrentFile(file)
+        val handled = PhelRequireClauseAnalyzer.imports(file).mapTo(HashSet()) { it.shortNamespace }
+
         for (symbol in index.getAllSymbols()) {
+            if (budget.isSpent(result)) return
             if (current.owns(symbol)) continue
             if (symbol.shortNamespace in handled) continue
             if (symbol.shortNamespace == current.namespace) continue
@@ -21,7 +21,9 @@ object PhelRegistryCompletionHelper {
         aliasMap: Map<String, String> = emptyMap(),
         position: PhelCallPosition = PhelCallPosition.OTHER,
     ) {
-        Namespace.entries.forEach { namespace ->
+        for (namespace in Namespace.entries) {
+            // In memory and cheap, so never cut short by the budget; only a closed lookup stops it.
+            if (result.isStopped) return
             addNamespaceFunctions(result, namespace, aliasMap, position)
         }
     }
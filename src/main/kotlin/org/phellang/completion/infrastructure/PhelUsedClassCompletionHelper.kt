@@ -3,11 +3,16 @@ package org.phellang.completion.infrastructure
 import com.intellij.codeInsight.completion.CompletionResultSet
 import com.intellij.codeInsight.completion.PrioritizedLookupElement
 import com.intellij.codeInsight.lookup.LookupElementBuilder
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.UserDataHolderEx
 import org.phellang.language.infrastructure.PhelIcons
 import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.files.PhelFile
 import org.phellang.language.psi.references.PhpClassResolver
 import org.phellang.registry.PhelCompletionPriority
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Completion for PHP classes brought into scope via `(:use ...)` in the file's
@@ -18,25 +23,69 @@ import org.phellang.registry.PhelCompletionPriority
  *  * `Foo/`  — static call/member prefix; the user types the member next
  *  * `Foo/name` for each public method/constant/field on `Foo` (when the PHP
  *    plugin is available — silently no-ops otherwise).
+ *
+ * Registered as its own completion provider, after the Phel one, so nothing Phel offers waits on
+ * the PHP index. The class names need no index and are offered first; the members follow class by
+ * class from the per-project member tables, under the run's [PhelCompletionBudget]. Classes the
+ * budget does not reach have their tables filled in the background, and completion runs again to
+ * offer them once they are ready.
  */
 object PhelUsedClassCompletionHelper {
+
+    /** The classes whose member tables are being filled in the background, per project. */
+    private val FILLING = Key.create<MutableSet<String>>("phel.completion.php.filling")
+
     @JvmStatic
-    fun addUsedClassCompletions(result: CompletionResultSet, file: PhelFile) {
+    @JvmOverloads
+    fun addUsedClassCompletions(
+        result: CompletionResultSet,
+        file: PhelFile,
+        budget: PhelCompletionBudget = PhelCompletionBudget.UNLIMITED,
+    ) {
         val classes = PhelNamespaceUtils.extractUsedClasses(file)
         if (classes.isEmpty()) return
 
-        val fqnByShort = PhelNamespaceUtils.buildUseFqnIndex(file)
-
         for (className in classes) {
             result.addElement(usedClassLookup(className))
             result.addElement(constructorLookup(className))
             result.addElement(staticPrefixLookup(className))
+        }
+
+        val fqnByShort = PhelNamespaceUtils.buildUseFqnIndex(file)
+        val pending = ArrayDeque(classes.map { it to (fqnByShort[it] ?: "\\$it") })
+        while (pending.isNotEmpty()) {
+            if (budget.isSpent(result)) break
 
-            val fqn = fqnByShort[className] ?: "\\$className"
+            val (className, fqn) = pending.removeFirst()
+            // Checked per member too: one class with hundreds of inherited members can outlast the budget.
             for (member in PhpClassResolver.listMembers(file.project, fqn)) {
+                if (budget.isSpent(result)) break
                 result.addElement(memberLookup(className, member))
             }
         }
+
+        if (budget.wasCut && pending.isNotEmpty()) fillLater(budget, file.project, pending.map { it.second })
+    }
+
+    /**
+     * Has the members looked up off the completion thread, cached for the run that follows the cut.
+     * A class another completion is already filling in is skipped rather than looked up twice.
+     */
+    private fun fillLater(budget: PhelCompletionBudget, project: Project, fqns: List<String>) {
+        val filling = project.getUserData(FILLING)
+            ?: (project as UserDataHolderEx).putUserDataIfAbsent(FILLING, ConcurrentHashMap.newKeySet())
+
+        budget.defer {
+            for (fqn in fqns) {
+                ProgressManager.checkCanceled()
+                if (!filling.add(fqn)) continue
+                try {
+                    PhpClassResolver.listMembers(project, fqn)
+                } finally {
+                    filling.remove(fqn)
+                }
+            }
+        }
     }
 
     private fun memberLookup(
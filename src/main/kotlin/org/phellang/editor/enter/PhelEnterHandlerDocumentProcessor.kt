@@ -2,14 +2,17 @@ package org.phellang.editor.enter
 
 import com.intellij.openapi.editor.Document
 import com.intellij.openapi.editor.Editor
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.util.text.CharArrayUtil
 
 class PhelEnterHandlerDocumentProcessor {
 
     fun extractLineInformation(document: Document, caretOffset: Int): LineInformation {
         val currentLineNumber = document.getLineNumber(caretOffset)
         val currentLineStart = document.getLineStartOffset(currentLineNumber)
-        val textBeforeCaret = document.text.substring(currentLineStart, caretOffset)
-        val currentLineText = document.text.substring(currentLineStart, document.getLineEndOffset(currentLineNumber))
+        val chars = document.charsSequence
+        val textBeforeCaret = chars.substring(currentLineStart, caretOffset)
+        val currentLineText = chars.substring(currentLineStart, document.getLineEndOffset(currentLineNumber))
 
         return LineInformation(currentLineNumber, textBeforeCaret, currentLineText)
     }
@@ -34,9 +37,10 @@ class PhelEnterHandlerDocumentProcessor {
         val lineEnd = document.getLineEndOffset(lineNumber)
 
         // Only the leading run: text already on the line (enter pressed mid-line) must survive.
-        val existing = document.text.substring(lineStart, lineEnd).takeWhile { it == ' ' || it == '\t' }.length
+        val chars = document.charsSequence
+        val existing = CharArrayUtil.shiftForward(chars, lineStart, lineEnd, " \t") - lineStart
 
-        if (document.text.substring(lineStart, lineStart + existing) != indentation) {
+        if (!StringUtil.equals(chars.subSequence(lineStart, lineStart + existing), indentation)) {
             document.replaceString(lineStart, lineStart + existing, indentation)
         }
 
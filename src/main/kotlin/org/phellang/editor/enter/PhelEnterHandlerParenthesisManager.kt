@@ -1,6 +1,7 @@
 package org.phellang.editor.enter
 
 import com.intellij.openapi.editor.Document
+import com.intellij.util.text.CharArrayUtil
 import org.phellang.editor.indentation.PhelLineAnalyzer
 
 class PhelEnterHandlerParenthesisManager {
@@ -17,13 +18,16 @@ class PhelEnterHandlerParenthesisManager {
             return false
         }
 
-        val textAfterCaret = if (caretPosition < document.textLength) {
-            document.text.substring(caretPosition).trimStart()
-        } else {
-            ""
+        if (caretPosition >= document.textLength) {
+            return true
         }
 
-        return !textAfterCaret.startsWith(')')
+        // Only the first character after the whitespace matters, so it is found in place rather
+        // than by copying and trimming the rest of the document.
+        val chars = document.charsSequence
+        val next = CharArrayUtil.shiftForward(chars, caretPosition, " \t\n\r")
+
+        return next >= chars.length || chars[next] != ')'
     }
 
     fun createClosingParenthesisText(currentIndentationSpaces: Int): String {
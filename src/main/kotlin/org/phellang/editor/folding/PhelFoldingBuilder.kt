@@ -6,11 +6,15 @@ import com.intellij.lang.folding.FoldingDescriptor
 import com.intellij.openapi.editor.Document
 import org.phellang.editor.folding.collectors.PhelFoldingCollector
 import org.phellang.editor.folding.resolvers.PhelFoldingConflictResolver
+import org.phellang.language.infrastructure.PhelLargeFileMode
 
 class PhelFoldingBuilder : FoldingBuilder {
     private val collector = PhelFoldingCollector()
 
     override fun buildFoldRegions(node: ASTNode, document: Document): Array<FoldingDescriptor> {
+        val file = node.psi?.containingFile
+        if (file != null && PhelLargeFileMode.isLimited(file)) return FoldingDescriptor.EMPTY_ARRAY
+
         val descriptors = collector.collectFoldingDescriptors(node, document)
         val filteredDescriptors = PhelFoldingConflictResolver.removeConflictingDescriptors(descriptors)
         return filteredDescriptors.toTypedArray()
@@ -3,63 +3,130 @@ package org.phellang.editor.folding.collectors
 import com.intellij.lang.ASTNode
 import com.intellij.lang.folding.FoldingDescriptor
 import com.intellij.openapi.editor.Document
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.TextRange
 import com.intellij.psi.PsiElement
+import com.intellij.psi.impl.source.tree.CompositeElement
+import com.intellij.psi.impl.source.tree.LeafElement
 import org.phellang.editor.folding.validators.PhelFoldingValidator
 import org.phellang.editor.folding.placeholders.PhelPlaceholderGenerator
 import org.phellang.language.psi.*
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
 
+/**
+ * Finds the fold regions of a file, one top-level form at a time.
+ *
+ * The walk is iterative, so a deeply nested data literal cannot exhaust the stack, and it never
+ * descends into a leaf, a symbol, a keyword or a literal, none of which can hold a fold. A large data
+ * literal the parser left unexpanded folds as a whole without being parsed for it.
+ *
+ * Each top-level form's regions are kept on its node, relative to its start, together with the
+ * node's modification count. Typing inside one form leaves every other form's count alone, so the
+ * next update shifts their regions to where the form now starts instead of walking them again.
+ * Whether a range folds depends only on its own text (its length and whether it spans a line
+ * break), which is what makes the kept regions valid wherever the form moves.
+ *
+ * No more than [MAX_REGIONS] regions are reported per file.
+ */
 class PhelFoldingCollector {
     fun collectFoldingDescriptors(node: ASTNode, document: Document): List<FoldingDescriptor> {
         val descriptors = mutableListOf<FoldingDescriptor>()
-        collectFoldingDescriptorsRecursive(node, document, descriptors)
+        regionOf(node, document)?.let { descriptors.add(it.toDescriptor(0)) }
+
+        for (child in node.getChildren(null)) {
+            val budget = MAX_REGIONS - descriptors.size
+            if (budget <= 0) break
+            if (child is LeafElement) continue
+
+            val start = child.startOffset
+            regionsOf(child, document, budget).forEach { descriptors.add(it.toDescriptor(start)) }
+        }
         return descriptors
     }
 
-    private fun collectFoldingDescriptorsRecursive(
-        node: ASTNode, document: Document, descriptors: MutableList<FoldingDescriptor>
-    ) {
-        val psi = node.psi
-
-        when (psi) {
-            // Lisp philosophy: fold any multi-line bracketed expression. Conflicts between an outer
-            // form and the vectors/maps inside it are resolved in post-processing, not here.
-            is PhelList -> addFold(psi, document, descriptors) { PhelPlaceholderGenerator.generateListPlaceholder(psi) }
-            is PhelVec -> addFold(psi, document, descriptors) { "[...]" }
-            is PhelMap -> addFold(psi, document, descriptors) { "{...}" }
-        }
+    /** The regions of one top-level form, relative to its start: kept ones when it is unchanged. */
+    private fun regionsOf(form: ASTNode, document: Document, budget: Int): List<Region> {
+        val stamp = (form as? CompositeElement)?.modificationCount
+        val kept = form.getUserData(REGIONS_KEY)
+        if (stamp != null && kept != null && kept.stamp == stamp && kept.regions.size <= budget) return kept.regions
 
-        if (psi is PhelFormCommentMacro) {
-            handleCommentFolding(psi, document, descriptors)
-        }
+        val regions = walk(form, document, budget)
+        // A truncated walk is not what the form holds, so it is not kept.
+        if (stamp != null && regions.size < budget) form.putUserData(REGIONS_KEY, KeptRegions(stamp, regions))
+        return regions
+    }
 
-        // Always process children - let individual handlers decide what to fold
-        for (child in node.getChildren(null)) {
-            collectFoldingDescriptorsRecursive(child, document, descriptors)
+    private fun walk(form: ASTNode, document: Document, budget: Int): List<Region> {
+        val origin = form.startOffset
+        val regions = ArrayList<Region>()
+        val pending = ArrayDeque<ASTNode>().apply { add(form) }
+
+        while (pending.isNotEmpty() && regions.size < budget) {
+            val node = pending.removeLast()
+            val psi = node.psi ?: continue
+
+            regionOf(node, document, psi)?.let { regions.add(it.relativeTo(origin)) }
+            if (!canHoldFolds(node, psi)) continue
+
+            // Pushed last to first, so regions come out in document order.
+            val children = node.getChildren(null)
+            for (i in children.indices.reversed()) {
+                if (children[i] !is LeafElement) pending.addLast(children[i])
+            }
         }
+        return regions
     }
 
     /**
-     * Adds a fold for [element] when its range is foldable. [placeholder] is a lambda so the list
-     * placeholder is not built for a range that will be rejected.
+     * The fold for [node] itself, or null when it does not fold.
+     *
+     * Lisp philosophy: fold any multi-line bracketed expression. Conflicts between an outer form and
+     * the vectors/maps inside it are resolved in post-processing, not here.
      */
-    private fun addFold(
-        element: PsiElement, document: Document, descriptors: MutableList<FoldingDescriptor>, placeholder: () -> String
-    ) {
+    private fun regionOf(node: ASTNode, document: Document, psi: PsiElement? = node.psi): Region? = when (psi) {
+        is PhelList -> foldable(psi, document) { PhelPlaceholderGenerator.generateListPlaceholder(psi) }
+        is PhelVec -> foldable(psi, document) { "[...]" }
+        is PhelMap -> foldable(psi, document) { "{...}" }
+        // Only multi-line commented forms; the length floor of the other folds does not apply.
+        is PhelFormCommentMacro -> psi.textRange.takeIf { PhelFoldingValidator.isMultiLine(it, document) }
+            ?.let { Region(psi.node, it, "#_...") }
+        else -> null
+    }
+
+    /**
+     * Folds [element] when its range is foldable. [placeholder] is a lambda so the list placeholder
+     * is not built for a range that will be rejected.
+     */
+    private fun foldable(element: PsiElement, document: Document, placeholder: () -> String): Region? {
         val range = element.textRange
-        if (!PhelFoldingValidator.isValidFoldingRange(range, document)) return
+        if (!PhelFoldingValidator.isValidFoldingRange(range, document)) return null
 
-        descriptors.add(FoldingDescriptor(element.node, range, null, placeholder()))
+        return Region(element.node, range, placeholder())
     }
 
-    private fun handleCommentFolding(
-        commentForm: PhelFormCommentMacro, document: Document, descriptors: MutableList<FoldingDescriptor>
-    ) {
-        val range = commentForm.textRange
-        if (!PhelFoldingValidator.isValidFoldingRange(range, document)) return
+    private fun canHoldFolds(node: ASTNode, psi: PsiElement): Boolean {
+        if (psi is PhelSymbol || psi is PhelKeyword || psi is PhelLiteral) return false
 
-        // Only fold multi-line commented forms
-        if (PhelFoldingValidator.isMultiLine(range, document)) {
-            descriptors.add(FoldingDescriptor(commentForm.node, range, null, "#_..."))
-        }
+        return !PhelDataLiteralElementType.isUnparsed(node)
+    }
+
+    /** A fold region; its range is absolute or relative to a top-level form, as the caller knows. */
+    private class Region(val node: ASTNode, val range: TextRange, val placeholder: String) {
+        fun relativeTo(origin: Int) = Region(node, range.shiftLeft(origin), placeholder)
+
+        fun toDescriptor(origin: Int) = FoldingDescriptor(node, range.shiftRight(origin), null, placeholder)
+    }
+
+    private class KeptRegions(val stamp: Int, val regions: List<Region>)
+
+    companion object {
+        /**
+         * The most regions reported per file. The editor keeps a marker per region and rebuilds its
+         * fold model from all of them on each update; past a few thousand, that costs more than the
+         * folds are worth.
+         */
+        const val MAX_REGIONS = 5_000
+
+        private val REGIONS_KEY = Key.create<KeptRegions>("phel.folding.regions")
     }
 }
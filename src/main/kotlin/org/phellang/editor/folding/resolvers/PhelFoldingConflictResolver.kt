@@ -1,44 +1,36 @@
 package org.phellang.editor.folding.resolvers
 
 import com.intellij.lang.folding.FoldingDescriptor
+import com.intellij.openapi.util.TextRange
 import com.intellij.psi.PsiElement
 import org.phellang.language.psi.*
 
 object PhelFoldingConflictResolver {
 
+    /**
+     * One sweep in document order, outer ranges before the ranges they contain, with the lists still
+     * open at each point on a stack. Fold ranges come from a tree, so any two are nested or apart,
+     * and the lists on the stack are exactly those containing the current range. Comparing every
+     * pair instead was quadratic in the region count, which on a large file outweighed the walk.
+     */
     fun removeConflictingDescriptors(descriptors: List<FoldingDescriptor>): List<FoldingDescriptor> {
-        val result = mutableListOf<FoldingDescriptor>()
-
-        for (descriptor in descriptors) {
-            if (shouldKeepDescriptor(descriptor, descriptors)) {
-                result.add(descriptor)
-            }
-        }
-
-        return result
-    }
-
-    private fun shouldKeepDescriptor(
-        descriptor: FoldingDescriptor, allDescriptors: List<FoldingDescriptor>
-    ): Boolean {
-        for (other in allDescriptors) {
-            if (descriptor === other) continue
-
-            val thisRange = descriptor.range
-            val otherRange = other.range
-
-            // If this descriptor is completely contained within another
-            if (otherRange.contains(thisRange) && otherRange != thisRange) {
-                val outerPsi = other.element.psi
-                val thisPsi = descriptor.element.psi
-
-                if (shouldPrioritizeOuter(outerPsi, thisPsi)) {
-                    return false
-                }
+        val ordered = descriptors.sortedWith(compareBy({ it.range.startOffset }, { -it.range.endOffset }))
+        val openLists = ArrayDeque<TextRange>()
+        val dropped = HashSet<FoldingDescriptor>()
+
+        for (descriptor in ordered) {
+            val range = descriptor.range
+            while (openLists.isNotEmpty() && !openLists.last().contains(range)) openLists.removeLast()
+
+            val psi = descriptor.element.psi
+            // The outermost open list is the largest, so it alone decides whether one is strictly larger.
+            if (openLists.isNotEmpty() && openLists.first() != range && shouldPrioritizeOuter(psi)) {
+                dropped.add(descriptor)
             }
+            if (psi is PhelList) openLists.addLast(range)
         }
 
-        return true
+        return descriptors.filter { it !in dropped }
     }
 
     /**
@@ -46,6 +38,5 @@ object PhelFoldingConflictResolver {
      * Folding the outer `(...)` already hides the inner `[...]` / `{...}`, so keeping both would
      * offer the reader a fold region they can never see the effect of.
      */
-    private fun shouldPrioritizeOuter(outerPsi: PsiElement, innerPsi: PsiElement): Boolean =
-        outerPsi is PhelList && (innerPsi is PhelVec || innerPsi is PhelMap)
+    private fun shouldPrioritizeOuter(innerPsi: PsiElement): Boolean = innerPsi is PhelVec || innerPsi is PhelMap
 }
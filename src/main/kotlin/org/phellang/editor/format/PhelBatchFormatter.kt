@@ -0,0 +1,158 @@
+package org.phellang.editor.format
+
+import com.intellij.openapi.progress.ProcessCanceledException
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.io.File
+import java.io.IOException
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.ceil
+
+/**
+ * Formats many texts with a handful of `phel fmt` runs instead of one per file.
+ *
+ * The texts are written to one temporary directory under short numbered names. They are then split
+ * into at most [POOL_SIZE] chunks, run side by side, each chunk's paths handed to a single
+ * invocation. A chunk is split further when its paths would make a command line longer than
+ * Windows accepts. Each invocation pays for PHP start-up and the Phel bootstrap once for all of its
+ * files; per file, that cost is what formatting a directory used to spend most of its time on.
+ *
+ * The texts, not the files on disk, are what gets formatted, so unsaved edits are included and
+ * nothing on disk changes underneath the editor. Only chunks whose invocation exited cleanly are
+ * read back. Applying the results is the caller's business.
+ */
+internal class PhelBatchFormatter(
+    private val launch: (targets: List<File>, output: File) -> ProcessBuilder,
+) {
+
+    /** What came back: per input, the formatted text, or null when it came back unchanged or its chunk failed. */
+    class Outcome(val formatted: List<String?>, val errors: List<String>)
+
+    /** Cancelling [indicator] kills the running invocations and throws [ProcessCanceledException]. */
+    fun format(texts: List<String>, indicator: ProgressIndicator): Outcome {
+        val dir = FileUtil.createTempDirectory("phel-fmt-batch", null, true)
+        try {
+            val files = texts.mapIndexed { index, text -> File(dir, "$index.phel").apply { writeText(text) } }
+            val errors = Collections.synchronizedList(ArrayList<String>())
+            val finished = run(chunked(files), dir, errors, indicator)
+
+            val formatted = files.mapIndexed { index, file ->
+                if (file in finished) file.readText().takeIf { it != texts[index] } else null
+            }
+            return Outcome(formatted, errors.toList())
+        } finally {
+            FileUtil.delete(dir)
+        }
+    }
+
+    /**
+     * Runs every chunk and returns the files of those that finished cleanly. A chunk that failed,
+     * timed out or was killed may have rewritten some of its files and not others, or left one half
+     * written, so none of its files is read back.
+     */
+    private fun run(chunks: List<List<File>>, dir: File, errors: MutableList<String>, indicator: ProgressIndicator): Set<File> {
+        val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Phel batch format", POOL_SIZE)
+        val done = AtomicInteger()
+        val finished = ConcurrentHashMap.newKeySet<File>()
+        val futures = chunks.mapIndexed { index, chunk ->
+            executor.submit(
+                Runnable {
+                    if (runChunk(chunk, File(dir, "$index.log"), errors, indicator)) finished += chunk
+                    indicator.fraction = done.incrementAndGet().toDouble() / chunks.size
+                },
+            )
+        }
+
+        try {
+            futures.forEach { await(it, indicator) }
+            return finished
+        } finally {
+            // Interrupting a chunk still waiting on its process kills the process.
+            futures.forEach { it.cancel(true) }
+            executor.shutdown()
+        }
+    }
+
+    /** Whether [chunk]'s invocation ran to a clean exit; anything else is reported to [errors] or cancelled. */
+    private fun runChunk(chunk: List<File>, output: File, errors: MutableList<String>, indicator: ProgressIndicator): Boolean {
+        val process = try {
+            launch(chunk, output).start()
+        } catch (e: IOException) {
+            errors += e.message ?: "phel fmt could not be started"
+            return false
+        }
+        try {
+            val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS)
+            while (!process.waitFor(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (indicator.isCanceled) return false
+                if (System.nanoTime() > deadline) {
+                    errors += "phel fmt did not finish within $TIMEOUT_SECONDS seconds"
+                    return false
+                }
+            }
+
+            if (process.exitValue() != 0) {
+                errors += output.readText().trim().ifBlank { "phel fmt exited with code ${process.exitValue()}" }
+                return false
+            }
+            return true
+        } catch (_: InterruptedException) {
+            // Cancelled while waiting; the process goes below.
+            return false
+        } finally {
+            if (process.isAlive) process.destroyForcibly()
+        }
+    }
+
+    private fun await(future: Future<*>, indicator: ProgressIndicator) {
+        while (true) {
+            try {
+                future.get(POLL_MILLIS, TimeUnit.MILLISECONDS)
+                return
+            } catch (_: TimeoutException) {
+                indicator.checkCanceled()
+            }
+        }
+    }
+
+    companion object {
+        /** Invocations run at once: enough to use a few cores, few enough that PHP start-ups stay cheap. */
+        val POOL_SIZE = (Runtime.getRuntime().availableProcessors() / 2).coerceIn(1, 4)
+
+        /** Windows caps a command line at 32,767 characters; this leaves room for the binary and `fmt`. */
+        private const val MAX_COMMAND_CHARS = 30_000
+
+        /** Per invocation, so bounded however many files it is given; ten times the one-shot limit. */
+        private const val TIMEOUT_SECONDS = 300L
+
+        private const val POLL_MILLIS = 100L
+
+        /** [files] split into at most [POOL_SIZE] even chunks, each short enough for one command line. */
+        internal fun chunked(files: List<File>, pool: Int = POOL_SIZE): List<List<File>> {
+            val perChunk = maxOf(1, ceil(files.size / pool.toDouble()).toInt())
+            val chunks = ArrayList<List<File>>()
+            var current = ArrayList<File>()
+            var chars = 0
+
+            for (file in files) {
+                val length = file.absolutePath.length + 1
+                if (current.isNotEmpty() && (current.size >= perChunk || chars + length > MAX_COMMAND_CHARS)) {
+                    chunks += current
+                    current = ArrayList()
+                    chars = 0
+                }
+                current += file
+                chars += length
+            }
+            if (current.isNotEmpty()) chunks += current
+
+            return chunks
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.phellang.editor.format
 import com.intellij.formatting.service.AsyncDocumentFormattingService
 import com.intellij.formatting.service.AsyncFormattingRequest
 import com.intellij.formatting.service.FormattingService
+import com.intellij.openapi.components.service
 import com.intellij.psi.PsiFile
 import org.phellang.core.cli.PhelCliLocator
 import org.phellang.language.psi.files.PhelFile
@@ -48,16 +49,46 @@ class PhelExternalFormatter : AsyncDocumentFormattingService() {
         return PhelFormattingTask(request, binary, File(basePath))
     }
 
+    /**
+     * Tries the project's warm worker first ([PhelFormatterWorkers]) and runs the one-shot CLI only
+     * when no worker can answer. A text the worker timed out on is reported instead: the CLI would
+     * hang on it just as long.
+     */
     private class PhelFormattingTask(
         private val request: AsyncFormattingRequest,
         private val binary: File,
         private val workingDir: File,
     ) : FormattingTask {
 
+        private val workers = request.context.project.service<PhelFormatterWorkers>()
+
+        private val workerRequest = PhelFormatterWorkers.Request()
+
         @Volatile
         private var process: Process? = null
 
+        @Volatile
+        private var cancelled = false
+
         override fun run() {
+            try {
+                val formatted = workers.format(workingDir, binary, request.documentText, workerRequest)
+                if (formatted != null) {
+                    request.onTextReady(formatted)
+                    return
+                }
+            } catch (e: PhelFormatterWorker.FormatError) {
+                request.onError(NOTIFICATION_TITLE, e.message ?: "phel fmt could not format the file")
+                return
+            } catch (e: PhelFormatterWorker.FormatTimeout) {
+                request.onError(NOTIFICATION_TITLE, e.message ?: "phel fmt did not finish in time")
+                return
+            }
+
+            if (!cancelled) runOnce()
+        }
+
+        private fun runOnce() {
             val workFile = File.createTempFile("phel-fmt-", ".phel")
             val outputFile = File.createTempFile("phel-fmt-out-", ".log")
             try {
@@ -91,6 +122,8 @@ class PhelExternalFormatter : AsyncDocumentFormattingService() {
         }
 
         override fun cancel(): Boolean {
+            cancelled = true
+            workers.cancel(workerRequest)
             process?.destroyForcibly()
             return true
         }
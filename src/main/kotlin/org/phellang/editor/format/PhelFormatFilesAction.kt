@@ -0,0 +1,160 @@
+package org.phellang.editor.format
+
+import com.intellij.notification.NotificationGroupManager
+import com.intellij.notification.NotificationType
+import com.intellij.openapi.actionSystem.ActionUpdateThread
+import com.intellij.openapi.actionSystem.AnActionEvent
+import com.intellij.openapi.actionSystem.CommonDataKeys
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.progress.ProgressIndicator
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.progress.Task
+import com.intellij.openapi.project.DumbAwareAction
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectFileIndex
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.openapi.vfs.VirtualFile
+import org.phellang.core.cli.PhelCliLocator
+import org.phellang.language.infrastructure.PhelFileType
+import java.io.File
+
+/**
+ * "Format Phel Files with phel fmt": formats every Phel file in the selected files and directories
+ * through [PhelBatchFormatter], a few `phel fmt` runs for the lot.
+ *
+ * Reformat Code on a directory goes through [PhelExternalFormatter] one file at a time, one process
+ * per file. Here the files are collected, their texts read and formatted in the background, with
+ * progress and cancellation. The results are then applied in one command, so a single undo takes
+ * the whole directory back. A file edited while its text was out being formatted is left alone.
+ */
+class PhelFormatFilesAction : DumbAwareAction() {
+
+    override fun getActionUpdateThread(): ActionUpdateThread = ActionUpdateThread.BGT
+
+    override fun update(e: AnActionEvent) {
+        val selected = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY)
+        e.presentation.isEnabledAndVisible = e.project != null &&
+            selected?.any { it.isDirectory || it.fileType == PhelFileType.INSTANCE } == true
+    }
+
+    override fun actionPerformed(e: AnActionEvent) {
+        val project = e.project ?: return
+        val selected = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY) ?: return
+        val basePath = project.basePath ?: return
+
+        val binary = PhelCliLocator.locate(basePath)
+        if (binary == null) {
+            notify(project, PhelCliLocator.NOT_FOUND_MESSAGE, NotificationType.ERROR)
+            return
+        }
+
+        PhelBatchFormatTask(project, selected, binary, File(basePath)).queue()
+    }
+
+    /** A document to format and its stamp when read, to tell whether it changed while away. */
+    internal class Target(val document: Document, val text: String, val stamp: Long)
+
+    private class PhelBatchFormatTask(
+        project: Project,
+        private val selected: Array<VirtualFile>,
+        private val binary: File,
+        private val workingDir: File,
+    ) : Task.Backgroundable(project, "Formatting Phel files", true) {
+
+        private var targets: List<Target> = emptyList()
+
+        private var outcome: PhelBatchFormatter.Outcome? = null
+
+        override fun run(indicator: ProgressIndicator) {
+            indicator.text = "Collecting Phel files"
+            targets = phelFilesIn(project, selected)
+            if (targets.isEmpty()) return
+
+            indicator.isIndeterminate = false
+            indicator.text = "Running phel fmt on ${targets.size} files"
+            val formatter = PhelBatchFormatter { files, output -> PhelFormatterProcess.command(binary, files, workingDir, output) }
+            outcome = formatter.format(targets.map { it.text }, indicator)
+        }
+
+        override fun onSuccess() {
+            if (targets.isEmpty()) {
+                notify(project, "No Phel files to format in the selection", NotificationType.INFORMATION)
+                return
+            }
+            val outcome = outcome ?: return
+            val changed = apply(project, targets, outcome.formatted)
+
+            if (outcome.errors.isNotEmpty()) {
+                notify(project, outcome.errors.joinToString("\n"), NotificationType.WARNING)
+            } else {
+                notify(project, "Formatted $changed of ${targets.size} Phel files", NotificationType.INFORMATION)
+            }
+        }
+    }
+
+    internal companion object {
+        private const val COMMAND_NAME = "Format Phel Files"
+
+        private const val NOTIFICATION_GROUP_ID = "Phel"
+
+        private const val NOTIFICATION_TITLE = "Phel formatter"
+
+        /**
+         * The writable Phel files in [selected] and under its directories, excluded folders skipped,
+         * each with its text and stamp as of now. Walks directories and loads documents, so it runs
+         * in the background task rather than on the UI thread.
+         *
+         * No read action spans the lot, which on a large tree would hold off every write for as long
+         * as the walk and the loads take. The walk reads only the VFS, taking a short read action per
+         * exclusion check, and each document is then read in a read action of its own.
+         */
+        fun phelFilesIn(project: Project, selected: Array<VirtualFile>): List<Target> {
+            val index = ProjectFileIndex.getInstance(project)
+            val included = { file: VirtualFile -> ReadAction.compute<Boolean, RuntimeException> { !index.isExcluded(file) } }
+            val files = LinkedHashSet<VirtualFile>()
+
+            for (root in selected) {
+                VfsUtilCore.iterateChildrenRecursively(root, { !it.isDirectory || included(it) }) { file ->
+                    ProgressManager.checkCanceled()
+                    if (!file.isDirectory && file.fileType == PhelFileType.INSTANCE && file.isWritable && included(file)) files += file
+                    true
+                }
+            }
+
+            val documents = FileDocumentManager.getInstance()
+            return files.mapNotNull { file ->
+                ProgressManager.checkCanceled()
+                ReadAction.compute<Target?, RuntimeException> {
+                    if (!file.isValid) return@compute null
+                    documents.getDocument(file)?.let { Target(it, it.text, it.modificationStamp) }
+                }
+            }
+        }
+
+        /**
+         * Applies [formatted] to [targets] in one undoable command and returns how many changed. A
+         * null entry came back unchanged, and a document edited since it was read is skipped.
+         */
+        fun apply(project: Project, targets: List<Target>, formatted: List<String?>): Int {
+            val changes = targets.indices.filter { formatted[it] != null && targets[it].document.modificationStamp == targets[it].stamp }
+            if (changes.isEmpty()) return 0
+
+            WriteCommandAction.writeCommandAction(project)
+                .withName(COMMAND_NAME)
+                .withGlobalUndo()
+                .run<RuntimeException> {
+                    changes.forEach { targets[it].document.setText(formatted[it]!!) }
+                }
+            return changes.size
+        }
+
+        private fun notify(project: Project, content: String, type: NotificationType) {
+            NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                .createNotification(NOTIFICATION_TITLE, content, type)
+                .notify(project)
+        }
+    }
+}
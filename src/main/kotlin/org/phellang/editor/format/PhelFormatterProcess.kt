@@ -1,13 +1,19 @@
 package org.phellang.editor.format
 
+import com.intellij.openapi.util.SystemInfo
+import com.intellij.openapi.util.io.FileUtil
 import org.phellang.core.cli.PhelCliEnvironment
 import java.io.File
 
 /** Builds the `phel fmt` invocation, with the environment it needs to actually run. */
 internal object PhelFormatterProcess {
 
-    fun command(binary: File, target: File, workingDir: File, output: File): ProcessBuilder {
-        val builder = ProcessBuilder(binary.absolutePath, "fmt", target.absolutePath)
+    fun command(binary: File, target: File, workingDir: File, output: File): ProcessBuilder =
+        command(binary, listOf(target), workingDir, output)
+
+    /** One invocation over all of [targets], as the batch formatter runs it. */
+    fun command(binary: File, targets: List<File>, workingDir: File, output: File): ProcessBuilder {
+        val builder = ProcessBuilder(listOf(binary.absolutePath, "fmt") + targets.map { it.absolutePath })
             .directory(workingDir)
             .redirectErrorStream(true)
             // To a file rather than a pipe: nothing reads the stream until the process is waited on,
@@ -16,4 +22,30 @@ internal object PhelFormatterProcess {
 
         return PhelCliEnvironment.applyTo(builder)
     }
+
+    /**
+     * The long-lived formatting worker for [projectDir], run by the same `php` the `phel` shebang
+     * would find. Its stdin and stdout carry the protocol, so stderr goes nowhere: a pipe nobody
+     * drains would eventually block it.
+     */
+    fun worker(projectDir: File): ProcessBuilder {
+        val php = if (SystemInfo.isWindows) listOf("php") else listOf("/usr/bin/env", "php")
+        val builder = ProcessBuilder(php + listOf(workerScript.absolutePath, projectDir.absolutePath))
+            .directory(projectDir)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+
+        return PhelCliEnvironment.applyTo(builder)
+    }
+
+    /** The bundled `fmt-worker.php`, copied out of the plugin jar once per session for `php` to run. */
+    private val workerScript: File by lazy {
+        val script = FileUtil.createTempFile("phel-fmt-worker-", ".php", true)
+        PhelFormatterProcess::class.java.getResourceAsStream(WORKER_SCRIPT).use { resource ->
+            requireNotNull(resource) { "$WORKER_SCRIPT is missing from the plugin" }
+            script.outputStream().use { resource.copyTo(it) }
+        }
+        script
+    }
+
+    private const val WORKER_SCRIPT = "/phel/fmt-worker.php"
 }
@@ -0,0 +1,158 @@
+package org.phellang.editor.format
+
+import com.intellij.util.concurrency.AppExecutorUtil
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * One running formatting worker (`fmt-worker.php`), talked to over its stdin and stdout.
+ *
+ * Every message, either way, is one frame: a header line `<KIND> <length>\n` and then `length`
+ * bytes of UTF-8 payload. The worker sends `READY` once Phel is bootstrapped, or `FATAL` with the
+ * reason before exiting. It answers each `FORMAT` with `OK` and the formatted text, or `ERROR` and
+ * the formatter's message.
+ *
+ * An [IOException] from here means the worker is gone or cannot be trusted — it exited, answered
+ * out of protocol, or took longer than allowed and was killed — and it should be discarded. A
+ * [FormatError] means the worker is fine and the text did not format.
+ */
+internal class PhelFormatterWorker private constructor(private val process: Process) {
+
+    /** The formatter rejected the text; the message is its own. */
+    class FormatError(message: String) : Exception(message)
+
+    /**
+     * The worker did not answer in time and was killed. The text is what hung it, so running it
+     * again, in a new worker or the CLI, would only hang as long again.
+     */
+    class FormatTimeout(message: String, cause: Throwable) : IOException(message, cause)
+
+    private val input = BufferedInputStream(process.inputStream)
+
+    private val output = BufferedOutputStream(process.outputStream)
+
+    val isAlive: Boolean get() = process.isAlive
+
+    @Throws(IOException::class, FormatError::class, FormatTimeout::class)
+    fun format(text: String, timeoutMillis: Long): String {
+        val reply = withTimeout(timeoutMillis) {
+            write(FORMAT, text)
+            read()
+        }
+
+        return when (reply.kind) {
+            OK -> reply.payload
+            ERROR -> throw FormatError(reply.payload)
+            else -> throw IOException("Unexpected ${reply.kind} from the phel fmt worker")
+        }
+    }
+
+    /** Kills the process; a request waiting on it fails with an [IOException]. */
+    fun kill() {
+        process.destroyForcibly()
+    }
+
+    /** Closes stdin, which ends the worker's loop, and makes sure the process does not outlive that. */
+    fun close() {
+        try {
+            output.close()
+        } catch (_: IOException) {
+            // Already gone.
+        }
+        if (!process.waitFor(CLOSE_GRACE_MILLIS, TimeUnit.MILLISECONDS)) process.destroyForcibly()
+    }
+
+    private class Frame(val kind: String, val payload: String)
+
+    private fun write(kind: String, payload: String) {
+        val bytes = payload.toByteArray(Charsets.UTF_8)
+        output.write("$kind ${bytes.size}\n".toByteArray(Charsets.US_ASCII))
+        output.write(bytes)
+        output.flush()
+    }
+
+    private fun read(): Frame {
+        val header = readLine(input) ?: throw IOException("The phel fmt worker exited")
+        val kind = header.substringBefore(' ')
+        val length = header.substringAfter(' ', "").toIntOrNull()
+            ?: throw IOException("Malformed frame header from the phel fmt worker: $header")
+
+        val payload = input.readNBytes(length)
+        if (payload.size != length) throw IOException("The phel fmt worker exited mid-reply")
+        return Frame(kind, String(payload, Charsets.UTF_8))
+    }
+
+    /**
+     * Runs [block], killing the process if it has not returned within [timeoutMillis]: the read it
+     * is blocked on then fails with a [FormatTimeout], rather than the caller waiting on a hung PHP
+     * process forever.
+     */
+    private fun <T> withTimeout(timeoutMillis: Long, block: () -> T): T {
+        val timedOut = AtomicBoolean()
+        val watchdog = AppExecutorUtil.getAppScheduledExecutorService().schedule(
+            Runnable {
+                timedOut.set(true)
+                process.destroyForcibly()
+            },
+            timeoutMillis,
+            TimeUnit.MILLISECONDS,
+        )
+        try {
+            return block()
+        } catch (e: IOException) {
+            if (timedOut.get()) throw FormatTimeout("The phel fmt worker did not answer within $timeoutMillis ms", e)
+            throw e
+        } finally {
+            watchdog.cancel(false)
+        }
+    }
+
+    companion object {
+        private const val READY = "READY"
+        private const val FATAL = "FATAL"
+        private const val FORMAT = "FORMAT"
+        private const val OK = "OK"
+        private const val ERROR = "ERROR"
+
+        private const val CLOSE_GRACE_MILLIS = 500L
+
+        /** Longest header line accepted; a real one is a kind and a number. */
+        private const val MAX_HEADER = 64
+
+        /**
+         * Waits for [process] to report ready. A worker that reports `FATAL`, exits or says
+         * anything else is killed, and the reason thrown.
+         */
+        @Throws(IOException::class)
+        fun start(process: Process, timeoutMillis: Long): PhelFormatterWorker {
+            val worker = PhelFormatterWorker(process)
+            try {
+                val hello = worker.withTimeout(timeoutMillis) { worker.read() }
+                when (hello.kind) {
+                    READY -> return worker
+                    FATAL -> throw IOException(hello.payload.ifBlank { "The phel fmt worker could not start" })
+                    else -> throw IOException("Unexpected ${hello.kind} from the phel fmt worker")
+                }
+            } catch (e: IOException) {
+                process.destroyForcibly()
+                throw e
+            }
+        }
+
+        private fun readLine(input: InputStream): String? {
+            val line = ByteArrayOutputStream()
+            while (true) {
+                val byte = input.read()
+                if (byte == -1) return null
+                if (byte == '\n'.code) return line.toString(Charsets.US_ASCII)
+                if (line.size() >= MAX_HEADER) throw IOException("Malformed frame header from the phel fmt worker")
+                line.write(byte)
+            }
+        }
+    }
+}
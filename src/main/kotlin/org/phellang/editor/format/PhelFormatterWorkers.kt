@@ -0,0 +1,156 @@
+package org.phellang.editor.format
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.util.registry.Registry
+import java.io.File
+import java.io.IOException
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * The project's warm formatting worker, started on the first format request and kept for the next.
+ *
+ * Each one-shot `phel fmt` pays for starting PHP and bootstrapping Phel, often more than the
+ * formatting itself. A worker pays that once. It is replaced when it dies, and when the binary or
+ * the project's Phel configuration (`phel-config.php`, `phel-config-local.php`, `composer.lock`)
+ * changes, since that can change how Phel formats.
+ *
+ * [format] returning null means no worker could answer, and the caller runs the one-shot CLI. That
+ * covers a Phel too old to format in process, a global `phel` with no project `vendor/`, a worker
+ * that crashed twice in a row, and one still busy with another request. A worker that failed to start is not tried again until
+ * something it depends on changes. The `phel.formatter.worker` registry key turns workers off.
+ */
+@Service(Service.Level.PROJECT)
+internal class PhelFormatterWorkers : Disposable {
+
+    /** What a worker was started for; a request under a different spec gets a fresh one. */
+    data class Spec(val projectDir: File, val binary: File, val stamps: List<Long>) {
+        companion object {
+            private val WATCHED_FILES = listOf("phel-config.php", "phel-config-local.php", "composer.lock")
+
+            fun of(projectDir: File, binary: File): Spec =
+                Spec(projectDir, binary, listOf(binary.lastModified()) + WATCHED_FILES.map { File(projectDir, it).lastModified() })
+        }
+    }
+
+    /** Starts the process for a spec. Tests swap in a fake worker. */
+    @Volatile
+    var launcher: (Spec) -> Process = { spec -> PhelFormatterProcess.worker(spec.projectDir).start() }
+
+    /** How long one text may take: the one-shot CLI's limit, which also covers its own start-up. Tests shorten it. */
+    @Volatile
+    var timeoutMillis: Long = 30_000L
+
+    /** One format call, so that cancelling it stops only the worker serving it, and only while it does. */
+    class Request {
+        @Volatile
+        internal var cancelled = false
+
+        @Volatile
+        internal var serving: PhelFormatterWorker? = null
+    }
+
+    /** Held while the worker serves a request; everything below is read and written under it. */
+    private val lock = ReentrantLock()
+
+    private var worker: PhelFormatterWorker? = null
+
+    private var workerSpec: Spec? = null
+
+    private var failedSpec: Spec? = null
+
+    /**
+     * [text] as the worker formats it, or null when the one-shot CLI has to.
+     *
+     * The worker formats one text at a time. A request arriving while it is busy does not wait, as
+     * that could take up to the 30 s timeout behind a file that hangs the formatter; it gets null and
+     * runs the one-shot CLI beside it.
+     *
+     * A text the worker does not answer within that timeout is not tried again, in a restarted worker
+     * or the CLI: it throws [PhelFormatterWorker.FormatTimeout] for the caller to report.
+     */
+    @Throws(PhelFormatterWorker.FormatError::class, PhelFormatterWorker.FormatTimeout::class)
+    fun format(projectDir: File, binary: File, text: String, request: Request = Request()): String? {
+        if (!Registry.`is`(REGISTRY_KEY, true)) return null
+        if (!lock.tryLock()) return null
+
+        try {
+            val spec = Spec.of(projectDir, binary)
+            // A worker kept from an earlier request may have died since; it gets one restart. A timeout
+            // is not a death: it is thrown past the restart.
+            val reused = worker != null && workerSpec == spec
+            formatWith(spec, text, request)?.let { return it }
+            if (!reused || request.cancelled) return null
+
+            return formatWith(spec, text, request)
+        } finally {
+            lock.unlock()
+        }
+    }
+
+    /** Stops [request] if a worker is serving it. That worker is discarded and the next request starts another. */
+    fun cancel(request: Request) {
+        request.cancelled = true
+        request.serving?.kill()
+    }
+
+    override fun dispose() {
+        lock.withLock { discard() }
+    }
+
+    private fun formatWith(spec: Spec, text: String, request: Request): String? {
+        val current = workerFor(spec) ?: return null
+        request.serving = current
+        return try {
+            // Checked once the worker is known, so a cancel arriving before it either sees it or is seen here.
+            if (request.cancelled) return null
+            current.format(text, timeoutMillis)
+        } catch (e: PhelFormatterWorker.FormatTimeout) {
+            LOG.info("Discarding the phel fmt worker: ${e.message}")
+            discard()
+            throw e
+        } catch (e: IOException) {
+            LOG.info("Discarding the phel fmt worker: ${e.message}")
+            discard()
+            null
+        } finally {
+            request.serving = null
+        }
+    }
+
+    private fun workerFor(spec: Spec): PhelFormatterWorker? {
+        val current = worker
+        if (current != null && current.isAlive && workerSpec == spec) return current
+
+        discard()
+        if (failedSpec == spec) return null
+
+        return try {
+            PhelFormatterWorker.start(launcher(spec), STARTUP_TIMEOUT_MILLIS).also {
+                worker = it
+                workerSpec = spec
+            }
+        } catch (e: IOException) {
+            LOG.info("The phel fmt worker did not start; using the one-shot CLI: ${e.message}")
+            failedSpec = spec
+            null
+        }
+    }
+
+    private fun discard() {
+        worker?.close()
+        worker = null
+        workerSpec = null
+    }
+
+    companion object {
+        const val REGISTRY_KEY = "phel.formatter.worker"
+
+        private val LOG = Logger.getInstance(PhelFormatterWorkers::class.java)
+
+        /** Bootstrapping Phel is the slow part of a start, and only happens once per worker. */
+        private const val STARTUP_TIMEOUT_MILLIS = 30_000L
+    }
+}
@@ -4,7 +4,6 @@ import com.intellij.formatting.FormattingContext
 import com.intellij.formatting.FormattingModel
 import com.intellij.formatting.FormattingModelBuilder
 import com.intellij.formatting.FormattingModelProvider
-import com.intellij.formatting.Indent
 import org.phellang.editor.format.blocks.PhelBlock
 import org.phellang.editor.format.blocks.PhelFormattingRules
 
@@ -22,13 +21,7 @@ class PhelFormattingModelBuilder : FormattingModelBuilder {
         val settings = formattingContext.codeStyleSettings
         val file = formattingContext.containingFile
 
-        val root = PhelBlock(
-            node = file.node,
-            wrap = null,
-            alignment = null,
-            indent = Indent.getNoneIndent(),
-            rules = PhelFormattingRules.from(settings),
-        )
+        val root = PhelBlock.forFile(file.node, PhelFormattingRules.from(settings))
 
         return FormattingModelProvider.createFormattingModelForPsiFile(file, root, settings)
     }
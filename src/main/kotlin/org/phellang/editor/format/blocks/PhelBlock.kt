@@ -1,15 +1,18 @@
 package org.phellang.editor.format.blocks
 
+import com.intellij.formatting.ASTBlock
 import com.intellij.formatting.Alignment
 import com.intellij.formatting.Block
+import com.intellij.formatting.ChildAttributes
 import com.intellij.formatting.Indent
 import com.intellij.formatting.Spacing
 import com.intellij.formatting.Wrap
 import com.intellij.lang.ASTNode
+import com.intellij.openapi.util.TextRange
 import com.intellij.psi.TokenType
-import com.intellij.psi.tree.IFileElementType
-import com.intellij.psi.formatter.common.AbstractBlock
 import org.phellang.language.psi.PhelTypes
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
+import org.phellang.language.psi.elements.PhelTopLevelListElementType
 
 /**
  * One node in the formatting tree.
@@ -23,42 +26,42 @@ import org.phellang.language.psi.PhelTypes
  * gets the remaining cases visibly wrong. `phel format` is the canonical formatter and stays the
  * preferred path; this is the fallback for projects that have no `phel` binary yet, so predictable
  * beats clever.
+ *
+ * The tree is flat: a block per bracket and per element of a container, not per AST node. Only a
+ * bracketed container has children. Any other element is a single leaf over all of its tokens, so a
+ * qualified symbol, a regex literal or `^:private foo` is one block, laid out as written. A prefixed
+ * container is one block as well, its reader macros and metadata a leaf before the opening bracket.
+ * Following every wrapper node built several blocks per token of a large file. It also put a space
+ * between a quote and its form and between the halves of a regex, since every sibling pair got one.
+ *
+ * Indents are decided when a container lists its children, and nothing is aligned.
  */
-class PhelBlock(
-    node: ASTNode,
-    wrap: Wrap?,
-    alignment: Alignment?,
+class PhelBlock private constructor(
+    private val node: ASTNode?,
+    private val range: TextRange,
     private val indent: Indent,
+    private val kind: Kind,
     private val rules: PhelFormattingRules,
-) : AbstractBlock(node, wrap, alignment) {
+    /** The bracketed node whose children this block lists, for a container or the file. */
+    private val container: ASTNode? = null,
+) : ASTBlock {
 
-    /**
-     * Resolved once per block rather than per sibling pair. [getSpacing] runs for every pair, and
-     * reaching through `ASTNode.psi` there is what the element-type matching below already avoids.
-     */
-    private val isFileRoot: Boolean = node.elementType is IFileElementType
+    private enum class Kind { FILE, CONTAINER, BRACKET, PREFIX, ELEMENT }
 
-    override fun buildChildren(): List<Block> {
-        val childIndent = if (myNode.isBracketed()) Indent.getNormalIndent() else Indent.getNoneIndent()
+    private val subBlocks: List<Block> by lazy(LazyThreadSafetyMode.NONE) { buildChildren() }
 
-        val children = mutableListOf<Block>()
-        var child = myNode.firstChildNode
+    override fun getNode(): ASTNode? = node
 
-        while (child != null) {
-            if (!child.isWhitespaceOrEmpty()) {
-                // Brackets sit at the enclosing level; applying the body indent to the closing one
-                // would push it off the end of the body it closes.
-                val indentForChild = if (child.elementType in BRACKETS) Indent.getNoneIndent() else childIndent
-                children += PhelBlock(child, null, null, indentForChild, rules)
-            }
-            child = child.treeNext
-        }
+    override fun getTextRange(): TextRange = range
 
-        return children
-    }
+    override fun getSubBlocks(): List<Block> = subBlocks
+
+    override fun getWrap(): Wrap? = null
 
     override fun getIndent(): Indent = indent
 
+    override fun getAlignment(): Alignment? = null
+
     /**
      * One space between forms, none against a bracket.
      *
@@ -70,53 +73,118 @@ class PhelBlock(
 
         // Top-level forms each start their own line, with however many blank lines between them the
         // Code Style page asks for. Zero, the default, leaves the author's spacing untouched.
-        if (isFileRoot) {
+        if (kind == Kind.FILE) {
             val lineFeeds = rules.blankLinesBetweenTopLevelForms + 1
             return Spacing.createSpacing(0, 0, lineFeeds, true, rules.keepBlankLines)
         }
 
-        val hugsBracket = child1.isBracket() || child2.isBracket()
+        // `'(`, `^:m (` and `#?(` are written the way the author meant them.
+        if (child1.kindOf() == Kind.PREFIX) return Spacing.getReadOnlySpacing()
+
+        val hugsBracket = child1.kindOf() == Kind.BRACKET || child2.kindOf() == Kind.BRACKET
         val spaces = if (hugsBracket) 0 else 1
 
         return Spacing.createSpacing(spaces, spaces, 0, true, rules.keepBlankLines)
     }
 
-    override fun isLeaf(): Boolean = myNode.firstChildNode == null
+    override fun getChildAttributes(newChildIndex: Int): ChildAttributes = ChildAttributes(null, null)
+
+    /** A container whose closing bracket is missing; everything else is complete. */
+    override fun isIncomplete(): Boolean = kind == Kind.CONTAINER && container?.lastChildNode?.elementType !in CLOSERS
+
+    override fun isLeaf(): Boolean = container == null
+
+    private fun Block.kindOf(): Kind? = (this as? PhelBlock)?.kind
+
+    private fun buildChildren(): List<Block> {
+        val container = container ?: return emptyList()
+        // The file's own children are top-level forms, which do not indent.
+        val childIndent = if (kind == Kind.FILE) Indent.getNoneIndent() else Indent.getNormalIndent()
+
+        val children = ArrayList<Block>()
+        val prefixEnd = prefixEnd(container)
+        if (prefixEnd > range.startOffset) {
+            children += PhelBlock(null, TextRange(range.startOffset, prefixEnd), Indent.getNoneIndent(), Kind.PREFIX, rules)
+        }
+
+        var child = container.firstChildNode
+        while (child != null) {
+            when {
+                child.elementType == TokenType.WHITE_SPACE || child.textLength == 0 -> Unit
+                // Brackets sit at the enclosing level; applying the body indent to the closing one
+                // would push it off the end of the body it closes.
+                child.elementType in BRACKETS -> children += PhelBlock(child, child.textRange, Indent.getNoneIndent(), Kind.BRACKET, rules)
+                else -> children += element(child, childIndent)
+            }
+            child = child.treeNext
+        }
+
+        return children
+    }
+
+    /** Where this block's reader macros and metadata end, short of any whitespace before [container]. */
+    private fun prefixEnd(container: ASTNode): Int {
+        val prefixLength = container.startOffset - range.startOffset
+        if (kind == Kind.FILE || prefixLength <= 0) return range.startOffset
 
-    private fun Block.isBracket(): Boolean = this is PhelBlock && node?.elementType in BRACKETS
+        val prefix = node?.chars?.subSequence(0, prefixLength) ?: return range.startOffset
+        return range.startOffset + prefix.trimEnd { it.isWhitespace() || it == ',' }.length
+    }
+
+    private fun element(node: ASTNode, indent: Indent): Block {
+        val inner = bracketedCore(node)
+            ?: return PhelBlock(node, node.textRange, indent, Kind.ELEMENT, rules)
+
+        return PhelBlock(node, node.textRange, indent, Kind.CONTAINER, rules, inner)
+    }
+
+    private fun ASTNode.isWhitespaceOrComment(): Boolean =
+        elementType == TokenType.WHITE_SPACE || elementType == PhelTypes.LINE_COMMENT || elementType == PhelTypes.FORM_COMMENT
 
     /**
-     * Only a bracketed container introduces an indent level.
-     *
-     * The tree also holds wrapper nodes — the file itself, and the `form` rule around every element
-     * — which are structural, not visual. Indenting inside those too gave three levels of
-     * indentation for two levels of parentheses.
+     * The bracketed container [node] is, or wraps: the `form` node around a prefixed element holds
+     * its reader macros and metadata first and the element itself last. Null for anything else.
      */
-    private fun ASTNode.isBracketed(): Boolean = elementType in CONTAINERS
+    private fun bracketedCore(node: ASTNode): ASTNode? {
+        var current = node
+        while (current.elementType == PhelTypes.FORM) {
+            var last = current.lastChildNode
+            while (last != null && last.isWhitespaceOrComment()) last = last.treePrev
+            current = last ?: return null
+        }
+        return current.takeIf { it.elementType in CONTAINERS }
+    }
 
-    private fun ASTNode.isWhitespaceOrEmpty(): Boolean =
-        elementType == TokenType.WHITE_SPACE || textRange.isEmpty
+    companion object {
+        /** The root of the tree for the file [file] is the node of. */
+        fun forFile(file: ASTNode, rules: PhelFormattingRules): PhelBlock =
+            PhelBlock(file, file.textRange, Indent.getNoneIndent(), Kind.FILE, rules, file)
 
-    private companion object {
         /**
-         * The bracketed containers. Matched on element type: `getSpacing` runs per sibling pair.
+         * The bracketed containers. Matched on element type, once per element.
          *
          * The same seven `PhelPareditContainers.isContainer` recognises. `HASH_FN` and the two reader
          * conditionals were missing, so Reformat left the body of a `#(...)` or `#?(...)` flush left
          * while the Enter handler indented it — the two disagreeing about the same line, which is
          * exactly what the class doc above says must not happen.
+         *
+         * A top-level list and a large data literal have element types of their own, being parsed
+         * lazily, and are containers all the same.
          */
-        val CONTAINERS = setOf(
-            PhelTypes.LIST, PhelTypes.VEC, PhelTypes.MAP, PhelTypes.SET,
+        private val CONTAINERS = setOf(
+            PhelTypes.LIST, PhelTopLevelListElementType.INSTANCE, PhelTypes.VEC, PhelTypes.MAP, PhelTypes.SET,
+            PhelDataLiteralElementType.VEC, PhelDataLiteralElementType.MAP, PhelDataLiteralElementType.SET,
             PhelTypes.HASH_FN, PhelTypes.READER_CONDITIONAL, PhelTypes.READER_CONDITIONAL_SPLICE,
         )
 
-        val BRACKETS = setOf(
+        private val BRACKETS = setOf(
             PhelTypes.PAREN1, PhelTypes.PAREN2,
             PhelTypes.BRACKET1, PhelTypes.BRACKET2,
             PhelTypes.BRACE1, PhelTypes.BRACE2,
             PhelTypes.HASH_BRACE, PhelTypes.HASH_PAREN,
             PhelTypes.READER_COND, PhelTypes.READER_COND_SPLICE,
         )
+
+        private val CLOSERS = setOf(PhelTypes.PAREN2, PhelTypes.BRACKET2, PhelTypes.BRACE2)
     }
 }
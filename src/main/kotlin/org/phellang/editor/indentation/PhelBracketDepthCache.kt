@@ -0,0 +1,84 @@
+package org.phellang.editor.indentation
+
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.util.Key
+
+/**
+ * The bracket depth at the start of each line of a document, and whether that line starts inside a
+ * string, kept on the document and extended only as far as it is asked.
+ *
+ * Enter indents by the depth at the caret. Summing every line above it on every keystroke made the
+ * cost grow with the file, and so did rescanning each line from scratch — which also lost a string
+ * left open across lines, reading its closing `"` as an opening one. Here a line is scanned once and
+ * its state carried into the next. An edit throws away only the lines below the edited one, through
+ * [PhelBracketDepthInvalidator], so Enter near the end of a long file scans the line it leaves and
+ * nothing above it.
+ *
+ * Depth is the raw sum of each line's balance, as the indentation has always been: a stray closer
+ * lowers it rather than being dropped.
+ */
+internal class PhelBracketDepthCache private constructor() {
+
+    /** Where a line starts: how many brackets are open, and whether a string is. */
+    data class State(val depth: Int, val inString: Boolean)
+
+    private var depths = IntArray(INITIAL_LINES)
+    private var inStrings = BooleanArray(INITIAL_LINES)
+
+    /** How many line starts, from the first, hold a known state. The first always does. */
+    private var known = 1
+
+    /** The document's stamp when [known] was last brought up to date. */
+    private var stamp = -1L
+
+    /** The state at the start of [line], scanning forward from the last line already known. */
+    @Synchronized
+    fun stateAt(document: Document, line: Int): State {
+        // An edit the listener did not see — none should get past it — leaves nothing to trust.
+        if (stamp != document.modificationStamp) {
+            known = 1
+            stamp = document.modificationStamp
+        }
+
+        val target = line.coerceIn(0, maxOf(0, document.lineCount - 1))
+        if (target >= known) {
+            ensureCapacity(target + 1)
+            val analyzer = PhelLineAnalyzer(document)
+            for (scanned in known - 1 until target) {
+                val after = analyzer.stateAfter(analyzer.getLineText(scanned), State(depths[scanned], inStrings[scanned]))
+                depths[scanned + 1] = after.depth
+                inStrings[scanned + 1] = after.inString
+            }
+            known = target + 1
+        }
+
+        return State(depths[target], inStrings[target])
+    }
+
+    /** Forgets every line start after [line]: an edit on it leaves the ones at or above it as they were. */
+    @Synchronized
+    fun invalidateAfter(line: Int, newStamp: Long) {
+        known = minOf(known, line + 1)
+        stamp = newStamp
+    }
+
+    private fun ensureCapacity(lines: Int) {
+        if (lines <= depths.size) return
+
+        val size = maxOf(lines, depths.size * 2)
+        depths = depths.copyOf(size)
+        inStrings = inStrings.copyOf(size)
+    }
+
+    companion object {
+        private const val INITIAL_LINES = 64
+
+        private val KEY = Key.create<PhelBracketDepthCache>("phel.bracketDepthCache")
+
+        /** The cache made for [document] so far, if any. */
+        fun existing(document: Document): PhelBracketDepthCache? = document.getUserData(KEY)
+
+        fun of(document: Document): PhelBracketDepthCache =
+            document.getUserData(KEY) ?: PhelBracketDepthCache().also { document.putUserData(KEY, it) }
+    }
+}
@@ -0,0 +1,20 @@
+package org.phellang.editor.indentation
+
+import com.intellij.openapi.editor.event.DocumentEvent
+import com.intellij.openapi.editor.event.DocumentListener
+
+/**
+ * Drops the [PhelBracketDepthCache] lines an edit may have changed: those below the edited line.
+ *
+ * Registered for every document, and a no-op for those no cache was ever made for — one user data
+ * lookup per edit.
+ */
+class PhelBracketDepthInvalidator : DocumentListener {
+
+    override fun documentChanged(event: DocumentEvent) {
+        val document = event.document
+        val cache = PhelBracketDepthCache.existing(document) ?: return
+
+        cache.invalidateAfter(document.getLineNumber(event.offset), document.modificationStamp)
+    }
+}
@@ -4,28 +4,18 @@ import com.intellij.openapi.editor.Document
 
 class PhelIndentationCalculator {
 
+    /**
+     * The depth at the caret: the cached depth at the start of its line, plus what the line opens
+     * before the caret. Only the caret's line is read, however far down the file it is.
+     */
     fun calculateIndentationLevel(
-        document: Document, currentLineNumber: Int, textBeforeCaret: String
+        document: Document, currentLineNumber: Int, textBeforeCaret: CharSequence
     ): Int {
         val lineAnalyzer = PhelLineAnalyzer(document)
+        val lineStart = PhelBracketDepthCache.of(document).stateAt(document, currentLineNumber)
 
-        val totalNestingLevel = calculateTotalNestingLevel(lineAnalyzer, currentLineNumber, textBeforeCaret)
+        val totalNestingLevel = lineStart.depth + lineAnalyzer.bracketBalance(textBeforeCaret, lineStart.inString)
 
         return maxOf(0, totalNestingLevel)
     }
-
-    private fun calculateTotalNestingLevel(
-        lineAnalyzer: PhelLineAnalyzer, upToLine: Int, textBeforeCaret: String
-    ): Int {
-        var nestingLevel = 0
-
-        for (lineNumber in 0 until upToLine) {
-            val lineText = lineAnalyzer.getLineText(lineNumber)
-            nestingLevel += lineAnalyzer.bracketBalance(lineText)
-        }
-
-        nestingLevel += lineAnalyzer.bracketBalance(textBeforeCaret)
-
-        return nestingLevel
-    }
 }
@@ -2,15 +2,22 @@ package org.phellang.editor.indentation
 
 import com.intellij.openapi.editor.Document
 
+/**
+ * Reads lines of Phel for their brackets, skipping strings, `;` comments and character literals.
+ *
+ * Everything here takes a [CharSequence], and a line is a window onto the document's own characters
+ * rather than a copy: Enter asks on every keystroke, and `document.text` would copy the whole file
+ * each time to read one line of it.
+ */
 class PhelLineAnalyzer(private val document: Document) {
 
-    fun getLineText(lineNumber: Int): String {
+    fun getLineText(lineNumber: Int): CharSequence {
         if (lineNumber < 0 || lineNumber >= document.lineCount) {
             return ""
         }
         val lineStart = document.getLineStartOffset(lineNumber)
         val lineEnd = document.getLineEndOffset(lineNumber)
-        return document.text.substring(lineStart, lineEnd)
+        return document.immutableCharSequence.subSequence(lineStart, lineEnd)
     }
 
     /**
@@ -22,14 +29,24 @@ class PhelLineAnalyzer(private val document: Document) {
      * with the formatter, which has always treated VEC, MAP and SET as indenting containers.
      *
      * `#(` and `#{` need no special case: each contains a counted opener and the `#` is inert.
+     *
+     * [inString] says whether [text] starts inside a string left open by the lines above it.
      */
-    fun bracketBalance(text: String): Int {
+    fun bracketBalance(text: CharSequence, inString: Boolean = false): Int {
         var balance = 0
-        forEachBracket(text) { _, char -> if (char in OPENERS) balance++ else balance-- }
+        forEachBracket(text, inString) { _, char -> if (char in OPENERS) balance++ else balance-- }
 
         return balance
     }
 
+    /** The state after [text], for text that starts in [before]: what [PhelBracketDepthCache] records per line. */
+    internal fun stateAfter(text: CharSequence, before: PhelBracketDepthCache.State): PhelBracketDepthCache.State {
+        var depth = before.depth
+        val inString = forEachBracket(text, before.inString) { _, char -> if (char in OPENERS) depth++ else depth-- }
+
+        return PhelBracketDepthCache.State(depth, inString)
+    }
+
     /**
      * Where [text]'s code ends: before any trailing `;` comment, and before the whitespace in front
      * of it.
@@ -39,7 +56,7 @@ class PhelLineAnalyzer(private val document: Document) {
      * the note — and appending at the comment's `;` would leave `(inc 1) )`, a space the author did
      * not write. A `;` inside a string or after a `\` is not a comment and does not count.
      */
-    fun activeCodeLength(text: String): Int = lastCodeCharacterIndex(text) + 1
+    fun activeCodeLength(text: CharSequence): Int = lastCodeCharacterIndex(text) + 1
 
     /**
      * The last character of [text] that is really code, or null when the line is all comment,
@@ -49,9 +66,9 @@ class PhelLineAnalyzer(private val document: Document) {
      * read the raw text, so a line whose *comment* ended in `(` — `(println 1) ; ((((` — had a stray
      * closing paren inserted into the code below it, and so did one ending inside a string.
      */
-    fun lastCodeCharacter(text: String): Char? = lastCodeCharacterIndex(text).takeIf { it >= 0 }?.let(text::get)
+    fun lastCodeCharacter(text: CharSequence): Char? = lastCodeCharacterIndex(text).takeIf { it >= 0 }?.let(text::get)
 
-    private fun lastCodeCharacterIndex(text: String): Int {
+    private fun lastCodeCharacterIndex(text: CharSequence): Int {
         var last = -1
         forEachCodeCharacter(text) { index, char -> if (!char.isWhitespace()) last = index }
 
@@ -65,18 +82,17 @@ class PhelLineAnalyzer(private val document: Document) {
      * so a caller completing the form knows to close the vector before the list. A closer with no
      * matching opener is dropped rather than going negative: there is nothing to complete for it.
      */
-    fun unclosedOpeners(text: String): List<Char> {
+    fun unclosedOpeners(text: CharSequence): List<Char> {
         val open = ArrayDeque<Char>()
         forEachBracket(text) { _, char -> if (char in OPENERS) open.addLast(char) else open.removeLastOrNull() }
 
         return open.toList()
     }
 
-    private inline fun forEachBracket(text: String, onBracket: (Int, Char) -> Unit) {
-        forEachCodeCharacter(text) { index, char ->
+    private inline fun forEachBracket(text: CharSequence, inString: Boolean = false, onBracket: (Int, Char) -> Unit): Boolean =
+        forEachCodeCharacter(text, inString) { index, char ->
             if (char in OPENERS || char in CLOSERS) onBracket(index, char)
         }
-    }
 
     /**
      * Walks [text], reporting only the characters that are really code.
@@ -87,9 +103,12 @@ class PhelLineAnalyzer(private val document: Document) {
      *
      * The `;` that opens a comment is reported, since one caller needs to know where that is; the
      * rest of the comment is not.
+     *
+     * Starts inside a string when [startInString] is set, and returns whether [text] ends inside one.
+     * A comment never carries over: it ends at the line's end.
      */
-    private inline fun forEachCodeCharacter(text: String, onCode: (Int, Char) -> Unit) {
-        var inString = false
+    private inline fun forEachCodeCharacter(text: CharSequence, startInString: Boolean = false, onCode: (Int, Char) -> Unit): Boolean {
+        var inString = startInString
         var inComment = false
         var i = 0
 
@@ -128,6 +147,8 @@ class PhelLineAnalyzer(private val document: Document) {
 
             i++
         }
+
+        return inString
     }
 
     private companion object {
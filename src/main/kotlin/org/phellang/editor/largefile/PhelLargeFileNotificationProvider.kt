@@ -0,0 +1,51 @@
+package org.phellang.editor.largefile
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.fileEditor.FileEditor
+import com.intellij.openapi.project.DumbAware
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiManager
+import com.intellij.ui.EditorNotificationPanel
+import com.intellij.ui.EditorNotificationProvider
+import com.intellij.ui.EditorNotifications
+import org.phellang.language.infrastructure.PhelFileType
+import org.phellang.language.infrastructure.PhelLargeFileMode
+import java.util.function.Function
+import javax.swing.JComponent
+
+/**
+ * The banner over a Phel file past the [PhelLargeFileMode] thresholds, saying what is switched off
+ * and offering to switch it back on — and, once it is, to switch it off again.
+ */
+class PhelLargeFileNotificationProvider : EditorNotificationProvider, DumbAware {
+
+    override fun collectNotificationData(project: Project, file: VirtualFile): Function<in FileEditor, out JComponent?>? {
+        if (file.fileType != PhelFileType.INSTANCE) return null
+        val document = FileDocumentManager.getInstance().getDocument(file) ?: return null
+        if (!PhelLargeFileMode.isLarge(document)) return null
+
+        val analyzed = PhelLargeFileMode.isAnalyzedAnyway(file)
+        val lines = document.lineCount
+
+        return Function { editor ->
+            EditorNotificationPanel(editor, EditorNotificationPanel.Status.Info).apply {
+                if (analyzed) {
+                    text = "Large file ($lines lines): full analysis is on, which may slow typing"
+                    createActionLabel("Limit analysis") { toggle(project, file, analyze = false) }
+                } else {
+                    text = "Large file ($lines lines): semantic highlighting, inspections, folding and hints are off"
+                    createActionLabel("Analyze anyway") { toggle(project, file, analyze = true) }
+                }
+            }
+        }
+    }
+
+    private fun toggle(project: Project, file: VirtualFile, analyze: Boolean) {
+        PhelLargeFileMode.setAnalyzedAnyway(file, analyze)
+
+        EditorNotifications.getInstance(project).updateNotifications(file)
+        PsiManager.getInstance(project).findFile(file)?.let { DaemonCodeAnalyzer.getInstance(project).restart(it) }
+    }
+}
@@ -0,0 +1,36 @@
+package org.phellang.editor.largefile
+
+import com.intellij.openapi.editor.event.DocumentEvent
+import com.intellij.openapi.editor.event.DocumentListener
+import com.intellij.openapi.fileEditor.FileDocumentManager
+import com.intellij.openapi.project.ProjectManager
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.ui.EditorNotifications
+import org.phellang.language.infrastructure.PhelFileType
+import org.phellang.language.infrastructure.PhelLargeFileMode
+
+/**
+ * Refreshes the [PhelLargeFileNotificationProvider] banner when an edit takes a Phel file across a
+ * [PhelLargeFileMode] threshold, in either direction, so typing past the limit shows the banner
+ * without reopening the file. Highlighting needs no nudge: the edit has already restarted it.
+ *
+ * Registered for every document. For anything but a Phel file it is one file lookup per edit; for
+ * a Phel file, whether the text was over the thresholds before the edit is worked out from the
+ * event rather than remembered.
+ */
+class PhelLargeFileWatcher : DocumentListener {
+
+    override fun documentChanged(event: DocumentEvent) {
+        val document = event.document
+        val file = FileDocumentManager.getInstance().getFile(document) ?: return
+        if (file.fileType != PhelFileType.INSTANCE) return
+
+        val linesBefore = document.lineCount - StringUtil.countNewLines(event.newFragment) + StringUtil.countNewLines(event.oldFragment)
+        val lengthBefore = document.textLength - event.newLength + event.oldLength
+        if (PhelLargeFileMode.isLarge(linesBefore, lengthBefore) == PhelLargeFileMode.isLarge(document)) return
+
+        for (project in ProjectManager.getInstance().openProjects) {
+            EditorNotifications.getInstance(project).updateNotifications(file)
+        }
+    }
+}
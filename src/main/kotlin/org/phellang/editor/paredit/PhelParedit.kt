@@ -1,92 +1,104 @@
 package org.phellang.editor.paredit
 
-import com.intellij.psi.PsiElement
-import com.intellij.psi.PsiFile
-import com.intellij.psi.util.PsiTreeUtil
-import org.phellang.language.psi.PhelForm
+import com.intellij.openapi.editor.Document
 
+/**
+ * The structural edits, read off the lexer's tokens through [PhelPareditTokens] rather than the PSI,
+ * so running one needs no document commit and sees exactly the text in the editor.
+ */
 object PhelParedit {
-    fun slurpForward(file: PsiFile, offset: Int): List<PhelTextEdit>? {
-        val container = PhelPareditContainers.findEnclosingContainer(file, offset) ?: return null
-        val wrapper = container.parent as? PhelForm ?: return null
-        val nextForm = PsiTreeUtil.getNextSiblingOfType(wrapper, PhelForm::class.java) ?: return null
-        val close = container.lastChild ?: return null
+    fun slurpForward(document: Document, offset: Int): List<PhelTextEdit>? =
+        slurpForward(PhelPareditTokens.around(document, offset), offset)
+
+    fun barfForward(document: Document, offset: Int): List<PhelTextEdit>? =
+        barfForward(PhelPareditTokens.around(document, offset), offset)
+
+    fun slurpBackward(document: Document, offset: Int): List<PhelTextEdit>? =
+        slurpBackward(PhelPareditTokens.around(document, offset), offset)
+
+    fun barfBackward(document: Document, offset: Int): List<PhelTextEdit>? =
+        barfBackward(PhelPareditTokens.around(document, offset), offset)
+
+    fun wrap(document: Document, offset: Int, open: Char, close: Char): List<PhelTextEdit>? =
+        wrap(PhelPareditTokens.around(document, offset), offset, open, close)
+
+    fun splice(document: Document, offset: Int): List<PhelTextEdit>? =
+        splice(PhelPareditTokens.around(document, offset), offset)
+
+    fun raise(document: Document, offset: Int): List<PhelTextEdit>? =
+        raise(PhelPareditTokens.around(document, offset), offset)
+
+    internal fun slurpForward(tokens: PhelPareditTokens, offset: Int): List<PhelTextEdit>? {
+        val open = tokens.containerAt(offset).takeIf { it >= 0 } ?: return null
+        val wrapper = tokens.parentOf(open) ?: return null
+        val nextForm = tokens.nextSibling(wrapper) ?: return null
+        val close = tokens.closerOf(open)
 
         return listOf(
-            PhelTextEdit.insert(nextForm.textRange.endOffset, close.text),
-            PhelTextEdit.delete(close.textRange),
+            PhelTextEdit.insert(tokens.range(nextForm).endOffset, tokens.text(close)),
+            PhelTextEdit.delete(tokens.range(close)),
         )
     }
 
-    fun barfForward(file: PsiFile, offset: Int): List<PhelTextEdit>? {
-        val container = PhelPareditContainers.findEnclosingContainer(file, offset) ?: return null
-        val close = container.lastChild ?: return null
-        val children = formChildrenOf(container)
+    internal fun barfForward(tokens: PhelPareditTokens, offset: Int): List<PhelTextEdit>? {
+        val open = tokens.containerAt(offset).takeIf { it >= 0 } ?: return null
+        val close = tokens.closerOf(open)
+        val children = tokens.formsIn(open)
         if (children.size < 2) return null
 
-        val newCloseOffset = children[children.size - 2].textRange.endOffset
+        val newCloseOffset = tokens.range(children[children.size - 2]).endOffset
         return listOf(
-            PhelTextEdit.delete(close.textRange),
-            PhelTextEdit.insert(newCloseOffset, close.text),
+            PhelTextEdit.delete(tokens.range(close)),
+            PhelTextEdit.insert(newCloseOffset, tokens.text(close)),
         )
     }
 
-    fun slurpBackward(file: PsiFile, offset: Int): List<PhelTextEdit>? {
-        val container = PhelPareditContainers.findEnclosingContainer(file, offset) ?: return null
-        val wrapper = container.parent as? PhelForm ?: return null
-        val prevForm = PsiTreeUtil.getPrevSiblingOfType(wrapper, PhelForm::class.java) ?: return null
-        val open = container.firstChild ?: return null
+    internal fun slurpBackward(tokens: PhelPareditTokens, offset: Int): List<PhelTextEdit>? {
+        val open = tokens.containerAt(offset).takeIf { it >= 0 } ?: return null
+        val wrapper = tokens.parentOf(open) ?: return null
+        val prevForm = tokens.previousSibling(wrapper) ?: return null
 
         return listOf(
-            PhelTextEdit.delete(open.textRange),
-            PhelTextEdit.insert(prevForm.textRange.startOffset, open.text),
+            PhelTextEdit.delete(tokens.range(open)),
+            PhelTextEdit.insert(tokens.range(prevForm).startOffset, tokens.text(open)),
         )
     }
 
-    fun barfBackward(file: PsiFile, offset: Int): List<PhelTextEdit>? {
-        val container = PhelPareditContainers.findEnclosingContainer(file, offset) ?: return null
-        val open = container.firstChild ?: return null
-        val children = formChildrenOf(container)
+    internal fun barfBackward(tokens: PhelPareditTokens, offset: Int): List<PhelTextEdit>? {
+        val open = tokens.containerAt(offset).takeIf { it >= 0 } ?: return null
+        val children = tokens.formsIn(open)
         if (children.size < 2) return null
 
-        val newOpenOffset = children[1].textRange.startOffset
+        val newOpenOffset = tokens.range(children[1]).startOffset
         return listOf(
-            PhelTextEdit.insert(newOpenOffset, open.text),
-            PhelTextEdit.delete(open.textRange),
+            PhelTextEdit.insert(newOpenOffset, tokens.text(open)),
+            PhelTextEdit.delete(tokens.range(open)),
         )
     }
 
-    fun wrap(file: PsiFile, offset: Int, open: Char, close: Char): List<PhelTextEdit>? {
-        val form = PhelPareditContainers.findFormAtCaret(file, offset) ?: return null
+    internal fun wrap(tokens: PhelPareditTokens, offset: Int, open: Char, close: Char): List<PhelTextEdit>? {
+        val form = tokens.formAt(offset)?.let { tokens.range(it) } ?: return null
         return listOf(
-            PhelTextEdit.insert(form.textRange.endOffset, close.toString()),
-            PhelTextEdit.insert(form.textRange.startOffset, open.toString()),
+            PhelTextEdit.insert(form.endOffset, close.toString()),
+            PhelTextEdit.insert(form.startOffset, open.toString()),
         )
     }
 
-    fun splice(file: PsiFile, offset: Int): List<PhelTextEdit>? {
-        val container = PhelPareditContainers.findEnclosingContainer(file, offset) ?: return null
-        val open = container.firstChild ?: return null
-        val close = container.lastChild ?: return null
-        if (open === close) return null
+    internal fun splice(tokens: PhelPareditTokens, offset: Int): List<PhelTextEdit>? {
+        val open = tokens.containerAt(offset).takeIf { it >= 0 } ?: return null
 
         return listOf(
-            PhelTextEdit.delete(close.textRange),
-            PhelTextEdit.delete(open.textRange),
+            PhelTextEdit.delete(tokens.range(tokens.closerOf(open))),
+            PhelTextEdit.delete(tokens.range(open)),
         )
     }
 
-    fun raise(file: PsiFile, offset: Int): List<PhelTextEdit>? {
-        val form = PhelPareditContainers.findFormAtCaret(file, offset) ?: return null
-        val container = PhelPareditContainers.findEnclosingContainer(file, offset) ?: return null
-        val containerWrapper = container.parent as? PhelForm ?: return null
-        if (form === containerWrapper) return null
-
-        return listOf(PhelTextEdit(containerWrapper.textRange, form.text))
-    }
+    internal fun raise(tokens: PhelPareditTokens, offset: Int): List<PhelTextEdit>? {
+        val form = tokens.formAt(offset) ?: return null
+        val open = tokens.containerAt(offset).takeIf { it >= 0 } ?: return null
+        val containerWrapper = tokens.parentOf(open) ?: return null
+        if (form == containerWrapper) return null
 
-    private fun formChildrenOf(container: PsiElement): List<PhelForm> {
-        val arr = PsiTreeUtil.getChildrenOfType(container, PhelForm::class.java) ?: return emptyList()
-        return arr.toList()
+        return listOf(PhelTextEdit(tokens.range(containerWrapper), tokens.text(form)))
     }
 }
@@ -3,14 +3,19 @@ package org.phellang.editor.paredit
 import com.intellij.openapi.actionSystem.DataContext
 import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.openapi.editor.Caret
+import com.intellij.openapi.editor.Document
 import com.intellij.openapi.editor.Editor
 import com.intellij.openapi.editor.actionSystem.EditorActionHandler
 import com.intellij.psi.PsiDocumentManager
-import com.intellij.psi.PsiFile
 import org.phellang.language.psi.files.PhelFile
 
+/**
+ * Runs one paredit operation on the editor's text. The operations read tokens, not PSI, so the
+ * document is neither committed before nor after: a run of slurps leaves the reparse to the
+ * platform's own commit once typing pauses.
+ */
 class PhelPareditActionHandler(
-    private val operation: (PsiFile, Int) -> List<PhelTextEdit>?,
+    private val operation: (Document, Int) -> List<PhelTextEdit>?,
 ) : EditorActionHandler() {
 
     override fun isEnabledForCaret(editor: Editor, caret: Caret, dataContext: DataContext?): Boolean {
@@ -21,18 +26,14 @@ class PhelPareditActionHandler(
 
     override fun doExecute(editor: Editor, caret: Caret?, dataContext: DataContext?) {
         val project = editor.project ?: return
-        val psiManager = PsiDocumentManager.getInstance(project)
-        psiManager.commitDocument(editor.document)
-
-        val psiFile = psiManager.getPsiFile(editor.document) as? PhelFile ?: return
+        val document = editor.document
         val offset = (caret ?: editor.caretModel.primaryCaret).offset
-        val edits = operation(psiFile, offset) ?: return
+        val edits = operation(document, offset) ?: return
 
         WriteCommandAction.runWriteCommandAction(project) {
             edits.sortedByDescending { it.range.startOffset }.forEach { edit ->
-                editor.document.replaceString(edit.range.startOffset, edit.range.endOffset, edit.replacement)
+                document.replaceString(edit.range.startOffset, edit.range.endOffset, edit.replacement)
             }
-            psiManager.commitDocument(editor.document)
         }
     }
 }
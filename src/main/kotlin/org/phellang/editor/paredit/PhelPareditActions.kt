@@ -10,16 +10,16 @@ class PhelSlurpBackwardAction : EditorAction(PhelPareditActionHandler(PhelParedi
 
 class PhelBarfBackwardAction : EditorAction(PhelPareditActionHandler(PhelParedit::barfBackward))
 
-class PhelWrapParenAction : EditorAction(PhelPareditActionHandler({ file, offset ->
-    PhelParedit.wrap(file, offset, '(', ')')
+class PhelWrapParenAction : EditorAction(PhelPareditActionHandler({ document, offset ->
+    PhelParedit.wrap(document, offset, '(', ')')
 }))
 
-class PhelWrapBracketAction : EditorAction(PhelPareditActionHandler({ file, offset ->
-    PhelParedit.wrap(file, offset, '[', ']')
+class PhelWrapBracketAction : EditorAction(PhelPareditActionHandler({ document, offset ->
+    PhelParedit.wrap(document, offset, '[', ']')
 }))
 
-class PhelWrapBraceAction : EditorAction(PhelPareditActionHandler({ file, offset ->
-    PhelParedit.wrap(file, offset, '{', '}')
+class PhelWrapBraceAction : EditorAction(PhelPareditActionHandler({ document, offset ->
+    PhelParedit.wrap(document, offset, '{', '}')
 }))
 
 class PhelSpliceAction : EditorAction(PhelPareditActionHandler(PhelParedit::splice))
@@ -2,8 +2,6 @@ package org.phellang.editor.paredit
 
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiFile
-import com.intellij.psi.util.PsiTreeUtil
-import org.phellang.language.psi.PhelForm
 import org.phellang.language.psi.PhelHashFn
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelMap
@@ -14,9 +12,6 @@ import org.phellang.language.psi.PhelVec
 
 internal object PhelPareditContainers {
 
-    fun findEnclosingContainer(file: PsiFile, offset: Int): PsiElement? =
-        candidatesAt(file, offset).firstNotNullOfOrNull { enclosingContainerOf(it) }
-
     /**
      * The nearest bracketed container at or above [element], or null if there is none below the
      * file. [element] itself counts, so a container passed in is returned unchanged.
@@ -30,22 +25,9 @@ internal object PhelPareditContainers {
         return null
     }
 
-    fun findFormAtCaret(file: PsiFile, offset: Int): PhelForm? {
-        for (candidate in candidatesAt(file, offset)) {
-            val form = PsiTreeUtil.getParentOfType(candidate, PhelForm::class.java)
-            if (form != null) return form
-        }
-        return null
-    }
-
     fun isContainer(element: PsiElement): Boolean = when (element) {
         is PhelList, is PhelVec, is PhelMap, is PhelSet,
         is PhelHashFn, is PhelReaderConditional, is PhelReaderConditionalSplice -> true
         else -> false
     }
-
-    private fun candidatesAt(file: PsiFile, offset: Int): List<PsiElement> = listOfNotNull(
-        file.findElementAt(offset),
-        if (offset > 0) file.findElementAt(offset - 1) else null,
-    )
 }
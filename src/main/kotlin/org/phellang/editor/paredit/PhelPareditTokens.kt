@@ -0,0 +1,311 @@
+package org.phellang.editor.paredit
+
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.util.TextRange
+import com.intellij.psi.TokenType
+import com.intellij.psi.tree.IElementType
+import com.intellij.psi.tree.TokenSet
+import org.phellang.language.lexer.PhelLexerAdapter
+import org.phellang.language.psi.PhelTypes
+
+/**
+ * The lexer's tokens over a stretch of a document, each bracket paired with its partner: what the
+ * paredit operations read instead of the PSI.
+ *
+ * Working from PSI meant committing the document before every slurp, and the commit reparsed the
+ * form being edited each time. Tokens need no commit. [around] lexes only from the start of the
+ * top-level form holding the offset (one earlier form included, for the backward operations) to a
+ * couple of forms past it. Where that start is comes from [PhelTopLevelForms], which keeps the
+ * lexer's own form starts per document, so finding it does not scan the file either.
+ *
+ * Only significant tokens are kept. Whitespace and comments are dropped, and so is `#_`, which the
+ * parser treats as a comment too: the form after it is an ordinary form, as in the PSI.
+ *
+ * Forms are read from the tokens the way the grammar reads them. Reader macros and `^meta` belong to
+ * the form they prefix. A bracket pair is one form. Tokens with nothing between them (`#"` and its
+ * body, `.-` and its name) make one atom.
+ */
+internal class PhelPareditTokens private constructor(
+    private val text: CharSequence,
+    private val types: List<IElementType>,
+    private val starts: IntArray,
+    private val ends: IntArray,
+) {
+
+    /** A form as a token span, first and last token inclusive. */
+    data class Span(val first: Int, val last: Int)
+
+    private val size = types.size
+
+    /** The matching bracket of each bracket token, or -1: not a bracket, or left unmatched. */
+    private val partner = IntArray(size) { -1 }
+
+    /** The opener of the innermost pair holding each token, or -1 when none does within these tokens. */
+    private val enclosing = IntArray(size) { -1 }
+
+    init {
+        val open = ArrayDeque<Int>()
+        for (i in 0 until size) {
+            val type = types[i]
+            when {
+                type in OPENERS -> {
+                    enclosing[i] = open.lastOrNull() ?: -1
+                    open.addLast(i)
+                }
+                type in CLOSERS -> {
+                    // A closer with nothing open is stray; it pairs with nothing and sits at the top.
+                    val opener = open.removeLastOrNull() ?: continue
+                    partner[opener] = i
+                    partner[i] = opener
+                    enclosing[i] = enclosing[opener]
+                }
+                else -> enclosing[i] = open.lastOrNull() ?: -1
+            }
+        }
+    }
+
+    fun range(span: Span): TextRange = TextRange(starts[span.first], ends[span.last])
+
+    fun range(token: Int): TextRange = TextRange(starts[token], ends[token])
+
+    fun text(span: Span): String = text.subSequence(starts[span.first], ends[span.last]).toString()
+
+    fun text(token: Int): String = text.subSequence(starts[token], ends[token]).toString()
+
+    /** The closing bracket of the pair [opener] starts. */
+    fun closerOf(opener: Int): Int = partner[opener]
+
+    /**
+     * The opener of the innermost closed pair around [offset], or -1. As with the PSI element at an
+     * offset, a caret at the top level or past the end looks at the character before it as well.
+     */
+    fun containerAt(offset: Int): Int {
+        val container = containerAtPosition(offset)
+        return if (container >= 0 || offset == 0) container else containerAtPosition(offset - 1)
+    }
+
+    /**
+     * The innermost form around [offset], or null: the atom under it, the pair whose bracket it is
+     * on, or the pair it sits inside. A reader macro or `^` under it stands for the form it prefixes,
+     * prefix included.
+     */
+    fun formAt(offset: Int): Span? = formAtPosition(offset) ?: if (offset > 0) formAtPosition(offset - 1) else null
+
+    /**
+     * The form that [opener]'s pair belongs to in its own container: the pair together with any
+     * prefix it carries, or the pair enclosing it, or null for a bare pair at the top level.
+     */
+    fun parentOf(opener: Int): Span? {
+        val start = prefixedStart(opener)
+        if (start < opener) return Span(start, partner[opener])
+
+        val outer = enclosing[opener]
+        if (outer < 0 || partner[outer] < 0) return null
+        return Span(prefixedStart(outer), partner[outer])
+    }
+
+    /** The forms directly inside [opener]'s pair. */
+    fun formsIn(opener: Int): List<Span> = formsFrom(opener + 1)
+
+    /** The form following [span] in the same container, or null when its container closes first. */
+    fun nextSibling(span: Span): Span? = formFrom(span.last + 1)
+
+    /** The form preceding [span] in the same container, or null when it is the first. */
+    fun previousSibling(span: Span): Span? {
+        val outer = enclosing[span.first]
+        return formsFrom(outer + 1).lastOrNull { it.last < span.first }
+    }
+
+    private fun containerAtPosition(offset: Int): Int {
+        val token = lastTokenStartingAtOrBefore(offset)
+        if (token < 0) return -1
+
+        val type = types[token]
+        val opener = when {
+            type in OPENERS -> token
+            type in CLOSERS && offset < ends[token] -> partner[token]
+            else -> enclosing[token]
+        }
+        return if (opener >= 0 && partner[opener] >= 0) opener else -1
+    }
+
+    private fun formAtPosition(offset: Int): Span? {
+        val token = lastTokenStartingAtOrBefore(offset)
+        if (token >= 0 && offset < ends[token]) {
+            val type = types[token]
+            return when {
+                type in OPENERS -> pairOf(token)
+                type in CLOSERS -> if (partner[token] >= 0) Span(partner[token], token) else null
+                type in PREFIXES -> formFrom(prefixedStart(token))
+                else -> atomAround(token)
+            }
+        }
+
+        // Between tokens: the pair the position sits in, if any.
+        val container = containerAtPosition(offset)
+        return if (container >= 0) Span(container, partner[container]) else null
+    }
+
+    private fun pairOf(opener: Int): Span? = if (partner[opener] >= 0) Span(opener, partner[opener]) else null
+
+    private fun atomAround(token: Int): Span {
+        var first = token
+        while (first > 0 && isGlued(first - 1)) first--
+        return Span(first, atomEnd(token))
+    }
+
+    /** The forms starting at [first] up to the end of their container. */
+    private fun formsFrom(first: Int): List<Span> {
+        val forms = ArrayList<Span>()
+        var next = first
+        while (true) {
+            val form = formFrom(next) ?: break
+            forms.add(form)
+            next = form.last + 1
+        }
+        return forms
+    }
+
+    /** The form starting at token [first], or null when a closer or the end of the tokens comes first. */
+    private fun formFrom(first: Int): Span? {
+        val last = formEnd(first)
+        return if (last >= 0) Span(first, last) else null
+    }
+
+    private fun formEnd(first: Int): Int {
+        if (first >= size) return -1
+
+        val type = types[first]
+        return when {
+            type == PhelTypes.HAT -> {
+                val meta = formEnd(first + 1)
+                if (meta < 0) -1 else formEnd(meta + 1)
+            }
+            type in PREFIXES -> formEnd(first + 1)
+            type in OPENERS -> partner[first]
+            type in CLOSERS -> -1
+            else -> atomEnd(first)
+        }
+    }
+
+    private fun atomEnd(first: Int): Int {
+        var last = first
+        while (last + 1 < size && isGlued(last)) last++
+        return last
+    }
+
+    /** Whether token [token] and the one after it are two halves of one atom. */
+    private fun isGlued(token: Int): Boolean =
+        ends[token] == starts[token + 1] && isAtom(types[token]) && isAtom(types[token + 1])
+
+    /**
+     * Where the form starting at [token] really starts: at the first of the reader macros and
+     * `^meta` prefixes directly before it.
+     */
+    private fun prefixedStart(token: Int): Int {
+        var start = token
+        while (start > 0) {
+            val before = start - 1
+            val type = types[before]
+            start = when {
+                type in PREFIXES -> before
+                // A form directly after `^` is the metadata of the one after it.
+                type in CLOSERS && partner[before] > 0 && types[partner[before] - 1] == PhelTypes.HAT -> partner[before] - 1
+                isAtom(type) -> {
+                    val atom = atomAround(before).first
+                    if (atom > 0 && types[atom - 1] == PhelTypes.HAT) atom - 1 else return start
+                }
+                else -> return start
+            }
+        }
+        return start
+    }
+
+    private fun lastTokenStartingAtOrBefore(offset: Int): Int {
+        var low = 0
+        var high = size - 1
+        var found = -1
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            if (starts[middle] <= offset) {
+                found = middle
+                low = middle + 1
+            } else {
+                high = middle - 1
+            }
+        }
+        return found
+    }
+
+    companion object {
+        internal val OPENERS = TokenSet.create(
+            PhelTypes.PAREN1, PhelTypes.BRACKET1, PhelTypes.BRACE1, PhelTypes.HASH_BRACE,
+            PhelTypes.HASH_PAREN, PhelTypes.READER_COND, PhelTypes.READER_COND_SPLICE,
+        )
+
+        internal val CLOSERS = TokenSet.create(PhelTypes.PAREN2, PhelTypes.BRACKET2, PhelTypes.BRACE2)
+
+        /** Everything that prefixes a form rather than being one. */
+        internal val PREFIXES = TokenSet.create(
+            PhelTypes.QUOTE, PhelTypes.SYNTAX_QUOTE, PhelTypes.TILDE, PhelTypes.TILDE_AT,
+            PhelTypes.DEREF, PhelTypes.VAR_QUOTE, PhelTypes.TAG, PhelTypes.HAT,
+        )
+
+        internal val SKIPPED = TokenSet.create(TokenType.WHITE_SPACE, PhelTypes.LINE_COMMENT, PhelTypes.FORM_COMMENT)
+
+        /** Forms completed after the offset before [around] stops lexing: its own, the next, and one spare for a `^meta`. */
+        private const val FORMS_AFTER = 3
+
+        private fun isAtom(type: IElementType): Boolean = type !in OPENERS && type !in CLOSERS && type !in PREFIXES
+
+        /** Every token of [text]. */
+        fun of(text: CharSequence): PhelPareditTokens = lex(text, 0, 0, Int.MAX_VALUE)
+
+        /** The tokens of the top-level forms around [offset] in [document], and the form before them. */
+        fun around(document: Document, offset: Int): PhelPareditTokens {
+            val text = document.immutableCharSequence
+            val start = PhelTopLevelForms.of(document).startBefore(document, offset.coerceIn(0, text.length))
+
+            return lex(text, start.offset, start.state, offset)
+        }
+
+        /**
+         * Lexes from [start], which must be at the top level with the lexer in [state], until
+         * [FORMS_AFTER] forms end past [offset].
+         */
+        private fun lex(text: CharSequence, start: Int, state: Int, offset: Int): PhelPareditTokens {
+            val types = ArrayList<IElementType>()
+            var starts = IntArray(INITIAL_TOKENS)
+            var ends = IntArray(INITIAL_TOKENS)
+
+            val lexer = PhelLexerAdapter()
+            lexer.start(text, start, text.length, state)
+            var depth = 0
+            var formsAfter = 0
+            while (true) {
+                val type = lexer.tokenType ?: break
+                if (type !in SKIPPED) {
+                    if (types.size == starts.size) {
+                        starts = starts.copyOf(starts.size * 2)
+                        ends = ends.copyOf(ends.size * 2)
+                    }
+                    starts[types.size] = lexer.tokenStart
+                    ends[types.size] = lexer.tokenEnd
+                    types.add(type)
+
+                    when {
+                        type in OPENERS -> depth++
+                        type in CLOSERS -> depth = maxOf(0, depth - 1)
+                    }
+                    val endsAForm = depth == 0 && type !in OPENERS && type !in PREFIXES
+                    if (endsAForm && lexer.tokenStart >= offset && ++formsAfter >= FORMS_AFTER) break
+                }
+                lexer.advance()
+            }
+
+            return PhelPareditTokens(text, types, starts.copyOf(types.size), ends.copyOf(types.size))
+        }
+
+        private const val INITIAL_TOKENS = 256
+    }
+}
@@ -0,0 +1,145 @@
+package org.phellang.editor.paredit
+
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.util.Key
+import org.phellang.editor.paredit.PhelPareditTokens.Companion.CLOSERS
+import org.phellang.editor.paredit.PhelPareditTokens.Companion.OPENERS
+import org.phellang.editor.paredit.PhelPareditTokens.Companion.PREFIXES
+import org.phellang.editor.paredit.PhelPareditTokens.Companion.SKIPPED
+import org.phellang.language.lexer.PhelLexerAdapter
+import org.phellang.language.psi.PhelTypes
+
+/**
+ * Where each top-level form of a document starts, as the lexer reads it, kept on the document and
+ * extended only as far as it is asked.
+ *
+ * [PhelPareditTokens.around] lexes from one of these starts, so a start has to be a place where the
+ * lexer can begin: between tokens, outside every bracket. The bracket depths Enter keeps cannot
+ * promise that, as they come from a character scan with its own rules for strings, comments and
+ * literals, and where it and the lexer disagree a line it calls top-level can sit inside a token.
+ * So the starts come from the lexer itself, together with its state there. An edit keeps
+ * the starts on the lines above it, through [PhelTopLevelFormsInvalidator], and lexing resumes from
+ * the last of them.
+ */
+internal class PhelTopLevelForms private constructor() {
+
+    private var starts = IntArray(INITIAL_FORMS)
+    private var states = IntArray(INITIAL_FORMS)
+    private var count = 0
+
+    /** Whether the starts run to the end of the document, so no offset needs more lexing. */
+    private var complete = false
+
+    /** The document's stamp when the starts were last brought up to date. */
+    private var stamp = -1L
+
+    /** A top-level form start and the lexer state to begin lexing there in. */
+    data class Start(val offset: Int, val state: Int)
+
+    /**
+     * The start of the top-level form before the one holding [offset], or of that form when it is
+     * the first: where the backward operations still find the form they reach for. Offsets between
+     * forms count as part of the one before them.
+     */
+    @Synchronized
+    fun startBefore(document: Document, offset: Int): Start {
+        // An edit the listener did not see — none should get past it — leaves nothing to trust.
+        if (stamp != document.modificationStamp) {
+            count = 0
+            complete = false
+            stamp = document.modificationStamp
+        }
+
+        if (!complete && (count == 0 || starts[count - 1] <= offset)) scan(document.immutableCharSequence, offset)
+
+        val holding = lastStartAtOrBefore(offset)
+        val index = maxOf(0, holding - 1)
+        return if (index < count) Start(starts[index], states[index]) else Start(0, 0)
+    }
+
+    /** Forgets every start from [offset] on: an edit there leaves the starts on the lines above it as they were. */
+    @Synchronized
+    fun invalidateFrom(offset: Int, newStamp: Long) {
+        count = lastStartAtOrBefore(offset - 1) + 1
+        complete = false
+        stamp = newStamp
+    }
+
+    /**
+     * Lexes on from the last start known, which the scan starts over so that its form is read whole,
+     * until a form starts past [offset] or the text ends.
+     */
+    private fun scan(text: CharSequence, offset: Int) {
+        val lexer = PhelLexerAdapter()
+        if (count > 0) {
+            count--
+            lexer.start(text, starts[count], text.length, states[count])
+        } else {
+            lexer.start(text, 0, text.length, 0)
+        }
+
+        var depth = 0
+        // Completed forms still owed before the current one ends: one for each `^meta` it carries.
+        var owed = 0
+        var atStart = true
+        while (true) {
+            val type = lexer.tokenType ?: break
+            if (type !in SKIPPED) {
+                if (atStart && depth == 0) {
+                    if (lexer.tokenStart > offset) return record(lexer.tokenStart, lexer.state)
+                    record(lexer.tokenStart, lexer.state)
+                    atStart = false
+                }
+
+                when {
+                    type in OPENERS -> depth++
+                    type in CLOSERS -> depth = maxOf(0, depth - 1)
+                    type == PhelTypes.HAT && depth == 0 -> owed++
+                }
+                if (depth == 0 && type !in OPENERS && type !in PREFIXES) {
+                    if (owed > 0) owed-- else atStart = true
+                }
+            }
+            lexer.advance()
+        }
+        complete = true
+    }
+
+    private fun record(offset: Int, state: Int) {
+        if (count == starts.size) {
+            starts = starts.copyOf(count * 2)
+            states = states.copyOf(count * 2)
+        }
+        starts[count] = offset
+        states[count] = state
+        count++
+    }
+
+    private fun lastStartAtOrBefore(offset: Int): Int {
+        var low = 0
+        var high = count - 1
+        var found = -1
+        while (low <= high) {
+            val middle = (low + high) ushr 1
+            if (starts[middle] <= offset) {
+                found = middle
+                low = middle + 1
+            } else {
+                high = middle - 1
+            }
+        }
+        return found
+    }
+
+    companion object {
+        private const val INITIAL_FORMS = 64
+
+        private val KEY = Key.create<PhelTopLevelForms>("phel.topLevelForms")
+
+        /** The starts found for [document] so far, if any. */
+        fun existing(document: Document): PhelTopLevelForms? = document.getUserData(KEY)
+
+        fun of(document: Document): PhelTopLevelForms =
+            document.getUserData(KEY) ?: PhelTopLevelForms().also { document.putUserData(KEY, it) }
+    }
+}
@@ -0,0 +1,20 @@
+package org.phellang.editor.paredit
+
+import com.intellij.openapi.editor.event.DocumentEvent
+import com.intellij.openapi.editor.event.DocumentListener
+
+/**
+ * Drops the [PhelTopLevelForms] starts an edit may have moved: those from the edited line on.
+ *
+ * Registered for every document, and a no-op for those no paredit operation ever ran in — one user
+ * data lookup per edit.
+ */
+class PhelTopLevelFormsInvalidator : DocumentListener {
+
+    override fun documentChanged(event: DocumentEvent) {
+        val document = event.document
+        val forms = PhelTopLevelForms.existing(document) ?: return
+
+        forms.invalidateFrom(document.getLineStartOffset(document.getLineNumber(event.offset)), document.modificationStamp)
+    }
+}
@@ -3,7 +3,6 @@ package org.phellang.editor.smartenter
 import com.intellij.codeInsight.editorActions.smartEnter.SmartEnterProcessor
 import com.intellij.openapi.editor.Editor
 import com.intellij.openapi.project.Project
-import com.intellij.openapi.util.TextRange
 import com.intellij.psi.PsiFile
 import org.phellang.editor.indentation.PhelLineAnalyzer
 import org.phellang.language.psi.files.PhelFile
@@ -35,11 +34,12 @@ class PhelSmartEnterProcessor : SmartEnterProcessor() {
 
         // Before any trailing comment, not at the end of the line: `(println (inc 1) ; note` ends
         // inside a comment, and a paren appended there would be commented out along with the note.
-        val insertAt = lineStart + analyzer.activeCodeLength(document.getText(TextRange(lineStart, lineEnd)))
+        val chars = document.immutableCharSequence
+        val insertAt = lineStart + analyzer.activeCodeLength(chars.subSequence(lineStart, lineEnd))
 
         // Scanned to the insertion point rather than to the caret: the statement being completed is
         // the line, so a caret sitting mid-line still closes what the whole line leaves open.
-        val open = analyzer.unclosedOpeners(document.getText(TextRange(0, insertAt)))
+        val open = analyzer.unclosedOpeners(chars.subSequence(0, insertAt))
         if (open.isEmpty()) return false
 
         val closers = open.reversed().map(::closerFor).joinToString("")
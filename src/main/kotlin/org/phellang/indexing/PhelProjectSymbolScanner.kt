@@ -2,12 +2,12 @@ package org.phellang.indexing
 
 import com.intellij.openapi.vfs.VirtualFile
 import com.intellij.psi.util.PsiTreeUtil
-import org.phellang.indexing.scanner.PhelDefinitionPrivacy
 import org.phellang.indexing.scanner.PhelDocstringReader
 import org.phellang.indexing.scanner.PhelSignatureBuilder
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.PhelProjectNamespaceFinder
+import org.phellang.language.psi.analysis.PhelDefinitionPrivacy
 import org.phellang.language.psi.files.PhelFile
 import org.phellang.language.psi.utils.PhelPsiUtils
 import org.phellang.registry.PhelProjectSymbol
@@ -16,8 +16,10 @@ import org.phellang.registry.SymbolType
 /**
  * Reads a file's public top-level definitions for the project symbol index.
  *
- * Privacy, signature rendering and docstring lookup each have their own rules and live beside this
- * in `scanner/`; what remains here is walking the top-level forms and assembling the symbol.
+ * Privacy, signature rendering and docstring lookup each have their own rules. Signatures and
+ * docstrings live beside this in `scanner/`; privacy lives with the PSI analysis in
+ * [PhelDefinitionPrivacy], since reference search narrows a private definition's scope by it too.
+ * What remains here is walking the top-level forms and assembling the symbol.
  */
 object PhelProjectSymbolScanner {
 
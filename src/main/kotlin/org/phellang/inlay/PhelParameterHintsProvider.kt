@@ -12,6 +12,7 @@ import com.intellij.psi.PsiFile
 import org.phellang.registry.PhelArity
 import org.phellang.indexing.PhelArityResolver
 import org.phellang.registry.selectFor
+import org.phellang.language.infrastructure.PhelLargeFileMode
 import org.phellang.language.psi.PhelForm
 import org.phellang.language.psi.PhelInteropShorthands
 import org.phellang.language.psi.PhelList
@@ -22,7 +23,8 @@ import org.phellang.language.psi.utils.PhelPsiUtils
 
 class PhelParameterHintsProvider : InlayHintsProvider {
 
-    override fun createCollector(file: PsiFile, editor: Editor): InlayHintsCollector = Collector()
+    override fun createCollector(file: PsiFile, editor: Editor): InlayHintsCollector? =
+        if (PhelLargeFileMode.isLimited(file)) null else Collector()
 
     private class Collector : SharedBypassCollector {
 
@@ -1,6 +1,5 @@
 package org.phellang.inspection
 
-import com.intellij.codeInspection.LocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
@@ -8,8 +7,9 @@ import org.phellang.indexing.PhelArityResolver
 import org.phellang.registry.accepts
 import org.phellang.registry.describe
 import org.phellang.language.psi.PhelList
-import org.phellang.language.psi.utils.PhelPsiUtils
+import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVisitor
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 
 /**
  * Warns when a call passes the wrong number of arguments to a known function.
@@ -18,16 +18,19 @@ import org.phellang.language.psi.PhelVisitor
  * shadowing local binding, or a variadic special form — is decided by [PhelArityCallSite]; this
  * class only compares the argument count against the resolved arities.
  */
-class PhelArityMismatchInspection : LocalInspectionTool() {
+class PhelArityMismatchInspection : PhelLocalInspectionTool() {
+
+    override val persistsFindings: Boolean get() = true
 
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
+        val analysis = PhelFileAnalysis.of(holder.file) ?: return PsiElementVisitor.EMPTY_VISITOR
+
         return object : PhelVisitor() {
             override fun visitList(o: PhelList) {
-                val forms = PhelPsiUtils.activeForms(o)
-                if (forms.isEmpty()) return
-
-                val head = PhelPsiUtils.asSymbol(forms[0]) ?: return
-                val name = head.text ?: return
+                val facts = analysis.factsOf(o)
+                val forms = facts.forms
+                val head = facts.head ?: return
+                val name = facts.headText ?: return
                 if (PhelArityCallSite.shouldSkip(o, head, name, forms)) return
 
                 val arities = PhelArityResolver.resolve(head.project, name) ?: return
@@ -35,13 +38,17 @@ class PhelArityMismatchInspection : LocalInspectionTool() {
 
                 val argCount = forms.size - 1
                 if (!arities.accepts(argCount)) {
-                    holder.registerProblem(
+                    reportFinding(
+                        holder,
                         head,
                         "Wrong number of args ($argCount) passed to '$name'. Expected: ${arities.describe()}.",
-                        ProblemHighlightType.GENERIC_ERROR_OR_WARNING,
                     )
                 }
             }
         }
     }
+
+    override fun reportFinding(holder: ProblemsHolder, symbol: PhelSymbol, message: String) {
+        holder.registerProblem(symbol, message, ProblemHighlightType.GENERIC_ERROR_OR_WARNING)
+    }
 }
@@ -0,0 +1,130 @@
+package org.phellang.inspection
+
+import com.intellij.codeInspection.LocalInspectionTool
+import com.intellij.codeInspection.LocalInspectionToolSession
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.Ref
+import com.intellij.openapi.util.TextRange
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiElementVisitor
+import org.phellang.inspection.cache.PhelDiagnosticsCache
+import org.phellang.inspection.cache.PhelStoredDiagnostics
+import org.phellang.language.infrastructure.PhelLargeFileMode
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import org.phellang.language.profiling.PhelAnalysisProfiler.Category
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.PhelVisitor
+import org.phellang.language.psi.files.PhelFile
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The base of the Phel local inspections: a [LocalInspectionTool] whose time is attributed to it by
+ * [PhelAnalysisProfiler] when profiling is on, and whose findings [PhelDiagnosticsCache] may
+ * persist.
+ *
+ * The platform builds a visitor per file through the session overload, so that is the one place
+ * every inspection passes through. With profiling off, the visitor is returned as built, and the
+ * only cost is one registry lookup per file. It is also where a file over the
+ * [PhelLargeFileMode] threshold is passed over in the editor; batch runs still inspect it.
+ */
+abstract class PhelLocalInspectionTool : LocalInspectionTool() {
+
+    /**
+     * Whether this inspection's findings are kept across restarts. Only for inspections expensive
+     * enough to be worth it, whose problems are all reported on whole symbols, and which override
+     * [reportFinding] so a stored finding can be reported again.
+     */
+    protected open val persistsFindings: Boolean get() = false
+
+    /** Reports one finding, freshly computed or read back from [PhelDiagnosticsCache], the same way either time. */
+    protected open fun reportFinding(holder: ProblemsHolder, symbol: PhelSymbol, message: String) = Unit
+
+    /**
+     * The visitor for a pass that covers only [range] of the file: the dirty region after an edit,
+     * or the whole file. An inspection that prepares work for the file before visiting it overrides
+     * this to limit that work to the range; the rest just build their usual visitor.
+     */
+    protected open fun buildVisitorWithin(holder: ProblemsHolder, isOnTheFly: Boolean, range: TextRange): PsiElementVisitor =
+        buildVisitor(holder, isOnTheFly)
+
+    override fun buildVisitor(
+        holder: ProblemsHolder,
+        isOnTheFly: Boolean,
+        session: LocalInspectionToolSession,
+    ): PsiElementVisitor {
+        if (isOnTheFly && PhelLargeFileMode.isLimited(holder.file)) {
+            session.putUserData(LIMITED, true)
+            return PsiElementVisitor.EMPTY_VISITOR
+        }
+        if (!PhelAnalysisProfiler.isEnabled()) return storedOrBuilt(holder, isOnTheFly, session)
+
+        val name = shortName
+        val visitor = PhelAnalysisProfiler.measure(Category.INSPECTION, name) { storedOrBuilt(holder, isOnTheFly, session) }
+
+        return object : PsiElementVisitor() {
+            override fun visitElement(element: PsiElement) {
+                PhelAnalysisProfiler.measure(Category.INSPECTION, name) { element.accept(visitor) }
+            }
+        }
+    }
+
+    /**
+     * What was computed fresh over the whole file is handed to the cache, which writes it later. A
+     * replay is not, since it is what was stored already, and neither is a pass restricted to the
+     * dirty region of an edit, whose findings cover only part of the file. A pass that skipped a
+     * large file found nothing because it looked at nothing; stored, its empty results would be
+     * replayed as "known clean" once the file is analyzed anyway.
+     */
+    override fun inspectionFinished(session: LocalInspectionToolSession, problemsHolder: ProblemsHolder) {
+        if (!persistsFindings) return
+        if (session.getUserData(LIMITED) == true) return
+        if (session.getUserData(REPLAYED)?.contains(shortName) == true) return
+        val file = problemsHolder.file as? PhelFile ?: return
+        if (!session.restrictRange.contains(file.textRange)) return
+
+        PhelDiagnosticsCache.getInstance(file.project).remember(file, this, problemsHolder.results)
+    }
+
+    private fun storedOrBuilt(
+        holder: ProblemsHolder,
+        isOnTheFly: Boolean,
+        session: LocalInspectionToolSession,
+    ): PsiElementVisitor {
+        val file = holder.file as? PhelFile
+        val stored = if (persistsFindings && isOnTheFly && file != null) {
+            storedFor(file, session)?.let { PhelDiagnosticsCache.getInstance(file.project).replay(file, this, it) }
+        } else {
+            null
+        }
+        if (stored == null) return buildVisitorWithin(holder, isOnTheFly, session.restrictRange)
+
+        session.putUserDataIfAbsent(REPLAYED, ConcurrentHashMap.newKeySet()).add(shortName)
+        return object : PhelVisitor() {
+            override fun visitSymbol(o: PhelSymbol) {
+                val message = stored[o.textRange] ?: return
+                reportFinding(holder, o, message)
+            }
+        }
+    }
+
+    /**
+     * The stored record every persisting inspection in [session] replays from, looked up by the
+     * first of them. Null — compute — on every pass but the first after the file was opened.
+     */
+    private fun storedFor(file: PhelFile, session: LocalInspectionToolSession): PhelStoredDiagnostics? = synchronized(session) {
+        session.getUserData(STORED)
+            ?: Ref.create(PhelDiagnosticsCache.getInstance(file.project).openReplay(file)).also { session.putUserData(STORED, it) }
+    }.get()
+
+    private companion object {
+        /** The short names of the inspections that replayed stored findings in this session. */
+        val REPLAYED = Key.create<MutableSet<String>>("phel.diagnostics.replayed")
+
+        /** Set when the session's file was passed over by [PhelLargeFileMode], so nothing it "found" is stored. */
+        val LIMITED = Key.create<Boolean>("phel.diagnostics.limited")
+
+        /** What [PhelDiagnosticsCache.openReplay] gave the session, asked once for every persisting inspection in it. */
+        val STORED = Key.create<Ref<PhelStoredDiagnostics?>>("phel.diagnostics.session.stored")
+    }
+}
@@ -1,20 +1,22 @@
 package org.phellang.inspection
 
-import com.intellij.codeInspection.LocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
 import org.phellang.inspection.analysis.PhelShadowedBindingFinder
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelVisitor
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 
 /** Reports a `let`-like binding whose name is already bound by an enclosing binding or parameter. */
-class PhelShadowedLetBindingInspection : LocalInspectionTool() {
+class PhelShadowedLetBindingInspection : PhelLocalInspectionTool() {
 
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
+        val analysis = PhelFileAnalysis.of(holder.file) ?: return PsiElementVisitor.EMPTY_VISITOR
+
         return object : PhelVisitor() {
             override fun visitList(o: PhelList) {
-                for (target in PhelShadowedBindingFinder.shadowedBindings(o)) {
+                for (target in PhelShadowedBindingFinder.shadowedBindings(analysis.factsOf(o), analysis)) {
                     holder.registerProblem(
                         target,
                         "Binding '${target.text}' shadows an outer binding.",
@@ -1,13 +1,16 @@
 package org.phellang.inspection
 
-import com.intellij.codeInspection.LocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.util.TextRange
 import com.intellij.psi.PsiElementVisitor
 import org.phellang.inspection.analysis.PhelUnresolvedSymbolFinder
 import org.phellang.inspection.quickfixes.PhelCreateFunctionQuickFix
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVisitor
+import org.phellang.language.psi.analysis.PhelFileAnalysis
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.references.PhelBatchResolver
 
 /**
  * Reports a bare symbol that names nothing in scope.
@@ -16,23 +19,42 @@ import org.phellang.language.psi.PhelVisitor
  * the message deliberately matches the compiler's wording. The plugin already reports the qualified
  * form of this (`ns/name`); this closes the gap for unqualified names.
  */
-class PhelUnresolvedSymbolInspection : LocalInspectionTool() {
+class PhelUnresolvedSymbolInspection : PhelLocalInspectionTool() {
+
+    override val persistsFindings: Boolean get() = true
+
+    override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor =
+        buildVisitorWithin(holder, isOnTheFly, holder.file.textRange)
+
+    override fun buildVisitorWithin(holder: ProblemsHolder, isOnTheFly: Boolean, range: TextRange): PsiElementVisitor {
+        val file = holder.file as? PhelFile ?: return PsiElementVisitor.EMPTY_VISITOR
+        val analysis = PhelFileAnalysis.of(file)
+        var resolved = false
 
-    override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
         return object : PhelVisitor() {
             override fun visitSymbol(o: PhelSymbol) {
-                val name = PhelUnresolvedSymbolFinder.unresolvedName(o) ?: return
-
-                // Offer to create it only where it is being called: elsewhere the name could just
-                // as well want a `def`, and the fix would generate the wrong kind of definition.
-                val fixes = if (PhelUnresolvedSymbolFinder.isCalled(o)) {
-                    arrayOf(PhelCreateFunctionQuickFix(name))
-                } else {
-                    emptyArray()
+                // Every symbol in the range is resolved anyway; doing it as one batch on the first
+                // visit builds the file's resolution tables once, and each visit then reads its
+                // answer from ResolveCache. A pass that visits no symbol resolves nothing.
+                if (!resolved) {
+                    PhelBatchResolver.resolveAll(file, range)
+                    resolved = true
                 }
-
-                holder.registerProblem(o, "Cannot resolve symbol '$name'", ProblemHighlightType.WARNING, *fixes)
+                val name = PhelUnresolvedSymbolFinder.unresolvedName(o, analysis) ?: return
+                reportFinding(holder, o, "Cannot resolve symbol '$name'")
             }
         }
     }
+
+    override fun reportFinding(holder: ProblemsHolder, symbol: PhelSymbol, message: String) {
+        // Offer to create it only where it is being called: elsewhere the name could just as well
+        // want a `def`, and the fix would generate the wrong kind of definition.
+        val fixes = if (PhelUnresolvedSymbolFinder.isCalled(symbol)) {
+            arrayOf(PhelCreateFunctionQuickFix(symbol.text))
+        } else {
+            emptyArray()
+        }
+
+        holder.registerProblem(symbol, message, ProblemHighlightType.WARNING, *fixes)
+    }
 }
@@ -1,6 +1,5 @@
 package org.phellang.inspection
 
-import com.intellij.codeInspection.LocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
@@ -19,7 +18,9 @@ import org.phellang.language.psi.files.PhelFile
  * from Settings. The annotator no longer reports it; a duplicate or unresolvable import is still
  * its business.
  */
-class PhelUnusedImportInspection : LocalInspectionTool() {
+class PhelUnusedImportInspection : PhelLocalInspectionTool() {
+
+    override val persistsFindings: Boolean get() = true
 
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
         return object : PhelVisitor() {
@@ -27,16 +28,15 @@ class PhelUnusedImportInspection : LocalInspectionTool() {
                 if (!isInsideRequireForm(o)) return
                 if (!PhelUnusedImportFinder.isUnusedImport(o)) return
 
-                holder.registerProblem(
-                    o,
-                    "Unused import",
-                    ProblemHighlightType.LIKE_UNUSED_SYMBOL,
-                    PhelRemoveUnusedImportQuickFix(),
-                )
+                reportFinding(holder, o, "Unused import")
             }
         }
     }
 
+    override fun reportFinding(holder: ProblemsHolder, symbol: PhelSymbol, message: String) {
+        holder.registerProblem(symbol, message, ProblemHighlightType.LIKE_UNUSED_SYMBOL, PhelRemoveUnusedImportQuickFix())
+    }
+
     /**
      * Every symbol in the file reaches this visitor, and a namespace-shaped symbol can appear in
      * ordinary code. Only one inside a `(:require …)` form is an import.
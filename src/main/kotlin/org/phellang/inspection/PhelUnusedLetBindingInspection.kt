@@ -1,6 +1,5 @@
 package org.phellang.inspection
 
-import com.intellij.codeInspection.LocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
@@ -8,14 +7,17 @@ import org.phellang.inspection.analysis.PhelUnusedBindingFinder
 import org.phellang.inspection.quickfixes.PhelRemoveLetBindingQuickFix
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelVisitor
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 
 /** Reports `let`-like bindings whose name is never read, offering to delete the pair. */
-class PhelUnusedLetBindingInspection : LocalInspectionTool() {
+class PhelUnusedLetBindingInspection : PhelLocalInspectionTool() {
 
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
+        val analysis = PhelFileAnalysis.of(holder.file) ?: return PsiElementVisitor.EMPTY_VISITOR
+
         return object : PhelVisitor() {
             override fun visitList(o: PhelList) {
-                for (target in PhelUnusedBindingFinder.unusedBindings(o)) {
+                for (target in PhelUnusedBindingFinder.unusedBindings(analysis.factsOf(o))) {
                     holder.registerProblem(
                         target,
                         "Binding '${target.text}' is never used.",
@@ -1,20 +1,22 @@
 package org.phellang.inspection
 
-import com.intellij.codeInspection.LocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
 import org.phellang.inspection.analysis.PhelUnusedPrivateDefinitionFinder
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelVisitor
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 
 /** Reports a private top-level definition that nothing in its own file references. */
-class PhelUnusedPrivateDefinitionInspection : LocalInspectionTool() {
+class PhelUnusedPrivateDefinitionInspection : PhelLocalInspectionTool() {
 
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
+        val analysis = PhelFileAnalysis.of(holder.file) ?: return PsiElementVisitor.EMPTY_VISITOR
+
         return object : PhelVisitor() {
             override fun visitList(o: PhelList) {
-                val name = PhelUnusedPrivateDefinitionFinder.unusedPrivateDefinition(o) ?: return
+                val name = PhelUnusedPrivateDefinitionFinder.unusedPrivateDefinition(analysis.factsOf(o), analysis) ?: return
 
                 // No quick fix: deleting a definition is a bigger step than deleting a binding, and
                 // a name reached only through a macro would be gone before the user noticed.
@@ -0,0 +1,86 @@
+package org.phellang.inspection
+
+import com.intellij.analysis.AnalysisScope
+import com.intellij.codeInspection.GlobalInspectionContext
+import com.intellij.codeInspection.GlobalInspectionTool
+import com.intellij.codeInspection.InspectionManager
+import com.intellij.codeInspection.ProblemDescriptionsProcessor
+import com.intellij.codeInspection.ProblemHighlightType
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.util.Computable
+import com.intellij.psi.PsiManager
+import com.intellij.psi.search.FilenameIndex
+import com.intellij.psi.search.GlobalSearchScope
+import org.phellang.inspection.analysis.PhelUnusedPublicDefinitionFinder
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * Reports a public top-level definition that no file in the project references.
+ *
+ * A global inspection — Code → Inspect Code, or `phel-inspect` — because the answer needs every
+ * file: a public definition may be called from any namespace requiring its own. Every Phel file in
+ * the project is read once into [PhelUnusedPublicDefinitionFinder]'s inverted table, however narrow
+ * the inspected scope, so a usage outside the scope still keeps a definition alive.
+ */
+class PhelUnusedPublicDefinitionInspection : GlobalInspectionTool() {
+
+    override fun isGraphNeeded(): Boolean = false
+
+    override fun runInspection(
+        scope: AnalysisScope,
+        manager: InspectionManager,
+        globalContext: GlobalInspectionContext,
+        problemDescriptionsProcessor: ProblemDescriptionsProcessor,
+    ) {
+        val project = manager.project
+        val dumbService = DumbService.getInstance(project)
+        val psiManager = PsiManager.getInstance(project)
+        val files = dumbService.runReadActionInSmartMode(
+            Computable { FilenameIndex.getAllFilesByExt(project, "phel", GlobalSearchScope.projectScope(project)).toList() },
+        )
+
+        // A read action per file, for the table and then for the report: holding one over the whole
+        // project would keep every write — typing included — waiting until the run is over.
+        val finder = PhelUnusedPublicDefinitionFinder()
+        for (file in files) {
+            dumbService.runReadActionInSmartMode(Runnable { (psiManager.findFile(file) as? PhelFile)?.let(finder::add) })
+        }
+
+        for (file in files) {
+            if (!scope.contains(file)) continue
+            dumbService.runReadActionInSmartMode(
+                Runnable {
+                    val phelFile = psiManager.findFile(file) as? PhelFile ?: return@Runnable
+                    report(phelFile, finder, manager, globalContext, problemDescriptionsProcessor)
+                },
+            )
+        }
+    }
+
+    private fun report(
+        file: PhelFile,
+        finder: PhelUnusedPublicDefinitionFinder,
+        manager: InspectionManager,
+        globalContext: GlobalInspectionContext,
+        problemDescriptionsProcessor: ProblemDescriptionsProcessor,
+    ) {
+        val unused = finder.unusedDefinitions(file)
+        if (unused.isEmpty()) return
+        val reference = globalContext.refManager.getReference(file) ?: return
+
+        for (name in unused) {
+            // No quick fix, as for private definitions: a name reached only through a macro,
+            // PHP or a test runner would be gone before anyone noticed.
+            problemDescriptionsProcessor.addProblemElement(
+                reference,
+                manager.createProblemDescriptor(
+                    name,
+                    "Public definition '${name.text}' is never used.",
+                    false,
+                    null,
+                    ProblemHighlightType.LIKE_UNUSED_SYMBOL,
+                ),
+            )
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.phellang.inspection.analysis
+
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiElement
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.indexing.PhelProjectSymbolIndex
+import org.phellang.language.psi.PhelForm
+import org.phellang.language.psi.PhelInteropShorthands
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.PhelSpecialForms
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.PhelVec
+import org.phellang.language.psi.analysis.PhelFormWalker
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.utils.PhelPsiUtils
+import org.phellang.language.psi.utils.cachedPerPsi
+import org.phellang.registry.SymbolType
+
+/**
+ * The symbols of a file the unresolved-symbol check must not judge — the positions listed on
+ * [PhelUnresolvedSymbolFinder.isBeyondStaticAnalysis] — found in one walk down from the file.
+ *
+ * Asked per symbol, each of those positions was a walk up the enclosing lists: one for quoting, one
+ * for macro calls, and one each for interop, `ns`, type declarations, `catch` and binding vectors,
+ * so a file cost its symbols times its nesting depth, seven times over. Walking down instead carries
+ * what the enclosing forms establish — "quoted", "inside a macro call", "these names are bound" — to
+ * each node, which is then visited once.
+ *
+ * Whether a head names a macro is asked once per distinct head: the file's own `defmacro`s are read
+ * once, and the index is probed at most once per name rather than at every list on every symbol's
+ * way up.
+ */
+internal class PhelOpaqueSymbols private constructor(private val file: PhelFile) {
+
+    /**
+     * What the enclosing forms establish for everything below them. [opaque] covers every position
+     * whose names are skipped outright; [bound] holds names a binding form introduces for its body.
+     */
+    private class Context(val opaque: Boolean, val bound: Set<String>) {
+        fun opaque(): Context = if (opaque) this else Context(true, bound)
+
+        fun binding(names: Collection<String>): Context =
+            if (names.isEmpty() || bound.containsAll(names)) this else Context(opaque, bound + names)
+    }
+
+    private val opaqueSymbols = HashSet<PhelSymbol>()
+
+    private val macroHeads = HashMap<String, Boolean>()
+
+    private val macrosInFile: Set<String> by lazy {
+        file.children.filterIsInstance<PhelList>().mapNotNullTo(HashSet()) { list ->
+            val forms = PhelPsiUtils.activeForms(list)
+            if (forms.size < 2 || PhelPsiUtils.asSymbol(forms[0])?.text !in MACRO_DEFINING) return@mapNotNullTo null
+
+            PhelPsiUtils.asSymbol(forms[1])?.text
+        }
+    }
+
+    init {
+        // Iterative: a deeply nested data literal must not cost a stack frame per level.
+        val pending = ArrayDeque<Pair<PsiElement, Context>>()
+        pending.addChildren(file, Context(opaque = false, bound = emptySet()))
+
+        while (pending.isNotEmpty()) {
+            val (element, outer) = pending.removeLast()
+            val context = if (isQuoted(element)) outer.opaque() else outer
+
+            when (element) {
+                is PhelSymbol -> if (context.opaque || element.text in context.bound) opaqueSymbols.add(element)
+                is PhelList -> visitList(element, context, pending)
+                else -> pending.addChildren(element, context)
+            }
+        }
+    }
+
+    /** True when [symbol] sits where the unresolved-symbol check has nothing it can know. */
+    operator fun contains(symbol: PhelSymbol): Boolean = symbol in opaqueSymbols
+
+    private fun visitList(list: PhelList, outer: Context, pending: ArrayDeque<Pair<PsiElement, Context>>) {
+        val head = PhelFormWalker.headText(list)
+        var context = outer
+
+        if (head != null && (PhelInteropShorthands.isPhpQualified(head) || head == "ns" || head in TYPE_DECLARING)) {
+            context = context.opaque()
+        }
+        PhelPsiUtils.asSymbol(list.forms.firstOrNull())?.text?.let { callee ->
+            if (namesAMacro(callee)) context = context.opaque()
+        }
+
+        if (head in PhelSpecialForms.LET_LIKE) {
+            val vector = list.children.getOrNull(1) as? PhelVec
+            if (vector != null) {
+                val names = PsiTreeUtil.findChildrenOfType(vector, PhelSymbol::class.java).mapNotNull { it.text }
+                context = context.binding(names)
+            }
+        }
+
+        if (head == "catch") {
+            // The class and the binding slot are declarations, and the binding is in scope for the
+            // whole clause body.
+            val forms = PhelPsiUtils.activeForms(list)
+            context = context.binding(listOfNotNull(PhelPsiUtils.asSymbol(forms.getOrNull(2))?.text))
+            val declarations = forms.take(3)
+
+            var child = list.firstChild
+            while (child != null) {
+                pending.addLast(child to if (declarations.any { it === child }) context.opaque() else context)
+                child = child.nextSibling
+            }
+            return
+        }
+
+        pending.addChildren(list, context)
+    }
+
+    /**
+     * The edited file is checked directly rather than through the index. A macro the user is writing
+     * right now is the case most likely to produce a false report, and it is exactly the case the
+     * index has not caught up with — it refreshes off VFS events, asynchronously.
+     */
+    private fun namesAMacro(head: String): Boolean = macroHeads.getOrPut(head) {
+        head in macrosInFile || PhelProjectSymbolIndex.getInstance(file.project)
+            .findByName(head)
+            .any { it.type == SymbolType.MACRO }
+    }
+
+    /**
+     * A reader macro is a *prefix* of the form it applies to, not an ancestor of it: the grammar
+     * attaches it via `form ::= form_prefix* ...`, so `'foo` is a form carrying a `'` reader macro
+     * whose sibling is the symbol. Every form on the way down is asked for its own prefixes.
+     */
+    private fun isQuoted(element: PsiElement): Boolean =
+        (element as? PhelForm)?.readerMacros?.any { it.text.firstOrNull() in QUOTE_CHARS } == true
+
+    private fun ArrayDeque<Pair<PsiElement, Context>>.addChildren(parent: PsiElement, context: Context) {
+        var child = parent.firstChild
+        while (child != null) {
+            addLast(child to context)
+            child = child.nextSibling
+        }
+    }
+
+    companion object {
+        private val OPAQUE_SYMBOLS_KEY: Key<CachedValue<PhelOpaqueSymbols>> = Key.create("phel.opaque.symbols")
+
+        private val MACRO_DEFINING = setOf("defmacro", "defmacro-")
+
+        private val QUOTE_CHARS = setOf('\'', '`')
+
+        /**
+         * Forms that declare a type. Their bodies hold field vectors and protocol method
+         * implementations — method names and their `this` receiver are declarations, not references.
+         */
+        private val TYPE_DECLARING = setOf(
+            "defstruct", "defstruct*", "definterface", "definterface*",
+            "defrecord", "deftype", "defprotocol",
+        )
+
+        fun of(file: PhelFile): PhelOpaqueSymbols = cachedPerPsi(file, OPAQUE_SYMBOLS_KEY) { PhelOpaqueSymbols(file) }
+    }
+}
@@ -2,29 +2,33 @@ package org.phellang.inspection.analysis
 
 import com.intellij.psi.PsiElement
 import org.phellang.language.psi.PhelForm
+import org.phellang.language.psi.PhelFormKind
 import org.phellang.language.psi.PhelList
-import org.phellang.language.psi.PhelSpecialForms
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVec
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 import org.phellang.language.psi.utils.PhelPsiUtils
 
 /** Finds bindings that reuse a name already bound by an enclosing form. */
 internal object PhelShadowedBindingFinder {
 
-    /** The binding targets of [list] that shadow an outer binding, in source order. */
-    fun shadowedBindings(list: PhelList): List<PhelSymbol> {
-        // activeForms, not forms: a `#_`-discarded form must not shift the head/binding-vector reads
+    /**
+     * The binding targets of [facts]' list that shadow an outer binding, in source order. The
+     * enclosing forms are read through [analysis], so the walk up from every nested `let` shares
+     * their forms rather than re-reading them.
+     */
+    fun shadowedBindings(facts: PhelFileAnalysis.ListFacts, analysis: PhelFileAnalysis): List<PhelSymbol> {
+        // Active forms, not forms: a `#_`-discarded form must not shift the head/binding-vector reads
         // or the name/value pairing inside the binding vector.
-        val forms = PhelPsiUtils.activeForms(list)
+        val forms = facts.forms
         if (forms.size < 2) return emptyList()
 
-        val head = PhelPsiUtils.asSymbol(forms[0])?.text ?: return emptyList()
-        if (head !in PhelSpecialForms.LET_LIKE) return emptyList()
+        if (facts.kind != PhelFormKind.BINDING) return emptyList()
 
         val bindingVector = forms[1] as? PhelVec ?: return emptyList()
 
         return declaredNames(PhelPsiUtils.activeForms(bindingVector))
-            .filter { findOuterBinding(list, it.text) != null }
+            .filter { findOuterBinding(facts.list, it.text, analysis) != null }
     }
 
     /** Bindings are name/value pairs, so only the even-indexed entries declare anything. */
@@ -38,11 +42,11 @@ internal object PhelShadowedBindingFinder {
         !name.isNullOrEmpty() && name != "_" && !name.startsWith("&")
 
     /** The nearest enclosing binding or parameter that already uses [name], or null. */
-    private fun findOuterBinding(innerForm: PhelList, name: String): PsiElement? {
+    private fun findOuterBinding(innerForm: PhelList, name: String, analysis: PhelFileAnalysis): PsiElement? {
         var current: PsiElement? = innerForm.parent
 
         while (current != null) {
-            val match = (current as? PhelList)?.let { bindingIn(it, name) }
+            val match = (current as? PhelList)?.let { bindingIn(analysis.factsOf(it), name) }
             if (match != null && match !== innerForm) return match
 
             current = current.parent
@@ -51,13 +55,12 @@ internal object PhelShadowedBindingFinder {
         return null
     }
 
-    private fun bindingIn(form: PhelList, name: String): PsiElement? {
-        val forms = PhelPsiUtils.activeForms(form)
-        val head = PhelPsiUtils.asSymbol(forms.firstOrNull())?.text ?: return null
+    private fun bindingIn(facts: PhelFileAnalysis.ListFacts, name: String): PsiElement? {
+        val forms = facts.forms
 
-        return when (head) {
-            in PhelSpecialForms.LET_LIKE -> findInBindingVector(forms, name)
-            in PhelSpecialForms.FUNCTION_DEFINING -> findInParameterVector(forms, name)
+        return when {
+            facts.kind == PhelFormKind.BINDING -> findInBindingVector(forms, name)
+            facts.kind.introducesParameters -> findInParameterVector(forms, name)
             else -> null
         }
     }
@@ -1,21 +1,16 @@
 package org.phellang.inspection.analysis
 
-import com.intellij.psi.PsiElement
 import org.phellang.indexing.PhelProjectSymbolIndex
-import org.phellang.language.psi.PhelForm
 import org.phellang.language.psi.PhelInteropShorthands
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.PhelSpecialForms
 import com.intellij.psi.util.PsiTreeUtil
-import org.phellang.language.psi.PhelVec
-import org.phellang.language.psi.analysis.PhelFormWalker
 import org.phellang.language.psi.PhelSymbol
-import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 import org.phellang.language.psi.files.PhelFile
 import org.phellang.language.psi.utils.PhelPsiUtils
 import org.phellang.registry.PhelFunctionRegistry
-import org.phellang.registry.SymbolType
 
 /**
  * Decides whether a bare symbol names something that exists.
@@ -37,20 +32,15 @@ internal object PhelUnresolvedSymbolFinder {
     private val ALWAYS_IGNORED = setOf("&", "_", "&form", "&env")
 
     /**
-     * Forms that declare a type. Their bodies hold field vectors and protocol method
-     * implementations — method names and their `this` receiver are declarations, not references.
+     * The name [symbol] fails to resolve, or null when it resolves or is not a reference at all. The
+     * per-symbol binding questions go through [analysis], which the annotator has usually answered
+     * for the same symbol already.
      */
-    private val TYPE_DECLARING = setOf(
-        "defstruct", "defstruct*", "definterface", "definterface*",
-        "defrecord", "deftype", "defprotocol",
-    )
-
-    /** The name [symbol] fails to resolve, or null when it resolves or is not a reference at all. */
-    fun unresolvedName(symbol: PhelSymbol): String? {
+    fun unresolvedName(symbol: PhelSymbol, analysis: PhelFileAnalysis): String? {
         val text = symbol.text?.takeIf { it.isNotBlank() } ?: return null
-        if (!isReferencePosition(symbol, text)) return null
+        if (!isReferencePosition(symbol, text, analysis)) return null
         if (isBeyondStaticAnalysis(symbol)) return null
-        if (resolves(symbol, text)) return null
+        if (resolves(symbol, text, analysis)) return null
 
         return text
     }
@@ -59,7 +49,7 @@ internal object PhelUnresolvedSymbolFinder {
      * A bare symbol being *read*. Declarations, qualified names and interop are all somebody else's
      * question: a qualified `ns/name` is already checked by the annotator's reference validator.
      */
-    private fun isReferencePosition(symbol: PhelSymbol, text: String): Boolean {
+    private fun isReferencePosition(symbol: PhelSymbol, text: String, analysis: PhelFileAnalysis): Boolean {
         if (text in ALWAYS_IGNORED) return false
         // `%`, `%1`, `%2` are the short-fn anaphors. Bare `$` is the return value inside an `fn`
         // `:post` condition — the one meaning of `$` Phel v0.50.0 kept when it removed the `|(...)`
@@ -70,7 +60,7 @@ internal object PhelUnresolvedSymbolFinder {
         if (text.startsWith(".") || PhelInteropShorthands.isInteropClassName(text)) return false
 
         // The name a definition or binding introduces is not a reference to anything.
-        return !PhelSymbolAnalyzer.isDefinition(symbol)
+        return !analysis.isDefinition(symbol)
     }
 
     /**
@@ -83,71 +73,26 @@ internal object PhelUnresolvedSymbolFinder {
      *
      * The rest were found by running this over `phel-lang/src/phel` and grouping what it reported by
      * the shape each symbol sat in. Every one is a position holding something that is not a Phel
-     * name at all, or a binding form whose exact shape the plugin does not model.
-     */
-    private fun isBeyondStaticAnalysis(symbol: PhelSymbol): Boolean =
-        isInsideQuotedForm(symbol) ||
-                isInsideMacroCall(symbol) ||
-                isInsidePhpInterop(symbol) ||
-                isInsideNsForm(symbol) ||
-                isInsideATypeDeclaration(symbol) ||
-                isCatchBinding(symbol) ||
-                isBoundByAnEnclosingVector(symbol)
-
-    /**
-     * `(php/-> obj (getName))`, `(php/:: Class (create x))`. The head of the inner list is a PHP
-     * method, and its arguments may be PHP constants — none of it is resolvable as a Phel name.
-     */
-    private fun isInsidePhpInterop(symbol: PhelSymbol): Boolean =
-        enclosingHeads(symbol).any(PhelInteropShorthands::isPhpQualified)
-
-    /** The `ns` form is import syntax: namespace names and `:refer` lists, not expressions. */
-    private fun isInsideNsForm(symbol: PhelSymbol): Boolean =
-        enclosingHeads(symbol).any { it == "ns" }
-
-    /**
-     * Anywhere inside a type declaration: its field vector, and the protocol method implementations
-     * that follow it — `(defstruct R [routes] Router (match-by-path [this path] ...))`. The field
-     * names, the method names and their `this` receiver are all declarations.
-     */
-    private fun isInsideATypeDeclaration(symbol: PhelSymbol): Boolean =
-        enclosingHeads(symbol).any { it in TYPE_DECLARING }
-
-    /**
-     * `(catch \Exception e (println e))` — the class and the binding are declarations, and `e` is in
-     * scope for the whole body, so the name has to be recognised there too rather than only in the
-     * slot that introduces it.
-     */
-    private fun isCatchBinding(symbol: PhelSymbol): Boolean {
-        val name = symbol.text ?: return false
-
-        return PhelFormWalker.enclosingLists(symbol)
-            .filter { PhelFormWalker.headText(it) == "catch" }
-            .any { clause ->
-                val forms = PhelPsiUtils.activeForms(clause)
-
-                forms.take(3).any { PsiTreeUtil.isAncestor(it, symbol, false) } ||
-                        PhelPsiUtils.asSymbol(forms.getOrNull(2))?.text == name
-            }
-    }
-
-    /**
-     * A name that appears anywhere in the binding vector of an enclosing binding form.
+     * name at all, or a binding form whose exact shape the plugin does not model:
      *
-     * Deliberately coarse. `foreach` binds three slots rather than pairs, `for` and `dofor` take
-     * verbs (`:in`, `:pairs`, `:let`, `:when`), and any of them may destructure — `(for [[k v] :pairs m] ...)`.
-     * The plugin models none of those shapes, so matching on the name is what keeps their bindings
-     * from being reported throughout the body.
+     * - `(php/-> obj (getName))`: the head of the inner list is a PHP method, its arguments may be
+     *   PHP constants.
+     * - The `ns` form is import syntax: namespace names and `:refer` lists, not expressions.
+     * - Anywhere inside a type declaration — `(defstruct R [routes] Router (match-by-path [this path] ...))`.
+     *   The field names, the method names and their `this` receiver are all declarations.
+     * - `(catch \Exception e (println e))`: the class and the binding are declarations, and `e` is in
+     *   scope for the whole body.
+     * - A name appearing anywhere in the binding vector of an enclosing binding form. Deliberately
+     *   coarse: `foreach` binds three slots rather than pairs, `for` and `dofor` take verbs (`:in`,
+     *   `:pairs`, `:let`, `:when`), and any of them may destructure — `(for [[k v] :pairs m] ...)`.
+     *   Matching on the name is what keeps their bindings from being reported throughout the body.
+     *
+     * All of these are decided for the whole file in one walk down by [PhelOpaqueSymbols].
      */
-    private fun isBoundByAnEnclosingVector(symbol: PhelSymbol): Boolean {
-        val name = symbol.text ?: return false
-
-        return PhelFormWalker.enclosingLists(symbol)
-            .filter { PhelFormWalker.headText(it) in PhelSpecialForms.LET_LIKE }
-            .mapNotNull { it.children.getOrNull(1) as? PhelVec }
-            .any { vector ->
-                PsiTreeUtil.findChildrenOfType(vector, PhelSymbol::class.java).any { it.text == name }
-            }
+    private fun isBeyondStaticAnalysis(symbol: PhelSymbol): Boolean {
+        val file = symbol.containingFile as? PhelFile ?: return true
+
+        return symbol in PhelOpaqueSymbols.of(file)
     }
 
     /**
@@ -163,76 +108,11 @@ internal object PhelUnresolvedSymbolFinder {
         return PsiTreeUtil.isAncestor(head, symbol, false)
     }
 
-    /** The heads of every list enclosing [symbol], innermost first. */
-    private fun enclosingHeads(symbol: PhelSymbol): Sequence<String> =
-        PhelFormWalker.enclosingLists(symbol).mapNotNull { PhelFormWalker.headText(it) }
-
-    /**
-     * A reader macro is a *prefix* of the form it applies to, not an ancestor of it: the grammar
-     * attaches it via `form ::= form_prefix* ...`, so `'foo` is a form carrying a `'` reader macro
-     * whose sibling is the symbol. Walking parents alone never sees it — every enclosing form has to
-     * be asked for its own prefixes.
-     */
-    private fun isInsideQuotedForm(symbol: PhelSymbol): Boolean {
-        var current: PsiElement? = symbol
-
-        while (current != null && current !is PhelFile) {
-            val quoted = (current as? PhelForm)
-                ?.readerMacros
-                ?.any { it.text.firstOrNull() in QUOTE_CHARS } == true
-            if (quoted) return true
-
-            current = current.parent
-        }
-
-        return false
-    }
-
-    private fun isInsideMacroCall(symbol: PhelSymbol): Boolean {
-        var current: PsiElement? = symbol.parent
-
-        while (current != null && current !is PhelFile) {
-            val head = (current as? PhelList)?.let { PhelPsiUtils.asSymbol(it.forms.firstOrNull())?.text }
-            if (head != null && namesAMacro(symbol, head)) return true
-
-            current = current.parent
-        }
-
-        return false
-    }
-
-    /**
-     * The edited file is checked directly rather than through the index. A macro the user is writing
-     * right now is the case most likely to produce a false report, and it is exactly the case the
-     * index has not caught up with — it refreshes off VFS events, asynchronously.
-     */
-    private fun namesAMacro(symbol: PhelSymbol, head: String): Boolean {
-        if (definesMacroInFile(symbol.containingFile as? PhelFile, head)) return true
-
-        return PhelProjectSymbolIndex.getInstance(symbol.project)
-            .findByName(head)
-            .any { it.type == SymbolType.MACRO }
-    }
-
-    private fun definesMacroInFile(file: PhelFile?, head: String): Boolean {
-        if (file == null) return false
-
-        return file.children.filterIsInstance<PhelList>().any { list ->
-            val forms = PhelPsiUtils.activeForms(list)
-
-            forms.size >= 2 &&
-                    PhelPsiUtils.asSymbol(forms[0])?.text in MACRO_DEFINING &&
-                    PhelPsiUtils.asSymbol(forms[1])?.text == head
-        }
-    }
-
-    private val MACRO_DEFINING = setOf("defmacro", "defmacro-")
-
     /** Phel's resolution order: locals, current-namespace globals, `use` aliases, then `phel.core`. */
-    private fun resolves(symbol: PhelSymbol, text: String): Boolean {
+    private fun resolves(symbol: PhelSymbol, text: String, analysis: PhelFileAnalysis): Boolean {
         // Locals, plus same-file and vendor definitions, all of which the reference already answers.
         if (symbol.reference?.resolve() != null) return true
-        if (PhelSymbolAnalyzer.isLocalBindingOrReference(symbol)) return true
+        if (analysis.isLocalBindingOrReference(symbol)) return true
 
         // Language keywords are not always registry entries, and never resolve to a definition.
         if (text in PhelSpecialForms.VARIADIC_HEADS || text in PhelSpecialForms.NAME_DECLARING) return true
@@ -246,6 +126,4 @@ internal object PhelUnresolvedSymbolFinder {
 
         return PhelProjectSymbolIndex.getInstance(symbol.project).findByName(text).isNotEmpty()
     }
-
-    private val QUOTE_CHARS = setOf('\'', '`')
 }
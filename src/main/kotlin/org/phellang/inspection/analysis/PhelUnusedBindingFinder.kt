@@ -1,27 +1,26 @@
 package org.phellang.inspection.analysis
 
 import org.phellang.language.psi.PhelForm
-import org.phellang.language.psi.PhelList
-import org.phellang.language.psi.PhelSpecialForms
+import org.phellang.language.psi.PhelFormKind
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVec
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 import org.phellang.language.psi.utils.PhelPsiUtils
 
 /** Finds the names a let-like form binds and then never reads. */
 internal object PhelUnusedBindingFinder {
 
     /**
-     * The unused binding targets of [list] in source order, or empty when [list] is not a let-like
+     * The unused binding targets of a list in source order, or empty when it is not a let-like
      * form, has no binding vector, or has no body to read the bindings from.
      */
-    fun unusedBindings(list: PhelList): List<PhelSymbol> {
-        // activeForms, not forms: a `#_`-discarded form must not shift the head/binding-vector reads
+    fun unusedBindings(facts: PhelFileAnalysis.ListFacts): List<PhelSymbol> {
+        // Active forms, not forms: a `#_`-discarded form must not shift the head/binding-vector reads
         // or the name/value pairing inside the binding vector.
-        val forms = PhelPsiUtils.activeForms(list)
+        val forms = facts.forms
         if (forms.size < 2) return emptyList()
 
-        val head = PhelPsiUtils.asSymbol(forms[0]) ?: return emptyList()
-        if (head.text !in PhelSpecialForms.LET_LIKE) return emptyList()
+        if (facts.kind != PhelFormKind.BINDING) return emptyList()
 
         val bindingVector = forms[1] as? PhelVec ?: return emptyList()
         val body = forms.drop(2)
@@ -1,8 +1,8 @@
 package org.phellang.inspection.analysis
 
-import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVec
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 import org.phellang.language.psi.utils.PhelPsiUtils
 
 /**
@@ -17,11 +17,11 @@ internal object PhelUnusedParameterFinder {
     /** Heads whose second form is a parameter vector followed by a body. */
     private val PARAMETERISED_FORMS = setOf("defn", "defn-", "fn", "defmacro", "defmacro-")
 
-    fun unusedParameters(list: PhelList): List<PhelSymbol> {
-        val forms = PhelPsiUtils.activeForms(list)
+    fun unusedParameters(facts: PhelFileAnalysis.ListFacts): List<PhelSymbol> {
+        val forms = facts.forms
         if (forms.size < 2) return emptyList()
 
-        val head = PhelPsiUtils.asSymbol(forms[0])?.text ?: return emptyList()
+        val head = facts.headText ?: return emptyList()
         if (head !in PARAMETERISED_FORMS) return emptyList()
 
         val vectorIndex = forms.indexOfFirst { it is PhelVec }
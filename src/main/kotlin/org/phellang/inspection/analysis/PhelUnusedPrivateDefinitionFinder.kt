@@ -1,10 +1,9 @@
 package org.phellang.inspection.analysis
 
-import com.intellij.psi.util.PsiTreeUtil
-import org.phellang.indexing.scanner.PhelDefinitionPrivacy
-import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelSpecialForms
 import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.analysis.PhelDefinitionPrivacy
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 import org.phellang.language.psi.files.PhelFile
 import org.phellang.language.psi.utils.PhelPsiUtils
 
@@ -22,15 +21,15 @@ import org.phellang.language.psi.utils.PhelPsiUtils
  */
 internal object PhelUnusedPrivateDefinitionFinder {
 
-    /** The defined name when [list] is a private definition nothing else in the file mentions. */
-    fun unusedPrivateDefinition(list: PhelList): PhelSymbol? {
-        if (list.parent !is PhelFile) return null
+    /** The defined name when [facts]' list is a private definition nothing else in the file mentions. */
+    fun unusedPrivateDefinition(facts: PhelFileAnalysis.ListFacts, analysis: PhelFileAnalysis): PhelSymbol? {
+        if (facts.list.parent !is PhelFile) return null
 
-        // activeForms: a `#_`-discarded form must not shift the head and name reads.
-        val forms = PhelPsiUtils.activeForms(list)
+        // Active forms: a `#_`-discarded form must not shift the head and name reads.
+        val forms = facts.forms
         if (forms.size < 2) return null
 
-        val keyword = PhelPsiUtils.asSymbol(forms[0])?.text ?: return null
+        val keyword = facts.headText ?: return null
         if (keyword !in PhelSpecialForms.DEFINITION_FORMS) return null
 
         if (!PhelDefinitionPrivacy.isPrivateKeyword(keyword) && !PhelDefinitionPrivacy.isPrivate(forms)) return null
@@ -38,21 +37,18 @@ internal object PhelUnusedPrivateDefinitionFinder {
         val name = PhelPsiUtils.asSymbol(forms[1]) ?: return null
         val nameText = name.text ?: return null
 
-        return if (isReferenced(name, nameText)) null else name
+        return if (isReferenced(nameText, analysis)) null else name
     }
 
     /**
-     * Any symbol with the same text other than the defining name itself.
+     * Any symbol with the same text other than the defining name itself — so more than the one
+     * occurrence the name accounts for. The file's symbol texts are counted once by [analysis],
+     * rather than walked again for every private definition.
      *
      * Only the name symbol is excluded, not the whole declaration, so a recursive call counts as a
      * use. A private function that merely calls itself is arguably dead too, but telling that apart
      * from a genuine use needs call-graph reachability; at this inspection's weak-warning level,
      * staying quiet is the safer error.
      */
-    private fun isReferenced(nameSymbol: PhelSymbol, name: String): Boolean {
-        val file = nameSymbol.containingFile ?: return true
-
-        return PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java)
-            .any { it.text == name && it !== nameSymbol }
-    }
+    private fun isReferenced(name: String, analysis: PhelFileAnalysis): Boolean = analysis.occurrencesOf(name) > 1
 }
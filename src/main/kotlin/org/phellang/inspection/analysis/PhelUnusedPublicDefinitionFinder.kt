@@ -0,0 +1,99 @@
+package org.phellang.inspection.analysis
+
+import com.intellij.openapi.progress.ProgressManager
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.PhelNamespaceUtils
+import org.phellang.language.psi.PhelSpecialForms
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.analysis.PhelDefinitionPrivacy
+import org.phellang.language.psi.analysis.PhelFileAnalysis
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.references.PhelDefinitionSearchScope
+import org.phellang.language.psi.utils.PhelPsiUtils
+
+/**
+ * Finds the public top-level definitions nothing in the project references, for every definition
+ * at once.
+ *
+ * Asking [org.phellang.language.psi.references.PhelUsageFinder] once per definition is a project
+ * scan per definition. Instead, every file's symbols are read once into a single inverted table:
+ * the name a symbol ends in — `shout` for `shout`, `u/shout` and `app\util/shout` alike — mapped to
+ * the files and spellings it occurs in. A definition is then answered by looking up its name and
+ * checking only the spellings found, against what each file can actually reach: the bare name where
+ * it is `:refer`red, an alias where the namespace is required `:as`, and the namespace-qualified
+ * name anywhere.
+ *
+ * Answers are by name and spelling, not by resolution. A local binding shadowing the name in a file
+ * that can reach it counts as a use; that errs toward keeping a definition, as the inspection must.
+ */
+internal class PhelUnusedPublicDefinitionFinder() {
+
+    /** Name (after any `ns/` qualifier) -> the distinct spellings of it in each file. */
+    private val occurrences = HashMap<String, HashMap<PhelFile, MutableSet<String>>>()
+
+    constructor(files: List<PhelFile>) : this() {
+        files.forEach(::add)
+    }
+
+    /** Adds [file]'s symbols to the table; each file is read once, in a read action of the caller's. */
+    fun add(file: PhelFile) {
+        ProgressManager.checkCanceled()
+        for (symbol in PhelFileAnalysis.of(file).symbols) {
+            val text = symbol.text ?: continue
+            occurrences.getOrPut(text.substringAfterLast('/')) { HashMap() }
+                .getOrPut(file) { HashSet() }
+                .add(text)
+        }
+    }
+
+    /** The name symbols of the public definitions in [scope] that no file added so far uses. */
+    fun unusedDefinitions(scope: Collection<PhelFile>): List<PhelSymbol> = scope.flatMap(::unusedDefinitions)
+
+    /** The name symbols of [file]'s public definitions that no file added so far uses. */
+    fun unusedDefinitions(file: PhelFile): List<PhelSymbol> {
+        ProgressManager.checkCanceled()
+        return publicDefinitionNames(file).filterNot(::isUsed)
+    }
+
+    private fun publicDefinitionNames(file: PhelFile): List<PhelSymbol> {
+        val analysis = PhelFileAnalysis.of(file)
+
+        return file.children.filterIsInstance<PhelList>().mapNotNull { list ->
+            val forms = analysis.factsOf(list).forms
+            if (forms.size < 2) return@mapNotNull null
+
+            val keyword = PhelPsiUtils.asSymbol(forms[0])?.text ?: return@mapNotNull null
+            if (keyword !in PhelSpecialForms.DEFINITION_FORMS) return@mapNotNull null
+            if (PhelDefinitionPrivacy.isPrivateKeyword(keyword) || PhelDefinitionPrivacy.isPrivate(forms)) {
+                return@mapNotNull null
+            }
+
+            PhelPsiUtils.asSymbol(forms[1])
+        }
+    }
+
+    private fun isUsed(name: PhelSymbol): Boolean {
+        // Not narrowable — `phel\core`, or outside the project — means usable from anywhere unseen.
+        val definition = PhelDefinitionSearchScope.definitionOf(name) ?: return true
+        val namespace = PhelNamespaceUtils.normalizeNamespace(definition.namespace)
+        val byFile = occurrences[definition.name] ?: return false
+
+        return byFile.any { (file, spellings) ->
+            when {
+                // Edited since it was read, between the caller's read actions: its spellings are stale.
+                !file.isValid -> false
+                // The defining name is one occurrence of its own; any other spelling, or a second
+                // occurrence of the same one, is a use.
+                file == definition.file -> spellings.size > 1 || PhelFileAnalysis.of(file).occurrencesOf(definition.name) > 1
+                spellings.any { isQualifiedBy(it, namespace) } -> true
+                else -> {
+                    val reachable = PhelDefinitionSearchScope.importedSpellingsIn(file, definition)
+                    spellings.any { it in reachable }
+                }
+            }
+        }
+    }
+
+    private fun isQualifiedBy(spelling: String, namespace: String): Boolean =
+        spelling.contains('/') && PhelNamespaceUtils.normalizeNamespace(spelling.substringBeforeLast('/')) == namespace
+}
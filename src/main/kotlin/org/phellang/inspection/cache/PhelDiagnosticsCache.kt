@@ -0,0 +1,273 @@
+package org.phellang.inspection.cache
+
+import com.intellij.codeInsight.daemon.DaemonCodeAnalyzer
+import com.intellij.codeInspection.InspectionManager
+import com.intellij.codeInspection.LocalInspectionTool
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.application.ModalityState
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.fileEditor.FileEditorManagerListener
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.TextRange
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileWithId
+import com.intellij.openapi.vfs.newvfs.FileAttribute
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.util.Alarm
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.phellang.inspection.cache.PhelStoredDiagnostics.Finding
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
+import org.phellang.language.psi.files.PhelFile
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Findings of the expensive file-level inspections — unresolved symbols, arity mismatches, unused
+ * imports — persisted across restarts, so reopening an unchanged file shows them at once instead of
+ * after a full resolution pass.
+ *
+ * They are kept in a VFS file attribute under a [PhelDiagnosticsKey]. Only the first highlighting
+ * pass after a file is opened looks there ([openReplay]): it builds the key, reads the attribute once
+ * for every persisting inspection, and replays an entry only while the key still matches. That
+ * replay also starts a background run of the inspection itself; if that run disagrees, the entry is
+ * rewritten and the file rehighlighted. Every later pass until the file is closed computes, as the
+ * edits it follows have changed the key anyway.
+ *
+ * What a whole-file pass computes is kept in memory ([remember]) and written when the file is closed,
+ * or once highlighting has been quiet for [FLUSH_DELAY_MILLIS], so a session that is never closed
+ * cleanly still leaves its findings behind. The key is built there, once per write, and only for a
+ * file whose PSI is still what the findings were computed from.
+ */
+@Service(Service.Level.PROJECT)
+internal class PhelDiagnosticsCache(private val project: Project) : Disposable {
+
+    /** "fileId#inspection" → the key its stored findings were last confirmed under, this session. */
+    private val confirmed = ConcurrentHashMap<String, PhelDiagnosticsKey>()
+
+    /** "fileId#inspection" entries with a background run already scheduled. */
+    private val revalidating = ConcurrentHashMap.newKeySet<String>()
+
+    /** The open files whose stored findings have been looked for since they were opened. */
+    private val replayAttempted = ConcurrentHashMap.newKeySet<VirtualFile>()
+
+    /** The findings of each file's last whole-file passes, not yet written. */
+    private val pending = ConcurrentHashMap<VirtualFile, Pending>()
+
+    private val flushAlarm = Alarm(Alarm.ThreadToUse.POOLED_THREAD, this)
+
+    private val writeLock = Any()
+
+    /** Per inspection, what was found in a file while its PSI had [stamp]. */
+    private class Pending(val stamp: Long, val findings: Map<String, List<Finding>>)
+
+    init {
+        project.messageBus.connect(this).subscribe(
+            FileEditorManagerListener.FILE_EDITOR_MANAGER,
+            object : FileEditorManagerListener {
+                override fun fileClosed(source: FileEditorManager, file: VirtualFile) {
+                    if (source.isFileOpen(file)) return
+                    replayAttempted.remove(file)
+                    flush(listOf(file))
+                }
+            },
+        )
+    }
+
+    override fun dispose() = Unit
+
+    /**
+     * The record stored for [file], when this is the first look since the file was opened and the
+     * record's key is the file's current one; otherwise null, and the pass computes.
+     */
+    fun openReplay(file: PhelFile): PhelStoredDiagnostics? {
+        val virtualFile = storableFile(file) ?: return null
+        if (!replayAttempted.add(virtualFile)) return null
+
+        return readValid(file, virtualFile)
+    }
+
+    /**
+     * The findings stored for [tool] under [file]'s current key, by range, or null when there is
+     * nothing to trust and the inspection has to run.
+     */
+    fun replay(file: PhelFile, tool: LocalInspectionTool): Map<TextRange, String>? {
+        val virtualFile = storableFile(file) ?: return null
+        return readValid(file, virtualFile)?.let { replay(file, tool, it) }
+    }
+
+    /** [tool]'s findings in [stored], by range; the first replay of them under its key is checked in the background. */
+    fun replay(file: PhelFile, tool: LocalInspectionTool, stored: PhelStoredDiagnostics): Map<TextRange, String>? {
+        val virtualFile = storableFile(file) ?: return null
+        val found = stored.findings[tool.shortName] ?: return null
+
+        val id = idOf(virtualFile, tool.shortName)
+        if (confirmed[id] != stored.key && revalidating.add(id)) revalidate(file, tool, stored.key, id, found)
+
+        return found.associate { TextRange(it.startOffset, it.endOffset) to it.message }
+    }
+
+    /**
+     * Keeps what [tool] has just reported over the whole of [file], to be written when the file is
+     * closed or highlighting goes quiet. A later pass over a changed file replaces it.
+     */
+    fun remember(file: PhelFile, tool: LocalInspectionTool, problems: List<ProblemDescriptor>) {
+        val virtualFile = storableFile(file) ?: return
+        val found = findingsOf(problems) ?: return
+        val stamp = file.modificationStamp
+
+        pending.compute(virtualFile) { _, previous ->
+            val kept = if (previous != null && previous.stamp == stamp) previous.findings else emptyMap()
+            Pending(stamp, kept + (tool.shortName to found))
+        }
+        flushAlarm.cancelAllRequests()
+        flushAlarm.addRequest({ flush(pending.keys.toList()) }, FLUSH_DELAY_MILLIS)
+    }
+
+    /**
+     * Stores what [tool] has just reported for [file] under its current key, at once. Nothing is
+     * written when the findings were already confirmed under that key this session: they are what
+     * is stored.
+     */
+    fun store(file: PhelFile, tool: LocalInspectionTool, problems: List<ProblemDescriptor>) {
+        val virtualFile = storableFile(file) ?: return
+        val found = findingsOf(problems) ?: return
+        store(virtualFile, PhelDiagnosticsKey.of(file), mapOf(tool.shortName to found))
+    }
+
+    /**
+     * Writes the pending findings of [files], off the EDT, each under the key its file
+     * has now. Findings from a PSI that has changed since are dropped: a pass over the new one is
+     * on its way, and remembers its own.
+     */
+    private fun flush(files: Collection<VirtualFile>) {
+        val taken = files.mapNotNull { file -> pending.remove(file)?.let { file to it } }
+        if (taken.isEmpty()) return
+
+        ReadAction.nonBlocking<Unit> {
+            val psiManager = PsiManager.getInstance(project)
+            for ((virtualFile, findings) in taken) {
+                if (!virtualFile.isValid) continue
+                val file = psiManager.findFile(virtualFile) as? PhelFile ?: continue
+                if (file.modificationStamp != findings.stamp) continue
+                store(virtualFile, PhelDiagnosticsKey.of(file), findings.findings)
+            }
+        }
+            .inSmartMode(project)
+            .expireWith(this)
+            .submit(AppExecutorUtil.getAppExecutorService())
+    }
+
+    /** Writes [found] under [key], leaving out what was already confirmed under it this session. */
+    private fun store(file: VirtualFile, key: PhelDiagnosticsKey, found: Map<String, List<Finding>>) {
+        val changed = found.filterKeys { confirmed[idOf(file, it)] != key }
+        if (changed.isEmpty()) return
+
+        synchronized(writeLock) {
+            val previous = read(file)
+            // A record under another key is replaced whole, so what the others had confirmed is gone.
+            if (previous != null && previous.key != key) forgetConfirmed(file)
+            var stored = previous?.takeIf { it.key == key } ?: PhelStoredDiagnostics(key, emptyMap())
+            for ((inspection, findings) in changed) stored = stored.with(key, inspection, findings)
+            write(file, stored)
+        }
+
+        for (inspection in changed.keys) {
+            val id = idOf(file, inspection)
+            confirmed[id] = key
+            revalidating.remove(id)
+        }
+    }
+
+    private fun readValid(file: PhelFile, virtualFile: VirtualFile): PhelStoredDiagnostics? {
+        val stored = read(virtualFile) ?: return null
+        return stored.takeIf { it.key == PhelDiagnosticsKey.of(file) }
+    }
+
+    /**
+     * Runs [tool] over [file] off the EDT and compares with what was replayed. Abandoned if the file
+     * changes meanwhile: the edit has already sent the daemon to compute it properly.
+     */
+    private fun revalidate(file: PhelFile, tool: LocalInspectionTool, key: PhelDiagnosticsKey, id: String, replayed: List<Finding>) {
+        ReadAction.nonBlocking<Boolean> {
+            if (!file.isValid || PhelDiagnosticsKey.of(file) != key) {
+                revalidating.remove(id)
+                return@nonBlocking false
+            }
+
+            val fresh = findingsOf(run(file, tool)) ?: return@nonBlocking false
+            store(file.virtualFile, key, mapOf(tool.shortName to fresh))
+            fresh.toSet() != replayed.toSet()
+        }
+            .inSmartMode(project)
+            .expireWith(this)
+            .finishOnUiThread(ModalityState.nonModal()) { changed ->
+                if (changed && file.isValid) DaemonCodeAnalyzer.getInstance(project).restart(file)
+            }
+            .submit(AppExecutorUtil.getAppExecutorService())
+    }
+
+    private fun run(file: PhelFile, tool: LocalInspectionTool): List<ProblemDescriptor> {
+        val holder = ProblemsHolder(InspectionManager.getInstance(project), file, false)
+        val visitor = tool.buildVisitor(holder, false)
+        file.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                element.accept(visitor)
+                if (!PhelDataLiteralElementType.isUnparsed(element.node)) super.visitElement(element)
+            }
+        })
+        return holder.results
+    }
+
+    /** Null when a problem is not tied to an element's range, which replay could not reproduce. */
+    private fun findingsOf(problems: List<ProblemDescriptor>): List<Finding>? = problems.map { problem ->
+        val element = problem.psiElement ?: return null
+        if (problem.textRangeInElement != null) return null
+        val range = element.textRange
+        Finding(range.startOffset, range.endOffset, problem.descriptionTemplate)
+    }
+
+    /** Only files with a persistent identity can carry an attribute; copies and light files are skipped. */
+    private fun storableFile(file: PhelFile): VirtualFile? =
+        file.takeIf { it.isPhysical }?.virtualFile?.takeIf { it is VirtualFileWithId && it.isValid }
+
+    private fun idOf(file: VirtualFile, inspection: String): String = "${(file as VirtualFileWithId).id}#$inspection"
+
+    private fun forgetConfirmed(file: VirtualFile) {
+        val prefix = "${(file as VirtualFileWithId).id}#"
+        confirmed.keys.removeIf { it.startsWith(prefix) }
+    }
+
+    private fun read(file: VirtualFile): PhelStoredDiagnostics? = try {
+        ATTRIBUTE.readFileAttribute(file)?.use { PhelStoredDiagnostics.read(it) }
+    } catch (_: IOException) {
+        null
+    }
+
+    private fun write(file: VirtualFile, stored: PhelStoredDiagnostics) {
+        try {
+            ATTRIBUTE.writeFileAttribute(file).use { stored.write(it) }
+        } catch (_: IOException) {
+            // Losing an entry only costs the next open its head start.
+        }
+    }
+
+    companion object {
+        /** Bump when [PhelStoredDiagnostics]'s layout changes; the VFS then drops every old entry. */
+        private const val FORMAT_VERSION = 1
+
+        /** How long highlighting has to be quiet before what it found is written. */
+        private const val FLUSH_DELAY_MILLIS = 10_000
+
+        private val ATTRIBUTE = FileAttribute("phel.diagnostics", FORMAT_VERSION, false)
+
+        fun getInstance(project: Project): PhelDiagnosticsCache {
+            return project.getService(PhelDiagnosticsCache::class.java)
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.phellang.inspection.cache
+
+import com.intellij.ide.plugins.PluginManagerCore
+import com.intellij.openapi.extensions.PluginId
+import com.intellij.openapi.util.Key
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.indexing.PhelProjectSymbolIndex
+import org.phellang.language.psi.PhelNamespaceUtils
+import org.phellang.language.psi.PhelProjectNamespaceFinder
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.analysis.PhelFileAnalysis
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.utils.cachedPerPsi
+import org.phellang.registry.PhelProjectSymbol
+
+/**
+ * What a file's stored diagnostics are valid for: its text, and everything outside it that the
+ * persisted inspections read.
+ *
+ * The fingerprint covers the exported definitions — name, kind, signature — of every namespace the
+ * file requires, plus every project definition sharing a name with a symbol in the file, since an
+ * unqualified name may resolve to one through the project-wide fallback. The plugin version is mixed
+ * in as well, because the bundled core function registry changes with it. Anything else a finding
+ * depends on is part of the file's own text.
+ */
+internal data class PhelDiagnosticsKey(val contentHash: Long, val fingerprint: Long) {
+
+    companion object {
+        private val KEY = Key.create<CachedValue<PhelDiagnosticsKey>>("phel.diagnostics.key")
+
+        private const val FNV_OFFSET = -0x340d631b7bdddcdbL
+        private const val FNV_PRIME = 0x100000001b3L
+
+        fun of(file: PhelFile): PhelDiagnosticsKey = cachedPerPsi(file, KEY) {
+            PhelDiagnosticsKey(hash(file.viewProvider.contents), fingerprint(file))
+        }
+
+        /** 64-bit FNV-1a over the characters of [text], continuing from [seed]. */
+        fun hash(text: CharSequence, seed: Long = FNV_OFFSET): Long {
+            var hash = seed
+            for (i in text.indices) {
+                hash = (hash xor text[i].code.toLong()) * FNV_PRIME
+            }
+            return hash
+        }
+
+        private fun fingerprint(file: PhelFile): Long {
+            val index = PhelProjectSymbolIndex.getInstance(file.project)
+            var hash = hash(pluginVersion())
+
+            for (namespace in requiredNamespaces(file)) {
+                hash = hash(namespace, hash)
+                for (exported in index.getSymbolsForNamespace(namespace).map(::describe).sorted()) {
+                    hash = hash(exported, hash)
+                }
+            }
+
+            val names = PhelFileAnalysis.of(file).symbols.mapTo(sortedSetOf()) { it.text.substringAfterLast('/') }
+            for (name in names) {
+                for (definition in index.findByName(name).map(::describe).sorted()) {
+                    hash = hash(definition, hash)
+                }
+            }
+            return hash
+        }
+
+        private fun requiredNamespaces(file: PhelFile): Set<String> {
+            val declaration = PhelNamespaceUtils.findNamespaceDeclaration(file) ?: return emptySet()
+
+            return PhelNamespaceUtils.findRequireForms(declaration)
+                .flatMap { PsiTreeUtil.findChildrenOfType(it, PhelSymbol::class.java) }
+                .map { it.text }
+                .filter(PhelNamespaceUtils::looksLikeNamespace)
+                .mapTo(sortedSetOf(), PhelProjectNamespaceFinder::extractShortNamespace)
+        }
+
+        private fun describe(symbol: PhelProjectSymbol): String = "${symbol.qualifiedName} ${symbol.type} ${symbol.signature}"
+
+        private fun pluginVersion(): String = PluginManagerCore.getPlugin(PluginId.getId("org.phellang"))?.version ?: ""
+    }
+}
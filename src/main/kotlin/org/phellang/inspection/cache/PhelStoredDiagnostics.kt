@@ -0,0 +1,54 @@
+package org.phellang.inspection.cache
+
+import java.io.DataInput
+import java.io.DataOutput
+
+/**
+ * What [PhelDiagnosticsCache] keeps for one file: the key the findings were computed under and, per
+ * inspection short name, every range it reported with its message.
+ *
+ * An inspection with nothing to report is stored with an empty list, which is different from not
+ * being stored at all: the first means "known clean", the second "never run under this key".
+ */
+internal class PhelStoredDiagnostics(
+    val key: PhelDiagnosticsKey,
+    val findings: Map<String, List<Finding>>,
+) {
+
+    data class Finding(val startOffset: Int, val endOffset: Int, val message: String)
+
+    /** These findings with [inspection]'s replaced, or a fresh record when [key] is a different one. */
+    fun with(key: PhelDiagnosticsKey, inspection: String, found: List<Finding>): PhelStoredDiagnostics {
+        val kept = if (key == this.key) findings - inspection else emptyMap()
+        return PhelStoredDiagnostics(key, kept + (inspection to found))
+    }
+
+    fun write(output: DataOutput) {
+        output.writeLong(key.contentHash)
+        output.writeLong(key.fingerprint)
+        output.writeInt(findings.size)
+        for ((inspection, found) in findings) {
+            output.writeUTF(inspection)
+            output.writeInt(found.size)
+            for (finding in found) {
+                output.writeInt(finding.startOffset)
+                output.writeInt(finding.endOffset)
+                output.writeUTF(finding.message)
+            }
+        }
+    }
+
+    companion object {
+        fun read(input: DataInput): PhelStoredDiagnostics {
+            val key = PhelDiagnosticsKey(input.readLong(), input.readLong())
+            val findings = HashMap<String, List<Finding>>()
+            repeat(input.readInt()) {
+                val inspection = input.readUTF()
+                findings[inspection] = List(input.readInt()) {
+                    Finding(input.readInt(), input.readInt(), input.readUTF())
+                }
+            }
+            return PhelStoredDiagnostics(key, findings)
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package org.phellang.inspection.deprecated
 
-import com.intellij.codeInspection.LocalInspectionTool
+import org.phellang.inspection.PhelLocalInspectionTool
 import com.intellij.codeInspection.LocalQuickFix
 import com.intellij.codeInspection.ProblemDescriptor
 import com.intellij.codeInspection.ProblemHighlightType
@@ -24,7 +24,7 @@ import org.phellang.language.psi.utils.PhelPsiUtils
  * are always backslash-separated, so `(:use \DateTimeImmutable)` is the correct
  * Phel form — not a deprecation.
  */
-class PhelBackslashNamespaceInspection : LocalInspectionTool() {
+class PhelBackslashNamespaceInspection : PhelLocalInspectionTool() {
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
         return object : PhelVisitor() {
             override fun visitSymbol(symbol: PhelSymbol) {
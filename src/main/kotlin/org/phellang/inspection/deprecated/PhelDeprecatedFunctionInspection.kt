@@ -1,6 +1,6 @@
 package org.phellang.inspection.deprecated
 
-import com.intellij.codeInspection.LocalInspectionTool
+import org.phellang.inspection.PhelLocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
@@ -8,9 +8,9 @@ import org.phellang.registry.DeprecationInfo
 import org.phellang.registry.PhelFunctionRegistry
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVisitor
-import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 
-class PhelDeprecatedFunctionInspection : LocalInspectionTool() {
+class PhelDeprecatedFunctionInspection : PhelLocalInspectionTool() {
 
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
         return object : PhelVisitor() {
@@ -21,8 +21,9 @@ class PhelDeprecatedFunctionInspection : LocalInspectionTool() {
                 // A name introduced by a fn/defn parameter vector or a let-like
                 // binding shadows any same-named core fn; usages of that local
                 // must not be flagged as a deprecated core-fn reference.
-                if (PhelSymbolAnalyzer.isLocalBindingOrReference(symbol)) return
-                if (PhelSymbolAnalyzer.isDefinition(symbol)) return
+                val analysis = PhelFileAnalysis.of(symbol) ?: return
+                if (analysis.isLocalBindingOrReference(symbol)) return
+                if (analysis.isDefinition(symbol)) return
 
                 if (PhelFunctionRegistry.isDeprecated(text)) {
                     val deprecation = getDeprecationInfo(text)
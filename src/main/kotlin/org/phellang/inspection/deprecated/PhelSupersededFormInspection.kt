@@ -1,12 +1,12 @@
 package org.phellang.inspection.deprecated
 
-import com.intellij.codeInspection.LocalInspectionTool
+import org.phellang.inspection.PhelLocalInspectionTool
 import com.intellij.codeInspection.ProblemHighlightType
 import com.intellij.codeInspection.ProblemsHolder
 import com.intellij.psi.PsiElementVisitor
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVisitor
-import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
+import org.phellang.language.psi.analysis.PhelFileAnalysis
 
 /**
  * Flags the source forms Phel v0.50.0 superseded, mirroring the compiler's own
@@ -28,7 +28,7 @@ import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
  *
  * Sources: the language-surface spec's "Deprecated inside 1.x" table, and phel-lang #2877 / #2888.
  */
-class PhelSupersededFormInspection : LocalInspectionTool() {
+class PhelSupersededFormInspection : PhelLocalInspectionTool() {
 
     override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor {
         return object : PhelVisitor() {
@@ -37,8 +37,9 @@ class PhelSupersededFormInspection : LocalInspectionTool() {
                 val superseded = SUPERSEDED[text] ?: return
 
                 // A local binding or a definition that happens to share the name is not the form.
-                if (PhelSymbolAnalyzer.isLocalBindingOrReference(symbol)) return
-                if (PhelSymbolAnalyzer.isDefinition(symbol)) return
+                val analysis = PhelFileAnalysis.of(symbol) ?: return
+                if (analysis.isLocalBindingOrReference(symbol)) return
+                if (analysis.isDefinition(symbol)) return
 
                 holder.registerProblem(
                     symbol,
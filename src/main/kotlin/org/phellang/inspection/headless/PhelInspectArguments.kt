@@ -0,0 +1,78 @@
+package org.phellang.inspection.headless
+
+import java.nio.file.Path
+
+/**
+ * The command line of `phel-inspect`:
+ *
+ * ```
+ * phel-inspect <projectDir> [--format=json|text] [--threads=N] [--inspections=ShortName,...] [--output=file]
+ * ```
+ *
+ * Kept apart from [PhelInspectStarter] so the parsing can be tested without starting an application.
+ */
+internal class PhelInspectArguments(
+    val projectDir: Path,
+    val format: Format,
+    val threads: Int,
+    /** Short names to run, or empty for every Phel inspection. */
+    val inspections: Set<String>,
+    /** Where to write the report, or null for standard output. */
+    val output: Path?,
+) {
+    enum class Format { JSON, TEXT }
+
+    /** A command line that cannot be run, with the reason to print above the usage line. */
+    class Invalid(message: String) : IllegalArgumentException(message)
+
+    companion object {
+        const val USAGE =
+            "Usage: phel-inspect <projectDir> [--format=json|text] [--threads=N] " +
+                "[--inspections=ShortName,...] [--output=file]"
+
+        /** The default pool: every core but one, so the indexer and GC keep a thread. */
+        val DEFAULT_THREADS: Int = (Runtime.getRuntime().availableProcessors() - 1).coerceAtLeast(1)
+
+        /** Parses [args] as handed to the starter — without the command name itself. */
+        fun parse(args: List<String>): PhelInspectArguments {
+            var projectDir: Path? = null
+            var format = Format.JSON
+            var threads = DEFAULT_THREADS
+            var inspections = emptySet<String>()
+            var output: Path? = null
+
+            for (arg in args) {
+                when {
+                    arg.startsWith("--format=") -> format = when (val value = arg.substringAfter('=')) {
+                        "json" -> Format.JSON
+                        "text" -> Format.TEXT
+                        else -> throw Invalid("Unknown format '$value'")
+                    }
+
+                    arg.startsWith("--threads=") -> threads = arg.substringAfter('=').toIntOrNull()
+                        ?.takeIf { it > 0 }
+                        ?: throw Invalid("--threads needs a positive number")
+
+                    arg.startsWith("--inspections=") -> inspections = arg.substringAfter('=')
+                        .split(',')
+                        .map { it.trim() }
+                        .filter { it.isNotEmpty() }
+                        .toSet()
+
+                    arg.startsWith("--output=") -> output = Path.of(arg.substringAfter('='))
+                    arg.startsWith("--") -> throw Invalid("Unknown option '$arg'")
+                    projectDir == null -> projectDir = Path.of(arg)
+                    else -> throw Invalid("Only one project directory can be inspected")
+                }
+            }
+
+            return PhelInspectArguments(
+                projectDir = projectDir?.toAbsolutePath()?.normalize() ?: throw Invalid("No project directory given"),
+                format = format,
+                threads = threads,
+                inspections = inspections,
+                output = output,
+            )
+        }
+    }
+}
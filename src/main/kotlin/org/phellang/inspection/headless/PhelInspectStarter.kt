@@ -0,0 +1,89 @@
+package org.phellang.inspection.headless
+
+import com.intellij.ide.impl.ProjectUtil
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.application.ApplicationStarter
+import com.intellij.openapi.application.ex.ApplicationEx
+import com.intellij.openapi.application.ex.ApplicationManagerEx
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.project.ex.ProjectManagerEx
+import java.nio.file.Files
+
+/**
+ * `phel-inspect`: the Phel inspections over a whole project, without the IDE's window, for CI.
+ *
+ * Opens the project at the given directory, waits for indexing, runs the inspections through
+ * [PhelProjectInspector] and prints the report. Everything it reads is on disk — the checkout, its
+ * `vendor/` and the bundled registry — so it runs offline. Exits 0 when nothing was found, 1 when
+ * problems were or a file could not be inspected, and 2 when the command line or the project could
+ * not be used.
+ */
+class PhelInspectStarter : ApplicationStarter {
+
+    override val requiredModality: Int
+        get() = ApplicationStarter.NOT_IN_EDT
+
+    override fun main(args: List<String>) {
+        exit(run(args.drop(1)))
+    }
+
+    private fun run(args: List<String>): Int {
+        val arguments = try {
+            PhelInspectArguments.parse(args)
+        } catch (e: PhelInspectArguments.Invalid) {
+            System.err.println(e.message)
+            System.err.println(PhelInspectArguments.USAGE)
+            return EXIT_UNUSABLE
+        }
+
+        if (!Files.isDirectory(arguments.projectDir)) {
+            System.err.println("Not a directory: ${arguments.projectDir}")
+            return EXIT_UNUSABLE
+        }
+
+        val tools = PhelProjectInspector.phelTools(arguments.inspections)
+        if (tools.isEmpty()) {
+            System.err.println("No Phel inspection matches ${arguments.inspections}")
+            return EXIT_UNUSABLE
+        }
+
+        val project = ProjectUtil.openOrImport(arguments.projectDir, null, false)
+        if (project == null) {
+            System.err.println("Could not open ${arguments.projectDir}")
+            return EXIT_UNUSABLE
+        }
+
+        return try {
+            DumbService.getInstance(project).waitForSmartMode()
+            val report = PhelProjectInspector(project, tools).inspect(arguments.threads)
+            val rendered = when (arguments.format) {
+                PhelInspectArguments.Format.JSON -> report.toJson()
+                PhelInspectArguments.Format.TEXT -> report.toText()
+            }
+
+            val output = arguments.output
+            if (output == null) print(rendered) else Files.writeString(output, rendered)
+
+            if (report.problems.isEmpty() && report.failures.isEmpty()) EXIT_CLEAN else EXIT_PROBLEMS
+        } finally {
+            close(project)
+        }
+    }
+
+    private fun close(project: Project) {
+        ApplicationManager.getApplication().invokeAndWait {
+            ProjectManagerEx.getInstanceEx().forceCloseProject(project)
+        }
+    }
+
+    private fun exit(code: Int) {
+        ApplicationManagerEx.getApplicationEx().exit(ApplicationEx.FORCE_EXIT or ApplicationEx.EXIT_CONFIRMED, code)
+    }
+
+    private companion object {
+        const val EXIT_CLEAN = 0
+        const val EXIT_PROBLEMS = 1
+        const val EXIT_UNUSABLE = 2
+    }
+}
@@ -0,0 +1,95 @@
+package org.phellang.inspection.headless
+
+/**
+ * What a `phel-inspect` run found, and how long each inspection took to find it.
+ *
+ * Rendered by hand rather than through a JSON library: the plugin ships none at runtime, and the
+ * shape is flat enough that escaping strings is the only part that needs care.
+ */
+internal class PhelInspectionReport(
+    val files: Int,
+    val problems: List<Problem>,
+    /** Time spent in each inspection, summed over every file and thread, by short name. */
+    val inspectionMillis: Map<String, Long>,
+    val wallMillis: Long,
+    /** The files whose inspection threw, so what the report says about them is incomplete. */
+    val failures: List<Failure> = emptyList(),
+) {
+    /** One reported problem. [line] and [column] are 1-based, as editors and CI annotations count. */
+    class Problem(
+        val path: String,
+        val line: Int,
+        val column: Int,
+        val inspection: String,
+        val severity: String,
+        val message: String,
+    )
+
+    /** A file that could not be inspected, and why. */
+    class Failure(val path: String, val message: String)
+
+    fun toJson(): String = buildString {
+        append("{\n")
+        append("  \"files\": ").append(files).append(",\n")
+        append("  \"wallMillis\": ").append(wallMillis).append(",\n")
+        append("  \"inspections\": {")
+        inspectionMillis.entries.sortedBy { it.key }.forEachIndexed { index, (name, millis) ->
+            append(if (index == 0) "\n" else ",\n")
+            append("    ").append(quote(name)).append(": {\"millis\": ").append(millis)
+            append(", \"problems\": ").append(problems.count { it.inspection == name }).append('}')
+        }
+        append(if (inspectionMillis.isEmpty()) "},\n" else "\n  },\n")
+        append("  \"problems\": [")
+        problems.forEachIndexed { index, problem ->
+            append(if (index == 0) "\n" else ",\n")
+            append("    {\"path\": ").append(quote(problem.path))
+            append(", \"line\": ").append(problem.line)
+            append(", \"column\": ").append(problem.column)
+            append(", \"inspection\": ").append(quote(problem.inspection))
+            append(", \"severity\": ").append(quote(problem.severity))
+            append(", \"message\": ").append(quote(problem.message)).append('}')
+        }
+        append(if (problems.isEmpty()) "],\n" else "\n  ],\n")
+        append("  \"failures\": [")
+        failures.forEachIndexed { index, failure ->
+            append(if (index == 0) "\n" else ",\n")
+            append("    {\"path\": ").append(quote(failure.path))
+            append(", \"message\": ").append(quote(failure.message)).append('}')
+        }
+        append(if (failures.isEmpty()) "]\n" else "\n  ]\n")
+        append("}\n")
+    }
+
+    /** `path:line:column: SEVERITY [Inspection] message`, the shape compilers print and CI parses. */
+    fun toText(): String = buildString {
+        for (problem in problems) {
+            append(problem.path).append(':').append(problem.line).append(':').append(problem.column)
+            append(": ").append(problem.severity).append(" [").append(problem.inspection).append("] ")
+            append(problem.message).append('\n')
+        }
+        for (failure in failures) {
+            append(failure.path).append(": could not be inspected: ").append(failure.message).append('\n')
+        }
+        append("${problems.size} problem(s) in $files file(s), ${wallMillis} ms\n")
+        if (failures.isNotEmpty()) append("${failures.size} file(s) could not be inspected\n")
+        for ((name, millis) in inspectionMillis.entries.sortedByDescending { it.value }) {
+            append("  ").append(name).append(": ").append(millis).append(" ms\n")
+        }
+    }
+
+    private fun quote(value: String): String = buildString {
+        append('"')
+        for (char in value) {
+            when {
+                char == '"' -> append("\\\"")
+                char == '\\' -> append("\\\\")
+                char == '\n' -> append("\\n")
+                char == '\r' -> append("\\r")
+                char == '\t' -> append("\\t")
+                char < ' ' -> append("\\u%04x".format(char.code))
+                else -> append(char)
+            }
+        }
+        append('"')
+    }
+}
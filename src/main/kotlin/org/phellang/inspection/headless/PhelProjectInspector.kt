@@ -0,0 +1,161 @@
+package org.phellang.inspection.headless
+
+import com.intellij.codeInspection.InspectionManager
+import com.intellij.codeInspection.LocalInspectionEP
+import com.intellij.codeInspection.LocalInspectionTool
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.diagnostic.ControlFlowException
+import com.intellij.openapi.diagnostic.Logger
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.DumbService
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.project.guessProjectDir
+import com.intellij.openapi.util.Computable
+import com.intellij.openapi.util.text.StringUtil
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiManager
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.psi.search.FilenameIndex
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.util.concurrency.AppExecutorUtil
+import org.phellang.language.infrastructure.PhelLanguage
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
+import org.phellang.language.psi.files.PhelFile
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Runs the Phel inspections over every `.phel` file of an open, indexed project, a file per task on
+ * a bounded pool.
+ *
+ * Each task holds one read action for its file, started in smart mode, and runs every inspection
+ * in it back to back, so the per-file caches the inspections share — the file analysis, the
+ * resolution tables, the skipped-position walk — are built once and read by all of them. Files are
+ * independent, which is what lets them run in parallel at all, and a file whose inspection throws
+ * is reported as failed without stopping the others.
+ */
+internal class PhelProjectInspector(private val project: Project, private val tools: List<Tool>) {
+
+    /** One registered inspection, with the short name and level plugin.xml gives it. */
+    class Tool(val shortName: String, val severity: String, val inspection: LocalInspectionTool)
+
+    fun inspect(threads: Int): PhelInspectionReport {
+        val started = System.nanoTime()
+        val dumbService = DumbService.getInstance(project)
+        val files = dumbService.runReadActionInSmartMode(
+            Computable { FilenameIndex.getAllFilesByExt(project, "phel", GlobalSearchScope.projectScope(project)).toList() },
+        )
+        val timings = ConcurrentHashMap<String, LongAdder>()
+        tools.forEach { timings[it.shortName] = LongAdder() }
+
+        val executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Phel Inspect", threads)
+        val results = try {
+            files.map { file -> executor.submit(Callable { inspectFileOrFail(file, timings) }) }
+                .map { it.get() }
+        } finally {
+            executor.shutdown()
+            executor.awaitTermination(1, TimeUnit.MINUTES)
+        }
+
+        return PhelInspectionReport(
+            files = files.size,
+            problems = results.flatMap { it.problems }.sortedWith(compareBy({ it.path }, { it.line }, { it.column })),
+            inspectionMillis = timings.mapValues { TimeUnit.NANOSECONDS.toMillis(it.value.sum()) },
+            wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started),
+            failures = results.mapNotNull { it.failure }.sortedBy { it.path },
+        )
+    }
+
+    /** What inspecting one file gave: its problems, or why it could not be inspected. */
+    private class FileResult(val problems: List<PhelInspectionReport.Problem>, val failure: PhelInspectionReport.Failure?)
+
+    /**
+     * One file's problems; an inspection that throws on it fails that file alone, reported as such,
+     * rather than the whole run.
+     */
+    private fun inspectFileOrFail(file: VirtualFile, timings: ConcurrentHashMap<String, LongAdder>): FileResult =
+        try {
+            FileResult(inspectFile(file, timings), null)
+        } catch (e: Throwable) {
+            if (e is ControlFlowException) throw e
+            LOG.warn("Could not inspect ${file.path}", e)
+            FileResult(emptyList(), PhelInspectionReport.Failure(relativePath(file), e.message ?: e.javaClass.name))
+        }
+
+    /**
+     * Inspects [file] in a read action of its own, started only once indexing is done: the
+     * inspections resolve through the indexes, and would throw `IndexNotReadyException` in dumb mode.
+     */
+    private fun inspectFile(
+        file: VirtualFile,
+        timings: ConcurrentHashMap<String, LongAdder>,
+    ): List<PhelInspectionReport.Problem> = DumbService.getInstance(project).runReadActionInSmartMode(
+        Computable {
+            val psiFile = PsiManager.getInstance(project).findFile(file) as? PhelFile
+                ?: return@Computable emptyList()
+            val manager = InspectionManager.getInstance(project)
+            val path = relativePath(file)
+
+            tools.flatMap { tool ->
+                ProgressManager.checkCanceled()
+                val toolStarted = System.nanoTime()
+
+                val holder = ProblemsHolder(manager, psiFile, false)
+                val visitor = tool.inspection.buildVisitor(holder, false)
+                psiFile.accept(object : PsiRecursiveElementWalkingVisitor() {
+                    override fun visitElement(element: PsiElement) {
+                        element.accept(visitor)
+                        if (!PhelDataLiteralElementType.isUnparsed(element.node)) super.visitElement(element)
+                    }
+                })
+
+                timings.getValue(tool.shortName).add(System.nanoTime() - toolStarted)
+                holder.results.map { problemOf(psiFile, path, tool, it) }
+            }
+        },
+    )
+
+    private fun problemOf(
+        file: PhelFile,
+        path: String,
+        tool: Tool,
+        descriptor: ProblemDescriptor,
+    ): PhelInspectionReport.Problem {
+        val offset = (descriptor.psiElement?.textRange?.startOffset ?: 0) +
+            (descriptor.textRangeInElement?.startOffset ?: 0)
+        val position = StringUtil.offsetToLineColumn(file.viewProvider.contents, offset)
+
+        return PhelInspectionReport.Problem(
+            path = path,
+            line = (position?.line ?: 0) + 1,
+            column = (position?.column ?: 0) + 1,
+            inspection = tool.shortName,
+            severity = tool.severity,
+            message = descriptor.descriptionTemplate,
+        )
+    }
+
+    private fun relativePath(file: VirtualFile): String {
+        val base = project.guessProjectDir() ?: return file.path
+
+        return VfsUtilCore.getRelativePath(file, base) ?: file.path
+    }
+
+    companion object {
+        private val LOG = Logger.getInstance(PhelProjectInspector::class.java)
+
+        /** The Phel inspections registered in plugin.xml, narrowed to [only] unless it is empty. */
+        fun phelTools(only: Set<String>): List<Tool> = LocalInspectionEP.LOCAL_INSPECTION.extensionList
+            .filter { it.language == PhelLanguage.id }
+            .filter { only.isEmpty() || it.getShortName() in only }
+            .mapNotNull { ep ->
+                val inspection = ep.instantiateTool() as? LocalInspectionTool ?: return@mapNotNull null
+                Tool(ep.getShortName(), ep.level ?: "WARNING", inspection)
+            }
+    }
+}
@@ -0,0 +1,63 @@
+package org.phellang.language.infrastructure
+
+import com.intellij.openapi.editor.Document
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.psi.PsiFile
+
+/**
+ * Whether a file is too large for the plugin's semantic analysis to run on it as it types.
+ *
+ * Generated Phel — route tables, fixture data, translated catalogs — runs to tens of thousands of
+ * lines, and the annotator, the inspections, folding and parameter hints each cost in proportion to
+ * the file. Above either threshold those passes step aside: lexer highlighting, brace matching,
+ * navigation and the editor's own handlers still work, since none of them read more than the caret
+ * needs. The editor shows a banner saying so, with an "Analyze anyway" link that lifts the limit for
+ * the file until the IDE restarts.
+ *
+ * The thresholds are the `phel.largeFile.lines` and `phel.largeFile.kb` registry keys; 0 disables
+ * either. Both are read from the document, whose length and line count are known without a scan.
+ */
+object PhelLargeFileMode {
+
+    const val LINES_REGISTRY_KEY = "phel.largeFile.lines"
+
+    const val SIZE_REGISTRY_KEY = "phel.largeFile.kb"
+
+    private const val DEFAULT_LINES = 10_000
+
+    private const val DEFAULT_KB = 512
+
+    private val ANALYZE_ANYWAY = Key.create<Boolean>("phel.largeFile.analyzeAnyway")
+
+    /** True when [file] is over a threshold and has not been opted back in to full analysis. */
+    fun isLimited(file: PsiFile): Boolean {
+        val original = file.originalFile
+        val document = original.viewProvider.document ?: return false
+
+        return isLarge(document) && !isAnalyzedAnyway(original.viewProvider.virtualFile)
+    }
+
+    /** True when [document] is over either threshold, whatever the file's opt-in says. */
+    fun isLarge(document: Document): Boolean = isLarge(document.lineCount, document.textLength)
+
+    /** True when a text of [lineCount] lines and [textLength] characters is over either threshold. */
+    fun isLarge(lineCount: Int, textLength: Int): Boolean {
+        val lines = Registry.intValue(LINES_REGISTRY_KEY, DEFAULT_LINES)
+        if (lines > 0 && lineCount > lines) return true
+
+        val kb = Registry.intValue(SIZE_REGISTRY_KEY, DEFAULT_KB)
+        return kb > 0 && textLength > kb * 1024L
+    }
+
+    fun isAnalyzedAnyway(file: VirtualFile): Boolean = file.getUserData(ANALYZE_ANYWAY) == true
+
+    /**
+     * Opts [file] in to, or back out of, full analysis. Callers restart highlighting for it
+     * themselves, since that is the editor's business rather than the language's.
+     */
+    fun setAnalyzedAnyway(file: VirtualFile, analyze: Boolean) {
+        file.putUserData(ANALYZE_ANYWAY, if (analyze) true else null)
+    }
+}
@@ -0,0 +1,50 @@
+package org.phellang.language.parser
+
+import com.intellij.psi.tree.IElementType
+import org.phellang.language.psi.PhelTypes
+
+/**
+ * Follows the brackets of one form token by token, to tell where it closes and whether every
+ * bracket inside it closes the one it should.
+ *
+ * Both halves of lazy parsing need that answer: [PhelParserUtil.topLevelList] and
+ * [PhelParserUtil.dataLiteral] to decide a form can be left unparsed, and the lazy element types to
+ * decide an edited one can be reparsed on its own. Asking it of tokens rather than characters leaves strings, comments and
+ * `\(` character literals to the lexer, which already knows them.
+ */
+internal class PhelBracketTracker {
+
+    private val open = ArrayDeque<IElementType>()
+
+    private var started = false
+
+    /** True once the first opener has been closed again. */
+    val isClosed: Boolean get() = started && open.isEmpty()
+
+    /** Feeds [type]; false when it is a closer that does not match the innermost opener. */
+    fun accept(type: IElementType?): Boolean {
+        val closer = CLOSER_OF[type]
+        if (closer != null) {
+            open.addLast(closer)
+            started = true
+            return true
+        }
+        if (type in CLOSERS) return open.removeLastOrNull() == type
+
+        return true
+    }
+
+    private companion object {
+        val CLOSER_OF: Map<IElementType, IElementType> = mapOf(
+            PhelTypes.PAREN1 to PhelTypes.PAREN2,
+            PhelTypes.HASH_PAREN to PhelTypes.PAREN2,
+            PhelTypes.READER_COND to PhelTypes.PAREN2,
+            PhelTypes.READER_COND_SPLICE to PhelTypes.PAREN2,
+            PhelTypes.BRACKET1 to PhelTypes.BRACKET2,
+            PhelTypes.BRACE1 to PhelTypes.BRACE2,
+            PhelTypes.HASH_BRACE to PhelTypes.BRACE2,
+        )
+
+        val CLOSERS: Set<IElementType> = setOf(PhelTypes.PAREN2, PhelTypes.BRACKET2, PhelTypes.BRACE2)
+    }
+}
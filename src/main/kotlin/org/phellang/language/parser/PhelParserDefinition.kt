@@ -13,7 +13,13 @@ import com.intellij.psi.tree.TokenSet
 import org.phellang.language.infrastructure.PhelLanguage
 import org.phellang.language.lexer.PhelLexerAdapter
 import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
 import org.phellang.language.psi.elements.PhelTokenSets
+import org.phellang.language.psi.elements.PhelTopLevelListElementType
+import org.phellang.language.psi.impl.PhelListImpl
+import org.phellang.language.psi.impl.PhelMapImpl
+import org.phellang.language.psi.impl.PhelSetImpl
+import org.phellang.language.psi.impl.PhelVecImpl
 import org.phellang.language.psi.PhelTypes
 
 internal class PhelParserDefinition : ParserDefinition {
@@ -42,7 +48,14 @@ internal class PhelParserDefinition : ParserDefinition {
     }
 
     override fun createElement(node: ASTNode): PsiElement {
-        return PhelTypes.Factory.createElement(node)
+        // A lazily parsed form is still a list, vector, map or set to everything above the parser.
+        return when (node.elementType) {
+            PhelTopLevelListElementType.INSTANCE -> PhelListImpl(node)
+            PhelDataLiteralElementType.VEC -> PhelVecImpl(node)
+            PhelDataLiteralElementType.MAP -> PhelMapImpl(node)
+            PhelDataLiteralElementType.SET -> PhelSetImpl(node)
+            else -> PhelTypes.Factory.createElement(node)
+        }
     }
 }
 
@@ -0,0 +1,74 @@
+package org.phellang.language.parser
+
+import com.intellij.lang.PsiBuilder
+import com.intellij.lang.parser.GeneratedParserUtilBase
+import org.phellang.language.psi.PhelTypes
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
+import org.phellang.language.psi.elements.PhelTopLevelListElementType
+
+/**
+ * The external rules `Phel.bnf` calls, alongside the generated parser's own helpers.
+ */
+object PhelParserUtil : GeneratedParserUtilBase() {
+
+    /**
+     * `<<topLevelList>>`: a top-level `(...)` whose brackets all balance, left unparsed as a
+     * [PhelTopLevelListElementType] chameleon.
+     *
+     * Its contents are parsed the first time anything asks for them, and an edit inside it reparses
+     * that list alone rather than the file. A list whose brackets do not balance is left to the `form`
+     * rule, so its error recovery works exactly as before.
+     */
+    @JvmStatic
+    @Suppress("UNUSED_PARAMETER")
+    fun topLevelList(builder: PsiBuilder, level: Int): Boolean {
+        if (builder.tokenType != PhelTypes.PAREN1) return false
+
+        val marker = builder.mark()
+        val tracker = PhelBracketTracker()
+        while (!builder.eof()) {
+            val matched = tracker.accept(builder.tokenType)
+            builder.advanceLexer()
+            if (!matched) break
+            if (tracker.isClosed) {
+                marker.done(PhelTopLevelListElementType.INSTANCE)
+                return true
+            }
+        }
+
+        marker.rollbackTo()
+        return false
+    }
+
+    /**
+     * `<<dataLiteral>>`: a vector, map or set of at least [PhelDataLiteralElementType.MIN_TOKENS]
+     * tokens holding only data, left unparsed as a [PhelDataLiteralElementType] chameleon.
+     *
+     * The scan stops at the first token that is not data, so a binding vector or a map of handlers
+     * costs a token or two before the ordinary rules take it. Tried wherever a form may start and
+     * after a form's prefixes, so a quoted table is as lazy as a bare one.
+     */
+    @JvmStatic
+    @Suppress("UNUSED_PARAMETER")
+    fun dataLiteral(builder: PsiBuilder, level: Int): Boolean {
+        val type = PhelDataLiteralElementType.forOpener(builder.tokenType) ?: return false
+
+        val marker = builder.mark()
+        val tracker = PhelBracketTracker()
+        var tokens = 0
+        while (!builder.eof()) {
+            val token = builder.tokenType
+            if (!PhelDataLiteralElementType.isDataToken(token) || !tracker.accept(token)) break
+            builder.advanceLexer()
+            tokens++
+            if (tracker.isClosed) {
+                if (tokens < PhelDataLiteralElementType.MIN_TOKENS) break
+                marker.done(type)
+                return true
+            }
+        }
+
+        marker.rollbackTo()
+        return false
+    }
+}
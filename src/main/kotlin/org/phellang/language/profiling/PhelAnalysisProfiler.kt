@@ -0,0 +1,126 @@
+package org.phellang.language.profiling
+
+import com.intellij.openapi.application.ApplicationManager
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.openapi.util.registry.RegistryValue
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Opt-in timing of the plugin's own analysis: how long each highlighting rule, inspection, resolver
+ * step and completion helper has taken, cumulatively, and how often it ran.
+ *
+ * Off unless the `phel.analysis.profiling` registry key is set (Help → Find Action → Registry…).
+ * Off, [measure] is one read of a cached registry value and a direct call of the block — no clock, no counter, no
+ * allocation — so the call sites can stay in place permanently. On, every sample goes into a
+ * lock-free counter pair keyed by category and name; "Phel: Show Analysis Profile" reads, resets
+ * and exports them.
+ *
+ * Lives in `language` because the resolver is among what it measures: `core` may not be imported
+ * from here, and every feature package can already reach `language`.
+ */
+object PhelAnalysisProfiler {
+
+    const val REGISTRY_KEY = "phel.analysis.profiling"
+
+    /** What a measured name is, so the report can group rules apart from inspections. */
+    enum class Category(val label: String) {
+        ANNOTATOR("Annotator"),
+        HIGHLIGHT_RULE("Highlight rule"),
+        INSPECTION("Inspection"),
+        RESOLVE_STEP("Resolve step"),
+        COMPLETION_HELPER("Completion helper"),
+    }
+
+    /** The cumulative figures for one measured name. */
+    class Entry(val category: Category, val name: String, val invocations: Long, val totalNanos: Long) {
+        val totalMillis: Double get() = totalNanos / 1_000_000.0
+
+        val averageMicros: Double get() = if (invocations == 0L) 0.0 else totalNanos / 1_000.0 / invocations
+    }
+
+    private class Counter {
+        val invocations = LongAdder()
+        val nanos = LongAdder()
+    }
+
+    private val counters = ConcurrentHashMap<Pair<Category, String>, Counter>()
+
+    /**
+     * Looked up once: [RegistryValue] caches its parsed boolean and follows changes made in the Registry
+     * dialog, so [measure] need not go through the registry's map on every element. Outside an
+     * application — unit tests — there is nothing to look up, and profiling reads as "off".
+     */
+    @Volatile
+    private var registryValue: RegistryValue? = null
+
+    fun isEnabled(): Boolean {
+        val value = registryValue ?: run {
+            if (ApplicationManager.getApplication() == null) return false
+            Registry.get(REGISTRY_KEY).also { registryValue = it }
+        }
+        return value.asBoolean()
+    }
+
+    /** Runs [block], and when profiling is on, adds its duration under [category] and [name]. */
+    inline fun <T> measure(category: Category, name: String, block: () -> T): T {
+        if (!isEnabled()) return block()
+
+        val started = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            record(category, name, System.nanoTime() - started)
+        }
+    }
+
+    @PublishedApi
+    internal fun record(category: Category, name: String, nanos: Long) {
+        val counter = counters.computeIfAbsent(category to name) { Counter() }
+        counter.invocations.increment()
+        counter.nanos.add(nanos)
+    }
+
+    /** Every measured name, the most expensive first. */
+    fun snapshot(): List<Entry> = counters.entries
+        .map { (key, counter) -> Entry(key.first, key.second, counter.invocations.sum(), counter.nanos.sum()) }
+        .sortedByDescending { it.totalNanos }
+
+    fun reset() = counters.clear()
+
+    /** The snapshot as a table, one line per name. */
+    fun toText(): String = buildString {
+        val entries = snapshot()
+        if (entries.isEmpty()) {
+            append(if (isEnabled()) "No samples yet." else "Profiling is off. Set the '$REGISTRY_KEY' registry key.")
+            return@buildString
+        }
+
+        for (entry in entries) {
+            append("%-18s %-40s %10.1f ms %9d calls %9.1f µs/call\n".format(
+                entry.category.label, entry.name, entry.totalMillis, entry.invocations, entry.averageMicros,
+            ))
+        }
+    }
+
+    /** The snapshot as JSON: an array of `{category, name, invocations, totalNanos}`. */
+    fun toJson(): String = snapshot().ifEmpty { return "[]\n" }.joinToString(",\n", prefix = "[\n", postfix = "\n]\n") { entry ->
+        "  {\"category\": \"${entry.category.name}\", \"name\": \"${escape(entry.name)}\", " +
+            "\"invocations\": ${entry.invocations}, \"totalNanos\": ${entry.totalNanos}}"
+    }
+
+    /** JSON string escaping, control characters included, since names can come from file and symbol names. */
+    private fun escape(value: String): String = buildString {
+        for (char in value) {
+            when {
+                char == '"' -> append("\\\"")
+                char == '\\' -> append("\\\\")
+                char == '\n' -> append("\\n")
+                char == '\r' -> append("\\r")
+                char == '\t' -> append("\\t")
+                char < ' ' -> append("\\u%04x".format(char.code))
+                else -> append(char)
+            }
+        }
+    }
+}
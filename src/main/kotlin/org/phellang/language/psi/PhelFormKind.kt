@@ -0,0 +1,55 @@
+package org.phellang.language.psi
+
+/**
+ * What a list is, read from its head symbol: a namespace declaration, a definition, a function, a
+ * binding form, a threading macro, or an ordinary call.
+ *
+ * Each kind is the membership of one [PhelSpecialForms] set, so asking `kind == BINDING` answers the
+ * same question as `head in PhelSpecialForms.LET_LIKE` without hashing the head's text again. A list
+ * caches its kind (see [PhelListShape]), which is what makes the enum cheaper than the sets for
+ * callers asking the same list more than once.
+ */
+enum class PhelFormKind {
+    /** `(ns ...)`. */
+    NAMESPACE,
+
+    /** A definition that also takes a parameter vector: `defn`, `defmacro` and their private forms. */
+    FUNCTION_DEFINITION,
+
+    /** Every other member of [PhelSpecialForms.DEFINITION_FORMS]: `def`, `defstruct`, `declare`… */
+    DEFINITION,
+
+    /** An anonymous `(fn [...] ...)`. */
+    FUNCTION,
+
+    /** A [PhelSpecialForms.LET_LIKE] form: `let`, `loop`, `for`, `if-let`… */
+    BINDING,
+
+    /** A [PhelSpecialForms.THREADING] macro. */
+    THREADING,
+
+    /** Any other symbol at the head. */
+    CALL,
+
+    /** No symbol at the head: an empty list, or one starting with a literal, a collection or a call. */
+    NONE;
+
+    /** True for [PhelSpecialForms.FUNCTION_DEFINING]: the forms that take a parameter vector. */
+    val introducesParameters: Boolean get() = this == FUNCTION_DEFINITION || this == FUNCTION
+
+    /** True for [PhelSpecialForms.DEFINITION_FORMS]. */
+    val isDefinition: Boolean get() = this == FUNCTION_DEFINITION || this == DEFINITION
+
+    companion object {
+        private val byHead: Map<String, PhelFormKind> = buildMap {
+            PhelSpecialForms.DEFINITION_FORMS.forEach { put(it, DEFINITION) }
+            PhelSpecialForms.FUNCTION_DEFINING.forEach { put(it, if (it == "fn") FUNCTION else FUNCTION_DEFINITION) }
+            PhelSpecialForms.LET_LIKE.forEach { put(it, BINDING) }
+            PhelSpecialForms.THREADING.forEach { put(it, THREADING) }
+            put("ns", NAMESPACE)
+        }
+
+        /** The kind of a list whose head symbol reads [head], or [NONE] when it has none. */
+        fun of(head: String?): PhelFormKind = if (head == null) NONE else byHead[head] ?: CALL
+    }
+}
@@ -0,0 +1,23 @@
+package org.phellang.language.psi
+
+import com.intellij.psi.PsiElement
+
+/**
+ * A list's active forms and what its head makes it, read once per PSI modification.
+ *
+ * Nearly every feature opens by asking a list the same two questions — which of its children count,
+ * with `#_`-discarded forms dropped, and what its head symbol is — and each used to walk the children
+ * and allocate a fresh list to answer. [org.phellang.language.psi.mixins.PhelListMixin] keeps the
+ * answers until the next PSI change, and [org.phellang.language.psi.utils.PhelPsiUtils.activeForms]
+ * hands them out for lists.
+ */
+interface PhelListShape : PsiElement {
+
+    /** The forms of the list without those `#_` discards; shared, so never to be mutated. */
+    val activeForms: List<PhelForm>
+
+    /** The text of the head symbol — `defn`, `let`, a function name — or null without one. */
+    val headText: String?
+
+    val formKind: PhelFormKind
+}
@@ -26,7 +26,7 @@ object PhelNamespaceUtils {
 
     private fun computeNamespaceDeclaration(file: PhelFile): PhelList? {
         // (ns my-ns (:require ...) (:use ...))
-        val lists = PsiTreeUtil.findChildrenOfType(file, PhelList::class.java)
+        val lists = PhelPsiUtils.findCodeChildrenOfType(file, PhelList::class.java)
         return lists.firstOrNull { list ->
             val forms = list.forms
             if (forms.isEmpty()) return@firstOrNull false
@@ -1,14 +1,19 @@
-package org.phellang.indexing.scanner
+package org.phellang.language.psi.analysis
 
 import com.intellij.psi.util.PsiTreeUtil
 import org.phellang.language.psi.PhelForm
 import org.phellang.language.psi.PhelKeyword
+import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelMap
 import org.phellang.language.psi.PhelMetadata
+import org.phellang.language.psi.PhelSpecialForms
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.utils.PhelPsiUtils
 
 /**
  * Decides whether a top-level definition is private, and so must stay out of the project symbol
- * index.
+ * index — and why a search for its usages never has to leave its own file.
  *
  * Phel offers three spellings: the `defn-` family, a `^` flag on the name symbol, and a
  * keyword or map in the metadata slot between the name and the value.
@@ -22,6 +27,24 @@ internal object PhelDefinitionPrivacy {
     /** The `defn-` / `def-` / `defmacro-` family, private by virtue of the keyword alone. */
     fun isPrivateKeyword(keyword: String): Boolean = keyword in PRIVATE_KEYWORDS
 
+    /**
+     * True when [name] is the defined name of a private top-level definition — the symbol right
+     * after the `defn-` / `def` head, not a usage of it.
+     */
+    fun isPrivateDefinitionName(name: PhelSymbol): Boolean {
+        val list = PsiTreeUtil.getParentOfType(name, PhelList::class.java) ?: return false
+        if (list.parent !is PhelFile) return false
+
+        // activeForms: a `#_`-discarded form must not shift the head and name reads.
+        val forms = PhelPsiUtils.activeForms(list)
+        if (forms.size < 2 || PhelPsiUtils.asSymbol(forms[1]) !== name) return false
+
+        val keyword = PhelPsiUtils.asSymbol(forms[0])?.text ?: return false
+        if (keyword !in PhelSpecialForms.DEFINITION_FORMS) return false
+
+        return isPrivateKeyword(keyword) || isPrivate(forms)
+    }
+
     /**
      * The body is never consulted: a definition that merely mentions `:private` in its docstring or
      * references a `:private-mode` keyword stays public.
@@ -0,0 +1,111 @@
+package org.phellang.language.psi.analysis
+
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
+import com.intellij.psi.util.CachedValue
+import org.phellang.language.psi.PhelForm
+import org.phellang.language.psi.PhelFormKind
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.utils.PhelPsiUtils
+import org.phellang.language.psi.utils.cachedPerPsi
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * The facts about a file that the annotator and every inspection ask for, derived in one walk and
+ * shared between them.
+ *
+ * Highlighting a file runs the annotator and seven inspections over the same PSI, and each used to
+ * re-derive what it needed on its own: the active forms and head of every list (five visitors read
+ * them, each with its own `activeForms` call), whether a symbol is a local binding (the annotator's
+ * rule chain and the unresolved-symbol check both ask, for every symbol), and how often a name
+ * occurs in the file (a whole-file walk per private definition). Here the lists and symbols are
+ * collected by a single tree walk, each list's forms and head are read once, and the per-symbol
+ * classifications are memoized as they are asked for.
+ *
+ * Cached on the file and dropped on any PSI change. Only facts live here: the findings built from
+ * them — arity, resolution, unused names — stay with their inspections, which reach into packages
+ * this one must not import. Heads are not resolved here either; a resolved head is shared through
+ * `ResolveCache`, which the batch resolution of the unresolved-symbol inspection fills.
+ *
+ * With the `phel.analysis.shared` registry key off, every caller gets an analysis of its own, as each
+ * inspection derived its facts before; kept to compare the two.
+ */
+internal class PhelFileAnalysis private constructor(file: PhelFile) {
+
+    /** One list's active forms and head, as the list itself caches them. */
+    class ListFacts(val list: PhelList) {
+        val forms: List<PhelForm> = list.activeForms
+
+        /** What the list calls or declares — `defn`, `let`, a function name — or null without a head symbol. */
+        val head: PhelSymbol? = PhelPsiUtils.asSymbol(forms.firstOrNull())
+
+        val headText: String? = list.headText
+
+        val kind: PhelFormKind = list.formKind
+    }
+
+    private val lists = ArrayList<PhelList>()
+
+    /** Every symbol in the file, in document order. */
+    val symbols: List<PhelSymbol>
+
+    init {
+        val symbols = ArrayList<PhelSymbol>()
+        file.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                when (element) {
+                    is PhelList -> lists.add(element)
+                    is PhelSymbol -> symbols.add(element)
+                }
+                // An unparsed data literal holds neither; walking it would only parse it.
+                if (!PhelDataLiteralElementType.isUnparsed(element.node)) super.visitElement(element)
+            }
+        })
+        this.symbols = symbols
+    }
+
+    /** Every list in the file, in document order, with its forms and head already read. */
+    val listFacts: List<ListFacts> by lazy { lists.map { factsOf(it) } }
+
+    private val factsByList = ConcurrentHashMap<PhelList, ListFacts>()
+
+    private val symbolTextCounts: Map<String, Int> by lazy { symbols.groupingBy { it.text }.eachCount() }
+
+    private val localBindings = ConcurrentHashMap<PhelSymbol, Boolean>()
+
+    private val definitions = ConcurrentHashMap<PhelSymbol, Boolean>()
+
+    /** The forms and head of [list]; read the first time any analysis asks, then shared. */
+    fun factsOf(list: PhelList): ListFacts =
+        factsByList.getOrPut(list) { ListFacts(list) }
+
+    /** How many symbols in the file are spelled [text]. */
+    fun occurrencesOf(text: String): Int = symbolTextCounts[text] ?: 0
+
+    /** [PhelSymbolAnalyzer.isLocalBindingOrReference], asked at most once per symbol. */
+    fun isLocalBindingOrReference(symbol: PhelSymbol): Boolean =
+        localBindings.getOrPut(symbol) { PhelSymbolAnalyzer.isLocalBindingOrReference(symbol) }
+
+    /** [PhelSymbolAnalyzer.isDefinition], asked at most once per symbol. */
+    fun isDefinition(symbol: PhelSymbol): Boolean =
+        definitions.getOrPut(symbol) { PhelSymbolAnalyzer.isDefinition(symbol) }
+
+    companion object {
+        private val ANALYSIS_KEY: Key<CachedValue<PhelFileAnalysis>> = Key.create("phel.file.analysis")
+
+        const val REGISTRY_KEY = "phel.analysis.shared"
+
+        fun of(file: PhelFile): PhelFileAnalysis {
+            if (!Registry.`is`(REGISTRY_KEY, true)) return PhelFileAnalysis(file)
+            return cachedPerPsi(file, ANALYSIS_KEY) { PhelFileAnalysis(file) }
+        }
+
+        /** The analysis of the file [element] lives in, or null outside a Phel file. */
+        fun of(element: PsiElement): PhelFileAnalysis? = (element.containingFile as? PhelFile)?.let { of(it) }
+    }
+}
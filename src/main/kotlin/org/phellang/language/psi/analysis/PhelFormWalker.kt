@@ -21,7 +21,7 @@ internal object PhelFormWalker {
         .filterIsInstance<PhelList>()
 
     /** The text of a list's first element — `defn` for `(defn foo [])` — or null when it has no head symbol. */
-    fun headText(list: PhelList): String? = list.children.firstOrNull()?.let(::symbolTextOf)
+    fun headText(list: PhelList): String? = list.headText
 
     /** The symbol text of [element], whether it is a symbol, an access wrapper, or a form around one. */
     fun symbolTextOf(element: PsiElement): String? = when (element) {
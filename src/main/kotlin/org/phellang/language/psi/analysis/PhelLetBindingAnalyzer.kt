@@ -1,6 +1,7 @@
 package org.phellang.language.psi.analysis
 
 import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.language.psi.PhelFormKind
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelSpecialForms
 import org.phellang.language.psi.PhelSymbol
@@ -41,7 +42,7 @@ internal object PhelLetBindingAnalyzer {
     /** True when [symbolText] names a binding of some enclosing let-like form — i.e. a *reference*. */
     fun isReferenceToLetBinding(symbol: PhelSymbol, symbolText: String): Boolean {
         return PhelFormWalker.enclosingLists(symbol)
-            .filter { PhelFormWalker.headText(it) in LET_LIKE_FORMS }
+            .filter { it.formKind == PhelFormKind.BINDING }
             .mapNotNull { it.children.getOrNull(1) as? PhelVec }
             .any { bindingVec -> bindsName(bindingVec, symbolText) }
     }
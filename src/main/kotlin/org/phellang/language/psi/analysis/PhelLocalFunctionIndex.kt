@@ -4,7 +4,6 @@ import com.intellij.openapi.util.Key
 import com.intellij.psi.util.CachedValue
 import org.phellang.language.psi.PhelAccess
 import org.phellang.language.psi.PhelList
-import org.phellang.language.psi.PhelSpecialForms
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.files.PhelFile
 import org.phellang.language.psi.utils.cachedPerPsi
@@ -14,8 +13,6 @@ internal object PhelLocalFunctionIndex {
 
     private val LOCAL_FUNCTION_NAMES_KEY: Key<CachedValue<Set<String>>> = Key.create("phel.localFunctionNames")
 
-    private val FUNCTION_DEFINING_FORMS = PhelSpecialForms.FUNCTION_DEFINING
-
     /** True when [symbolText] calls a function this file defines — and [symbol] is not that definition. */
     fun isReferenceToLocalFunction(symbol: PhelSymbol, symbolText: String, definitionForms: Set<String>): Boolean {
         if (isFunctionName(symbol, definitionForms)) return false
@@ -35,7 +32,7 @@ internal object PhelLocalFunctionIndex {
 
     private fun computeNames(file: PhelFile): Set<String> = file.children
         .filterIsInstance<PhelList>()
-        .filter { PhelFormWalker.headText(it) in FUNCTION_DEFINING_FORMS }
+        .filter { it.formKind.introducesParameters }
         .mapNotNull { it.children.getOrNull(1) }
         .filter(PhelFormWalker::isSymbolLike)
         .mapNotNull { it.text }
@@ -92,7 +92,7 @@ internal object PhelParameterAnalyzer {
         PsiTreeUtil.getParentOfType(symbol, PhelVec::class.java)
 
     private fun enclosingFunction(symbol: PhelSymbol): PhelList? = PhelFormWalker.enclosingLists(symbol)
-        .firstOrNull { PhelFormWalker.headText(it) in FUNCTION_DEFINING_FORMS }
+        .firstOrNull { it.formKind.introducesParameters }
 
     /**
      * True when [paramVec] is a function's parameter vector rather than an ordinary vector in its
@@ -10,6 +10,7 @@ import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.PhelProjectNamespaceFinder
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.utils.PhelPsiUtils
 import org.phellang.language.psi.utils.cachedPerPsi
 
 /**
@@ -65,7 +66,7 @@ object PhelUnusedImportFinder {
         val nsDeclaration = PhelNamespaceUtils.findNamespaceDeclaration(file)
         val qualifiers = HashSet<String>()
 
-        for (symbol in PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java)) {
+        for (symbol in PhelPsiUtils.findCodeChildrenOfType(file, PhelSymbol::class.java)) {
             // A qualifier inside the declaration is the import itself, not a use of it.
             if (nsDeclaration != null && PsiTreeUtil.isAncestor(nsDeclaration, symbol, false)) continue
 
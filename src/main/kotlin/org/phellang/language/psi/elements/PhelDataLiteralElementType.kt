@@ -0,0 +1,92 @@
+package org.phellang.language.psi.elements
+
+import com.intellij.lang.ASTNode
+import com.intellij.lang.Language
+import com.intellij.openapi.project.Project
+import com.intellij.psi.TokenType
+import com.intellij.psi.impl.source.tree.LazyParseableElement
+import com.intellij.psi.tree.IElementType
+import com.intellij.psi.tree.TokenSet
+import org.phellang.language.lexer.PhelLexerAdapter
+import org.phellang.language.parser.PhelBracketTracker
+import org.phellang.language.psi.PhelTypes
+
+/**
+ * A large vector, map or set holding nothing but data, parsed lazily and reparsed on its own.
+ *
+ * Phel sources embed lookup tables, fixtures and translated catalogs as literals thousands of
+ * elements long, and the parser used to build a node for every string and number in them whether or
+ * not anything ever looked. One made only of literals, keywords and nested collections of the same,
+ * and at least [MIN_TOKENS] tokens long, is left as a chameleon instead: lexer colors show meanwhile,
+ * and its elements are parsed the first time something descends into it.
+ *
+ * A collection holding a symbol, a list or a reader macro is always parsed eagerly, so references,
+ * inspections and completion inside code are never behind a chameleon.
+ */
+class PhelDataLiteralElementType private constructor(debugName: String, private val opener: IElementType, eagerType: IElementType) :
+    PhelLazyElementType(debugName, eagerType) {
+
+    /**
+     * True when [newText] is still one collection of the same kind, of data only, closing at its very
+     * end. The size floor is not asked again: a table that shrinks under it stays lazy until the next
+     * full reparse, which does no harm.
+     */
+    override fun isReparseable(currentNode: ASTNode, newText: CharSequence, fileLanguage: Language, project: Project): Boolean {
+        val lexer = PhelLexerAdapter()
+        lexer.start(newText)
+        if (lexer.tokenType != opener) return false
+
+        val tracker = PhelBracketTracker()
+        while (true) {
+            val type = lexer.tokenType ?: break
+            if (type != TokenType.WHITE_SPACE && type != PhelTypes.LINE_COMMENT) {
+                if (tracker.isClosed || !isDataToken(type) || !tracker.accept(type)) return false
+            }
+            lexer.advance()
+        }
+
+        return tracker.isClosed
+    }
+
+    companion object {
+        @JvmField
+        val VEC = PhelDataLiteralElementType("DATA_VEC", PhelTypes.BRACKET1, PhelTypes.VEC)
+
+        @JvmField
+        val MAP = PhelDataLiteralElementType("DATA_MAP", PhelTypes.BRACE1, PhelTypes.MAP)
+
+        @JvmField
+        val SET = PhelDataLiteralElementType("DATA_SET", PhelTypes.HASH_BRACE, PhelTypes.SET)
+
+        /** Below this many tokens a literal is parsed on the spot; laziness only pays for the big ones. */
+        const val MIN_TOKENS = 512
+
+        /**
+         * Tokens a data literal may hold besides comments: brackets of its own kinds, and leaves that
+         * neither refer to anything nor change how the forms around them parse.
+         */
+        private val DATA_TOKENS = TokenSet.create(
+            PhelTypes.BRACKET1, PhelTypes.BRACKET2, PhelTypes.BRACE1, PhelTypes.BRACE2, PhelTypes.HASH_BRACE,
+            PhelTypes.STRING, PhelTypes.NUMBER, PhelTypes.HEXNUM, PhelTypes.BINNUM, PhelTypes.OCTNUM,
+            PhelTypes.RADIXNUM, PhelTypes.RATIO, PhelTypes.BOOL, PhelTypes.NIL, PhelTypes.NAN,
+            PhelTypes.SYMBOLIC_NUM, PhelTypes.CHAR, PhelTypes.KEYWORD_TOKEN,
+        )
+
+        fun isDataToken(type: IElementType?): Boolean = DATA_TOKENS.contains(type)
+
+        /**
+         * Whether [node] is a data literal not parsed yet. It holds no symbol, list or `#_`, so a walk
+         * looking for code passes it by; descending would parse it for nothing.
+         */
+        fun isUnparsed(node: ASTNode?): Boolean =
+            node is LazyParseableElement && node.elementType is PhelDataLiteralElementType && !node.isParsed
+
+        /** The lazy type for a collection opening with [type], or null when it opens anything else. */
+        fun forOpener(type: IElementType?): PhelDataLiteralElementType? = when (type) {
+            PhelTypes.BRACKET1 -> VEC
+            PhelTypes.BRACE1 -> MAP
+            PhelTypes.HASH_BRACE -> SET
+            else -> null
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.phellang.language.psi.elements
+
+import com.intellij.lang.ASTNode
+import com.intellij.lang.PsiBuilderFactory
+import com.intellij.psi.PsiElement
+import com.intellij.psi.tree.IElementType
+import com.intellij.psi.tree.IReparseableElementType
+import org.phellang.language.infrastructure.PhelLanguage
+import org.phellang.language.lexer.PhelLexerAdapter
+import org.phellang.language.parser.PhelParser
+
+/**
+ * A bracketed form the parser leaves as a chameleon, parsed with the rule for [eagerType] the first
+ * time anything reads its contents, and reparsed on its own when an edit keeps it the same shape.
+ *
+ * Its PSI is the same as an eagerly parsed [eagerType]'s; only code matching on element types needs
+ * to know it exists.
+ */
+abstract class PhelLazyElementType(debugName: String, val eagerType: IElementType) :
+    IReparseableElementType(debugName, PhelLanguage) {
+
+    // Parsed as the eager rule rather than as a file, so the contents come back as the form's own
+    // children instead of as another chameleon.
+    override fun doParseContents(chameleon: ASTNode, psi: PsiElement): ASTNode? {
+        val builder = PsiBuilderFactory.getInstance()
+            .createBuilder(psi.project, chameleon, PhelLexerAdapter(), PhelLanguage, chameleon.chars)
+
+        return PhelParser().parse(eagerType, builder).firstChildNode
+    }
+}
@@ -0,0 +1,49 @@
+package org.phellang.language.psi.elements
+
+import com.intellij.lang.ASTNode
+import com.intellij.lang.Language
+import com.intellij.openapi.project.Project
+import com.intellij.psi.TokenType
+import org.phellang.language.lexer.PhelLexerAdapter
+import org.phellang.language.parser.PhelBracketTracker
+import org.phellang.language.psi.PhelTypes
+
+/**
+ * A top-level `(...)` form, parsed lazily and reparsed on its own.
+ *
+ * Every other list is a plain `LIST`, so the platform's incremental reparse had nothing smaller than
+ * the file to redo: an edit inside one `defn` of a ten-thousand-line file relexed and reparsed all of
+ * it. A top-level list whose brackets balance is instead left as a chameleon by the file parser, its
+ * contents parsed on first access, and an edit that leaves it one balanced list reparses it alone.
+ *
+ * Its PSI is the same [org.phellang.language.psi.PhelList] as any other list.
+ */
+class PhelTopLevelListElementType private constructor() : PhelLazyElementType("TOP_LEVEL_LIST", PhelTypes.LIST) {
+
+    /**
+     * True when [newText] is still exactly one list whose brackets all balance. Anything else — an
+     * opener left unclosed, a closer too many, a `#` typed in front, a form typed after — could
+     * change how the rest of the file parses, and goes to a full reparse.
+     */
+    override fun isReparseable(currentNode: ASTNode, newText: CharSequence, fileLanguage: Language, project: Project): Boolean {
+        val lexer = PhelLexerAdapter()
+        lexer.start(newText)
+        if (lexer.tokenType != PhelTypes.PAREN1) return false
+
+        val tracker = PhelBracketTracker()
+        while (true) {
+            val type = lexer.tokenType ?: break
+            if (type != TokenType.WHITE_SPACE && type != PhelTypes.LINE_COMMENT) {
+                if (tracker.isClosed || !tracker.accept(type)) return false
+            }
+            lexer.advance()
+        }
+
+        return tracker.isClosed
+    }
+
+    companion object {
+        @JvmField
+        val INSTANCE = PhelTopLevelListElementType()
+    }
+}
@@ -6,13 +6,17 @@ import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiNameIdentifierOwner
 import com.intellij.openapi.util.Key
 import com.intellij.psi.PsiReference
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.search.SearchScope
 import com.intellij.psi.util.CachedValue
 import com.intellij.util.IncorrectOperationException
 import org.jetbrains.annotations.NonNls
 import org.phellang.language.psi.PhelPsiFactory
 import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.analysis.PhelDefinitionPrivacy
 import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
 import org.phellang.language.psi.navigation.PhelItemPresentation
+import org.phellang.language.psi.references.PhelDefinitionSearchScope
 import org.phellang.language.psi.references.PhelReference
 import org.phellang.language.psi.utils.PhelPsiUtils
 import org.phellang.language.psi.utils.cachedPerPsi
@@ -50,6 +54,20 @@ abstract class PhelNamedElementImpl(node: ASTNode) : PhelSFormImpl(node), PsiNam
         }
     }
 
+    /**
+     * A private definition (`defn-`, `^:private`, …) can only be referenced from its own namespace,
+     * so Find Usages, rename and Safe Delete search the defining file alone rather than every file
+     * in the project. A public one is searched in the files [PhelReference] can resolve a reference
+     * to it from: its own, those requiring its namespace, and those mentioning its bare name
+     * ([PhelDefinitionSearchScope]). Anything else keeps the platform's default, project-wide scope.
+     */
+    override fun getUseScope(): SearchScope {
+        if (this !is PhelSymbol) return super.getUseScope()
+        if (PhelDefinitionPrivacy.isPrivateDefinitionName(this)) return LocalSearchScope(containingFile)
+
+        return PhelDefinitionSearchScope.useScopeOf(this) ?: super.getUseScope()
+    }
+
     override fun getTextOffset(): Int =
         if (this is PhelSymbol) PhelPsiUtils.getNameTextOffset(this) else super.getTextOffset()
 
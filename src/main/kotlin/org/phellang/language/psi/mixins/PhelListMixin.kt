@@ -1,9 +1,34 @@
 package org.phellang.language.psi.mixins
 
 import com.intellij.lang.ASTNode
+import com.intellij.openapi.util.Key
+import com.intellij.psi.util.CachedValue
+import org.phellang.language.psi.PhelForm
+import org.phellang.language.psi.PhelFormKind
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.impl.PhelLVFormImpl
+import org.phellang.language.psi.utils.PhelPsiUtils
+import org.phellang.language.psi.utils.cachedPerPsi
+import java.util.Collections
 
 abstract class PhelListMixin(node: ASTNode) : PhelLVFormImpl(node), PhelList {
     override fun getTextOffset(): Int = textRange.startOffset
+
+    override val activeForms: List<PhelForm> get() = shape().forms
+
+    override val headText: String? get() = shape().headText
+
+    override val formKind: PhelFormKind get() = shape().kind
+
+    private fun shape(): Shape = cachedPerPsi(this, SHAPE_KEY) {
+        val forms = PhelPsiUtils.collectActiveForms(this)
+        val head = PhelPsiUtils.headSymbol(forms.firstOrNull())?.text
+        Shape(Collections.unmodifiableList(forms), head, PhelFormKind.of(head))
+    }
+
+    private class Shape(val forms: List<PhelForm>, val headText: String?, val kind: PhelFormKind)
+
+    private companion object {
+        val SHAPE_KEY: Key<CachedValue<Shape>> = Key.create("phel.list.shape")
+    }
 }
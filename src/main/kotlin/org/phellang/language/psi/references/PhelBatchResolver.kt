@@ -0,0 +1,45 @@
+package org.phellang.language.psi.references
+
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.util.TextRange
+import com.intellij.psi.SyntaxTraverser
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * Resolves every reference in a file in one pass, leaving the results in `ResolveCache`.
+ *
+ * A highlighting pass otherwise resolves symbols one at a time, in whatever order the inspections
+ * happen to visit them, each paying to build the [PhelFileResolutionContext] tables it needs first.
+ * Resolving them all up front builds each table once and turns every later `resolve()` in the pass —
+ * the inspections', the documentation provider's, occurrence highlighting's — into a cache hit.
+ *
+ * Definitions are skipped: their "resolution" is a Find Usages search, which nothing on the
+ * highlighting path asks for and which costs a project-wide scan per definition.
+ */
+internal object PhelBatchResolver {
+
+    /**
+     * Resolves every usage symbol in [file] that lies within [range]; returns how many references
+     * were resolved. Subtrees outside the range are not descended into, so a pass re-highlighting
+     * one edited form resolves that form only.
+     */
+    fun resolveAll(file: PhelFile, range: TextRange = file.textRange): Int {
+        var resolved = 0
+        val symbols = SyntaxTraverser.psiTraverser(file)
+            .expand { range.intersects(it.textRange) }
+            .filter(PhelSymbol::class.java)
+
+        for (symbol in symbols) {
+            ProgressManager.checkCanceled()
+            if (!range.intersects(symbol.textRange)) continue
+
+            val reference = symbol.reference as? PhelReference ?: continue
+            if (reference.findUsages) continue
+
+            reference.multiResolve(false)
+            resolved++
+        }
+        return resolved
+    }
+}
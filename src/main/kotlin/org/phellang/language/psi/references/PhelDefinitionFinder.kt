@@ -39,16 +39,39 @@ internal object PhelDefinitionFinder {
             .flatMap { collectDefinitionsIn(it, symbolName) }
     }
 
+    /**
+     * Every definition declared anywhere in [root], grouped by name, in document order.
+     *
+     * The batch form of [collectDefinitionsIn]: one walk answers every name at once, where asking
+     * per name walks [root] again each time. [names], when given, drops the definitions nobody asked
+     * for, so a caller interested in a handful of names does not keep the whole file's table alive.
+     */
+    fun collectDefinitionsByName(root: PsiElement, names: Set<String>? = null): Map<String, List<PsiElement>> {
+        val byName = linkedMapOf<String, MutableList<PsiElement>>()
+
+        for (list in PsiTreeUtil.findChildrenOfType(root, PhelList::class.java)) {
+            val definedName = definedNameIn(list) ?: continue
+            val name = definedName.text ?: continue
+            if (names != null && name !in names) continue
+
+            byName.getOrPut(name) { mutableListOf() }.add(definedName)
+        }
+        return byName
+    }
+
     /** The name symbol of `(def name …)` / `(defn name …)` when it is [symbolName], else null. */
-    fun findDefinitionInList(list: PhelList, symbolName: String): PsiElement? {
+    fun findDefinitionInList(list: PhelList, symbolName: String): PsiElement? =
+        definedNameIn(list)?.takeIf { symbolName == it.text }
+
+    /** The name symbol `(def name …)` / `(defn name …)` declares, or null when [list] declares none. */
+    fun definedNameIn(list: PhelList): PhelSymbol? {
         val forms = list.forms
         if (forms.size < 2) return null
 
         val defKeyword = PsiTreeUtil.findChildOfType(forms[0], PhelSymbol::class.java) ?: return null
         if (!isDefiningKeyword(defKeyword.text)) return null
 
-        val definedName = PsiTreeUtil.findChildOfType(forms[1], PhelSymbol::class.java) ?: return null
-        return definedName.takeIf { symbolName == it.text }
+        return PsiTreeUtil.findChildOfType(forms[1], PhelSymbol::class.java)
     }
 
     /**
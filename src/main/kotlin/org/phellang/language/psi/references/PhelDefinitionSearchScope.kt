@@ -0,0 +1,188 @@
+package org.phellang.language.psi.references
+
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiManager
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.search.PsiSearchHelper
+import com.intellij.psi.search.SearchScope
+import com.intellij.psi.search.UsageSearchContext
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.language.infrastructure.PhelFileType
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.PhelNamespaceUtils
+import org.phellang.language.psi.PhelProjectNamespaceFinder
+import org.phellang.language.psi.PhelRequireClauseAnalyzer
+import org.phellang.language.psi.PhelSpecialForms
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.utils.PhelPsiUtils
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Where a public top-level definition can be referenced from: its own file and the files whose
+ * `(:require ...)` clauses import its namespace. Those are the files where a reference to it is
+ * valid Phel — qualified through the require, or bare where the name is `:refer`red or declared.
+ *
+ * [PhelReference] is more lenient: it matches an unqualified name against every project definition,
+ * so a bare `helper` in a file that never requires the namespace still resolves. Such a name would
+ * not compile, and searching for it would mean the whole word index again, so those references are
+ * not reported: Find Usages, rename and Safe Delete leave them alone, as the Phel compiler would.
+ *
+ * The platform's generic reference search used to look up the definition's name in the word index
+ * across the whole project and resolve every hit. For a common name — `get`, `run`, `parse` — that is
+ * most of the project's files, each hit a full resolution only to find it means something else.
+ *
+ * Serves two callers: [org.phellang.language.psi.impl.PhelNamedElementImpl.getUseScope], which
+ * bounds every platform search to these files, and [PhelReferencesSearcher], which walks them for
+ * the exact spellings each file can use in place of the generic search. Both ask [searchOf], which
+ * keeps the files on the definition until the next PSI change. `phel\core` definitions are referred
+ * into every namespace without a require, and a definition outside the project may be used from
+ * anywhere, so neither is narrowed.
+ */
+internal object PhelDefinitionSearchScope {
+
+    /** A narrowable definition: its name, the namespace it lives in, and the file declaring it. */
+    class Definition(val name: String, val namespace: String, val file: PhelFile)
+
+    private val REQUIRERS_KEY: Key<CachedValue<ConcurrentHashMap<String, List<PhelFile>>>> =
+        Key.create("phel.namespace.requirers")
+
+    /** The definition [symbol] names, or null when it is not one whose search can be narrowed. */
+    fun definitionOf(symbol: PhelSymbol): Definition? {
+        val file = symbol.containingFile as? PhelFile ?: return null
+        val list = PsiTreeUtil.getParentOfType(symbol, PhelList::class.java) ?: return null
+        if (list.parent !is PhelFile) return null
+
+        val forms = PhelPsiUtils.activeForms(list)
+        if (forms.size < 2 || PhelPsiUtils.asSymbol(forms[1]) !== symbol) return null
+        val keyword = PhelPsiUtils.asSymbol(forms[0])?.text ?: return null
+        if (keyword !in PhelSpecialForms.DEFINITION_FORMS) return null
+
+        val namespace = PhelNamespaceUtils.extractNamespaceFromFile(file) ?: return null
+        if (PhelNamespaceUtils.isCoreNamespace(PhelProjectNamespaceFinder.extractShortNamespace(namespace))) return null
+
+        val virtualFile = file.virtualFile ?: return null
+        if (!GlobalSearchScope.projectScope(file.project).contains(virtualFile)) return null
+
+        val name = PhelPsiUtils.getName(symbol) ?: return null
+        // A name with no word in it (`+`, `->`) is not in the word index; its search stays project-wide.
+        if (name.none(Character::isJavaIdentifierPart)) return null
+        return Definition(name, namespace, file)
+    }
+
+    /** A narrowable definition together with the files it can be referenced from and their scope. */
+    class Search(val definition: Definition, val files: List<PhelFile>, val scope: GlobalSearchScope)
+
+    /**
+     * The search for [symbol] when it is a narrowable definition, otherwise null; computed once per
+     * PSI modification, however many searches and use-scope checks ask for it in between.
+     */
+    fun searchOf(symbol: PhelSymbol): Search? =
+        CachedValuesManager.getCachedValue(symbol) {
+            CachedValueProvider.Result.create(computeSearch(symbol), PsiModificationTracker.MODIFICATION_COUNT)
+        }
+
+    /** The use scope of [symbol] when it is a narrowable definition, otherwise null. */
+    fun useScopeOf(symbol: PhelSymbol): SearchScope? = searchOf(symbol)?.scope
+
+    private fun computeSearch(symbol: PhelSymbol): Search? {
+        val definition = definitionOf(symbol) ?: return null
+        val files = candidateFiles(definition)
+        return Search(definition, files, GlobalSearchScope.filesScope(symbol.project, files.mapNotNull { it.virtualFile }))
+    }
+
+    /** The defining file and every project file requiring its namespace. */
+    private fun candidateFiles(definition: Definition): List<PhelFile> =
+        (listOf(definition.file) + filesRequiring(definition.file.project, definition.namespace)).distinct()
+
+    /**
+     * The texts a reference to [definition] can take in [file]: in the defining file the bare and
+     * namespace-qualified names, and everywhere the spellings the file's requires give it
+     * ([importedSpellingsIn]).
+     */
+    fun spellingsIn(file: PhelFile, definition: Definition): Set<String> {
+        val name = definition.name
+        val spellings = mutableSetOf<String>()
+
+        if (file == definition.file) {
+            spellings += name
+            spellings += "${definition.namespace}/$name"
+            spellings += "${PhelProjectNamespaceFinder.extractShortNamespace(definition.namespace)}/$name"
+        }
+        spellings += importedSpellingsIn(file, definition)
+
+        return spellings
+    }
+
+    /**
+     * The spellings of [definition] that [file]'s `(:require ...)` clauses make valid Phel: the name
+     * qualified by the namespace as written, its short form or the `:as` alias of any clause
+     * importing it, and the bare name where it is `:refer`red. Unlike resolution, which matches a
+     * bare name against the whole project, this is what would compile.
+     */
+    fun importedSpellingsIn(file: PhelFile, definition: Definition): Set<String> {
+        val name = definition.name
+        val namespace = PhelNamespaceUtils.normalizeNamespace(definition.namespace)
+        val spellings = mutableSetOf<String>()
+
+        for (import in PhelRequireClauseAnalyzer.imports(file)) {
+            if (PhelNamespaceUtils.normalizeNamespace(import.fullNamespace) != namespace) continue
+            spellings += "${import.fullNamespace}/$name"
+            spellings += "${import.shortNamespace}/$name"
+            import.alias?.let { spellings += "$it/$name" }
+        }
+
+        val referSource = PhelNamespaceUtils.findReferSource(file, name)
+        if (referSource != null && PhelNamespaceUtils.normalizeNamespace(referSource) == namespace) {
+            spellings += name
+        }
+
+        return spellings
+    }
+
+    /**
+     * The project files whose `(:require ...)` clauses import [namespace], remembered per namespace
+     * until the next PSI change. Only files the word index finds every part of the namespace in have
+     * their `ns` form read.
+     */
+    private fun filesRequiring(project: Project, namespace: String): List<PhelFile> {
+        val normalized = PhelNamespaceUtils.normalizeNamespace(namespace)
+
+        return requirers(project).getOrPut(normalized) {
+            filesWithWords(project, normalized).filter { file ->
+                val nsDeclaration = PhelNamespaceUtils.findNamespaceDeclaration(file)
+                nsDeclaration != null && PhelNamespaceUtils.isNamespaceRequired(nsDeclaration, namespace)
+            }
+        }
+    }
+
+    /**
+     * The project's Phel files containing every word of [text] in code, from the word index: no
+     * file is loaded to answer it. The words are split the way [org.phellang.language.psi.navigation.PhelFindUsagesProvider] indexed them,
+     * so `app\util` asks for `app` and `util`, and `shout-it` for `shout` and `it`.
+     */
+    private fun filesWithWords(project: Project, text: String): List<PhelFile> {
+        val psiManager = PsiManager.getInstance(project)
+        val scope = GlobalSearchScope.getScopeRestrictedByFileTypes(GlobalSearchScope.projectScope(project), PhelFileType.INSTANCE)
+        val files = mutableListOf<PhelFile>()
+
+        PsiSearchHelper.getInstance(project).processCandidateFilesForText(scope, UsageSearchContext.IN_CODE, true, text) { file ->
+            (psiManager.findFile(file) as? PhelFile)?.let(files::add)
+            true
+        }
+        return files
+    }
+
+    private fun requirers(project: Project): ConcurrentHashMap<String, List<PhelFile>> =
+        CachedValuesManager.getManager(project).getCachedValue(project, REQUIRERS_KEY, {
+            CachedValueProvider.Result.create(
+                ConcurrentHashMap<String, List<PhelFile>>(),
+                PsiModificationTracker.MODIFICATION_COUNT,
+            )
+        }, false)
+}
@@ -1,6 +1,7 @@
 package org.phellang.language.psi.references
 
 import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
 import com.intellij.psi.PsiManager
 import com.intellij.psi.search.FilenameIndex
 import com.intellij.psi.search.GlobalSearchScope
@@ -15,8 +16,13 @@ internal object PhelDefinitionSearcher {
     }
 
     fun findInProject(symbol: PhelSymbol, symbolName: String): List<PsiElement> {
-        val project = symbol.project
-        val currentFile = symbol.containingFile
+        val currentFile = symbol.containingFile ?: return emptyList()
+        return findInProject(currentFile, symbolName)
+    }
+
+    /** Definitions of [symbolName] in every project file but [currentFile]. */
+    fun findInProject(currentFile: PsiFile, symbolName: String): List<PsiElement> {
+        val project = currentFile.project
         val psiManager = PsiManager.getInstance(project)
 
         return FilenameIndex.getAllFilesByExt(project, "phel", GlobalSearchScope.projectScope(project))
@@ -0,0 +1,146 @@
+package org.phellang.language.psi.references
+
+import com.intellij.openapi.util.Key
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiManager
+import com.intellij.psi.search.FilenameIndex
+import com.intellij.psi.search.GlobalSearchScope
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.language.psi.PhelNamespaceUtils
+import org.phellang.language.psi.PhelProjectNamespaceFinder
+import org.phellang.language.psi.PhelRequireClauseAnalyzer
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.PhelVendorUtils
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.utils.PhelPsiUtils
+import org.phellang.language.psi.utils.cachedPerPsi
+
+/**
+ * What resolving any symbol of one file needs to know about that file, computed once per file
+ * rather than once per symbol.
+ *
+ * [PhelReference] used to re-derive all of it for every symbol it resolved: the `(:require ...)`
+ * imports, a walk of the file for each name's definitions, another for its parameters, and a scan of
+ * every project file for the name — the last of them the expensive one, since a file with 300 symbols
+ * read the text of every project file 300 times. Here each of those is one pass, keyed by name, and
+ * the project and vendor passes only keep the names this file actually mentions.
+ *
+ * Every table is lazy: go-to-definition on a single qualified symbol never pays for the project
+ * definition scan. Cached on the file and dropped on any PSI change, the same lifetime as the
+ * `ResolveCache` entries it feeds — a stale table could not outlive the resolutions built from it.
+ */
+internal class PhelFileResolutionContext private constructor(private val file: PhelFile) {
+
+    /** Every namespace the file's `(:require ...)` clauses import, with their `:as` aliases. */
+    val imports: List<PhelRequireClauseAnalyzer.RequireImport> by lazy { PhelRequireClauseAnalyzer.imports(file) }
+
+    /** The file's own definitions, by name. */
+    private val definitions: Map<String, List<PsiElement>> by lazy {
+        PhelDefinitionFinder.collectDefinitionsByName(file)
+    }
+
+    /** Every parameter the file declares, by name. */
+    private val parameters: Map<String, List<PsiElement>> by lazy { PhelLocalScopeResolver.parametersByName(file) }
+
+    /** Every unqualified name the file mentions — the only names any project definition is kept for. */
+    private val referencedNames: Set<String> by lazy {
+        PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java)
+            .filter { PhelPsiUtils.getQualifier(it) == null }
+            .mapNotNullTo(HashSet()) { PhelPsiUtils.getName(it) }
+    }
+
+    /**
+     * The names the file mentions but does not declare itself. Only these can fall through to the
+     * standard library: a name the file defines or binds always has that match first.
+     */
+    val freeSymbols: Set<String> by lazy { referencedNames - definitions.keys - parameters.keys }
+
+    /** Definitions in the project's other files of any name this file mentions. */
+    private val projectDefinitions: Map<String, List<PsiElement>> by lazy {
+        collectAcross(projectFiles(), referencedNames)
+    }
+
+    /** `phel\core` definitions of the file's free names, for the standard-library fall-through. */
+    private val coreDefinitions: Map<String, List<PsiElement>> by lazy {
+        val psiManager = PsiManager.getInstance(file.project)
+        val coreFiles = PhelVendorUtils.findStandardLibraryFiles(file.project, "core")
+            .mapNotNull { psiManager.findFile(it) as? PhelFile }
+
+        collectAcross(coreFiles, freeSymbols)
+    }
+
+    /** Full namespace -> the project files declaring it, for qualified resolution. */
+    private val filesByNamespace: Map<String, List<PhelFile>> by lazy {
+        val byNamespace = linkedMapOf<String, MutableList<PhelFile>>()
+        val psiManager = PsiManager.getInstance(file.project)
+
+        for (virtualFile in projectPhelFiles()) {
+            val phelFile = psiManager.findFile(virtualFile) as? PhelFile ?: continue
+            val namespace = PhelNamespaceUtils.extractNamespaceFromFile(phelFile) ?: continue
+            byNamespace.getOrPut(namespace) { mutableListOf() }.add(phelFile)
+        }
+        byNamespace
+    }
+
+    fun definitionsNamed(name: String): List<PsiElement> = definitions[name].orEmpty()
+
+    fun parametersNamed(name: String): List<PsiElement> = parameters[name].orEmpty()
+
+    /**
+     * Definitions of [name] in the project's other files.
+     *
+     * The table only holds names the file mentions. A caller asking about any other name — a
+     * rename preview, say — gets the per-name scan rather than a wrong "nothing".
+     */
+    fun projectDefinitionsNamed(name: String): List<PsiElement> {
+        if (name !in referencedNames) return PhelDefinitionSearcher.findInProject(file, name)
+        return projectDefinitions[name].orEmpty()
+    }
+
+    fun coreDefinitionsNamed(name: String): List<PsiElement> {
+        if (name !in freeSymbols) return PhelDefinitionFinder.collectVendorDefinitions(file.project, "core", name)
+        return coreDefinitions[name].orEmpty()
+    }
+
+    /** The project files declaring exactly [namespace]. */
+    fun filesDeclaring(namespace: String): List<PhelFile> = filesByNamespace[namespace].orEmpty()
+
+    /** The project files whose namespace's short form is [shortNamespace] — `app\util` for `util`. */
+    fun filesDeclaringShortNamespace(shortNamespace: String): List<PhelFile> =
+        filesByNamespace.filterKeys { PhelProjectNamespaceFinder.extractShortNamespace(it) == shortNamespace }
+            .values.flatten()
+
+    private fun projectPhelFiles() =
+        FilenameIndex.getAllFilesByExt(file.project, "phel", GlobalSearchScope.projectScope(file.project))
+
+    private fun projectFiles(): List<PhelFile> {
+        val psiManager = PsiManager.getInstance(file.project)
+
+        return projectPhelFiles()
+            .mapNotNull { psiManager.findFile(it) as? PhelFile }
+            .filter { it != file }
+    }
+
+    private fun collectAcross(files: List<PhelFile>, names: Set<String>): Map<String, List<PsiElement>> {
+        if (names.isEmpty()) return emptyMap()
+
+        val byName = linkedMapOf<String, MutableList<PsiElement>>()
+        for (other in files) {
+            PhelDefinitionFinder.collectDefinitionsByName(other, names).forEach { (name, found) ->
+                byName.getOrPut(name) { mutableListOf() }.addAll(found)
+            }
+        }
+        return byName
+    }
+
+    companion object {
+        private val CONTEXT_KEY: Key<CachedValue<PhelFileResolutionContext>> = Key.create("phel.resolution.context")
+
+        /** The context of the file [element] lives in, or null outside a Phel file. */
+        fun of(element: PsiElement): PhelFileResolutionContext? {
+            val file = element.containingFile as? PhelFile ?: return null
+            return cachedPerPsi(file, CONTEXT_KEY) { PhelFileResolutionContext(file) }
+        }
+    }
+}
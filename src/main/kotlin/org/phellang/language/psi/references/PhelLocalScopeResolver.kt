@@ -31,11 +31,20 @@ internal object PhelLocalScopeResolver {
         return null
     }
 
-    /** Every parameter named [symbolName] anywhere in [file] — polyvariant resolve shows them all. */
-    fun findAllParametersIn(file: PsiElement, symbolName: String): List<PsiElement> {
-        return PsiTreeUtil.findChildrenOfType(file, PhelList::class.java)
-            .flatMap { list -> parametersOf(list).orEmpty() }
-            .filter { symbolName == it.text }
+    /**
+     * Every parameter declared anywhere in [file], grouped by name — polyvariant resolve shows them
+     * all. One walk serves every name in the file, where a walk per name repeated it per symbol.
+     */
+    fun parametersByName(file: PsiElement): Map<String, List<PsiElement>> {
+        val byName = linkedMapOf<String, MutableList<PsiElement>>()
+
+        for (list in PsiTreeUtil.findChildrenOfType(file, PhelList::class.java)) {
+            for (parameter in parametersOf(list).orEmpty()) {
+                val name = parameter.text ?: continue
+                byName.getOrPut(name) { mutableListOf() }.add(parameter)
+            }
+        }
+        return byName
     }
 
     /**
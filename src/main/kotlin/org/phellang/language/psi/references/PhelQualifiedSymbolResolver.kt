@@ -1,14 +1,8 @@
 package org.phellang.language.psi.references
 
 import com.intellij.psi.PsiElement
-import com.intellij.psi.PsiManager
-import com.intellij.psi.search.FilenameIndex
-import com.intellij.psi.search.GlobalSearchScope
-import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.PhelProjectNamespaceFinder
-import org.phellang.language.psi.PhelRequireClauseAnalyzer
 import org.phellang.language.psi.PhelSymbol
-import org.phellang.language.psi.files.PhelFile
 
 /**
  * Resolves a namespace-qualified symbol — `utils/greet`, `m/square`, `string/join` — to its
@@ -19,48 +13,42 @@ import org.phellang.language.psi.files.PhelFile
  * since a PHP class qualifier must never be matched against a Phel namespace.
  */
 internal object PhelQualifiedSymbolResolver {
-    fun resolve(symbol: PhelSymbol, qualifier: String, symbolName: String): List<PsiElement> {
-        val containingFile = symbol.containingFile as? PhelFile ?: return emptyList()
-        val project = symbol.project
-
+    fun resolve(
+        symbol: PhelSymbol,
+        qualifier: String,
+        symbolName: String,
+        context: PhelFileResolutionContext,
+    ): List<PsiElement> {
         // An import may alias the qualifier (`:as m`), in which case the namespace to search for is
         // the aliased one rather than the text the user typed.
-        val importedNamespace = resolveQualifierToNamespace(containingFile, qualifier)
+        val importedNamespace = resolveQualifierToNamespace(context, qualifier)
         val searchNamespace = importedNamespace
             ?.let(PhelProjectNamespaceFinder::extractShortNamespace)
             ?: qualifier
 
         val results = mutableListOf<PsiElement>()
-        results += PhelDefinitionFinder.collectVendorDefinitions(project, searchNamespace, symbolName)
-        results += findInProjectFiles(project, qualifier, importedNamespace, symbolName)
+        results += PhelDefinitionFinder.collectVendorDefinitions(symbol.project, searchNamespace, symbolName)
+        results += findInProjectFiles(context, qualifier, importedNamespace, symbolName)
         return results
     }
 
+    /**
+     * Match on the full namespace when the import told us what it is; otherwise the qualifier is all
+     * we have, so match files whose short namespace equals it.
+     */
     private fun findInProjectFiles(
-        project: com.intellij.openapi.project.Project,
+        context: PhelFileResolutionContext,
         qualifier: String,
         importedNamespace: String?,
         symbolName: String,
     ): List<PsiElement> {
-        val psiManager = PsiManager.getInstance(project)
-        val phelFiles = FilenameIndex.getAllFilesByExt(project, "phel", GlobalSearchScope.projectScope(project))
-
-        return phelFiles
-            .mapNotNull { psiManager.findFile(it) as? PhelFile }
-            .filter { declaresSearchedNamespace(it, qualifier, importedNamespace) }
-            .flatMap { PhelDefinitionFinder.collectDefinitionsIn(it, symbolName) }
-    }
-
-    private fun declaresSearchedNamespace(file: PhelFile, qualifier: String, importedNamespace: String?): Boolean {
-        val fileNamespace = PhelNamespaceUtils.extractNamespaceFromFile(file) ?: return false
-
-        // Match on the full namespace when the import told us what it is; otherwise the qualifier is
-        // all we have, so match files whose short namespace equals it.
-        return if (importedNamespace != null) {
-            fileNamespace == importedNamespace
+        val files = if (importedNamespace != null) {
+            context.filesDeclaring(importedNamespace)
         } else {
-            PhelProjectNamespaceFinder.extractShortNamespace(fileNamespace) == qualifier
+            context.filesDeclaringShortNamespace(qualifier)
         }
+
+        return files.flatMap { PhelDefinitionFinder.collectDefinitionsIn(it, symbolName) }
     }
 
     /**
@@ -68,8 +56,8 @@ internal object PhelQualifiedSymbolResolver {
      * `:as` aliases as well as direct imports. Null when no import matches, in which case the caller
      * falls back to matching files by short namespace.
      */
-    private fun resolveQualifierToNamespace(file: PhelFile, qualifier: String): String? {
-        return PhelRequireClauseAnalyzer.imports(file).firstOrNull { spec ->
+    private fun resolveQualifierToNamespace(context: PhelFileResolutionContext, qualifier: String): String? {
+        return context.imports.firstOrNull { spec ->
             // An aliased import is referenced by its alias only; a plain one by its short name.
             if (spec.alias != null) spec.alias == qualifier else spec.shortNamespace == qualifier
         }?.fullNamespace
@@ -8,6 +8,8 @@ import com.intellij.psi.PsiReferenceBase
 import com.intellij.psi.ResolveResult
 import com.intellij.psi.impl.source.resolve.ResolveCache
 import com.intellij.util.IncorrectOperationException
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import org.phellang.language.profiling.PhelAnalysisProfiler.Category
 import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
@@ -27,12 +29,13 @@ import java.util.IdentityHashMap
  * * [PhelQualifiedSymbolResolver]  — `ns/name`, including `:as` aliases
  * * [PhelLocalScopeResolver]       — `let` bindings and function parameters
  * * [PhelDefinitionSearcher]       — top-level definitions in this file, then the project
+ * * [PhelFileResolutionContext]    — the same lookups for every symbol of a file, computed once
  * * [PhelUsageFinder]              — the reverse direction, when the symbol *is* the definition
  */
 class PhelReference @JvmOverloads constructor(
     element: PhelSymbol,
     /** True: find usages of this definition. False: resolve this usage to its definitions. */
-    private val findUsages: Boolean = PhelSymbolAnalyzer.isDefinition(element)
+    internal val findUsages: Boolean = PhelSymbolAnalyzer.isDefinition(element)
 ) : PsiReferenceBase<PhelSymbol>(element, calculateRangeInElement(element)), PsiPolyVariantReference {
 
     private val symbolName: String? = PhelPsiUtils.getName(element)
@@ -60,7 +63,7 @@ class PhelReference @JvmOverloads constructor(
         val name = symbolName?.takeIf { it.isNotEmpty() } ?: return ResolveResult.EMPTY_ARRAY
 
         val targets = if (findUsages) {
-            PhelUsageFinder.findUsages(myElement, name)
+            step("PhelUsageFinder") { PhelUsageFinder.findUsages(myElement, name) }
         } else {
             findDefinitions(name)
         }
@@ -74,7 +77,7 @@ class PhelReference @JvmOverloads constructor(
      * symbol must not be matched against local scope.
      */
     private fun findDefinitions(name: String): List<PsiElement> {
-        PhelRequireNamespaceResolver.resolve(myElement)
+        step("PhelRequireNamespaceResolver") { PhelRequireNamespaceResolver.resolve(myElement) }
             .takeIf { it.isNotEmpty() }
             ?.let { return it }
 
@@ -84,35 +87,40 @@ class PhelReference @JvmOverloads constructor(
             return resolvePhpTargets()
         }
 
+        // Everything below reads the file's imports and definitions; they are derived once per file
+        // and shared by every symbol in it rather than re-derived here.
+        val context = step("PhelFileResolutionContext") { PhelFileResolutionContext.of(myElement) } ?: return emptyList()
+
         PhelPsiUtils.getQualifier(myElement)?.let { qualifier ->
             // PHP interop first: a PHP class qualifier must never be matched against a Phel namespace.
             resolvePhpTargets().takeIf { it.isNotEmpty() }?.let { return it }
-            return PhelQualifiedSymbolResolver.resolve(myElement, qualifier, name)
+            return step("PhelQualifiedSymbolResolver") {
+                PhelQualifiedSymbolResolver.resolve(myElement, qualifier, name, context)
+            }
         }
 
-        return findUnqualifiedDefinitions(name)
+        return findUnqualifiedDefinitions(name, context)
     }
 
     /** Every scope an unqualified name can be declared in, de-duplicated by PSI identity. */
-    private fun findUnqualifiedDefinitions(name: String): List<PsiElement> {
+    private fun findUnqualifiedDefinitions(name: String, context: PhelFileResolutionContext): List<PsiElement> {
         val seen = Collections.newSetFromMap(IdentityHashMap<PsiElement, Boolean>())
         val results = mutableListOf<PsiElement>()
 
         fun addAll(elements: List<PsiElement>) = elements.forEach { if (seen.add(it)) results.add(it) }
 
-        addAll(listOfNotNull(PhelLocalScopeResolver.resolve(myElement, name)))
-        addAll(PhelDefinitionSearcher.findInCurrentFile(myElement, name))
-        myElement.containingFile?.let { addAll(PhelLocalScopeResolver.findAllParametersIn(it, name)) }
-        addAll(PhelDefinitionSearcher.findInProject(myElement, name))
+        addAll(step("PhelLocalScopeResolver") { listOfNotNull(PhelLocalScopeResolver.resolve(myElement, name)) })
+        addAll(step("file definitions") { context.definitionsNamed(name) + context.parametersNamed(name) })
+        addAll(step("project definitions") { context.projectDefinitionsNamed(name) })
 
         // The standard library is only consulted when nothing else matched — `map`, `filter` and the
         // rest of phel\core would otherwise shadow a project's own definitions.
         if (results.isEmpty()) {
-            addAll(PhelDefinitionFinder.collectVendorDefinitions(myElement.project, "core", name))
+            addAll(step("core definitions") { context.coreDefinitionsNamed(name) })
         }
 
-        // PHP interop is the last fall-through: a no-op when the PHP plugin isn't installed, and kept
-        // off the hot path for ordinary Phel symbols.
+        // PHP interop is the last fall-through, kept off the hot path for ordinary Phel symbols. Without
+        // the PHP plugin it reads the Composer autoload maps, and finds nothing in a project without them.
         if (results.isEmpty()) {
             addAll(resolvePhpTargets())
         }
@@ -121,13 +129,14 @@ class PhelReference @JvmOverloads constructor(
     }
 
     /** Prefer the specific member (`Class.` -> `__construct`) so go-to-def lands on the precise node. */
-    private fun resolvePhpTargets(): List<PsiElement> {
+    private fun resolvePhpTargets(): List<PsiElement> = step("PhpClassResolver") {
         val members = PhpClassResolver.resolveAsPhpMember(myElement)
-        if (members.isNotEmpty()) return members
-
-        return PhpClassResolver.resolveAsPhpClass(myElement)
+        members.ifEmpty { PhpClassResolver.resolveAsPhpClass(myElement) }
     }
 
+    private inline fun <T> step(name: String, block: () -> T): T =
+        PhelAnalysisProfiler.measure(Category.RESOLVE_STEP, name, block)
+
     override fun resolve(): PsiElement? {
         val results = multiResolve(false)
 
@@ -0,0 +1,54 @@
+package org.phellang.language.psi.references
+
+import com.intellij.openapi.application.ReadAction
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.psi.PsiReference
+import com.intellij.psi.search.PsiSearchScopeUtil
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.util.Processor
+import com.intellij.util.QueryExecutor
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.utils.PhelPsiUtils
+
+/**
+ * `ReferencesSearch` for a Phel definition — what Safe Delete, rename and Find Usages call.
+ *
+ * Only the files [PhelDefinitionSearchScope] admits are examined, and in each only the symbols
+ * spelled the way that file can reach the definition: `u/helper` where the namespace is required
+ * `:as u`, the bare `helper` only where it is `:refer`red or declared. Everything else is skipped
+ * before it is resolved, which is where the generic word-index search spent its time — every
+ * `run` in the project was resolved to learn it meant a different `run`.
+ *
+ * Registered first, it answers the search for a narrowable definition on its own: returning false
+ * stops the executors after it, so the platform's word searcher never queues the name. Any other
+ * element is left to them.
+ */
+class PhelReferencesSearcher : QueryExecutor<PsiReference, ReferencesSearch.SearchParameters> {
+
+    override fun execute(queryParameters: ReferencesSearch.SearchParameters, consumer: Processor<in PsiReference>): Boolean {
+        val target = queryParameters.elementToSearch as? PhelSymbol ?: return true
+        val search = ReadAction.compute<PhelDefinitionSearchScope.Search?, RuntimeException> {
+            if (target.isValid) PhelDefinitionSearchScope.searchOf(target) else null
+        } ?: return true
+
+        for (file in search.files) {
+            ProgressManager.checkCanceled()
+            val references = ReadAction.compute<List<PsiReference>, RuntimeException> {
+                if (!file.isValid || !PsiSearchScopeUtil.isInScope(queryParameters.effectiveSearchScope, file)) {
+                    return@compute emptyList()
+                }
+                val spellings = PhelDefinitionSearchScope.spellingsIn(file, search.definition)
+                if (spellings.isEmpty()) return@compute emptyList()
+
+                PhelPsiUtils.findCodeChildrenOfType(file, PhelSymbol::class.java).mapNotNull { symbol ->
+                    if (symbol === target || symbol.text !in spellings) return@mapNotNull null
+                    symbol.reference?.takeIf { it.isReferenceTo(target) }
+                }
+            }
+            for (reference in references) {
+                if (!consumer.process(reference)) return false
+            }
+        }
+        return false
+    }
+}
@@ -9,6 +9,7 @@ import org.phellang.language.psi.PhelForm
 import org.phellang.language.psi.PhelList
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.PhelVec
+import org.phellang.language.psi.analysis.PhelDefinitionPrivacy
 import org.phellang.language.psi.analysis.PhelSymbolAnalyzer
 import org.phellang.language.psi.files.PhelFile
 import org.phellang.language.psi.utils.PhelPsiUtils
@@ -19,7 +20,8 @@ import org.phellang.language.psi.utils.SymbolCategory
  * clicked symbol *is* the definition.
  *
  * A local binding (a parameter or `let` name) can only be used inside the form that introduces it,
- * so its search stops there. Only top-level definitions justify the project-wide scan.
+ * so its search stops there, and a private definition only inside its own file. Only public
+ * top-level definitions justify the project-wide scan.
  */
 internal object PhelUsageFinder {
 
@@ -32,7 +34,7 @@ internal object PhelUsageFinder {
         val usages = mutableListOf<PsiElement>()
         usages += findInCurrentFile(symbol, symbolName)
 
-        if (!isLocalBinding(symbol)) {
+        if (!isLocalBinding(symbol) && !PhelDefinitionPrivacy.isPrivateDefinitionName(symbol)) {
             usages += findAcrossProject(symbol, symbolName)
         }
 
@@ -6,12 +6,17 @@ import org.phellang.language.psi.PhelInteropShorthands
 import org.phellang.language.psi.PhelNamespaceUtils
 import org.phellang.language.psi.PhelSymbol
 import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.references.composer.ComposerClassIndex
 
 /**
  * Resolves a Phel interop symbol to its underlying PHP class — or a specific member — so
  * go-to-definition jumps into the PHP source. This is the mapping half: turning a Phel symbol into
  * the PHP FQN and member name to look up. The reflective lookup itself lives in [PhpIndexBridge],
- * which also isolates the fact that the PHP plugin is an optional, reflectively-loaded dependency.
+ * which also isolates the fact that the PHP plugin is an optional, reflectively-loaded dependency;
+ * its answers are remembered per project by [PhpMemberCache].
+ *
+ * Without the PHP plugin the same questions go to [ComposerClassIndex], which finds the class
+ * through the project's Composer autoload maps and reads its declaration straight from the file.
  */
 object PhpClassResolver {
     /**
@@ -29,40 +34,49 @@ object PhpClassResolver {
     )
 
     fun resolveAsPhpClass(symbol: PhelSymbol): List<PsiElement> {
-        if (!PhpIndexBridge.isAvailable()) return emptyList()
         val fqn = computeTargetFqn(symbol) ?: return emptyList()
-        return PhpIndexBridge.findClassesByFqn(symbol.project, fqn)
+        if (!PhpIndexBridge.isAvailable()) {
+            return listOfNotNull(ComposerClassIndex.getInstance(symbol.project).findClass(fqn)?.target)
+        }
+        return PhpMemberCache.entry(symbol.project, fqn).classes
     }
 
     /**
      * Resolves to a specific member (`Foo/method`, `Foo/CONST`, `\Foo\Bar/m`) or to the constructor
-     * when the symbol is the `(Class. ...)` head. Empty when the PHP plugin isn't available or the
-     * member can't be found — callers should then try [resolveAsPhpClass] for the class-level fallback.
+     * when the symbol is the `(Class. ...)` head. Empty when the member can't be found — callers
+     * should then try [resolveAsPhpClass] for the class-level fallback.
      */
     fun resolveAsPhpMember(symbol: PhelSymbol): List<PsiElement> {
-        if (!PhpIndexBridge.isAvailable()) return emptyList()
-
         val text = symbol.text ?: return emptyList()
         val classFqn = computeTargetFqn(symbol) ?: return emptyList()
         val memberName = extractMemberName(text) ?: return emptyList()
 
-        return PhpIndexBridge.findClassesByFqn(symbol.project, classFqn)
-            .flatMap { PhpIndexBridge.findMemberInClass(it, memberName) }
+        if (!PhpIndexBridge.isAvailable()) {
+            return ComposerClassIndex.getInstance(symbol.project).findClass(classFqn)?.membersNamed(memberName).orEmpty()
+        }
+        return PhpMemberCache.entry(symbol.project, classFqn).declarationsNamed(memberName)
     }
 
     /**
      * The public, statically reachable members of [classFqn] for completion, inherited members
-     * included, deduplicated by kind+name. Empty when the PHP plugin isn't available.
+     * included, deduplicated by kind+name. Without the PHP plugin only the members the class
+     * declares itself are listed, as read from its file by [ComposerClassIndex].
      */
     fun listMembers(project: Project, classFqn: String): List<PhpMemberInfo> {
-        if (!PhpIndexBridge.isAvailable()) return emptyList()
+        if (!PhpIndexBridge.isAvailable()) {
+            return ComposerClassIndex.getInstance(project).findClass(classFqn)?.publicMembers().orEmpty()
+        }
 
-        val seen = mutableSetOf<String>()
-        return PhpIndexBridge.findClassesByFqn(project, classFqn)
-            .flatMap { PhpIndexBridge.collectMembers(it) }
-            .filter { seen.add("${it.kind}:${it.name}") }
+        return PhpMemberCache.entry(project, classFqn).publicMembers
     }
 
+    /**
+     * The PHP class names to offer in completion, without a leading `\`. They come from the Composer
+     * autoload maps whether or not the PHP plugin is installed: what Composer can load is what a
+     * Phel program can name, and listing them needs no index.
+     */
+    fun listClassNames(project: Project): List<String> = ComposerClassIndex.getInstance(project).classNames()
+
     // ──────────────────────────────────────────────────────────────────────────
     // FQN derivation (shared)
     // ──────────────────────────────────────────────────────────────────────────
@@ -7,7 +7,12 @@ import com.intellij.openapi.project.Project
 import com.intellij.psi.PsiElement
 import org.phellang.language.psi.references.PhpClassResolver.MemberKind
 import org.phellang.language.psi.references.PhpClassResolver.PhpMemberInfo
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
 import java.lang.reflect.InvocationTargetException
+import java.util.Optional
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * The reflective bridge to the JetBrains PHP plugin. Everything that touches `com.jetbrains.php.*`
@@ -17,22 +22,43 @@ import java.lang.reflect.InvocationTargetException
  * just because PHP isn't on the classpath — so `PhpIndex` and every method on the objects it returns
  * are reached reflectively. When the plugin is absent, or its API isn't the shape we expect, every
  * call degrades to "nothing found" and lets the Phel-only resolution stay authoritative.
+ *
+ * Reflection is paid once per method, not once per call. Every `getMethod` lookup used to run on
+ * each highlighted or completed interop symbol; the `PhpIndex` entry points are now unreflected into
+ * [MethodHandle]s when the class is first loaded, and each accessor on the PHP plugin's PSI classes
+ * (`getName`, `getMethods`, …) the first time it is read from a given class. What the lookups
+ * *return* is cached per project by [PhpMemberCache].
  */
 internal object PhpIndexBridge {
     private val LOG = Logger.getInstance(PhpIndexBridge::class.java)
 
     const val CONSTRUCTOR_NAME = "__construct"
 
+    /** `PhpIndex.getInstance(Project)` and `PhpIndex.getAnyByFQN(String)`, adapted to `Object`. */
+    private class PhpIndexHandles(val getInstance: MethodHandle, val getAnyByFqn: MethodHandle)
+
     @Volatile
-    private var phpIndexClass: Class<*>? = null
+    private var phpIndexHandles: PhpIndexHandles? = null
+
+    /**
+     * Zero-argument accessors by name, per PHP PSI class. A [ClassValue] rather than a map keyed on
+     * the class, so an unloaded PHP plugin's classes are not pinned by this cache. A method the class
+     * does not have is remembered as empty, so the failed lookup is not repeated either.
+     */
+    private val ACCESSORS = object : ClassValue<ConcurrentHashMap<String, Optional<MethodHandle>>>() {
+        override fun computeValue(type: Class<*>) = ConcurrentHashMap<String, Optional<MethodHandle>>()
+    }
+
+    /** Every handle is adapted to `(Object)Object` so call sites invoke it without knowing its real type. */
+    private val UNARY_OBJECT = MethodType.methodType(Any::class.java, Any::class.java)
 
     @Volatile
     private var checkedForPhpPlugin: Boolean = false
 
     /** False when the PHP plugin isn't installed — callers should then return no PHP targets. */
     fun isAvailable(): Boolean {
-        if (!checkedForPhpPlugin) loadPhpIndexClass()
-        return phpIndexClass != null
+        if (!checkedForPhpPlugin) loadPhpIndex()
+        return phpIndexHandles != null
     }
 
     /**
@@ -41,13 +67,10 @@ internal object PhpIndexBridge {
      * surprise and is dropped, consistent with the bridge's degrade-to-nothing contract.
      */
     fun findClassesByFqn(project: Project, fqn: String): List<PsiElement> {
-        val phpIndex = phpIndexClass ?: return emptyList()
+        val handles = phpIndexHandles ?: return emptyList()
         return try {
-            val instance = phpIndex.getMethod("getInstance", Project::class.java).invoke(null, project)
-            // `getAnyByFQN` covers interfaces such as `PersistentMapInterface`, which
-            // `getClassesByFQN` would miss.
-            val getByFqn = phpIndex.getMethod("getAnyByFQN", String::class.java)
-            val phpTypes = getByFqn.invoke(instance, fqn) as? Collection<*> ?: return emptyList()
+            val instance: Any? = handles.getInstance.invoke(project)
+            val phpTypes = handles.getAnyByFqn.invoke(instance, fqn) as? Collection<*> ?: return emptyList()
             phpTypes.filterIsInstance<PsiElement>()
         } catch (t: Throwable) {
             rethrowIfPlatformControlFlow(t)
@@ -105,6 +128,8 @@ internal object PhpIndexBridge {
      * invisible to every PCE-aware catch upstream. Swallowing it would break read-action
      * cancellation (this runs under `PhelReference.multiResolve`). Rethrow anything the platform
      * owns; everything else is a genuine "the PHP plugin's API is not the shape we expect".
+     *
+     * A [MethodHandle] throws the callee's exception unwrapped, so both shapes arrive here.
      */
     fun rethrowIfPlatformControlFlow(t: Throwable) {
         val cause = (t as? InvocationTargetException)?.targetException ?: t
@@ -114,48 +139,25 @@ internal object PhpIndexBridge {
     }
 
     private fun membersOf(phpClass: PsiElement, accessor: String): Collection<*> =
-        tryInvokeCollection(phpClass::class.java, phpClass, accessor) ?: emptyList<Any>()
+        readProperty(phpClass, accessor) as? Collection<*> ?: emptyList<Any>()
 
     private fun methodSignature(method: Any?, name: String): String {
-        if (method == null) return "$name(...)"
-        return try {
-            val params = method.javaClass.getMethod("getParameters").invoke(method) as? Array<*>
-                ?: return "$name(...)"
-            val rendered = params.joinToString(", ") { p -> readStringProperty(p, "getName")?.let { "$$it" } ?: "?" }
-            "$name($rendered)"
-        } catch (t: Throwable) {
-            rethrowIfPlatformControlFlow(t)
-            LOG.warn("Could not read parameters of PHP method '$name'", t)
-            "$name(...)"
-        }
+        val params = readProperty(method, "getParameters") as? Array<*> ?: return "$name(...)"
+        val rendered = params.joinToString(", ") { p -> readStringProperty(p, "getName")?.let { "$$it" } ?: "?" }
+        return "$name($rendered)"
     }
 
-    /** Anything not explicitly private/protected is callable from Phel. */
+    /**
+     * Anything not explicitly private/protected is callable from Phel. Fails open: if the modifier
+     * API ever changes shape, offering a member we can't classify beats hiding every member of the
+     * class — the missing accessor is logged once, when its lookup fails.
+     */
     private fun isAccessible(member: Any?): Boolean {
         if (member == null) return false
-        return try {
-            val modifier = member.javaClass.getMethod("getModifier").invoke(member) ?: return true
-            val access = modifier.javaClass.getMethod("getAccess").invoke(modifier) ?: return true
-            val name = (access.javaClass.getMethod("name").invoke(access) as? String)?.uppercase()
-            name == null || name == "PUBLIC"
-        } catch (t: Throwable) {
-            rethrowIfPlatformControlFlow(t)
-            // Fail open: if the modifier API ever changes shape, offering a member we can't classify
-            // beats hiding every member of the class.
-            LOG.warn("Could not read PHP member accessibility; treating it as public", t)
-            true
-        }
-    }
-
-    private fun tryInvokeCollection(cls: Class<*>, target: Any, name: String): Collection<*>? {
-        return try {
-            val m = cls.methods.firstOrNull { it.name == name && it.parameterCount == 0 } ?: return null
-            m.invoke(target) as? Collection<*>
-        } catch (t: Throwable) {
-            rethrowIfPlatformControlFlow(t)
-            LOG.warn("Reflective call to PHP '$name()' failed", t)
-            null
-        }
+        val modifier = readProperty(member, "getModifier") ?: return true
+        val access = readProperty(modifier, "getAccess") ?: return true
+        val name = (readProperty(access, "name") as? String)?.uppercase()
+        return name == null || name == "PUBLIC"
     }
 
     private fun readStringProperty(target: Any?, methodName: String): String? =
@@ -164,10 +166,12 @@ internal object PhpIndexBridge {
     private fun readBoolProperty(target: Any?, methodName: String): Boolean? =
         readProperty(target, methodName) as? Boolean
 
-    private fun readProperty(target: Any?, methodName: String): Any? {
+    /** Calls [target]'s public zero-argument [methodName], or null when it has none or the call fails. */
+    fun readProperty(target: Any?, methodName: String): Any? {
         if (target == null) return null
+        val accessor = accessorFor(target.javaClass, methodName) ?: return null
         return try {
-            target.javaClass.getMethod(methodName).invoke(target)
+            accessor.invoke(target)
         } catch (t: Throwable) {
             rethrowIfPlatformControlFlow(t)
             LOG.warn("Reflective read of PHP '$methodName()' failed", t)
@@ -175,12 +179,35 @@ internal object PhpIndexBridge {
         }
     }
 
-    private fun loadPhpIndexClass() {
+    private fun accessorFor(type: Class<*>, methodName: String): MethodHandle? =
+        ACCESSORS.get(type).computeIfAbsent(methodName) { Optional.ofNullable(unreflectAccessor(type, it)) }
+            .orElse(null)
+
+    private fun unreflectAccessor(type: Class<*>, methodName: String): MethodHandle? {
+        return try {
+            MethodHandles.publicLookup().unreflect(type.getMethod(methodName)).asType(UNARY_OBJECT)
+        } catch (t: Throwable) {
+            rethrowIfPlatformControlFlow(t)
+            LOG.warn("PHP class ${type.name} has no accessible '$methodName()'", t)
+            null
+        }
+    }
+
+    private fun loadPhpIndex() {
         synchronized(this) {
             if (checkedForPhpPlugin) return
             checkedForPhpPlugin = true
-            phpIndexClass = try {
-                Class.forName("com.jetbrains.php.PhpIndex", false, javaClass.classLoader)
+            phpIndexHandles = try {
+                val phpIndex = Class.forName("com.jetbrains.php.PhpIndex", false, javaClass.classLoader)
+                val lookup = MethodHandles.publicLookup()
+                PhpIndexHandles(
+                    getInstance = lookup.unreflect(phpIndex.getMethod("getInstance", Project::class.java))
+                        .asType(UNARY_OBJECT),
+                    // `getAnyByFQN` covers interfaces such as `PersistentMapInterface`, which
+                    // `getClassesByFQN` would miss.
+                    getAnyByFqn = lookup.unreflect(phpIndex.getMethod("getAnyByFQN", String::class.java))
+                        .asType(MethodType.methodType(Any::class.java, Any::class.java, Any::class.java)),
+                )
             } catch (_: ClassNotFoundException) {
                 null
             } catch (t: Throwable) {
@@ -0,0 +1,82 @@
+package org.phellang.language.psi.references
+
+import com.intellij.lang.Language
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.roots.ProjectRootModificationTracker
+import com.intellij.openapi.util.Key
+import com.intellij.openapi.util.ModificationTracker
+import com.intellij.psi.PsiElement
+import com.intellij.psi.util.CachedValue
+import com.intellij.psi.util.CachedValueProvider
+import com.intellij.psi.util.CachedValuesManager
+import com.intellij.psi.util.PsiModificationTracker
+import org.phellang.language.psi.references.PhpClassResolver.PhpMemberInfo
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * What the PHP index says about each class FQN, remembered per project until PHP code changes.
+ *
+ * [PhpClassResolver] used to ask [PhpIndexBridge] afresh for every `php/` interop symbol or
+ * `\Fqn\Class` it was handed — while highlighting, again while completing, and once per member of
+ * the class while listing members. An interop-heavy file asks about the same handful of classes
+ * hundreds of times, and each answer is a stub-index query plus a reflective walk of the result.
+ *
+ * Invalidated by the PHP language's own modification tracker, so editing Phel code (which cannot
+ * change a PHP class) leaves it warm, and by root changes, which is how a `composer install` that
+ * swaps the vendor tree reaches the index. Without the PHP plugin there is nothing to cache; the
+ * bridge answers "nothing" before this is consulted.
+ */
+internal object PhpMemberCache {
+
+    /** One class FQN's declarations and the members they expose, each read at most once. */
+    class PhpClassEntry(val classes: List<PsiElement>) {
+        /** The public members offered for completion, de-duplicated by kind and name. */
+        val publicMembers: List<PhpMemberInfo> by lazy {
+            val seen = mutableSetOf<String>()
+            classes.flatMap { PhpIndexBridge.collectMembers(it) }.filter { seen.add("${it.kind}:${it.name}") }
+        }
+
+        private val declarationsByName = ConcurrentHashMap<String, List<PsiElement>>()
+
+        /** Every declaration of [memberName] on the class, private ones included — what resolution wants. */
+        fun declarationsNamed(memberName: String): List<PsiElement> =
+            declarationsByName.getOrPut(memberName) {
+                classes.flatMap { PhpIndexBridge.findMemberInClass(it, memberName) }
+            }
+    }
+
+    private val ENTRIES_KEY: Key<CachedValue<ConcurrentHashMap<String, PhpClassEntry>>> =
+        Key.create("phel.php.classEntries")
+
+    /**
+     * The entry for [fqn], loading it on first use. A lookup cut short by cancellation or dumb mode
+     * throws out of [PhpIndexBridge.findClassesByFqn] before anything is stored, so a partial answer
+     * is never cached.
+     */
+    fun entry(project: Project, fqn: String): PhpClassEntry {
+        val entries = entries(project)
+        entries[fqn]?.let { return it }
+
+        // Loaded outside the map's lock: the lookup is a stub-index query that may run for a while.
+        val loaded = PhpClassEntry(PhpIndexBridge.findClassesByFqn(project, fqn))
+        return entries.putIfAbsent(fqn, loaded) ?: loaded
+    }
+
+    private fun entries(project: Project): ConcurrentHashMap<String, PhpClassEntry> =
+        CachedValuesManager.getManager(project).getCachedValue(project, ENTRIES_KEY, {
+            CachedValueProvider.Result.create(
+                ConcurrentHashMap<String, PhpClassEntry>(),
+                phpModificationTracker(project),
+                ProjectRootModificationTracker.getInstance(project),
+            )
+        }, false)
+
+    /** PHP PSI changes only, when the PHP language is loaded; any PSI change otherwise. */
+    private fun phpModificationTracker(project: Project): ModificationTracker {
+        val tracker = PsiModificationTracker.getInstance(project)
+        val php = Language.findLanguageByID(PHP_LANGUAGE_ID) ?: return tracker
+        return tracker.forLanguage(php)
+    }
+
+    private const val PHP_LANGUAGE_ID = "PHP"
+}
@@ -0,0 +1,63 @@
+package org.phellang.language.psi.references.composer
+
+import com.intellij.openapi.util.io.FileUtil
+
+/**
+ * Reads the two autoload maps Composer generates under `vendor/composer/`:
+ *
+ * * `autoload_classmap.php` — `'App\\Service\\Foo' => $baseDir . '/src/Service/Foo.php',`
+ * * `autoload_psr4.php`     — `'App\\' => array($baseDir . '/src'),`
+ *
+ * Composer writes both in one fixed shape, one entry per line, with every path an expression over
+ * `$vendorDir`, `$baseDir` or `__DIR__`. Matching that shape is enough; evaluating PHP is not needed,
+ * and an entry in any other shape is skipped rather than guessed at.
+ */
+internal object ComposerAutoloadReader {
+
+    /** `'key' => value` — the key a single-quoted PHP string, the value the rest of the line. */
+    private val ENTRY = Regex("""^\s*'((?:[^'\\]|\\.)*)'\s*=>\s*(.+?),?\s*$""")
+
+    /** One `$vendorDir . '/path'` operand of a value. */
+    private val PATH = Regex("""(\${'$'}vendorDir|\${'$'}baseDir|__DIR__)\s*\.\s*'((?:[^'\\]|\\.)*)'""")
+
+    /** The directories an autoload file's path expressions are relative to. */
+    data class Roots(val vendorDir: String, val baseDir: String, val composerDir: String)
+
+    /** Class FQN (no leading `\`) -> absolute path of the file declaring it. */
+    fun readClassmap(text: String, roots: Roots): Map<String, String> {
+        val classmap = linkedMapOf<String, String>()
+        forEachEntry(text) { key, value ->
+            paths(value, roots).firstOrNull()?.let { classmap[key] = it }
+        }
+        return classmap
+    }
+
+    /** Namespace prefix (with its trailing `\`) -> the directories it maps to, in Composer's order. */
+    fun readPsr4(text: String, roots: Roots): Map<String, List<String>> {
+        val prefixes = linkedMapOf<String, List<String>>()
+        forEachEntry(text) { key, value ->
+            paths(value, roots).takeIf { it.isNotEmpty() }?.let { prefixes[key] = it }
+        }
+        return prefixes
+    }
+
+    private inline fun forEachEntry(text: String, action: (key: String, value: String) -> Unit) {
+        for (line in text.lineSequence()) {
+            val match = ENTRY.matchEntire(line) ?: continue
+            action(unescape(match.groupValues[1]), match.groupValues[2])
+        }
+    }
+
+    private fun paths(value: String, roots: Roots): List<String> =
+        PATH.findAll(value).map { match ->
+            val root = when (match.groupValues[1]) {
+                "\$vendorDir" -> roots.vendorDir
+                "\$baseDir" -> roots.baseDir
+                else -> roots.composerDir
+            }
+            FileUtil.toCanonicalPath(root + unescape(match.groupValues[2]))
+        }.toList()
+
+    /** A single-quoted PHP string knows only two escapes: `\\` and `\'`. */
+    private fun unescape(literal: String): String = literal.replace("\\\\", "\\").replace("\\'", "'")
+}
@@ -0,0 +1,233 @@
+package org.phellang.language.psi.references.composer
+
+import com.intellij.openapi.Disposable
+import com.intellij.openapi.components.Service
+import com.intellij.openapi.components.service
+import com.intellij.openapi.progress.ProgressManager
+import com.intellij.openapi.project.Project
+import com.intellij.openapi.util.SimpleModificationTracker
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.vfs.VfsUtilCore
+import com.intellij.openapi.vfs.VirtualFile
+import com.intellij.openapi.vfs.VirtualFileManager
+import com.intellij.openapi.vfs.VirtualFileSystem
+import com.intellij.openapi.vfs.newvfs.BulkFileListener
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiManager
+import org.phellang.language.psi.PhelVendorUtils
+import org.phellang.language.psi.references.PhpClassResolver.MemberKind
+import org.phellang.language.psi.references.PhpClassResolver.PhpMemberInfo
+import org.phellang.language.psi.references.PhpIndexBridge
+import org.phellang.language.psi.references.composer.PhpDeclarationScanner.PhpScannedClass
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Finds PHP classes through the project's Composer autoload maps, for when the PHP plugin — and
+ * with it `PhpIndex` — is not installed, as in IntelliJ IDEA Community.
+ *
+ * Composer has already answered "which file declares this class" in `vendor/composer/`: the
+ * classmap names the file outright, and a PSR-4 prefix turns the rest of the name into a path.
+ * That file is then read by [PhpDeclarationScanner] for the class and its members. Nothing is
+ * fetched and nothing is built up front; a class costs one map lookup and, the first time its file
+ * is seen, one scan.
+ *
+ * Both caches are keyed on modification stamps, so a `composer dump-autoload` or an edit to a PHP
+ * file is picked up on the next lookup. The class-name list is also kept until a file is created,
+ * deleted, moved or renamed under a PSR-4 directory, which a VFS listener watches for.
+ */
+@Service(Service.Level.PROJECT)
+internal class ComposerClassIndex(private val project: Project) : Disposable {
+
+    /** One PHP declaration in one file, and what interop needs from it. */
+    class ComposerClass(private val file: PsiFile, private val declaration: PhpScannedClass) {
+
+        val target: PhpDeclarationTarget
+            get() = PhpDeclarationTarget(file, declaration.fqn.substringAfterLast('\\'), declaration.offset)
+
+        /** Every declaration of [memberName] on the class itself, private ones included. */
+        fun membersNamed(memberName: String): List<PhpDeclarationTarget> =
+            declaration.members.filter { it.name == memberName }.map { PhpDeclarationTarget(file, it.name, it.offset) }
+
+        /**
+         * The public members declared on the class itself, constructor excluded. Inherited members are
+         * not included: following `extends` would mean resolving and scanning the parent as well, which
+         * is the PHP plugin's job when it is installed.
+         */
+        fun publicMembers(): List<PhpMemberInfo> =
+            declaration.members.filter { it.isPublic && it.name != PhpIndexBridge.CONSTRUCTOR_NAME }.map { member ->
+                val signature = when (member.kind) {
+                    MemberKind.METHOD -> "${member.name}(${member.parameters.joinToString(", ") { "$$it" }})"
+                    else -> member.name
+                }
+                PhpMemberInfo(
+                    member.name,
+                    member.kind,
+                    member.isStatic,
+                    signature,
+                    PhpDeclarationTarget(file, member.name, member.offset)
+                )
+            }
+    }
+
+    /** The parsed autoload maps, and the file system their paths live on. */
+    private class Autoload(
+        val key: String,
+        val fileSystem: VirtualFileSystem,
+        val classmap: Map<String, String>,
+        val psr4: Map<String, List<String>>,
+    ) {
+        /** Longest prefix first, as Composer's own loader tries them. */
+        private val prefixesByLength = psr4.keys.sortedByDescending { it.length }
+
+        fun candidatePaths(fqn: String): Sequence<String> = sequence {
+            classmap[fqn]?.let { yield(it) }
+            for (prefix in prefixesByLength) {
+                if (!fqn.startsWith(prefix)) continue
+                val relative = fqn.removePrefix(prefix).replace('\\', '/')
+                psr4.getValue(prefix).forEach { yield("$it/$relative.php") }
+            }
+        }
+    }
+
+    private class ScannedFile(val stamp: Long, val classes: List<PhpScannedClass>)
+
+    /** The class names [classNames] listed, and the autoload maps and PSR-4 directories they were listed from. */
+    private class ClassNames(val autoloadKey: String, val structureStamp: Long, val names: List<String>)
+
+    @Volatile
+    private var autoload: Autoload? = null
+
+    private val scannedFiles = ConcurrentHashMap<String, ScannedFile>()
+
+    @Volatile
+    private var classNames: ClassNames? = null
+
+    /** Bumped when a file appears, goes or changes name under a PSR-4 directory. */
+    private val psr4Structure = SimpleModificationTracker()
+
+    init {
+        project.messageBus.connect(this).subscribe(
+            VirtualFileManager.VFS_CHANGES,
+            object : BulkFileListener {
+                override fun after(events: List<VFileEvent>) {
+                    val directories = autoload?.psr4?.values?.flatten() ?: return
+                    if (events.any { touchesStructureUnder(it, directories) }) psr4Structure.incModificationCount()
+                }
+            },
+        )
+    }
+
+    override fun dispose() = Unit
+
+    /** The declaration of [fqn] (leading `\` optional), or null when Composer does not know it. */
+    fun findClass(fqn: String): ComposerClass? {
+        val name = fqn.trimStart('\\')
+        if (name.isEmpty()) return null
+        val autoload = autoload() ?: return null
+
+        for (path in autoload.candidatePaths(name)) {
+            ProgressManager.checkCanceled()
+            val file = autoload.fileSystem.findFileByPath(path) ?: continue
+            val psiFile = PsiManager.getInstance(project).findFile(file) ?: continue
+            val declaration = declarationsIn(psiFile).firstOrNull { it.fqn.equals(name, ignoreCase = true) }
+            if (declaration != null) return ComposerClass(psiFile, declaration)
+        }
+        return null
+    }
+
+    /**
+     * Every class name Composer can autoload, without a leading `\`, for completion: the classmap's
+     * entries and, under each PSR-4 prefix, the name each `.php` file's path spells. The files are
+     * not scanned, so a PSR-4 name is what Composer would look for, not a checked declaration.
+     *
+     * Listed again only when the autoload maps change or a file is created, deleted, moved or
+     * renamed under one of the PSR-4 directories; changes anywhere else leave the list alone.
+     */
+    fun classNames(): List<String> {
+        val autoload = autoload() ?: return emptyList()
+        val structureStamp = psr4Structure.modificationCount
+        classNames?.takeIf { it.autoloadKey == autoload.key && it.structureStamp == structureStamp }?.let { return it.names }
+
+        val names = LinkedHashSet(autoload.classmap.keys)
+        for ((prefix, directories) in autoload.psr4) {
+            for (path in directories) {
+                val root = autoload.fileSystem.findFileByPath(path) ?: continue
+                VfsUtilCore.iterateChildrenRecursively(root, null) { file ->
+                    ProgressManager.checkCanceled()
+                    if (!file.isDirectory && file.extension == "php" && file.nameWithoutExtension.all(::isNameChar)) {
+                        val relative = VfsUtilCore.getRelativePath(file, root)?.removeSuffix(".php")
+                        if (relative != null) names += prefix + relative.replace('/', '\\')
+                    }
+                    true
+                }
+            }
+        }
+
+        val listed = names.toList()
+        classNames = ClassNames(autoload.key, structureStamp, listed)
+        return listed
+    }
+
+    private fun autoload(): Autoload? {
+        val vendor = PhelVendorUtils.findVendorFolder(project) ?: return null
+        val composerDir = vendor.findChild("composer") ?: return null
+        val classmapFile = composerDir.findChild(CLASSMAP_FILE)
+        val psr4File = composerDir.findChild(PSR4_FILE)
+        if (classmapFile == null && psr4File == null) return null
+
+        val key = "${vendor.path}:${classmapFile?.modificationStamp}:${psr4File?.modificationStamp}"
+        autoload?.takeIf { it.key == key }?.let { return it }
+
+        val roots = ComposerAutoloadReader.Roots(
+            vendorDir = vendor.path,
+            baseDir = vendor.parent?.path ?: vendor.path,
+            composerDir = composerDir.path,
+        )
+        val loaded = Autoload(
+            key,
+            vendor.fileSystem,
+            classmapFile?.let { ComposerAutoloadReader.readClassmap(loadText(it), roots) }.orEmpty(),
+            psr4File?.let { ComposerAutoloadReader.readPsr4(loadText(it), roots) }.orEmpty(),
+        )
+        autoload = loaded
+        return loaded
+    }
+
+    private fun declarationsIn(psiFile: PsiFile): List<PhpScannedClass> {
+        val path = psiFile.virtualFile?.path ?: return emptyList()
+        val stamp = psiFile.modificationStamp
+        scannedFiles[path]?.takeIf { it.stamp == stamp }?.let { return it.classes }
+
+        val classes = PhpDeclarationScanner.scan(psiFile.viewProvider.contents)
+        scannedFiles[path] = ScannedFile(stamp, classes)
+        return classes
+    }
+
+    /** Whether [event] adds, removes or renames a file under one of [directories]; content edits do not. */
+    private fun touchesStructureUnder(event: VFileEvent, directories: List<String>): Boolean {
+        if (event is VFileContentChangeEvent) return false
+        if (event is VFilePropertyChangeEvent && event.propertyName != VirtualFile.PROP_NAME) return false
+
+        val paths = when (event) {
+            is VFileMoveEvent -> listOf(event.path, event.oldPath)
+            is VFilePropertyChangeEvent -> listOf(event.path, event.oldPath)
+            else -> listOf(event.path)
+        }
+        return paths.any { path -> directories.any { FileUtil.isAncestor(it, path, false) } }
+    }
+
+    private fun loadText(file: VirtualFile): String = VfsUtilCore.loadText(file)
+
+    private fun isNameChar(char: Char): Boolean = char.isLetterOrDigit() || char == '_'
+
+    companion object {
+        private const val CLASSMAP_FILE = "autoload_classmap.php"
+        private const val PSR4_FILE = "autoload_psr4.php"
+
+        fun getInstance(project: Project): ComposerClassIndex = project.service()
+    }
+}
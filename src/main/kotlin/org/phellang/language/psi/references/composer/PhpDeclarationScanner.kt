@@ -0,0 +1,289 @@
+package org.phellang.language.psi.references.composer
+
+import org.phellang.language.psi.references.PhpClassResolver.MemberKind
+
+/**
+ * Finds the classes, interfaces, traits and enums a PHP source file declares, and their methods and
+ * constants, without a PHP parser.
+ *
+ * Only what interop needs is read: the namespace, each class-like name, and the `function` and
+ * `const` declarations directly inside its body with their modifiers and parameter names. A token
+ * walk is enough for that, provided comments, strings and heredocs are skipped — a `class` inside a
+ * docblock or a string must not declare anything — and `Foo::class`, `new class` and
+ * `$obj->class` are told apart from declarations.
+ *
+ * Pure text in, data out, so it is unit-testable and runs without the PHP plugin.
+ */
+internal object PhpDeclarationScanner {
+
+    data class PhpScannedMember(
+        val name: String,
+        val kind: MemberKind,
+        val isStatic: Boolean,
+        val isPublic: Boolean,
+        val parameters: List<String>,
+        val offset: Int,
+    )
+
+    /** One declaration. [fqn] carries no leading `\`; [offset] is where its name starts. */
+    data class PhpScannedClass(val fqn: String, val offset: Int, val members: List<PhpScannedMember>)
+
+    private val CLASS_LIKE = setOf("class", "interface", "trait", "enum")
+
+    /** Words that may follow `class` without naming it: `new class extends Base { … }`. */
+    private val NOT_A_NAME = setOf("extends", "implements")
+
+    fun scan(text: CharSequence): List<PhpScannedClass> = Scan(text).run()
+
+    private class Token(val text: String, val offset: Int)
+
+    private class OpenClass(val fqn: String, val offset: Int, val bodyDepth: Int) {
+        val members = mutableListOf<PhpScannedMember>()
+    }
+
+    private class Scan(private val text: CharSequence) {
+        private var pos = 0
+        private var namespace = ""
+        private var depth = 0
+        private val result = mutableListOf<PhpScannedClass>()
+        private var pendingClass: Pair<String, Int>? = null
+        private var openClass: OpenClass? = null
+        private val modifiers = mutableListOf<String>()
+
+        /** The token before the current one: `Foo::class` and `$o->class` are not declarations. */
+        private var previous: String? = null
+
+        fun run(): List<PhpScannedClass> {
+            while (true) {
+                val token = next() ?: break
+                handle(token)
+                previous = token.text
+            }
+            openClass?.let { close(it) }
+            return result
+        }
+
+        private fun handle(token: Token) {
+            when (token.text) {
+                "{" -> {
+                    depth++
+                    pendingClass?.let { (fqn, offset) -> openClass = OpenClass(fqn, offset, depth) }
+                    pendingClass = null
+                    modifiers.clear()
+                }
+
+                "}" -> {
+                    val current = openClass
+                    if (current != null && depth == current.bodyDepth) {
+                        close(current)
+                        openClass = null
+                    }
+                    depth--
+                    modifiers.clear()
+                }
+
+                ";" -> modifiers.clear()
+                "namespace" -> if (depth == 0) readNamespace()
+                in CLASS_LIKE -> if (previous != "::" && previous != "->" && previous != "?->") readClassName()
+                "function" -> if (isInClassBody()) readFunction()
+                "const" -> if (isInClassBody()) readConstant()
+                else -> if (isInClassBody() && token.text.firstOrNull()?.isLetter() == true) {
+                    modifiers += token.text.lowercase()
+                }
+            }
+        }
+
+        private fun isInClassBody(): Boolean = openClass?.bodyDepth == depth
+
+        private fun close(current: OpenClass) {
+            result += PhpScannedClass(current.fqn, current.offset, current.members.toList())
+        }
+
+        /** `namespace App\Service;` or `namespace App\Service {` — but not the `namespace\f()` relative call. */
+        private fun readNamespace() {
+            val save = pos
+            if (next()?.text == "\\") {
+                pos = save
+                return
+            }
+            pos = save
+
+            val name = StringBuilder()
+            while (true) {
+                val token = next() ?: break
+                if (token.text == ";" || token.text == "{") {
+                    if (token.text == "{") depth++
+                    break
+                }
+                name.append(token.text)
+            }
+            namespace = name.toString().trim('\\')
+        }
+
+        private fun readClassName() {
+            val save = pos
+            val name = next()
+            if (name == null || !isIdentifier(name.text) || name.text.lowercase() in NOT_A_NAME) {
+                pos = save
+                return
+            }
+            val fqn = if (namespace.isEmpty()) name.text else "$namespace\\${name.text}"
+            pendingClass = fqn to name.offset
+        }
+
+        private fun readFunction() {
+            var name = next() ?: return
+            if (name.text == "&") name = next() ?: return
+            if (!isIdentifier(name.text)) return
+
+            val parameters = readParameters()
+            val current = openClass ?: return
+            current.members += PhpScannedMember(
+                name = name.text,
+                kind = MemberKind.METHOD,
+                isStatic = "static" in modifiers,
+                isPublic = "private" !in modifiers && "protected" !in modifiers,
+                parameters = parameters,
+                offset = name.offset,
+            )
+            modifiers.clear()
+        }
+
+        /** `const A = 1, B = 2;` — every name before an `=` at the top level of the statement. */
+        private fun readConstant() {
+            val current = openClass ?: return
+            val isPublic = "private" !in modifiers && "protected" !in modifiers
+            var last: Token? = null
+            var nesting = 0
+            while (true) {
+                val token = next() ?: return
+                when (token.text) {
+                    "(", "[" -> nesting++
+                    ")", "]" -> nesting--
+                    "=" -> if (nesting == 0) last?.let {
+                        current.members += PhpScannedMember(
+                            name = it.text,
+                            kind = MemberKind.CONSTANT,
+                            isStatic = true,
+                            isPublic = isPublic,
+                            parameters = emptyList(),
+                            offset = it.offset,
+                        )
+                    }
+
+                    ";" -> {
+                        modifiers.clear()
+                        return
+                    }
+                }
+                last = token
+            }
+        }
+
+        /** The `$names` of the parameter list that follows a function name, or none if there is none. */
+        private fun readParameters(): List<String> {
+            val open = next() ?: return emptyList()
+            if (open.text != "(") return emptyList()
+
+            val names = mutableListOf<String>()
+            var parens = 1
+            while (parens > 0) {
+                val token = next() ?: break
+                when {
+                    token.text == "(" -> parens++
+                    token.text == ")" -> parens--
+                    parens == 1 && token.text.startsWith("$") && token.text.length > 1 -> names += token.text.drop(1)
+                }
+            }
+            return names
+        }
+
+        private fun isIdentifier(word: String): Boolean =
+            word.isNotEmpty() && (word[0].isLetter() || word[0] == '_') && word.all { it.isLetterOrDigit() || it == '_' }
+
+        /** The next significant token, skipping whitespace, comments, strings and heredocs. */
+        fun next(): Token? {
+            while (pos < text.length) {
+                val c = text[pos]
+                when {
+                    c.isWhitespace() -> pos++
+                    c == '#' && peek(1) == '[' -> pos += 2 // attribute: its contents are ordinary tokens
+                    c == '#' || (c == '/' && peek(1) == '/') -> skipLine()
+                    c == '/' && peek(1) == '*' -> skipBlockComment()
+                    c == '\'' || c == '"' || c == '`' -> skipQuoted(c)
+                    c == '<' && text.startsWith("<<<", pos) -> skipHeredoc()
+                    c == '<' && text.startsWith("<?php", pos) -> pos += 5
+                    c == '?' && peek(1) == '>' -> pos += 2
+                    c == '$' || c.isLetter() || c == '_' -> return word()
+                    c.isDigit() -> {
+                        while (pos < text.length && (text[pos].isLetterOrDigit() || text[pos] == '.')) pos++
+                    }
+
+                    else -> return symbol()
+                }
+            }
+            return null
+        }
+
+        private fun word(): Token {
+            val start = pos
+            pos++
+            while (pos < text.length && (text[pos].isLetterOrDigit() || text[pos] == '_')) pos++
+            return Token(text.substring(start, pos), start)
+        }
+
+        private fun symbol(): Token {
+            val start = pos
+            for (operator in MULTI_CHAR_OPERATORS) {
+                if (text.startsWith(operator, pos)) {
+                    pos += operator.length
+                    return Token(operator, start)
+                }
+            }
+            pos++
+            return Token(text[start].toString(), start)
+        }
+
+        private fun skipLine() {
+            while (pos < text.length && text[pos] != '\n') {
+                if (text.startsWith("?>", pos)) return
+                pos++
+            }
+        }
+
+        private fun skipBlockComment() {
+            val end = text.indexOf("*/", pos + 2)
+            pos = if (end < 0) text.length else end + 2
+        }
+
+        private fun skipQuoted(quote: Char) {
+            pos++
+            while (pos < text.length && text[pos] != quote) {
+                if (text[pos] == '\\') pos++
+                pos++
+            }
+            pos++
+        }
+
+        /** `<<<EOT`, `<<<"EOT"` and `<<<'EOT'` run to the line whose first word is the label. */
+        private fun skipHeredoc() {
+            pos += 3
+            while (pos < text.length && (text[pos] == ' ' || text[pos] == '"' || text[pos] == '\'')) pos++
+            val labelStart = pos
+            while (pos < text.length && (text[pos].isLetterOrDigit() || text[pos] == '_')) pos++
+            val label = text.substring(labelStart, pos)
+            if (label.isEmpty()) return
+
+            while (pos < text.length) {
+                val lineEnd = text.indexOf('\n', pos).let { if (it < 0) text.length else it }
+                val line = text.subSequence(pos, lineEnd).trimStart()
+                pos = lineEnd + 1
+                if (line.startsWith(label) && line.drop(label.length).firstOrNull()?.isLetterOrDigit() != true) return
+            }
+        }
+
+        private fun peek(ahead: Int): Char? = text.getOrNull(pos + ahead)
+    }
+
+    private val MULTI_CHAR_OPERATORS = listOf("?->", "::", "->")
+}
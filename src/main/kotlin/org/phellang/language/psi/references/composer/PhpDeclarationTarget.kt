@@ -0,0 +1,44 @@
+package org.phellang.language.psi.references.composer
+
+import com.intellij.openapi.fileEditor.OpenFileDescriptor
+import com.intellij.openapi.util.TextRange
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiFile
+import com.intellij.psi.impl.FakePsiElement
+
+/**
+ * A PHP declaration found by [PhpDeclarationScanner], standing in for the PSI element the PHP
+ * plugin would have returned. Without that plugin a `.php` file is plain text, so there is no real
+ * element to point at; this one carries the file and the offset of the declared name, which is all
+ * go-to-definition and the usual navigation popups need.
+ */
+internal class PhpDeclarationTarget(
+    private val file: PsiFile,
+    private val declaredName: String,
+    private val offset: Int,
+) : FakePsiElement() {
+
+    override fun getParent(): PsiElement = file
+
+    override fun getContainingFile(): PsiFile = file
+
+    override fun getName(): String = declaredName
+
+    override fun getTextOffset(): Int = offset
+
+    override fun getTextRange(): TextRange = TextRange.from(offset, declaredName.length)
+
+    override fun isValid(): Boolean = file.isValid
+
+    override fun canNavigate(): Boolean = file.virtualFile != null
+
+    override fun navigate(requestFocus: Boolean) {
+        val virtualFile = file.virtualFile ?: return
+        OpenFileDescriptor(project, virtualFile, offset).navigate(requestFocus)
+    }
+
+    override fun equals(other: Any?): Boolean =
+        other is PhpDeclarationTarget && other.file == file && other.offset == offset
+
+    override fun hashCode(): Int = 31 * file.hashCode() + offset
+}
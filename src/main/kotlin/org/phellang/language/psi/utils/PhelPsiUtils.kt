@@ -2,8 +2,10 @@ package org.phellang.language.psi.utils
 
 import com.intellij.psi.PsiElement
 import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor
 import com.intellij.psi.util.PsiTreeUtil
 import org.phellang.language.psi.*
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
 
 object PhelPsiUtils {
     @JvmStatic
@@ -38,6 +40,22 @@ object PhelPsiUtils {
         }
     }
 
+    /**
+     * The symbol a list's head [form] reads as: the symbol itself, an access's symbol, or the symbol
+     * under a metadata or reader-macro prefix. Unlike [asSymbol] it never looks inside a collection,
+     * so the head of `((fn [x] x) 1)` is no symbol at all rather than `fn`.
+     */
+    @JvmStatic
+    fun headSymbol(form: PsiElement?): PhelSymbol? {
+        return when (form) {
+            is PhelSymbol -> form
+            is PhelAccess -> form.symbol
+            is PhelPForm, is PhelSForm -> null
+            is PhelForm -> if (form.metas.isEmpty() && form.readerMacros.isEmpty()) null else headSymbol(form.lastChild)
+            else -> null
+        }
+    }
+
     /**
      * Resolves a form to its [PhelKeyword] — the keyword analog of [asSymbol]. Clause keywords
      * like `:require` may sit inside a wrapper form, so a plain `as? PhelKeyword` cast misses
@@ -59,11 +77,16 @@ object PhelPsiUtils {
      * `(push #_skip coll x)` reads as three args instead of two.
      *
      * [container] is any form container — a list, vector, map, or the file itself for a
-     * top-level `#_`.
+     * top-level `#_`. A list answers from its own cache ([PhelListShape]) and the result is shared,
+     * so callers must not mutate it; anything else is walked afresh.
      */
     @JvmStatic
-    fun activeForms(container: PsiElement): List<PhelForm> {
-        val result = mutableListOf<PhelForm>()
+    fun activeForms(container: PsiElement): List<PhelForm> =
+        if (container is PhelList) container.activeForms else collectActiveForms(container)
+
+    /** [activeForms] without the list cache, for the cache itself to fill from. */
+    internal fun collectActiveForms(container: PsiElement): List<PhelForm> {
+        val result = ArrayList<PhelForm>()
         forEachChildForm(container) { form, discarded -> if (!discarded) result.add(form) }
         return result
     }
@@ -86,6 +109,52 @@ object PhelPsiUtils {
         return false
     }
 
+    /**
+     * Every form under [root] that `#_` discards, in document order. Only the outermost are listed:
+     * whatever is inside a discarded form is discarded with it, so the walk does not descend there.
+     * The ranges are therefore disjoint, which is what lets a caller binary-search them.
+     */
+    @JvmStatic
+    fun discardedForms(root: PsiElement): List<PhelForm> {
+        val result = mutableListOf<PhelForm>()
+        val pending = ArrayDeque<PsiElement>().apply { add(root) }
+        while (pending.isNotEmpty()) {
+            val container = pending.removeLast()
+            var pendingDiscards = 0
+            var child = container.firstChild
+            while (child != null) {
+                when {
+                    child.node?.elementType == PhelTypes.FORM_COMMENT -> pendingDiscards++
+                    child is PhelForm && pendingDiscards > 0 -> {
+                        pendingDiscards--
+                        result.add(child)
+                    }
+                    PhelDataLiteralElementType.isUnparsed(child.node) -> Unit
+                    child.firstChild != null -> pending.add(child)
+                }
+                child = child.nextSibling
+            }
+        }
+        return result.sortedBy { it.textRange.startOffset }
+    }
+
+    /**
+     * Every [type] element under [root], as `PsiTreeUtil.findChildrenOfType` finds them, except that
+     * an unparsed data literal is not descended into ([PhelDataLiteralElementType.isUnparsed]): the
+     * whole-file walks of highlighting and inspections stay out of a large table they have no use for.
+     */
+    @JvmStatic
+    fun <T : PsiElement> findCodeChildrenOfType(root: PsiElement, type: Class<T>): List<T> {
+        val result = mutableListOf<T>()
+        root.accept(object : PsiRecursiveElementWalkingVisitor() {
+            override fun visitElement(element: PsiElement) {
+                if (element !== root && type.isInstance(element)) result.add(type.cast(element))
+                if (!PhelDataLiteralElementType.isUnparsed(element.node)) super.visitElement(element)
+            }
+        })
+        return result
+    }
+
     private fun isDiscardedInParent(form: PhelForm): Boolean {
         val parent = form.parent ?: return false
         var result = false
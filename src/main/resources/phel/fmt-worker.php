@@ -0,0 +1,84 @@
+<?php
+
+/*
+ * The Phel plugin's formatting worker: bootstraps Phel once for the project given as the first
+ * argument, then formats every request read from stdin until stdin closes.
+ *
+ * Every message, either way, is one frame: a header line "<KIND> <length>\n" and then <length>
+ * bytes of UTF-8 payload. The worker sends READY once bootstrapped, or FATAL and exits if it cannot
+ * be. Each FORMAT request is answered with OK and the formatted text, or ERROR and the formatter's
+ * message. See PhelFormatterWorker on the plugin side.
+ */
+
+declare(strict_types=1);
+
+// STDOUT carries the frames and nothing else: a notice printed there would corrupt the framing.
+// Errors go to stderr, and anything Phel echoes is buffered and dropped.
+ini_set('display_errors', 'stderr');
+
+function phel_worker_reply(string $kind, string $payload): void
+{
+    fwrite(STDOUT, $kind . ' ' . strlen($payload) . "\n" . $payload);
+    fflush(STDOUT);
+}
+
+$projectDir = $argv[1] ?? getcwd();
+$autoload = $projectDir . '/vendor/autoload.php';
+if (!is_file($autoload)) {
+    phel_worker_reply('FATAL', "No vendor/autoload.php in $projectDir");
+    exit(1);
+}
+
+chdir($projectDir);
+require $autoload;
+
+$fatal = null;
+ob_start();
+try {
+    if (class_exists(\Phel\Phel::class) && method_exists(\Phel\Phel::class, 'bootstrap')) {
+        \Phel\Phel::bootstrap($projectDir);
+    } else {
+        \Gacela\Framework\Gacela::bootstrap($projectDir);
+    }
+    $formatter = new \Phel\Formatter\FormatterFacade();
+    if (!method_exists($formatter, 'format')) {
+        $fatal = 'This Phel version cannot format a string in process';
+    }
+} catch (\Throwable $e) {
+    $fatal = $e->getMessage();
+} finally {
+    ob_end_clean();
+}
+
+if ($fatal !== null) {
+    phel_worker_reply('FATAL', $fatal);
+    exit(1);
+}
+
+phel_worker_reply('READY', '');
+
+while (($header = fgets(STDIN)) !== false) {
+    $parts = explode(' ', rtrim($header, "\n"));
+    $length = (int) ($parts[1] ?? 0);
+    $text = $length > 0 ? stream_get_contents(STDIN, $length) : '';
+    if ($parts[0] !== 'FORMAT' || $text === false || strlen($text) !== $length) {
+        exit(2);
+    }
+
+    $formatted = null;
+    $error = '';
+    ob_start();
+    try {
+        $formatted = $formatter->format($text);
+    } catch (\Throwable $e) {
+        $error = $e->getMessage();
+    } finally {
+        ob_end_clean();
+    }
+
+    if ($formatted !== null) {
+        phel_worker_reply('OK', $formatted);
+    } else {
+        phel_worker_reply('ERROR', $error);
+    }
+}
@@ -0,0 +1,82 @@
+package org.phellang.integration
+
+import junit.framework.TestCase.assertTrue
+import java.io.File
+import java.util.Locale
+import kotlin.math.ceil
+
+/**
+ * What the `PHEL_BENCHMARK` tests share: the switch, sizes read from the environment, timing after
+ * a warm-up, and a budget every benchmark is held to.
+ *
+ * A benchmark times its operation with [measure] and passes the result to [check]. That writes the
+ * figures to `build/reports/phel-benchmarks/<name>.json` and then fails if the p95 is over budget.
+ * The report is written first, so a regression still leaves its figures behind. Budgets are
+ * generous on purpose; they catch an operation gone quadratic, not a few percent.
+ *
+ * ```
+ * PHEL_BENCHMARK=1 PHEL_BENCHMARK_BUDGET_SCALE=2 ./gradlew test --tests '*Benchmark*'
+ * ```
+ */
+object PhelBenchmark {
+
+    /** Whether benchmarks run at all; without `PHEL_BENCHMARK` each returns before measuring. */
+    val isEnabled: Boolean get() = System.getenv("PHEL_BENCHMARK") != null
+
+    /** A size or count from the environment, [default] when unset or not a number. */
+    fun env(name: String, default: Int): Int = System.getenv(name)?.toIntOrNull() ?: default
+
+    /** Milliseconds per run, in the order they were taken. */
+    class Timing(val samples: List<Double>) {
+        private val sorted = samples.sorted()
+
+        val p50: Double get() = percentile(0.50)
+
+        val p95: Double get() = percentile(0.95)
+
+        private fun percentile(fraction: Double): Double = sorted[ceil(fraction * sorted.size).toInt() - 1]
+    }
+
+    /** Runs [block] [warmUp] times unrecorded, then [runs] times timed; the run number is passed in. */
+    fun measure(runs: Int, warmUp: Int = WARM_UP, block: (run: Int) -> Unit): Timing {
+        val samples = ArrayList<Double>(runs)
+        repeat(warmUp + runs) { run ->
+            val started = System.nanoTime()
+            block(run)
+            val elapsed = (System.nanoTime() - started) / 1_000_000.0
+            if (run >= warmUp) samples += elapsed
+        }
+        return Timing(samples)
+    }
+
+    /**
+     * Writes [timing] and [figures] to the report for [name], then asserts its p95 is under
+     * [budgetMillis], scaled by `PHEL_BENCHMARK_BUDGET_SCALE` for slower machines.
+     */
+    fun check(name: String, timing: Timing, budgetMillis: Double, figures: Map<String, Number> = emptyMap()) {
+        val budget = budgetMillis * (System.getenv("PHEL_BENCHMARK_BUDGET_SCALE")?.toDoubleOrNull() ?: 1.0)
+        val fields = linkedMapOf<String, Number>("runs" to timing.samples.size)
+        fields += figures
+
+        val report = File(REPORT_DIR, "$name.json")
+        report.parentFile.mkdirs()
+        report.writeText(
+            buildString {
+                append("{\n  \"benchmark\": \"").append(name).append("\",\n")
+                fields.forEach { (key, value) -> append("  \"").append(key).append("\": ").append(value).append(",\n") }
+                append("  \"p50Ms\": ").append(millis(timing.p50)).append(",\n")
+                append("  \"p95Ms\": ").append(millis(timing.p95)).append(",\n")
+                append("  \"budgetMs\": ").append(millis(budget)).append("\n}\n")
+            },
+        )
+
+        assertTrue("$name: p95 ${millis(timing.p95)} ms over ${millis(budget)} ms", timing.p95 <= budget)
+    }
+
+    /** Locale-independent, so the decimal separator is always the one JSON expects. */
+    private fun millis(value: Double): String = String.format(Locale.ROOT, "%.2f", value)
+
+    private const val WARM_UP = 3
+
+    private const val REPORT_DIR = "build/reports/phel-benchmarks"
+}
@@ -53,6 +53,13 @@ class PhelFormCommentHighlightingTest : PhelIntegrationTestCase() {
 
     fun testFileWithoutAnyDiscardGreysNothing() = assertDiscarded("(list alpha beta)")
 
+    /** Live forms between and after discarded ones stay live: each lookup lands on the right range. */
+    fun testSeveralDiscardsAcrossTopLevelForms() =
+        assertDiscarded(
+            "(list #_alpha beta #_gamma delta)\n(list #_(epsilon) zeta)\n#_eta theta",
+            "alpha", "gamma", "epsilon", "eta",
+        )
+
     /** Asserts exactly [expected] symbols are greyed, both via the analyzer and end to end. */
     private fun assertDiscarded(source: String, vararg expected: String) {
         val file = myFixture.configureByText("a.phel", source)
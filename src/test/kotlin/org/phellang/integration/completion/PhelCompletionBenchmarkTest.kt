@@ -0,0 +1,124 @@
+package org.phellang.integration.completion
+
+import com.intellij.codeInsight.lookup.LookupManager
+import org.phellang.indexing.PhelProjectSymbolIndex
+import org.phellang.integration.PhelBenchmark
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * Completion latency against a synthetic project: `files` namespaces of `defs` functions each, every
+ * one requiring `requires` of the others, and an edited file requiring the same number.
+ *
+ * [testCompletionLatency] only runs with `PHEL_BENCHMARK` set. It times basic completion in each
+ * [Context] through [PhelBenchmark], which writes one report per context, `completion-<context>`,
+ * then fails if any p95 was over its budget. Every report is written first, so a regression still
+ * leaves its figures behind. The size, run count and budget scale come from the environment:
+ *
+ * ```
+ * PHEL_BENCHMARK=1 PHEL_BENCHMARK_FILES=200 PHEL_BENCHMARK_DEFS=50 PHEL_BENCHMARK_REQUIRES=5 \
+ *   PHEL_BENCHMARK_RUNS=30 PHEL_BENCHMARK_BUDGET_SCALE=2 ./gradlew test --tests '*CompletionBenchmark*'
+ * ```
+ *
+ * [testEveryContextOffersCandidates] always runs, on a tiny project, so a context that stopped
+ * completing anything cannot go on looking fast.
+ */
+class PhelCompletionBenchmarkTest : PhelIntegrationTestCase() {
+
+    /** Where the caret is, and the p95 it must stay under, in milliseconds, before scaling. */
+    private enum class Context(val label: String, val budgetMillis: Double) {
+        CALL_HEAD("call head", 250.0),
+        ALIAS_QUALIFIED("alias-qualified symbol", 150.0),
+        KEYWORD("ns keyword", 100.0),
+        PHP_INTEROP("php interop", 250.0),
+        REQUIRE_CLAUSE("require clause", 150.0),
+    }
+
+    private class Size(val files: Int, val defs: Int, val requires: Int)
+
+    fun testEveryContextOffersCandidates() {
+        val size = Size(files = 3, defs = 3, requires = 2)
+        createProject(size)
+
+        for (context in Context.entries) {
+            myFixture.configureByText("bench.phel", source(context, size))
+            val offered = myFixture.completeBasic()
+
+            assertTrue("${context.label} offered nothing", offered != null && offered.size > 1)
+            LookupManager.getInstance(project).hideActiveLookup()
+        }
+    }
+
+    fun testCompletionLatency() {
+        if (!PhelBenchmark.isEnabled) return
+
+        val size = Size(
+            files = PhelBenchmark.env("PHEL_BENCHMARK_FILES", 100),
+            defs = PhelBenchmark.env("PHEL_BENCHMARK_DEFS", 20),
+            requires = PhelBenchmark.env("PHEL_BENCHMARK_REQUIRES", 5),
+        )
+        val runs = PhelBenchmark.env("PHEL_BENCHMARK_RUNS", 30)
+        createProject(size)
+
+        val timings = Context.entries.associateWith { context -> measure(source(context, size), runs) }
+
+        // Every context's report is written before any budget fails the test.
+        val failures = timings.mapNotNull { (context, timing) ->
+            runCatching {
+                PhelBenchmark.check(
+                    "completion-${context.label.replace(' ', '-')}",
+                    timing,
+                    context.budgetMillis,
+                    mapOf("files" to size.files, "defs" to size.defs, "requires" to size.requires),
+                )
+            }.exceptionOrNull()
+        }
+        assertTrue(failures.joinToString("\n") { it.message.orEmpty() }, failures.isEmpty())
+    }
+
+    /**
+     * Times completion in [text]. Each run starts from a fresh copy of the edited file, so nothing a
+     * previous run inserted carries over; putting it back is part of the timed run, a small constant
+     * next to completion.
+     */
+    private fun measure(text: String, runs: Int): PhelBenchmark.Timing = PhelBenchmark.measure(runs) {
+        myFixture.configureByText("bench.phel", text)
+        myFixture.completeBasic()
+        LookupManager.getInstance(project).hideActiveLookup()
+    }
+
+    private fun createProject(size: Size) {
+        val files = (0 until size.files).map { i ->
+            val text = buildString {
+                append("(ns app\\m$i")
+                for (r in 1..minOf(size.requires, size.files - 1)) {
+                    append("\n  (:require app\\m${(i + r) % size.files} :as r$r)")
+                }
+                append(")\n")
+                repeat(size.defs) { d -> append("(defn def$d [x] (+ x $d))\n") }
+            }
+            myFixture.addFileToProject("src/m$i.phel", text) as PhelFile
+        }
+        PhelProjectSymbolIndex.getInstance(project).indexFiles(files)
+    }
+
+    /** The edited file: requires like every other namespace, and the caret placed for [context]. */
+    private fun source(context: Context, size: Size): String {
+        val requires = (1..minOf(size.requires, size.files)).joinToString("") { r ->
+            if (context == Context.REQUIRE_CLAUSE && r == 1) {
+                "\n  (:require app\\m0 :refer [d<caret>])"
+            } else {
+                "\n  (:require app\\m${r - 1} :as r$r)"
+            }
+        }
+        val keyword = if (context == Context.KEYWORD) "\n  (:r<caret>)" else ""
+        val body = when (context) {
+            Context.CALL_HEAD -> "(defn f [x] (d<caret> x))"
+            Context.ALIAS_QUALIFIED -> "(defn f [x] (r1/d<caret> x))"
+            Context.PHP_INTEROP -> "(defn f [x] (php/str<caret> x))"
+            Context.KEYWORD, Context.REQUIRE_CLAUSE -> "(defn f [x] x)"
+        }
+        return "(ns app\\bench$requires$keyword)\n$body\n"
+    }
+
+}
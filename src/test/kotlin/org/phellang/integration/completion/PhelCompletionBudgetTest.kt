@@ -0,0 +1,54 @@
+package org.phellang.integration.completion
+
+import com.intellij.codeInsight.completion.CompletionType
+import com.intellij.openapi.application.impl.NonBlockingReadActionImpl
+import com.intellij.testFramework.PlatformTestUtil
+import org.phellang.completion.infrastructure.PhelCompletionBudget
+import org.phellang.indexing.PhelProjectSymbolIndex
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * A budget that runs out part-way through the project source: what it reached is offered at once,
+ * and the rest arrive in a second run once the background work is done. The budget is spent after a
+ * number of checks rather than on the clock, so the cut lands in the same place on any machine.
+ */
+class PhelCompletionBudgetTest : PhelIntegrationTestCase() {
+
+    override fun setUp() {
+        super.setUp()
+        val definitions = (0 until DEFINITIONS).joinToString("") { "(defn def$it [] $it)\n" }
+        val other = myFixture.addFileToProject("src/other.phel", "(ns app\\other)\n$definitions") as PhelFile
+        PhelProjectSymbolIndex.getInstance(project).indexFiles(listOf(other))
+
+        PhelCompletionBudget.useInTests(testRootDisposable) { PhelCompletionBudget.afterChecks(5) }
+        myFixture.configureByText("main.phel", "(ns app\\main)\n(defn f [] (oth<caret>))\n")
+    }
+
+    private fun offered(): List<String> = myFixture.lookupElementStrings.orEmpty().filter { it.startsWith("other/") }
+
+    fun testACutRunOffersWhatTheBudgetReached() {
+        myFixture.completeBasic()
+
+        assertTrue("expected a cut, got ${offered().size}", offered().size in 1 until DEFINITIONS)
+    }
+
+    fun testTheRestArriveOnceTheBackgroundWorkIsDone() {
+        myFixture.completeBasic()
+
+        NonBlockingReadActionImpl.waitForAsyncTaskCompletion()
+        PlatformTestUtil.dispatchAllEventsInIdeEventQueue()
+
+        assertEquals(DEFINITIONS, offered().size)
+    }
+
+    fun testASecondInvocationIsNotBudgeted() {
+        myFixture.complete(CompletionType.BASIC, 2)
+
+        assertEquals(DEFINITIONS, offered().size)
+    }
+
+    private companion object {
+        const val DEFINITIONS = 20
+    }
+}
@@ -0,0 +1,27 @@
+package org.phellang.integration.completion
+
+import org.phellang.integration.PhelIntegrationTestCase
+
+/**
+ * `(:use …)` classes come from their own provider, registered after the Phel one. It must offer
+ * them wherever ordinary symbols complete, and stay out of the positions the Phel provider keeps for
+ * something else.
+ */
+class PhelUsedClassCompletionTest : PhelIntegrationTestCase() {
+
+    fun testUsedClassIsOfferedAlongsidePhelCandidates() {
+        myFixture.configureByText("used.phel", "(ns app\\main (:use \\DateTime))\n(defn f [d] (Da<caret> d))\n")
+
+        val offered = myFixture.completeBasic()?.map { it.lookupString }.orEmpty()
+
+        assertContainsElements(offered, "DateTime", "DateTime.", "DateTime/")
+    }
+
+    fun testUsedClassIsNotOfferedInsideTheNsForm() {
+        myFixture.configureByText("used_ns.phel", "(ns app\\main (:use \\DateTime) (:require Da<caret>))\n")
+
+        val offered = myFixture.completeBasic()?.map { it.lookupString }.orEmpty()
+
+        assertDoesntContain(offered, "DateTime.", "DateTime/")
+    }
+}
@@ -0,0 +1,114 @@
+package org.phellang.integration.editor
+
+import com.intellij.openapi.command.undo.UndoManager
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.openapi.progress.EmptyProgressIndicator
+import com.intellij.openapi.util.SystemInfo
+import org.phellang.editor.format.PhelBatchFormatter
+import org.phellang.editor.format.PhelFormatFilesAction
+import org.phellang.integration.PhelIntegrationTestCase
+import java.io.File
+
+/**
+ * Formatting a directory with a few `phel fmt` runs: the paths are chunked across a small pool, the
+ * results come back per text, and applying them is one undoable change. A shell script stands in
+ * for `phel`, so no PHP is needed; the runs that need it skip on Windows.
+ */
+class PhelBatchFormatterTest : PhelIntegrationTestCase() {
+
+    private fun files(count: Int, name: (Int) -> String = { "$it.phel" }) = List(count) { File("/tmp/batch", name(it)) }
+
+    fun testSplitsIntoAtMostOneChunkPerPoolThread() {
+        val chunks = PhelBatchFormatter.chunked(files(10), pool = 4)
+
+        assertEquals(listOf(3, 3, 3, 1), chunks.map { it.size })
+        assertEquals(files(10), chunks.flatten())
+    }
+
+    fun testKeepsEachChunkWithinACommandLine() {
+        val chunks = PhelBatchFormatter.chunked(files(100) { "$it-" + "x".repeat(1_000) + ".phel" }, pool = 1)
+
+        assertTrue("a 100,000-character command line must be split", chunks.size > 1)
+        assertTrue(chunks.all { chunk -> chunk.sumOf { it.absolutePath.length + 1 } <= 30_000 })
+    }
+
+    fun testFormatsEveryTextInOneRunPerChunk() {
+        if (SystemInfo.isWindows) return
+        var runs = 0
+        val formatter = PhelBatchFormatter { targets, output ->
+            synchronized(this) { runs++ }
+            uppercasing(targets, output)
+        }
+
+        val outcome = formatter.format(listOf("(a)", "(B)", "(c)"), EmptyProgressIndicator())
+
+        assertEquals(listOf("(A)", null, "(C)"), outcome.formatted)
+        assertEmpty(outcome.errors)
+        assertTrue(runs <= PhelBatchFormatter.POOL_SIZE)
+    }
+
+    fun testReportsAFailedRun() {
+        if (SystemInfo.isWindows) return
+        val formatter = PhelBatchFormatter { _, output ->
+            ProcessBuilder("sh", "-c", "echo 'Unterminated list' >&2; exit 1").redirectErrorStream(true).redirectOutput(output)
+        }
+
+        val outcome = formatter.format(listOf("(a"), EmptyProgressIndicator())
+
+        assertEquals(listOf<String?>(null), outcome.formatted)
+        assertEquals(listOf("Unterminated list"), outcome.errors)
+    }
+
+    fun testReadsNothingBackFromAFailedRun() {
+        if (SystemInfo.isWindows) return
+        val formatter = PhelBatchFormatter { targets, output ->
+            val script = "for f in \"\$@\"; do echo '(X)' > \"\$f\"; done; echo 'Unterminated list' >&2; exit 1"
+            ProcessBuilder(listOf("sh", "-c", script, "sh") + targets.map { it.absolutePath })
+                .redirectErrorStream(true)
+                .redirectOutput(output)
+        }
+
+        val outcome = formatter.format(listOf("(a)", "(b)"), EmptyProgressIndicator())
+
+        assertEquals(listOf<String?>(null, null), outcome.formatted)
+        assertNotEmpty(outcome.errors)
+    }
+
+    fun testAppliesTheResultsAsOneUndoableChange() {
+        val first = myFixture.addFileToProject("src/a.phel", "(a)")
+        val second = myFixture.addFileToProject("src/b.phel", "(b)")
+        myFixture.addFileToProject("src/notes.txt", "(c)")
+        FileEditorManager.getInstance(project).openFile(first.virtualFile, true)
+
+        val targets = PhelFormatFilesAction.phelFilesIn(project, arrayOf(first.virtualFile.parent))
+        assertEquals(listOf("(a)", "(b)"), targets.map { it.text }.sorted())
+
+        val changed = PhelFormatFilesAction.apply(project, targets, targets.map { it.text.uppercase() })
+        assertEquals(2, changed)
+        assertEquals("(A)", first.viewProvider.document!!.text)
+
+        val editor = FileEditorManager.getInstance(project).selectedEditor
+        UndoManager.getInstance(project).undo(editor)
+
+        assertEquals("(a)", first.viewProvider.document!!.text)
+        assertEquals("(b)", second.viewProvider.document!!.text)
+    }
+
+    fun testLeavesADocumentEditedMeanwhileAlone() {
+        val file = myFixture.addFileToProject("src/a.phel", "(a)")
+        val targets = PhelFormatFilesAction.phelFilesIn(project, arrayOf(file.virtualFile))
+
+        myFixture.openFileInEditor(file.virtualFile)
+        myFixture.type("x ")
+
+        assertEquals(0, PhelFormatFilesAction.apply(project, targets, listOf("(A)")))
+        assertEquals("x (a)", myFixture.editor.document.text)
+    }
+
+    private fun uppercasing(targets: List<File>, output: File): ProcessBuilder {
+        val script = "for f in \"\$@\"; do tr a-z A-Z < \"\$f\" > \"\$f.tmp\" && mv \"\$f.tmp\" \"\$f\"; done"
+        return ProcessBuilder(listOf("sh", "-c", script, "sh") + targets.map { it.absolutePath })
+            .redirectErrorStream(true)
+            .redirectOutput(output)
+    }
+}
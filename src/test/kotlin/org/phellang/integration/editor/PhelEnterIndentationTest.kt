@@ -1,6 +1,7 @@
 package org.phellang.integration.editor
 
 import com.intellij.application.options.CodeStyle
+import com.intellij.openapi.command.WriteCommandAction
 import org.phellang.integration.PhelIntegrationTestCase
 import org.phellang.language.infrastructure.PhelLanguage
 
@@ -68,6 +69,30 @@ class PhelEnterIndentationTest : PhelIntegrationTestCase() {
         assertEquals(2, indentAfterEnter("(defn f []\n  (print 1) ; ))\n  (print 2)<caret>"))
     }
 
+    /**
+     * A string left open at a line's end is still open on the next: its closing quote must not be
+     * read as an opening one, which would hide the `)` after it.
+     */
+    fun testStringSpanningLinesCarriesIntoTheNextLine() {
+        assertEquals(2, indentAfterEnter("(defn f []\n  (print \"a (\nb\")<caret>"))
+    }
+
+    /** Depths cached by an earlier Enter are dropped once a line above changes. */
+    fun testEditAboveTheCaretIsSeenByTheNextEnter() {
+        assertEquals(2, indentAfterEnter("(defn f []\n  (print 1)<caret>"))
+
+        WriteCommandAction.runWriteCommandAction(project) {
+            myFixture.editor.document.insertString(0, "(when true\n")
+        }
+        myFixture.editor.caretModel.moveToOffset(myFixture.editor.document.textLength)
+        myFixture.type('\n')
+
+        val document = myFixture.editor.document
+        val line = document.getLineNumber(myFixture.editor.caretModel.offset)
+        val text = document.text.substring(document.getLineStartOffset(line), document.getLineEndOffset(line))
+        assertEquals(4, text.takeWhile { it == ' ' }.length)
+    }
+
     // ---- Every bracket opens a level, not only a parenthesis ----
 
     /**
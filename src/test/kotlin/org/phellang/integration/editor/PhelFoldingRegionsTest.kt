@@ -0,0 +1,61 @@
+package org.phellang.integration.editor
+
+import com.intellij.lang.folding.FoldingDescriptor
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiFileFactory
+import com.intellij.psi.impl.source.tree.LazyParseableElement
+import org.phellang.editor.folding.collectors.PhelFoldingCollector
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.infrastructure.PhelLanguage
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
+
+/**
+ * Fold regions over real PSI: kept for the forms an edit did not touch and still where a fresh walk
+ * puts them, capped per file, and found without expanding a lazy data literal.
+ */
+class PhelFoldingRegionsTest : PhelIntegrationTestCase() {
+
+    private val collector = PhelFoldingCollector()
+
+    private fun regions(): List<FoldingDescriptor> =
+        collector.collectFoldingDescriptors(myFixture.file.node, myFixture.editor.document)
+
+    private fun summary(descriptors: List<FoldingDescriptor>) = descriptors.map { "${it.range} ${it.placeholderText}" }
+
+    fun testUntouchedFormsKeepTheirRegionsAtTheirNewOffsets() {
+        myFixture.configureByText(
+            "main.phel",
+            "(defn a [x]\n  (inc<caret> x))\n(defn b [y]\n  {:y y\n   :z 2})\n",
+        )
+        val before = regions()
+        val bNode = before.last().element
+
+        WriteCommandAction.runWriteCommandAction(project) {
+            myFixture.editor.document.insertString(myFixture.editor.caretModel.offset, " 1")
+        }
+        PsiDocumentManager.getInstance(project).commitAllDocuments()
+        val after = regions()
+
+        assertSame(bNode, after.last().element)
+        val document = myFixture.editor.document
+        val fresh = PsiFileFactory.getInstance(project).createFileFromText("fresh.phel", PhelLanguage, document.text)
+        assertEquals(summary(PhelFoldingCollector().collectFoldingDescriptors(fresh.node, document)), summary(after))
+    }
+
+    fun testRegionsAreCappedPerFile() {
+        val forms = PhelFoldingCollector.MAX_REGIONS + 10
+        myFixture.configureByText("main.phel", (0 until forms).joinToString("") { "(defn f$it []\n  $it)\n" })
+
+        assertEquals(PhelFoldingCollector.MAX_REGIONS, regions().size)
+    }
+
+    fun testLazyDataLiteralFoldsWithoutBeingParsed() {
+        val numbers = (0 until PhelDataLiteralElementType.MIN_TOKENS).joinToString("\n ", "[", "]")
+        myFixture.configureByText("main.phel", "$numbers\n")
+        val literal = myFixture.file.node.firstChildNode as LazyParseableElement
+
+        assertEquals(listOf("[...]"), regions().map { it.placeholderText })
+        assertFalse(literal.isParsed)
+    }
+}
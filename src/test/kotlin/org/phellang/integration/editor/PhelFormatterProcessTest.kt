@@ -39,6 +39,20 @@ class PhelFormatterProcessTest : PhelIntegrationTestCase() {
         assertEquals(workingDir, PhelFormatterProcess.command(binary, target, workingDir, output).directory())
     }
 
+    fun testRunsTheBundledWorkerScriptForTheProject() {
+        val command = PhelFormatterProcess.worker(workingDir).command()
+
+        assertEquals(workingDir.absolutePath, command.last())
+        val script = File(command[command.size - 2])
+        assertTrue(script.readText().contains("phel_worker_reply('READY'"))
+    }
+
+    fun testWorkerCarriesTheShellEnvironment() {
+        val environment = PhelFormatterProcess.worker(workingDir).environment()
+
+        assertEquals(EnvironmentUtil.getEnvironmentMap()["PATH"], environment["PATH"])
+    }
+
     /** To a file, not a pipe: nothing drains the stream before the wait, so a pipe could deadlock. */
     fun testRedirectsOutputToAFileWithStderrMerged() {
         val builder = PhelFormatterProcess.command(binary, target, workingDir, output)
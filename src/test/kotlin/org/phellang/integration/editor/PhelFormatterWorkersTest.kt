@@ -0,0 +1,246 @@
+package org.phellang.integration.editor
+
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.util.io.FileUtil
+import com.intellij.openapi.util.registry.Registry
+import org.phellang.editor.format.PhelFormatterWorker
+import org.phellang.editor.format.PhelFormatterWorkers
+import org.phellang.integration.PhelIntegrationTestCase
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.PipedInputStream
+import java.io.PipedOutputStream
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+/**
+ * The warm formatting worker, driven through a fake that speaks the worker's frames in process: no
+ * PHP needed. Covers reuse across requests, restarts after a crash and after a configuration
+ * change, cancelling one request, the fallback to the one-shot CLI when no worker starts or the
+ * worker is busy, and a timeout that is reported rather than retried.
+ */
+class PhelFormatterWorkersTest : PhelIntegrationTestCase() {
+
+    private lateinit var projectDir: File
+    private lateinit var binary: File
+    private lateinit var workers: PhelFormatterWorkers
+    private var launches = 0
+
+    override fun setUp() {
+        super.setUp()
+        projectDir = FileUtil.createTempDirectory("phel-worker", null)
+        binary = File(projectDir, "phel").apply { writeText("") }
+        workers = PhelFormatterWorkers()
+        Disposer.register(testRootDisposable, workers)
+    }
+
+    /** Every worker launched answers with [reply]: the formatted text, `!message` for an error, or null to crash. */
+    private fun launching(hello: String = "READY", reply: (String) -> String?) {
+        workers.launcher = {
+            launches++
+            FakeWorker(hello, reply)
+        }
+    }
+
+    private fun format(text: String): String? = workers.format(projectDir, binary, text)
+
+    fun testFormatsThroughOneWarmWorker() {
+        launching { it.uppercase() }
+
+        assertEquals("(A)", format("(a)"))
+        assertEquals("(B)", format("(b)"))
+        assertEquals(1, launches)
+    }
+
+    fun testReportsTheFormattersError() {
+        launching { "!Unterminated list" }
+
+        assertThrows(PhelFormatterWorker.FormatError::class.java, "Unterminated list") { format("(a") }
+    }
+
+    fun testRestartsAWorkerThatDied() {
+        var served = 0
+        launching { text -> if (++served == 2) null else text.uppercase() }
+
+        assertEquals("(A)", format("(a)"))
+        assertEquals("(B)", format("(b)"))
+        assertEquals(2, launches)
+    }
+
+    fun testRestartsWhenTheConfigurationChanges() {
+        val config = File(projectDir, "phel-config.php").apply { writeText("<?php return [];") }
+        launching { it.uppercase() }
+
+        format("(a)")
+        config.setLastModified(config.lastModified() + 10_000)
+        format("(b)")
+
+        assertEquals(2, launches)
+    }
+
+    fun testFallsBackWhenNoWorkerStarts() {
+        launching(hello = "FATAL") { it }
+
+        assertNull(format("(a)"))
+        assertNull(format("(b)"))
+        assertEquals("a worker that failed is not retried until its configuration changes", 1, launches)
+    }
+
+    fun testFallsBackWhenTurnedOff() {
+        Registry.get(PhelFormatterWorkers.REGISTRY_KEY).setValue(false, testRootDisposable)
+        launching { it.uppercase() }
+
+        assertNull(format("(a)"))
+        assertEquals(0, launches)
+    }
+
+    fun testATimeoutIsReportedWithoutARetry() {
+        val release = CountDownLatch(1)
+        launching { text ->
+            if (text == "(hang)") release.await()
+            text.uppercase()
+        }
+        workers.timeoutMillis = 200
+
+        try {
+            assertEquals("(A)", format("(a)"))
+            assertThrows(PhelFormatterWorker.FormatTimeout::class.java) { format("(hang)") }
+            assertEquals("the reused worker is not restarted for the same text", 1, launches)
+        } finally {
+            release.countDown()
+        }
+
+        assertEquals("(B)", format("(b)"))
+        assertEquals(2, launches)
+    }
+
+    fun testCancelStopsOnlyTheRequestItIsGivenFor() {
+        val entered = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        launching { text ->
+            if (text == "(slow)") {
+                entered.countDown()
+                release.await()
+            }
+            text.uppercase()
+        }
+
+        assertEquals("(A)", format("(a)"))
+        workers.cancel(PhelFormatterWorkers.Request())
+        assertEquals("a request not in flight has no worker to stop", "(B)", format("(b)"))
+
+        val slow = PhelFormatterWorkers.Request()
+        var result: String? = "unset"
+        val running = thread { result = workers.format(projectDir, binary, "(slow)", slow) }
+        try {
+            assertTrue(entered.await(5, TimeUnit.SECONDS))
+            workers.cancel(slow)
+            running.join(5_000)
+        } finally {
+            release.countDown()
+        }
+
+        assertNull(result)
+        assertEquals("(C)", format("(c)"))
+        assertEquals(2, launches)
+    }
+
+    fun testARequestWhileTheWorkerIsBusyFallsBack() {
+        val entered = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        launching { text ->
+            entered.countDown()
+            release.await()
+            text.uppercase()
+        }
+
+        var first: String? = null
+        val running = thread { first = format("(a)") }
+        try {
+            assertTrue(entered.await(5, TimeUnit.SECONDS))
+            assertNull(format("(b)"))
+        } finally {
+            release.countDown()
+        }
+
+        running.join(5_000)
+        assertEquals("(A)", first)
+    }
+
+    /** `fmt-worker.php` in miniature: the same frames over a pair of pipes, served from a thread. */
+    private class FakeWorker(private val hello: String, private val reply: (String) -> String?) : Process() {
+        private val requests = PipedInputStream(BUFFER)
+        private val toWorker = PipedOutputStream(requests)
+        private val replies = PipedInputStream(BUFFER)
+        private val fromWorker = PipedOutputStream(replies)
+
+        @Volatile
+        private var alive = true
+
+        init {
+            thread(isDaemon = true) { serve() }
+        }
+
+        private fun serve() {
+            try {
+                send(hello, "")
+                while (alive) {
+                    val header = readHeader() ?: break
+                    val text = String(requests.readNBytes(header.substringAfter(' ').toInt()), Charsets.UTF_8)
+                    val answer = reply(text) ?: break
+                    if (answer.startsWith("!")) send("ERROR", answer.drop(1)) else send("OK", answer)
+                }
+            } catch (_: IOException) {
+                // The other side hung up.
+            } finally {
+                destroy()
+            }
+        }
+
+        private fun send(kind: String, payload: String) {
+            val bytes = payload.toByteArray(Charsets.UTF_8)
+            fromWorker.write("$kind ${bytes.size}\n".toByteArray(Charsets.US_ASCII) + bytes)
+            fromWorker.flush()
+        }
+
+        private fun readHeader(): String? {
+            val line = ByteArrayOutputStream()
+            while (true) {
+                val byte = requests.read()
+                if (byte == -1) return null
+                if (byte == '\n'.code) return line.toString(Charsets.US_ASCII)
+                line.write(byte)
+            }
+        }
+
+        override fun getOutputStream(): OutputStream = toWorker
+
+        override fun getInputStream(): InputStream = replies
+
+        override fun getErrorStream(): InputStream = ByteArrayInputStream(ByteArray(0))
+
+        override fun waitFor(): Int {
+            while (alive) Thread.sleep(1)
+            return 0
+        }
+
+        override fun exitValue(): Int = if (alive) throw IllegalThreadStateException() else 0
+
+        override fun isAlive(): Boolean = alive
+
+        override fun destroy() {
+            alive = false
+            fromWorker.close()
+            toWorker.close()
+        }
+
+        private companion object {
+            const val BUFFER = 1 shl 16
+        }
+    }
+}
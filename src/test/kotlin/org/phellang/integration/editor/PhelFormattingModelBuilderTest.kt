@@ -2,9 +2,14 @@ package org.phellang.integration.editor
 
 import com.intellij.openapi.command.WriteCommandAction
 import com.intellij.application.options.CodeStyle
+import com.intellij.formatting.Block
 import com.intellij.psi.codeStyle.CodeStyleManager
+import org.phellang.editor.format.blocks.PhelBlock
+import org.phellang.editor.format.blocks.PhelFormattingRules
+import org.phellang.integration.PhelBenchmark
 import org.phellang.integration.PhelIntegrationTestCase
 import org.phellang.language.infrastructure.PhelLanguage
+import java.lang.management.ManagementFactory
 
 /**
  * The built-in formatter, used when the project has no `phel` binary.
@@ -12,6 +17,11 @@ import org.phellang.language.infrastructure.PhelLanguage
  * Asserts indentation and spacing, not a full canonical layout: `phel format` remains the canonical
  * formatter and this is the fallback, so it aims to be predictable rather than to reproduce the CLI
  * byte for byte. Line breaks the author chose are preserved throughout.
+ *
+ * [testFormattingTimeAndAllocationOnALargeFile] only runs with `PHEL_BENCHMARK` set. It reformats a
+ * generated file of `PHEL_BENCHMARK_LINES` lines (5,000 by default) a few times, reports the block
+ * count and the bytes the last run allocated on the calling thread, and holds the p95 of one run to
+ * [PhelBenchmark]'s budget.
  */
 class PhelFormattingModelBuilderTest : PhelIntegrationTestCase() {
 
@@ -92,6 +102,30 @@ class PhelFormattingModelBuilderTest : PhelIntegrationTestCase() {
         assertEquals("#?@(:a 1\n  :b 2)\n", reformatted("#?@(:a 1\n:b 2)\n"))
     }
 
+    // ---- One block per element ----
+
+    /** A quote, a `^meta` prefix and the two halves of a regex stay against what follows them. */
+    fun testLeavesPrefixesAndRegexLiteralsAsWritten() {
+        val source = "(f '(1 2) ^:m [a] #\"a b\" @x)\n"
+
+        assertEquals(source, reformatted(source))
+    }
+
+    fun testFormatsInsideAPrefixedContainer() {
+        assertEquals("'(1 2)\n", reformatted("'( 1   2 )\n"))
+    }
+
+    fun testBuildsABlockPerBracketAndElementOnly() {
+        myFixture.configureByText("core.phel", "(defn f [x] 'x ^:m y)\n")
+        val root = PhelBlock.forFile(myFixture.file.node, PhelFormattingRules(keepBlankLines = 1, blankLinesBetweenTopLevelForms = 0))
+
+        val list = root.subBlocks.single()
+        assertEquals(listOf("(", "defn", "f", "[x]", "'x", "^:m y", ")"), list.subBlocks.map { it.text() })
+        assertEquals(3, list.subBlocks[3].subBlocks.size)
+    }
+
+    private fun Block.text(): String = myFixture.file.text.substring(textRange.startOffset, textRange.endOffset)
+
     // ---- Code Style options the formatter honours ----
 
     private fun reformattedWith(text: String, configure: (com.intellij.psi.codeStyle.CommonCodeStyleSettings) -> Unit): String {
@@ -150,4 +184,46 @@ class PhelFormattingModelBuilderTest : PhelIntegrationTestCase() {
 
         assertEquals("(def a 1)\n(def b 2)\n", joined)
     }
+
+    fun testFormattingTimeAndAllocationOnALargeFile() {
+        if (!PhelBenchmark.isEnabled) return
+
+        val lines = PhelBenchmark.env("PHEL_BENCHMARK_LINES", 5_000)
+        val text = buildString {
+            append("(ns app\\large)\n")
+            for (i in 0 until lines / 5) {
+                append("(defn f$i [x]\n  (let [y {:a x :b [1 2 3]}]\n    (when (pos? x)\n      (println '(a b) y))\n    ^:m #\"re\"))\n")
+            }
+        }
+        val file = myFixture.configureByText("large.phel", text)
+
+        val root = PhelBlock.forFile(file.node, PhelFormattingRules(keepBlankLines = 1, blankLinesBetweenTopLevelForms = 0))
+        val blocks = countBlocks(root)
+
+        val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val thread = Thread.currentThread().threadId()
+        var allocated = 0L
+        var formattedOnce = ""
+        val timing = PhelBenchmark.measure(REFORMATS, warmUp = 1) { run ->
+            val allocatedBefore = threads.getThreadAllocatedBytes(thread)
+            WriteCommandAction.runWriteCommandAction(project) {
+                CodeStyleManager.getInstance(project).reformat(file)
+            }
+            allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore
+            if (run == 0) formattedOnce = file.text
+        }
+
+        // Every run after the first reformats formatted text, which has to come back unchanged.
+        assertEquals(formattedOnce, file.text)
+        PhelBenchmark.check(
+            "formatter-large-file", timing, 5_000.0,
+            mapOf("lines" to lines, "blocks" to blocks, "allocatedMb" to allocated / (1024 * 1024)),
+        )
+    }
+
+    private fun countBlocks(block: Block): Int = 1 + block.subBlocks.sumOf { countBlocks(it) }
+
+    private companion object {
+        const val REFORMATS = 5
+    }
 }
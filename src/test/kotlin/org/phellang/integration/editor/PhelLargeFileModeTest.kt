@@ -0,0 +1,70 @@
+package org.phellang.integration.editor
+
+import com.intellij.openapi.util.registry.Registry
+import org.phellang.editor.largefile.PhelLargeFileNotificationProvider
+import org.phellang.inspection.PhelArityMismatchInspection
+import org.phellang.inspection.PhelUnresolvedSymbolInspection
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.infrastructure.PhelLargeFileMode
+
+/**
+ * A file over the line threshold gets lexer highlighting and nothing semantic until it is opted in,
+ * and the banner says which of the two it is in.
+ */
+class PhelLargeFileModeTest : PhelIntegrationTestCase() {
+
+    override fun setUp() {
+        super.setUp()
+        Registry.get(PhelLargeFileMode.LINES_REGISTRY_KEY).setValue("3", testRootDisposable)
+        myFixture.enableInspections(PhelUnresolvedSymbolInspection::class.java)
+    }
+
+    private fun unresolved(): List<String> =
+        myFixture.doHighlighting().mapNotNull { it.description }.filter { it.startsWith("Cannot resolve") }
+
+    fun testSmallFileIsInspected() {
+        myFixture.configureByText("small.phel", "(ns app\\small)\n(missing)\n")
+
+        assertEquals(listOf("Cannot resolve symbol 'missing'"), unresolved())
+    }
+
+    fun testLargeFileIsNotInspected() {
+        myFixture.configureByText("large.phel", LARGE)
+
+        assertEmpty(unresolved())
+    }
+
+    fun testAnalyzeAnywayInspectsALargeFile() {
+        myFixture.configureByText("large.phel", LARGE)
+        PhelLargeFileMode.setAnalyzedAnyway(myFixture.file.virtualFile, true)
+
+        assertEquals(listOf("Cannot resolve symbol 'missing'"), unresolved())
+    }
+
+    fun testALimitedPassLeavesNothingToReplayOnceAnalyzed() {
+        myFixture.enableInspections(PhelArityMismatchInspection::class.java)
+        myFixture.configureByText("large.phel", LARGE + "(count 1 2)\n")
+        assertEmpty(wrongArity())
+
+        PhelLargeFileMode.setAnalyzedAnyway(myFixture.file.virtualFile, true)
+
+        assertEquals(1, wrongArity().size)
+    }
+
+    private fun wrongArity(): List<String> =
+        myFixture.doHighlighting().mapNotNull { it.description }.filter { it.startsWith("Wrong number of args") }
+
+    fun testBannerShowsOnlyOverTheThreshold() {
+        val provider = PhelLargeFileNotificationProvider()
+
+        myFixture.configureByText("small.phel", "(ns app\\small)\n(missing)\n")
+        assertNull(provider.collectNotificationData(project, myFixture.file.virtualFile))
+
+        myFixture.configureByText("large.phel", LARGE)
+        assertNotNull(provider.collectNotificationData(project, myFixture.file.virtualFile))
+    }
+
+    private companion object {
+        val LARGE = "(ns app\\large)\n" + "(def a 1)\n".repeat(5) + "(missing)\n"
+    }
+}
@@ -0,0 +1,97 @@
+package org.phellang.integration.editor
+
+import com.intellij.openapi.command.WriteCommandAction
+import org.phellang.integration.PhelBenchmark
+import org.phellang.integration.PhelIntegrationTestCase
+
+/**
+ * The paredit actions read the lexer's tokens, not the PSI: they see text the PSI has not caught up
+ * with, find forms across lines and comments, and treat prefixed forms as one. The cases the actions
+ * have always handled are pinned in [PhelPareditActionsTest].
+ *
+ * [testSlurpLatencyOnALargeForm] only runs with `PHEL_BENCHMARK` set. It slurps 1,000 times in a
+ * row into a form of `PHEL_BENCHMARK_FORMS` elements (2,000 by default), with no commit between
+ * them, and holds the p95 of one slurp to [PhelBenchmark]'s budget.
+ */
+class PhelStructuralEditingTest : PhelIntegrationTestCase() {
+
+    private fun run(actionId: String, before: String, after: String) {
+        myFixture.configureByText("a.phel", before)
+        myFixture.performEditorAction(actionId)
+        myFixture.checkResult(after)
+    }
+
+    fun testSlurpSeesTextThePsiHasNotCaughtUpWith() {
+        myFixture.configureByText("a.phel", "(a (b<caret>))")
+        val document = myFixture.editor.document
+        WriteCommandAction.runWriteCommandAction(project) { document.insertString(document.textLength, " c") }
+
+        myFixture.performEditorAction("Phel.Paredit.SlurpForward")
+
+        myFixture.checkResult("(a (b) c)")
+    }
+
+    fun testSlurpForwardAcrossLines() {
+        run("Phel.Paredit.SlurpForward", "(defn f []\n  (g<caret>))\n(h)\n", "(defn f []\n  (g)\n(h))\n")
+    }
+
+    fun testSlurpBackwardReachesPastBlankAndCommentLines() {
+        run("Phel.Paredit.SlurpBackward", "(a)\n\n; note\n\n((b<caret>))\n", "((a)\n\n; note\n\n(b))\n")
+    }
+
+    fun testSlurpForwardTakesAFormWithItsMetadata() {
+        run("Phel.Paredit.SlurpForward", "(a (b<caret>)) ^:m c", "(a (b) ^:m c)")
+    }
+
+    fun testBarfForwardKeepsAQuoteWithItsForm() {
+        run("Phel.Paredit.BarfForward", "(a<caret> 'b 'c)", "(a 'b) 'c")
+    }
+
+    fun testBracketsInsideStringsAndCommentsAreNotForms() {
+        run("Phel.Paredit.BarfForward", "(a<caret> \"(\" ; )\n b)", "(a \"(\") ; )\n b")
+    }
+
+    fun testRaiseAQuotedForm() {
+        run("Phel.Paredit.Raise", "(a <caret>'(b) c)", "'(b)")
+    }
+
+    fun testFormsAfterAStringOfBracketsAreFoundFromTheLexer() {
+        run(
+            "Phel.Paredit.SlurpBackward",
+            "(def s \"(\n;\\\")[\")\n(a)\n((b<caret>))\n",
+            "(def s \"(\n;\\\")[\")\n((a)\n(b))\n",
+        )
+    }
+
+    fun testAnEditAboveMovesTheFormsBelow() {
+        myFixture.configureByText("a.phel", "(a)\n(b)\n((c<caret>))\n")
+        myFixture.performEditorAction("Phel.Paredit.SlurpBackward")
+
+        val document = myFixture.editor.document
+        WriteCommandAction.runWriteCommandAction(project) { document.insertString(0, "(x \"(\")\n") }
+        myFixture.performEditorAction("Phel.Paredit.SlurpBackward")
+
+        myFixture.checkResult("(x \"(\")\n((a)\n(b)\n(c))\n")
+    }
+
+    fun testSlurpLatencyOnALargeForm() {
+        if (!PhelBenchmark.isEnabled) return
+
+        val forms = PhelBenchmark.env("PHEL_BENCHMARK_FORMS", 2_000)
+        val text = buildString {
+            append("(ns app\\large)\n(defn large []\n  (do (x<caret>))")
+            for (i in 0 until forms) append(if (i % 10 == 0) "\n  " else " ").append(i)
+            append(")\n")
+        }
+        myFixture.configureByText("large.phel", text)
+
+        val timing = PhelBenchmark.measure(SLURPS) { myFixture.performEditorAction("Phel.Paredit.SlurpForward") }
+
+        assertTrue(myFixture.editor.document.text.contains("(do (x)\n  0 1 2"))
+        PhelBenchmark.check("paredit-slurp", timing, 20.0, mapOf("forms" to forms))
+    }
+
+    private companion object {
+        const val SLURPS = 1_000
+    }
+}
@@ -0,0 +1,120 @@
+package org.phellang.integration.inspection
+
+import com.intellij.codeInspection.InspectionManager
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.openapi.application.impl.NonBlockingReadActionImpl
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiElement
+import com.intellij.psi.PsiRecursiveElementVisitor
+import org.phellang.indexing.PhelProjectSymbolIndex
+import org.phellang.inspection.PhelUnresolvedSymbolInspection
+import org.phellang.inspection.cache.PhelDiagnosticsCache
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * Stored findings are replayed only while the file and what it can see are unchanged: an edit to
+ * the file, or a new definition of a name it uses, sends the inspection back to computing. They are
+ * looked for once per opening of the file, and what highlighting finds is written when it closes.
+ */
+class PhelDiagnosticsCacheTest : PhelIntegrationTestCase() {
+
+    private val tool = PhelUnresolvedSymbolInspection()
+
+    private lateinit var file: PhelFile
+
+    override fun setUp() {
+        super.setUp()
+        file = myFixture.addFileToProject("src/app.phel", "(ns app\\main)\n(defn f [] (missing))\n") as PhelFile
+    }
+
+    private fun inspect(): List<ProblemDescriptor> {
+        val holder = ProblemsHolder(InspectionManager.getInstance(project), file, false)
+        val visitor = tool.buildVisitor(holder, false)
+        file.accept(object : PsiRecursiveElementVisitor() {
+            override fun visitElement(element: PsiElement) {
+                element.accept(visitor)
+                super.visitElement(element)
+            }
+        })
+        return holder.results
+    }
+
+    private fun storeAndReplay(): Map<String, String>? {
+        val cache = PhelDiagnosticsCache.getInstance(project)
+        cache.store(file, tool, inspect())
+
+        return replayed()
+    }
+
+    private fun replayed(): Map<String, String>? =
+        PhelDiagnosticsCache.getInstance(project).replay(file, tool)?.mapKeys { (range, _) -> range.substring(file.text) }
+
+    fun testAnUnchangedFileReplaysWhatWasStored() {
+        assertEquals(mapOf("missing" to "Cannot resolve symbol 'missing'"), storeAndReplay())
+    }
+
+    fun testACleanFileIsStoredAsClean() {
+        file = myFixture.addFileToProject("src/clean.phel", "(ns app\\clean)\n(defn f [] 1)\n") as PhelFile
+
+        assertEquals(emptyMap<String, String>(), storeAndReplay())
+    }
+
+    fun testFindingsConfirmedUnderTheSameKeyAreNotRewritten() {
+        storeAndReplay()
+
+        PhelDiagnosticsCache.getInstance(project).store(file, tool, emptyList())
+
+        assertEquals(mapOf("missing" to "Cannot resolve symbol 'missing'"), storeAndReplay())
+    }
+
+    fun testAnEditInvalidatesTheStoredFindings() {
+        storeAndReplay()
+
+        WriteCommandAction.runWriteCommandAction(project) {
+            val document = PsiDocumentManager.getInstance(project).getDocument(file)!!
+            document.insertString(document.textLength, "(defn g [] 2)\n")
+            PsiDocumentManager.getInstance(project).commitDocument(document)
+        }
+
+        assertNull(PhelDiagnosticsCache.getInstance(project).replay(file, tool))
+    }
+
+    fun testANewDefinitionOfAUsedNameInvalidatesTheStoredFindings() {
+        storeAndReplay()
+
+        val other = myFixture.addFileToProject("src/other.phel", "(ns app\\other)\n(defn missing [] 1)\n") as PhelFile
+        PhelProjectSymbolIndex.getInstance(project).refreshFileFromPsi(other)
+
+        assertNull(PhelDiagnosticsCache.getInstance(project).replay(file, tool))
+    }
+
+    fun testOnlyTheFirstPassAfterOpeningLooksForStoredFindings() {
+        val cache = PhelDiagnosticsCache.getInstance(project)
+        cache.store(file, tool, inspect())
+
+        myFixture.openFileInEditor(file.virtualFile)
+        assertNotNull(cache.openReplay(file))
+        assertNull("a later pass computes", cache.openReplay(file))
+
+        FileEditorManager.getInstance(project).closeFile(file.virtualFile)
+        myFixture.openFileInEditor(file.virtualFile)
+        assertNotNull(cache.openReplay(file))
+    }
+
+    fun testRememberedFindingsAreWrittenWhenTheFileCloses() {
+        val cache = PhelDiagnosticsCache.getInstance(project)
+        myFixture.openFileInEditor(file.virtualFile)
+
+        cache.remember(file, tool, inspect())
+        assertNull("nothing is written while the file is open", replayed())
+
+        FileEditorManager.getInstance(project).closeFile(file.virtualFile)
+        NonBlockingReadActionImpl.waitForAsyncTaskCompletion()
+
+        assertEquals(mapOf("missing" to "Cannot resolve symbol 'missing'"), replayed())
+    }
+}
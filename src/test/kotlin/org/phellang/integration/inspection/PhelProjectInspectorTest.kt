@@ -0,0 +1,63 @@
+package org.phellang.integration.inspection
+
+import com.intellij.codeInspection.LocalInspectionTool
+import com.intellij.codeInspection.ProblemsHolder
+import com.intellij.psi.PsiElementVisitor
+import com.intellij.psi.PsiFile
+import org.phellang.inspection.headless.PhelProjectInspector
+import org.phellang.integration.PhelIntegrationTestCase
+
+/**
+ * The headless runner's inspection pass, on the fixture project: every file is inspected on the
+ * pool, what it reports is what the editor would, and a file that breaks an inspection is reported
+ * as failed while the rest are still inspected.
+ */
+class PhelProjectInspectorTest : PhelIntegrationTestCase() {
+
+    fun testReportsProblemsFromEveryFileWithPositions() {
+        myFixture.addFileToProject("src/a.phel", "(ns app\\a)\n(defn f [x] (+ x missing))\n")
+        myFixture.addFileToProject("src/b.phel", "(ns app\\b)\n(defn g [] (inc 1 2 3))\n")
+        myFixture.addFileToProject("src/clean.phel", "(ns app\\clean)\n(defn h [x] x)\n")
+
+        val report = PhelProjectInspector(project, PhelProjectInspector.phelTools(emptySet())).inspect(threads = 2)
+        val found = report.problems.map { "${it.path.substringAfterLast('/')}:${it.line}:${it.inspection}" }
+
+        assertEquals(3, report.files)
+        assertTrue(found.toString(), "a.phel:2:PhelUnresolvedSymbol" in found)
+        assertTrue(found.toString(), "b.phel:2:PhelArityMismatch" in found)
+        assertFalse(found.toString(), found.any { it.startsWith("clean.phel") })
+    }
+
+    fun testRunsOnlyTheNamedInspectionsAndTimesEach() {
+        myFixture.addFileToProject("src/a.phel", "(ns app\\a)\n(defn f [x] (+ x missing))\n")
+
+        val tools = PhelProjectInspector.phelTools(setOf("PhelArityMismatch"))
+        val report = PhelProjectInspector(project, tools).inspect(threads = 1)
+
+        assertEquals(listOf("PhelArityMismatch"), tools.map { it.shortName })
+        assertEquals(setOf("PhelArityMismatch"), report.inspectionMillis.keys)
+        assertTrue(report.problems.isEmpty())
+    }
+
+    fun testAFileThatFailsIsReportedWithoutStoppingTheRun() {
+        myFixture.addFileToProject("src/a.phel", "(ns app\\a)\n(defn f [x] (+ x missing))\n")
+        myFixture.addFileToProject("src/bad.phel", "(ns app\\bad)\n")
+        val failing = PhelProjectInspector.Tool("Failing", "WARNING", FailingOn("bad.phel"))
+        val tools = PhelProjectInspector.phelTools(setOf("PhelUnresolvedSymbol")) + failing
+
+        val report = PhelProjectInspector(project, tools).inspect(threads = 2)
+
+        assertEquals(listOf("bad.phel"), report.failures.map { it.path.substringAfterLast('/') })
+        assertTrue(report.problems.any { it.path.endsWith("a.phel") && it.inspection == "PhelUnresolvedSymbol" })
+    }
+
+    /** Throws while visiting the file named [fileName], as a broken inspection would. */
+    private class FailingOn(private val fileName: String) : LocalInspectionTool() {
+        override fun buildVisitor(holder: ProblemsHolder, isOnTheFly: Boolean): PsiElementVisitor =
+            object : PsiElementVisitor() {
+                override fun visitFile(file: PsiFile) {
+                    if (file.name == fileName) throw IllegalStateException("broken on $fileName")
+                }
+            }
+    }
+}
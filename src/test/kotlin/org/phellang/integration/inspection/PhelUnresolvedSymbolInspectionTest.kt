@@ -84,6 +84,21 @@ class PhelUnresolvedSymbolInspectionTest : PhelIntegrationTestCase() {
         assertSilent("(defmacro with-it [& body] `(let [it 1] ~@body))\n(defn f [] (with-it (+ it 1)))")
     }
 
+    /**
+     * What a form establishes — a macro call, a binding, a quote — covers its own body and nothing
+     * after it. The skipped positions are found in one walk down the file, so a leak into the next
+     * sibling would silence real reports.
+     */
+    fun testSkippedContextsEndWithTheirForm() {
+        val source = "(defmacro with-it [& body] `(let [it 1] ~@body))\n" +
+            "(defn f [] (with-it it) 'quoted (let [x 1] x) (catch-all x it))"
+
+        assertEquals(
+            listOf("Cannot resolve symbol 'catch-all'", "Cannot resolve symbol 'x'", "Cannot resolve symbol 'it'"),
+            inspect(source),
+        )
+    }
+
     fun testPhpInteropIsSilent() {
         assertSilent("(defn f [] (php/strlen \"s\"))")
         assertSilent("(defn f [o] (.method o))")
@@ -0,0 +1,71 @@
+package org.phellang.integration.inspection
+
+import com.intellij.analysis.AnalysisScope
+import com.intellij.codeInspection.ProblemDescriptor
+import com.intellij.codeInspection.ex.GlobalInspectionToolWrapper
+import com.intellij.testFramework.InspectionTestUtil
+import com.intellij.testFramework.fixtures.impl.CodeInsightTestFixtureImpl
+import org.phellang.inspection.PhelUnusedPublicDefinitionInspection
+import org.phellang.inspection.analysis.PhelUnusedPublicDefinitionFinder
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * The batch "is this public definition used anywhere" answer: every way another namespace can reach
+ * a definition keeps it alive, and a same-named symbol that cannot reach it does not.
+ */
+class PhelUnusedPublicDefinitionTest : PhelIntegrationTestCase() {
+
+    private lateinit var util: PhelFile
+
+    override fun setUp() {
+        super.setUp()
+        util = myFixture.addFileToProject(
+            "src/util.phel",
+            "(ns app\\util)\n(defn aliased [] 1)\n(defn referred [] 2)\n(defn qualified [] 3)\n" +
+                "(defn internal [] 4)\n(defn caller [] (internal))\n(defn dead [] 5)\n(defn- hidden [] 6)\n",
+        ) as PhelFile
+    }
+
+    fun testEveryReachableSpellingCountsAsAUse() {
+        val users = listOf(
+            myFixture.addFileToProject(
+                "src/a.phel",
+                "(ns app\\a (:require app\\util :as u))\n(defn f [] (u/aliased))\n",
+            ),
+            myFixture.addFileToProject(
+                "src/b.phel",
+                "(ns app\\b (:require app\\util :refer [referred]))\n(defn g [] (referred))\n",
+            ),
+            myFixture.addFileToProject("src/c.phel", "(ns app\\c)\n(defn h [] (app\\util/qualified))\n"),
+            // Same name, but this namespace cannot reach app\util's `dead`.
+            myFixture.addFileToProject("src/d.phel", "(ns app\\d)\n(defn dead [] 0)\n(defn k [] (dead))\n"),
+        ).map { it as PhelFile }
+
+        val unused = PhelUnusedPublicDefinitionFinder(users + util).unusedDefinitions(listOf(util))
+
+        assertEquals(listOf("caller", "dead"), unused.map { it.text }.sorted())
+    }
+
+    fun testPrivateDefinitionsAreLeftToTheLocalInspection() {
+        val unused = PhelUnusedPublicDefinitionFinder(listOf(util)).unusedDefinitions(listOf(util))
+
+        assertFalse(unused.any { it.text == "hidden" })
+    }
+
+    /** The inspection itself, run as Inspect Code runs it over the whole project. */
+    fun testInspectCodeReportsTheUnusedDefinitions() {
+        myFixture.addFileToProject("src/a.phel", "(ns app\\a (:require app\\util :as u))\n(defn f [] (u/aliased))\n")
+        val wrapper = GlobalInspectionToolWrapper(PhelUnusedPublicDefinitionInspection())
+        val scope = AnalysisScope(project)
+        val context = CodeInsightTestFixtureImpl.createGlobalContextForTool(scope, project, listOf(wrapper))
+
+        InspectionTestUtil.runTool(wrapper, scope, context)
+        val reported = context.getPresentation(wrapper).problemDescriptors
+            .filterIsInstance<ProblemDescriptor>()
+            .map { it.psiElement.containingFile.name + ":" + it.psiElement.text }
+
+        assertContainsElements(reported, "util.phel:dead", "util.phel:referred", "a.phel:f")
+        assertDoesntContain(reported, "util.phel:aliased", "util.phel:internal", "util.phel:hidden")
+    }
+}
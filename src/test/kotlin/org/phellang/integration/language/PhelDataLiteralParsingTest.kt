@@ -0,0 +1,149 @@
+package org.phellang.integration.language
+
+import com.intellij.lang.ASTNode
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.fileEditor.FileEditorManager
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiFile
+import com.intellij.psi.PsiFileFactory
+import com.intellij.psi.PsiManager
+import com.intellij.psi.impl.DebugUtil
+import com.intellij.psi.impl.source.tree.LazyParseableElement
+import com.intellij.util.FileContentUtilCore
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.infrastructure.PhelLanguage
+import org.phellang.language.psi.PhelForm
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.PhelMap
+import org.phellang.language.psi.PhelVec
+import org.phellang.language.psi.analysis.PhelFileAnalysis
+import org.phellang.language.psi.elements.PhelDataLiteralElementType
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * Large collections of data are left unparsed until something reads them, sit in the tree where an
+ * eager collection would, and reparse on their own; anything holding code is parsed as before. The
+ * whole-file walks of highlighting pass them by, so only what reads a literal parses it.
+ */
+class PhelDataLiteralParsingTest : PhelIntegrationTestCase() {
+
+    private lateinit var file: PsiFile
+
+    private var caret = 0
+
+    private fun configure(text: String) {
+        caret = text.indexOf("<caret>").coerceAtLeast(0)
+        file = myFixture.addFileToProject("data.phel", text.replace("<caret>", ""))
+    }
+
+    /** The lazy literals under [node], found without expanding any of them. */
+    private fun lazyLiterals(node: ASTNode = file.node): List<ASTNode> =
+        if (node.elementType is PhelDataLiteralElementType) listOf(node)
+        else node.getChildren(null).flatMap { lazyLiterals(it) }
+
+    private fun insertAndCommit(text: String) {
+        val document = PsiDocumentManager.getInstance(project).getDocument(file)!!
+        WriteCommandAction.runWriteCommandAction(project) {
+            document.insertString(caret, text)
+        }
+        PsiDocumentManager.getInstance(project).commitDocument(document)
+    }
+
+    private fun assertTreeMatchesFreshParse() {
+        val fresh = PsiFileFactory.getInstance(project).createFileFromText("fresh.phel", PhelLanguage, file.text)
+
+        assertEquals(DebugUtil.psiToString(fresh, true), DebugUtil.psiToString(file, true))
+    }
+
+    fun testLargeVectorIsParsedOnlyWhenRead() {
+        configure("(def table $NUMBERS)\n")
+
+        val literal = lazyLiterals().single()
+        assertEquals(PhelDataLiteralElementType.VEC, literal.elementType)
+        assertFalse((literal as LazyParseableElement).isParsed)
+
+        val vec = literal.psi as PhelVec
+        assertEquals(SIZE, vec.forms.size)
+        assertTrue(literal.isParsed)
+    }
+
+    fun testLazyCollectionsSitWhereEagerOnesWould() {
+        configure("(def table $NUMBERS)\n(def names $KEYWORDS)\n(def small [1 2])\n")
+
+        val (vec, map) = lazyLiterals().map { it.psi }
+        assertInstanceOf(vec, PhelVec::class.java)
+        assertInstanceOf(map, PhelMap::class.java)
+        assertInstanceOf(vec.parent, PhelList::class.java)
+        assertInstanceOf(map.parent, PhelList::class.java)
+
+        val small = (file.children.last() as PhelList).forms.last()
+        assertInstanceOf(small, PhelVec::class.java)
+    }
+
+    fun testSmallOrCodeBearingCollectionsStayEager() {
+        val withSymbol = NUMBERS.dropLast(1) + " x]"
+        configure("(def small [1 2 3])\n(def code $withSymbol)\n(let [a 1] a)\n")
+
+        assertEmpty(lazyLiterals())
+    }
+
+    fun testDataEditReparsesOnlyTheLiteral() {
+        configure("(def a 1)\n(def table [<caret>${NUMBERS.drop(1)})\n")
+        val list = file.children.filterIsInstance<PhelList>().last()
+
+        insertAndCommit("7 ")
+
+        assertSame(list, file.children.filterIsInstance<PhelList>().last())
+        assertEquals(PhelDataLiteralElementType.VEC, lazyLiterals().single().elementType)
+        assertTreeMatchesFreshParse()
+    }
+
+    fun testCodeEditFallsBackToAnEagerParse() {
+        configure("(def table [<caret>${NUMBERS.drop(1)})\n")
+
+        insertAndCommit("x ")
+
+        assertEmpty(lazyLiterals())
+        assertTreeMatchesFreshParse()
+    }
+
+    fun testQuotedLiteralIsParsedOnlyWhenRead() {
+        configure("(def table '$NUMBERS)\n(def names ^:table $KEYWORDS)\n")
+
+        val (vec, map) = lazyLiterals()
+        assertFalse((vec as LazyParseableElement).isParsed)
+        assertEquals(PhelDataLiteralElementType.MAP, map.elementType)
+
+        val quoted = vec.psi.parent as PhelForm
+        assertEquals("'", quoted.readerMacros.single().text)
+        assertSame(vec.psi, quoted.lastChild)
+        assertEquals(SIZE, (vec.psi as PhelVec).forms.size)
+    }
+
+    fun testAnOpenFileKeepsItsLiteralsLazy() {
+        configure("(def table $NUMBERS)\n")
+        FileEditorManager.getInstance(project).openFile(file.virtualFile, false)
+
+        FileContentUtilCore.reparseFiles(file.virtualFile)
+        file = PsiManager.getInstance(project).findFile(file.virtualFile)!!
+
+        assertEquals(PhelDataLiteralElementType.VEC, lazyLiterals().single().elementType)
+    }
+
+    fun testWholeFileAnalysisLeavesLiteralsUnparsed() {
+        configure("(ns app\\data)\n(def table $NUMBERS)\n(defn f [x] (inc x))\n")
+
+        val analysis = PhelFileAnalysis.of(file as PhelFile)
+
+        assertEquals(listOf("ns", "app\\data", "def", "table", "defn", "f", "x", "inc", "x"), analysis.symbols.map { it.text })
+        assertFalse((lazyLiterals().single() as LazyParseableElement).isParsed)
+    }
+
+    private companion object {
+        const val SIZE = PhelDataLiteralElementType.MIN_TOKENS
+
+        val NUMBERS = (0 until SIZE).joinToString(" ", "[", "]")
+
+        val KEYWORDS = (0 until SIZE / 2).joinToString(" ", "{", "}") { ":k$it \"v$it\"" }
+    }
+}
@@ -0,0 +1,121 @@
+package org.phellang.integration.language
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.PsiFileFactory
+import com.intellij.psi.impl.DebugUtil
+import org.phellang.integration.PhelBenchmark
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.infrastructure.PhelLanguage
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.elements.PhelTopLevelListElementType
+
+/**
+ * Top-level lists are parsed lazily and reparsed on their own: an edit inside one leaves the PSI of
+ * every other form in place, and an edit that unbalances it falls back to a full reparse that ends
+ * where parsing the text afresh would.
+ *
+ * [testTypingLatencyInALargeFile] only runs with `PHEL_BENCHMARK` set. It types into the middle of
+ * a generated file of `PHEL_BENCHMARK_LINES` lines (10,000 by default), committing after every
+ * edit, and holds typing plus commit to a budget through [PhelBenchmark].
+ */
+class PhelIncrementalReparseTest : PhelIntegrationTestCase() {
+
+    private fun configure(text: String) {
+        myFixture.configureByText("reparse.phel", text)
+    }
+
+    private fun topLevelLists(): List<PhelList> = myFixture.file.children.filterIsInstance<PhelList>()
+
+    private fun typeAndCommit(text: String) {
+        myFixture.type(text)
+        PsiDocumentManager.getInstance(project).commitAllDocuments()
+    }
+
+    /** Inserted as-is, so no typed handler pairs a bracket the test means to leave unbalanced. */
+    private fun insertAndCommit(text: String) {
+        val document = myFixture.editor.document
+        WriteCommandAction.runWriteCommandAction(project) {
+            document.insertString(myFixture.editor.caretModel.offset, text)
+        }
+        PsiDocumentManager.getInstance(project).commitDocument(document)
+    }
+
+    /** The tree as parsing the current text from scratch would build it. */
+    private fun assertTreeMatchesFreshParse() {
+        val text = myFixture.editor.document.text
+        val fresh = PsiFileFactory.getInstance(project).createFileFromText("fresh.phel", PhelLanguage, text)
+
+        assertEquals(DebugUtil.psiToString(fresh, true), DebugUtil.psiToString(myFixture.file, true))
+    }
+
+    fun testTopLevelListsAreLazyAndStillLists() {
+        configure("(ns app\\main)\n(defn f [x] (inc x))\n^:private (def y 1)\n")
+
+        val lists = topLevelLists()
+        assertEquals(2, lists.size)
+        assertTrue(lists.all { it.node.elementType == PhelTopLevelListElementType.INSTANCE })
+        assertEquals("(inc x)", (lists[1].children.last() as PhelList).text)
+    }
+
+    fun testBalancedEditReparsesOnlyItsOwnForm() {
+        configure("(defn a [] 1)\n(defn b [] (+ 1<caret> 2))\n(defn c [] 3)\n")
+        val (a, _, c) = topLevelLists()
+
+        insertAndCommit(" 5")
+
+        val after = topLevelLists()
+        assertSame(a, after[0])
+        assertSame(c, after[2])
+        assertEquals("(defn b [] (+ 1 5 2))", after[1].text)
+        assertTreeMatchesFreshParse()
+    }
+
+    fun testUnbalancedEditFallsBackToAFullReparse() {
+        configure("(defn a [] 1)\n(defn b [] (+ 1<caret> 2))\n(defn c [] 3)\n")
+
+        insertAndCommit(" (")
+
+        assertTreeMatchesFreshParse()
+    }
+
+    fun testEditInsideAStringWithBracketsStaysBalanced() {
+        configure("(defn a [] \"<caret>\")\n(defn b [] 2)\n")
+        val b = topLevelLists()[1]
+
+        insertAndCommit("(]")
+
+        assertSame(b, topLevelLists()[1])
+        assertTreeMatchesFreshParse()
+    }
+
+    fun testTypingLatencyInALargeFile() {
+        if (!PhelBenchmark.isEnabled) return
+
+        val lines = PhelBenchmark.env("PHEL_BENCHMARK_LINES", 10_000)
+        val forms = lines / 2
+        val text = buildString {
+            append("(ns app\\large)\n")
+            for (i in 0 until forms) {
+                val caret = if (i == forms / 2) "<caret>" else ""
+                append("(defn f$i [x]\n  (+ x$caret $i))\n")
+            }
+        }
+        configure(text)
+        myFixture.file.children.forEach { it.children }
+        val first = topLevelLists().first()
+
+        val timing = PhelBenchmark.measure(runs = KEYSTROKES, warmUp = WARM_UP) { run ->
+            typeAndCommit(if (run % 2 == 0) " 1" else " ")
+        }
+
+        assertSame("typing in the middle reparsed the whole file", first, topLevelLists().first())
+        PhelBenchmark.check("typing-reparse", timing, budgetMillis = 50.0, mapOf("lines" to lines))
+    }
+
+    private companion object {
+        const val WARM_UP = 5
+
+        const val KEYSTROKES = 100
+    }
+}
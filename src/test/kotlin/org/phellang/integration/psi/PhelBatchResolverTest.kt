@@ -0,0 +1,95 @@
+package org.phellang.integration.psi
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.util.TextRange
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.files.PhelFile
+import org.phellang.language.psi.references.PhelBatchResolver
+import org.phellang.language.psi.references.PhelReference
+
+/**
+ * Resolving a whole file in one batch must give every symbol the answer it would get on its own.
+ *
+ * The batch reads per-file tables — the file's definitions and parameters, and the definitions of
+ * every name it mentions across the project — instead of re-deriving them per symbol. Each lookup
+ * those tables replace is exercised here: same-file, parameter, project, aliased and qualified.
+ */
+class PhelBatchResolverTest : PhelIntegrationTestCase() {
+
+    private fun symbolsNamed(file: PhelFile, text: String): List<PhelSymbol> =
+        PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java).filter { it.text == text }
+
+    private fun configure(name: String, text: String): PhelFile =
+        myFixture.configureByText(name, text) as PhelFile
+
+    fun testBatchResolutionMatchesPerSymbolResolution() {
+        myFixture.addFileToProject(
+            "src/util.phel",
+            "(ns app\\util)\n(defn shout [s] s)\n(defn whisper [s] s)\n",
+        )
+        val file = configure(
+            "batch.phel",
+            """
+            (ns app\batch (:require app\util :as u))
+            (defn helper [x] (shout x))
+            (defn caller [y] (helper y) (u/whisper y) (util/shout y))
+            """.trimIndent(),
+        )
+
+        PhelBatchResolver.resolveAll(file)
+
+        assertResolvesTo(file, "helper", "batch.phel")
+        assertResolvesTo(file, "shout", "util.phel")
+        assertResolvesTo(file, "u/whisper", "util.phel")
+        assertResolvesTo(file, "util/shout", "util.phel")
+        assertResolvesTo(file, "y", "batch.phel")
+    }
+
+    fun testDefinitionsAreNotSearchedForUsages() {
+        val file = configure("defs.phel", "(ns app\\defs)\n(defn alpha [] 1)\n(defn beta [] (alpha))\n")
+        val symbols = PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java)
+        val usages = symbols.count { !(it.reference as PhelReference).findUsages }
+
+        assertTrue("precondition: the file declares something", usages < symbols.size)
+        assertEquals(usages, PhelBatchResolver.resolveAll(file))
+    }
+
+    /** A pass over one edited form resolves that form, not the whole file. */
+    fun testResolvesOnlyTheSymbolsInTheRange() {
+        val file = configure("range.phel", "(ns app\\range)\n(defn alpha [] (beta))\n(defn beta [] (alpha))\n")
+        val form = file.text.indexOf("(defn beta")
+        val range = TextRange(form, file.textLength)
+        val inRange = PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java)
+            .count { range.contains(it.textRange) && !(it.reference as PhelReference).findUsages }
+
+        assertEquals(inRange, PhelBatchResolver.resolveAll(file, range))
+    }
+
+    /** The tables are cached on the file: an edit has to drop them, or a new definition is missed. */
+    fun testANewDefinitionIsSeenAfterAnEdit() {
+        val file = configure("edit.phel", "(ns app\\edit)\n(defn caller [] (later))\n")
+        PhelBatchResolver.resolveAll(file)
+        assertNull(symbolsNamed(file, "later").single().reference?.resolve())
+
+        val documentManager = PsiDocumentManager.getInstance(project)
+        WriteCommandAction.runWriteCommandAction(project) {
+            val document = documentManager.getDocument(file)!!
+            document.insertString(document.text.indexOf("(defn caller"), "(defn later [] 1)\n")
+            documentManager.commitDocument(document)
+        }
+        PhelBatchResolver.resolveAll(file)
+
+        assertNotNull(symbolsNamed(file, "later").last().reference?.resolve())
+    }
+
+    private fun assertResolvesTo(file: PhelFile, text: String, expectedFile: String) {
+        val usage = symbolsNamed(file, text).last()
+        val target = usage.reference?.resolve()
+
+        assertNotNull("`$text` should resolve", target)
+        assertEquals("`$text` resolved into the wrong file", expectedFile, target!!.containingFile.name)
+    }
+}
@@ -0,0 +1,124 @@
+package org.phellang.integration.psi
+
+import com.intellij.psi.PsiNamedElement
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.references.PhpClassResolver
+
+/**
+ * The PHP plugin isn't on the test classpath, which is exactly the setup the Composer fallback is
+ * for: interop symbols resolve through `vendor/composer/`'s autoload maps into the PHP source file.
+ */
+class PhelComposerClassIndexTest : PhelIntegrationTestCase() {
+
+    override fun setUp() {
+        super.setUp()
+        myFixture.addFileToProject("composer.json", "{}")
+        myFixture.addFileToProject(
+            "vendor/composer/autoload_classmap.php",
+            """
+            <?php
+            return array(
+                'App\\Service\\Mailer' => ${'$'}baseDir . '/src/Service/Mailer.php',
+            );
+            """.trimIndent(),
+        )
+        myFixture.addFileToProject(
+            "vendor/composer/autoload_psr4.php",
+            """
+            <?php
+            return array(
+                'App\\' => array(${'$'}baseDir . '/src'),
+            );
+            """.trimIndent(),
+        )
+        myFixture.addFileToProject(
+            "src/Service/Mailer.php",
+            """
+            <?php
+            namespace App\Service;
+            class Mailer {
+                public static function create(${'$'}dsn) {}
+                private function secret() {}
+            }
+            """.trimIndent(),
+        )
+        myFixture.addFileToProject(
+            "src/Model/User.php",
+            "<?php\nnamespace App\\Model;\nclass User { public const ADMIN = 'admin'; }\n",
+        )
+    }
+
+    fun testClassmapEntryResolvesToTheClassDeclaration() {
+        val target = resolve("(ns app\\main)\n(\\App\\Service\\Mailer)\n", "\\App\\Service\\Mailer")
+
+        assertEquals("Mailer.php", target.containingFile.name)
+        assertEquals("Mailer", (target as PsiNamedElement).name)
+    }
+
+    fun testPsr4PrefixResolvesAClassMissingFromTheClassmap() {
+        val target = resolve("(ns app\\main\n  (:use App\\Model\\User))\n", "App\\Model\\User")
+
+        assertEquals("User.php", target.containingFile.name)
+    }
+
+    fun testStaticMemberResolvesToTheMethod() {
+        val target = resolve(
+            "(ns app\\main\n  (:use App\\Service\\Mailer))\n(Mailer/create \"smtp://\")\n",
+            "Mailer/create",
+        )
+
+        assertEquals("create", (target as PsiNamedElement).name)
+    }
+
+    fun testListedMembersArePublicAndDeclaredOnTheClass() {
+        val members = PhpClassResolver.listMembers(project, "\\App\\Service\\Mailer")
+
+        assertEquals(listOf("create(\$dsn)"), members.map { it.signature })
+    }
+
+    fun testUnknownClassResolvesToNothing() {
+        assertEmpty(PhpClassResolver.listMembers(project, "\\App\\Missing"))
+    }
+
+    fun testClassNamesComeFromTheClassmapAndPsr4Directories() {
+        val names = PhpClassResolver.listClassNames(project)
+
+        assertContainsElements(names, "App\\Service\\Mailer", "App\\Model\\User")
+    }
+
+    fun testClassNamesAreListedAgainOnlyForAFileUnderAPsr4Directory() {
+        val listed = PhpClassResolver.listClassNames(project)
+
+        myFixture.addFileToProject("notes/todo.txt", "")
+        assertSame(listed, PhpClassResolver.listClassNames(project))
+
+        myFixture.addFileToProject("src/Model/Role.php", "<?php\nnamespace App\\Model;\nclass Role {}\n")
+        assertContainsElements(PhpClassResolver.listClassNames(project), "App\\Model\\Role")
+    }
+
+    fun testQualifiedClassNamesAreCompleted() {
+        myFixture.configureByText("main.phel", "(ns app\\main)\n(\\App\\<caret>)\n")
+
+        val offered = myFixture.completeBasic()?.map { it.lookupString }.orEmpty()
+
+        assertContainsElements(offered, "\\App\\Service\\Mailer", "\\App\\Model\\User")
+    }
+
+    fun testClassNamesAreCompletedInAUseClause() {
+        myFixture.configureByText("main.phel", "(ns app\\main\n  (:use App\\Mo<caret>))\n")
+
+        myFixture.completeBasic()
+
+        myFixture.checkResult("(ns app\\main\n  (:use App\\Model\\User))\n")
+    }
+
+    private fun resolve(text: String, symbolText: String) = run {
+        val file = myFixture.configureByText("main.phel", text)
+        val symbol = PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java).first { it.text == symbolText }
+        val target = symbol.reference?.resolve()
+        assertNotNull("`$symbolText` should resolve into PHP source", target)
+        target!!
+    }
+}
@@ -0,0 +1,139 @@
+package org.phellang.integration.psi
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.openapi.util.Disposer
+import com.intellij.openapi.util.registry.Registry
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.inspection.PhelArityMismatchInspection
+import org.phellang.inspection.PhelShadowedLetBindingInspection
+import org.phellang.inspection.PhelUnresolvedSymbolInspection
+import org.phellang.inspection.PhelUnusedImportInspection
+import org.phellang.inspection.PhelUnusedLetBindingInspection
+import org.phellang.inspection.PhelUnusedParameterInspection
+import org.phellang.inspection.PhelUnusedPrivateDefinitionInspection
+import org.phellang.integration.PhelBenchmark
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.analysis.PhelFileAnalysis
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * The per-file analysis the annotator and inspections share: one instance per file until the next
+ * edit, holding the same answers the individual analyzers give.
+ *
+ * [testHighlightingBenchmark] times a full highlighting pass over a generated file of
+ * `PHEL_BENCHMARK_DEFS` definitions through [PhelBenchmark], shared and per inspection, which only
+ * runs it with `PHEL_BENCHMARK` set.
+ */
+class PhelFileAnalysisTest : PhelIntegrationTestCase() {
+
+    private val source = "(ns app\\main)\n(defn- helper [x y] (let [a x b 2] (+ a x)))\n(defn run [] (helper 1 2))\n"
+
+    fun testTheAnalysisIsSharedUntilTheFileChanges() {
+        val file = myFixture.configureByText("main.phel", source) as PhelFile
+        val before = PhelFileAnalysis.of(file)
+
+        assertSame(before, PhelFileAnalysis.of(file))
+
+        val documentManager = PsiDocumentManager.getInstance(project)
+        WriteCommandAction.runWriteCommandAction(project) {
+            val document = documentManager.getDocument(file)!!
+            document.insertString(document.textLength, "(run)\n")
+            documentManager.commitDocument(document)
+        }
+
+        assertNotSame("an edit must drop the cached analysis", before, PhelFileAnalysis.of(file))
+    }
+
+    fun testListFactsSkipDiscardedForms() {
+        val file = myFixture.configureByText("main.phel", "(ns app\\main)\n(#_ignored let [a 1] a)\n") as PhelFile
+        val list = PsiTreeUtil.findChildrenOfType(file, PhelList::class.java).last()
+
+        val facts = PhelFileAnalysis.of(file).factsOf(list)
+
+        assertEquals("let", facts.headText)
+        assertSame(facts, PhelFileAnalysis.of(file).factsOf(list))
+    }
+
+    fun testSymbolClassificationsAndCounts() {
+        val file = myFixture.configureByText("main.phel", source) as PhelFile
+        val analysis = PhelFileAnalysis.of(file)
+        val symbols = PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java)
+
+        assertTrue(analysis.isDefinition(symbols.first { it.text == "helper" }))
+        assertTrue(analysis.isLocalBindingOrReference(symbols.last { it.text == "a" }))
+        assertFalse(analysis.isLocalBindingOrReference(symbols.last { it.text == "helper" }))
+        assertEquals(2, analysis.occurrencesOf("helper"))
+    }
+
+    fun testHighlightingKeepsTheAnalysisUntilTheNextEdit() {
+        enableInspections()
+        val file = myFixture.configureByText("main.phel", source) as PhelFile
+
+        myFixture.doHighlighting()
+        val analysis = PhelFileAnalysis.of(file)
+        myFixture.doHighlighting()
+        assertSame("the annotator and every inspection must share one analysis", analysis, PhelFileAnalysis.of(file))
+
+        myFixture.type(" ")
+        myFixture.doHighlighting()
+        val afterEdit = PhelFileAnalysis.of(file)
+        assertNotSame(analysis, afterEdit)
+        assertSame(afterEdit, PhelFileAnalysis.of(file))
+    }
+
+    /**
+     * Times the highlighting pass twice: with the analysis shared, and with the registry key off so
+     * each inspection derives its facts on its own, as before; both figures go in the report.
+     */
+    fun testHighlightingBenchmark() {
+        if (!PhelBenchmark.isEnabled) return
+
+        enableInspections()
+        val definitions = PhelBenchmark.env("PHEL_BENCHMARK_DEFS", 2_000)
+        val text = buildString {
+            append("(ns app\\large (:require phel\\str :as s))\n")
+            repeat(definitions) { i ->
+                append("(defn- f$i [x y] (let [a (+ x 1) b (s/join \",\" [a y])] (when (> a $i) (str b a))))\n")
+            }
+        }
+        myFixture.configureByText("large.phel", text)
+
+        val perInspection = highlightingTiming(shared = false)
+        val shared = highlightingTiming(shared = true)
+
+        PhelBenchmark.check(
+            "highlighting",
+            shared,
+            budgetMillis = 5_000.0,
+            mapOf("definitions" to definitions, "perInspectionP50Ms" to perInspection.p50, "perInspectionP95Ms" to perInspection.p95),
+        )
+    }
+
+    private fun highlightingTiming(shared: Boolean): PhelBenchmark.Timing {
+        val disposable = Disposer.newDisposable()
+        try {
+            Registry.get(PhelFileAnalysis.REGISTRY_KEY).setValue(shared, disposable)
+            return PhelBenchmark.measure(runs = 5, warmUp = 1) {
+                myFixture.psiManager.dropPsiCaches()
+                myFixture.doHighlighting()
+            }
+        } finally {
+            Disposer.dispose(disposable)
+        }
+    }
+
+    private fun enableInspections() {
+        myFixture.enableInspections(
+            PhelArityMismatchInspection(),
+            PhelShadowedLetBindingInspection(),
+            PhelUnresolvedSymbolInspection(),
+            PhelUnusedImportInspection(),
+            PhelUnusedLetBindingInspection(),
+            PhelUnusedParameterInspection(),
+            PhelUnusedPrivateDefinitionInspection(),
+        )
+    }
+}
@@ -0,0 +1,53 @@
+package org.phellang.integration.psi
+
+import com.intellij.openapi.command.WriteCommandAction
+import com.intellij.psi.PsiDocumentManager
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.PhelFormKind
+import org.phellang.language.psi.PhelList
+import org.phellang.language.psi.utils.PhelPsiUtils
+
+/** A list reads its active forms and kind once, and reads them again after the next edit. */
+class PhelListShapeTest : PhelIntegrationTestCase() {
+
+    private fun lists(): List<PhelList> = PsiTreeUtil.findChildrenOfType(myFixture.file, PhelList::class.java).toList()
+
+    fun testShapeSkipsDiscardedFormsAndNamesTheKind() {
+        myFixture.configureByText("main.phel", "(defn f [x] (#_ignored let [a x] a))\n")
+        val (defn, let) = lists()
+
+        assertEquals(PhelFormKind.FUNCTION_DEFINITION, defn.formKind)
+        assertEquals(PhelFormKind.BINDING, let.formKind)
+        assertEquals("let", let.headText)
+        assertEquals(listOf("let", "[a x]", "a"), let.activeForms.map { it.text })
+    }
+
+    fun testAHeadThatIsACallHasNoKind() {
+        myFixture.configureByText("main.phel", "((fn [x] x) 1)\n(^:private defn g [] 1)\n")
+        val (call, fn, defn) = lists()
+
+        assertEquals(PhelFormKind.NONE, call.formKind)
+        assertNull(call.headText)
+        assertEquals(PhelFormKind.FUNCTION, fn.formKind)
+        assertEquals(PhelFormKind.FUNCTION_DEFINITION, defn.formKind)
+    }
+
+    fun testActiveFormsAreSharedUntilTheFileChanges() {
+        myFixture.configureByText("main.phel", "(println 1 2)\n")
+        val list = lists().single()
+        val before = PhelPsiUtils.activeForms(list)
+
+        assertSame(before, list.activeForms)
+        assertEquals(PhelFormKind.CALL, list.formKind)
+
+        val documentManager = PsiDocumentManager.getInstance(project)
+        WriteCommandAction.runWriteCommandAction(project) {
+            val document = documentManager.getDocument(myFixture.file)!!
+            document.insertString(document.textLength - 2, " 3")
+            documentManager.commitDocument(document)
+        }
+
+        assertEquals(listOf("println", "1", "2", "3"), lists().single().activeForms.map { it.text })
+    }
+}
@@ -0,0 +1,53 @@
+package org.phellang.integration.psi
+
+import com.intellij.psi.search.LocalSearchScope
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * A private definition can only be used from its own file, so its use scope — what Find Usages,
+ * rename and Safe Delete search — is that file. A public one may be used from other files.
+ */
+class PhelPrivateDefinitionScopeTest : PhelIntegrationTestCase() {
+
+    fun testDefnMinusIsScopedToItsFile() {
+        assertScopedToFile("(ns app\\main)\n(defn- helper [] 1)\n(defn run [] (helper))\n")
+    }
+
+    fun testPrivateMetadataIsScopedToItsFile() {
+        assertScopedToFile("(ns app\\main)\n(defn ^:private helper [] 1)\n(defn run [] (helper))\n")
+    }
+
+    fun testPublicDefinitionIsNotFileLocal() {
+        val file = configure("(ns app\\main)\n(defn helper [] 1)\n(defn run [] (helper))\n")
+
+        assertFalse(definitionOf(file, "helper").useScope is LocalSearchScope)
+    }
+
+    fun testUsagesOfAPrivateDefinitionElsewhereAreNotReported() {
+        // Same name in another namespace: not a usage of this private helper, and not searched.
+        myFixture.addFileToProject("src/other.phel", "(ns app\\other)\n(defn use-it [] (helper))\n")
+        val file = configure("(ns app\\main)\n(defn- helper [] 1)\n(defn run [] (helper))\n")
+
+        val usageFiles = ReferencesSearch.search(definitionOf(file, "helper")).findAll()
+            .map { it.element.containingFile.name }
+
+        assertEquals(listOf("main.phel"), usageFiles.distinct())
+    }
+
+    private fun assertScopedToFile(text: String) {
+        val file = configure(text)
+        val scope = definitionOf(file, "helper").useScope
+
+        assertTrue("expected a file-local scope, got $scope", scope is LocalSearchScope)
+        assertEquals(listOf(file), (scope as LocalSearchScope).scope.map { it.containingFile })
+    }
+
+    private fun configure(text: String): PhelFile = myFixture.configureByText("main.phel", text) as PhelFile
+
+    private fun definitionOf(file: PhelFile, name: String): PhelSymbol =
+        PsiTreeUtil.findChildrenOfType(file, PhelSymbol::class.java).first { it.text == name }
+}
@@ -0,0 +1,96 @@
+package org.phellang.integration.psi
+
+import com.intellij.psi.search.searches.ReferencesSearch
+import com.intellij.psi.util.PsiTreeUtil
+import org.phellang.integration.PhelIntegrationTestCase
+import org.phellang.language.psi.PhelSymbol
+import org.phellang.language.psi.files.PhelFile
+
+/**
+ * A public definition is searched in its own file and the files that require its namespace, under
+ * whatever alias or `:refer` they use — where a reference to it compiles — and nowhere else.
+ */
+class PhelReferencesSearcherTest : PhelIntegrationTestCase() {
+
+    private lateinit var definitionFile: PhelFile
+
+    override fun setUp() {
+        super.setUp()
+        definitionFile = myFixture.addFileToProject(
+            "src/util.phel",
+            "(ns app\\util)\n(defn shout [s] s)\n(defn twice [s] (shout (shout s)))\n",
+        ) as PhelFile
+    }
+
+    fun testAliasedAndReferredUsagesAreFound() {
+        myFixture.addFileToProject(
+            "src/aliased.phel",
+            "(ns app\\aliased (:require app\\util :as u))\n(defn f [x] (u/shout x))\n",
+        )
+        myFixture.addFileToProject(
+            "src/referred.phel",
+            "(ns app\\referred (:require app\\util :refer [shout]))\n(defn g [x] (shout x))\n",
+        )
+
+        val found = usageTexts()
+
+        assertTrue("aliased usage missing: $found", "aliased.phel:u/shout" in found)
+        assertTrue("referred usage missing: $found", "referred.phel:shout" in found)
+        assertTrue("same-file usage missing: $found", "util.phel:shout" in found)
+    }
+
+    fun testQualifiedUsagesOfAnotherNamespaceAreNotFound() {
+        myFixture.addFileToProject("src/other.phel", "(ns app\\other (:require app\\misc :as m))\n(defn h [] (m/shout 1))\n")
+
+        assertFalse(usageTexts().any { it.startsWith("other.phel:") })
+    }
+
+    /**
+     * An unqualified name resolves against every project definition, but outside a requiring file it
+     * would not compile, so it is neither searched nor reported.
+     */
+    fun testUnqualifiedUsagesOutsideRequiringFilesAreNotFound() {
+        val caller = myFixture.addFileToProject("src/caller.phel", "(ns app\\caller)\n(defn h [] (shout 1))\n")
+        val symbol = PsiTreeUtil.findChildrenOfType(caller, PhelSymbol::class.java).first { it.text == "shout" }
+
+        assertTrue("precondition: resolution reaches the definition", symbol.reference!!.isReferenceTo(definition()))
+        assertFalse(usageTexts().contains("caller.phel:shout"))
+        assertFalse(definition().useScope.contains(caller.virtualFile))
+    }
+
+    /** The word searcher would resolve the bare name here and report it; this search replaces it. */
+    fun testABareNameThatIsNotReferredIsNotFoundInARequiringFile() {
+        myFixture.addFileToProject(
+            "src/aliased.phel",
+            "(ns app\\aliased (:require app\\util :as u))\n(defn f [x] (shout (u/shout x)))\n",
+        )
+
+        val found = usageTexts()
+
+        assertTrue("aliased usage missing: $found", "aliased.phel:u/shout" in found)
+        assertFalse("unreferred bare name reported: $found", "aliased.phel:shout" in found)
+    }
+
+    fun testUseScopeIsKeptUntilTheNextChange() {
+        assertSame(definition().useScope, definition().useScope)
+    }
+
+    fun testUseScopeCoversTheRequiringFiles() {
+        val requirer = myFixture.addFileToProject(
+            "src/aliased.phel",
+            "(ns app\\aliased (:require app\\util :as u))\n(defn f [x] (u/shout x))\n",
+        )
+        val unrelated = myFixture.addFileToProject("src/other.phel", "(ns app\\other)\n")
+        val scope = definition().useScope
+
+        assertTrue(scope.contains(definitionFile.virtualFile))
+        assertTrue(scope.contains(requirer.virtualFile))
+        assertFalse(scope.contains(unrelated.virtualFile))
+    }
+
+    private fun definition(): PhelSymbol =
+        PsiTreeUtil.findChildrenOfType(definitionFile, PhelSymbol::class.java).first { it.text == "shout" }
+
+    private fun usageTexts(): List<String> =
+        ReferencesSearch.search(definition()).findAll().map { "${it.element.containingFile.name}:${it.element.text}" }
+}
@@ -47,7 +47,7 @@ class PhelEnterHandlerDocumentProcessorTest {
         `when`(mockDocument.getLineNumber(10)).thenReturn(0)
         `when`(mockDocument.getLineStartOffset(0)).thenReturn(0)
         `when`(mockDocument.getLineEndOffset(0)).thenReturn(14)
-        `when`(mockDocument.text).thenReturn("(defn test [])")
+        `when`(mockDocument.charsSequence).thenReturn("(defn test [])")
 
         val result = processor.extractLineInformation(mockDocument, 10)
 
@@ -112,7 +112,7 @@ class PhelEnterHandlerDocumentProcessorTest {
         `when`(mockDocument.getLineNumber(anyInt())).thenReturn(1)
         `when`(mockDocument.getLineStartOffset(1)).thenReturn(LINE_START)
         `when`(mockDocument.getLineEndOffset(1)).thenReturn(text.length)
-        `when`(mockDocument.text).thenReturn(text)
+        `when`(mockDocument.charsSequence).thenReturn(text)
         `when`(mockEditor.caretModel).thenReturn(mockCaretModel)
     }
 
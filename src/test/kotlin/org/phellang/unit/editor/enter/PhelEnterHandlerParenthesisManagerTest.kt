@@ -53,7 +53,7 @@ class PhelEnterHandlerParenthesisManagerTest {
         val caretPosition = 12
 
         `when`(mockDocument.textLength).thenReturn(13)
-        `when`(mockDocument.text).thenReturn("(defn test ()")
+        `when`(mockDocument.charsSequence).thenReturn("(defn test ()")
 
         val result = manager.shouldAddClosingParenthesis(mockDocument, caretPosition, textBeforeCaret)
 
@@ -0,0 +1,90 @@
+package org.phellang.unit.inspection.headless
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import org.phellang.inspection.headless.PhelInspectArguments
+import org.phellang.inspection.headless.PhelInspectionReport
+import java.nio.file.Path
+
+/** The `phel-inspect` command line and the report it prints, neither of which needs an application. */
+class PhelInspectArgumentsTest {
+
+    @Test
+    fun `defaults to json on every Phel inspection`() {
+        val arguments = PhelInspectArguments.parse(listOf("app"))
+
+        assertEquals(Path.of("app").toAbsolutePath().normalize(), arguments.projectDir)
+        assertEquals(PhelInspectArguments.Format.JSON, arguments.format)
+        assertEquals(PhelInspectArguments.DEFAULT_THREADS, arguments.threads)
+        assertTrue(arguments.inspections.isEmpty())
+        assertNull(arguments.output)
+    }
+
+    @Test
+    fun `reads every option`() {
+        val arguments = PhelInspectArguments.parse(
+            listOf("--format=text", "app", "--threads=3", "--inspections=PhelArityMismatch, PhelUnresolvedSymbol", "--output=out.txt"),
+        )
+
+        assertEquals(PhelInspectArguments.Format.TEXT, arguments.format)
+        assertEquals(3, arguments.threads)
+        assertEquals(setOf("PhelArityMismatch", "PhelUnresolvedSymbol"), arguments.inspections)
+        assertEquals(Path.of("out.txt"), arguments.output)
+    }
+
+    @Test
+    fun `rejects what it cannot run`() {
+        assertThrows<PhelInspectArguments.Invalid> { PhelInspectArguments.parse(emptyList()) }
+        assertThrows<PhelInspectArguments.Invalid> { PhelInspectArguments.parse(listOf("app", "--threads=0")) }
+        assertThrows<PhelInspectArguments.Invalid> { PhelInspectArguments.parse(listOf("app", "--format=xml")) }
+        assertThrows<PhelInspectArguments.Invalid> { PhelInspectArguments.parse(listOf("app", "other")) }
+        assertThrows<PhelInspectArguments.Invalid> { PhelInspectArguments.parse(listOf("app", "--verbose")) }
+    }
+
+    @Test
+    fun `json report escapes messages and counts problems per inspection`() {
+        val report = PhelInspectionReport(
+            files = 2,
+            problems = listOf(
+                PhelInspectionReport.Problem("src/a.phel", 3, 7, "PhelUnresolvedSymbol", "WARNING", "Cannot resolve symbol 'a\"b'"),
+            ),
+            inspectionMillis = mapOf("PhelUnresolvedSymbol" to 12L, "PhelArityMismatch" to 4L),
+            wallMillis = 20,
+        )
+
+        val json = report.toJson()
+
+        assertTrue("\"PhelArityMismatch\": {\"millis\": 4, \"problems\": 0}" in json, json)
+        assertTrue("\"PhelUnresolvedSymbol\": {\"millis\": 12, \"problems\": 1}" in json, json)
+        assertTrue("\"message\": \"Cannot resolve symbol 'a\\\"b'\"" in json, json)
+    }
+
+    @Test
+    fun `text report prints compiler-style lines`() {
+        val report = PhelInspectionReport(
+            files = 1,
+            problems = listOf(PhelInspectionReport.Problem("a.phel", 1, 2, "PhelArityMismatch", "ERROR", "Wrong")),
+            inspectionMillis = mapOf("PhelArityMismatch" to 1L),
+            wallMillis = 5,
+        )
+
+        assertTrue(report.toText().startsWith("a.phel:1:2: ERROR [PhelArityMismatch] Wrong\n"))
+    }
+
+    @Test
+    fun `reports list the files that could not be inspected`() {
+        val report = PhelInspectionReport(
+            files = 1,
+            problems = emptyList(),
+            inspectionMillis = emptyMap(),
+            wallMillis = 5,
+            failures = listOf(PhelInspectionReport.Failure("src/bad.phel", "broken")),
+        )
+
+        assertTrue("\"failures\": [\n    {\"path\": \"src/bad.phel\", \"message\": \"broken\"}\n  ]" in report.toJson(), report.toJson())
+        assertTrue("src/bad.phel: could not be inspected: broken\n" in report.toText(), report.toText())
+    }
+}
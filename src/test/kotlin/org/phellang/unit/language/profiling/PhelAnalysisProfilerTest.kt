@@ -0,0 +1,65 @@
+package org.phellang.unit.language.profiling
+
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.phellang.language.profiling.PhelAnalysisProfiler
+import org.phellang.language.profiling.PhelAnalysisProfiler.Category
+
+class PhelAnalysisProfilerTest {
+
+    @AfterEach
+    fun reset() {
+        PhelAnalysisProfiler.reset()
+    }
+
+    @Test
+    fun `measure records nothing while the registry key is off`() {
+        val value = PhelAnalysisProfiler.measure(Category.HIGHLIGHT_RULE, "LocalBindingRule") { 42 }
+
+        assertEquals(42, value)
+        assertTrue(PhelAnalysisProfiler.snapshot().isEmpty())
+    }
+
+    @Test
+    fun `samples accumulate per category and name, most expensive first`() {
+        PhelAnalysisProfiler.record(Category.INSPECTION, "PhelArityMismatch", 1_000)
+        PhelAnalysisProfiler.record(Category.INSPECTION, "PhelArityMismatch", 3_000)
+        PhelAnalysisProfiler.record(Category.RESOLVE_STEP, "project definitions", 10_000)
+
+        val entries = PhelAnalysisProfiler.snapshot()
+
+        assertEquals(listOf("project definitions", "PhelArityMismatch"), entries.map { it.name })
+        assertEquals(2, entries[1].invocations)
+        assertEquals(4_000, entries[1].totalNanos)
+        assertEquals(2.0, entries[1].averageMicros)
+    }
+
+    @Test
+    fun `json lists every entry`() {
+        PhelAnalysisProfiler.record(Category.COMPLETION_HELPER, "PhelProjectCompletionHelper", 500)
+
+        val json = PhelAnalysisProfiler.toJson()
+
+        assertTrue(
+            "{\"category\": \"COMPLETION_HELPER\", \"name\": \"PhelProjectCompletionHelper\", " +
+                "\"invocations\": 1, \"totalNanos\": 500}" in json,
+            json,
+        )
+    }
+
+    @Test
+    fun `json escapes control characters in names`() {
+        PhelAnalysisProfiler.record(Category.INSPECTION, "tab\there\nline \"q\" \u0001", 500)
+
+        val json = PhelAnalysisProfiler.toJson()
+
+        assertTrue("\"name\": \"tab\\there\\nline \\\"q\\\" \\u0001\"" in json, json)
+    }
+
+    @Test
+    fun `an empty profile is an empty json array`() {
+        assertEquals("[]\n", PhelAnalysisProfiler.toJson())
+    }
+}
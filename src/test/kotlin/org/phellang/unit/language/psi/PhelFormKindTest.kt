@@ -0,0 +1,36 @@
+package org.phellang.unit.language.psi
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.phellang.language.psi.PhelFormKind
+import org.phellang.language.psi.PhelSpecialForms
+
+class PhelFormKindTest {
+
+    private val heads = PhelSpecialForms.NAME_DECLARING + PhelSpecialForms.FUNCTION_DEFINING +
+        PhelSpecialForms.LET_LIKE + PhelSpecialForms.THREADING + listOf("println", "case", "do")
+
+    /**
+     * The kinds stand in for [PhelSpecialForms] membership at call sites that used to ask the sets,
+     * so each must answer exactly as its set does for every head either knows.
+     */
+    @Test
+    fun `each kind agrees with the set it replaces`() {
+        heads.forEach { head ->
+            val kind = PhelFormKind.of(head)
+
+            assertEquals(head in PhelSpecialForms.LET_LIKE, kind == PhelFormKind.BINDING, "head `$head`")
+            assertEquals(head in PhelSpecialForms.FUNCTION_DEFINING, kind.introducesParameters, "head `$head`")
+            assertEquals(head in PhelSpecialForms.DEFINITION_FORMS, kind.isDefinition, "head `$head`")
+            assertEquals(head in PhelSpecialForms.THREADING, kind == PhelFormKind.THREADING, "head `$head`")
+            assertEquals(head == "ns", kind == PhelFormKind.NAMESPACE, "head `$head`")
+        }
+    }
+
+    @Test
+    fun `an unknown head is a call and a missing one is none`() {
+        assertEquals(PhelFormKind.CALL, PhelFormKind.of("println"))
+        assertEquals(PhelFormKind.CALL, PhelFormKind.of("php/strlen"))
+        assertEquals(PhelFormKind.NONE, PhelFormKind.of(null))
+    }
+}
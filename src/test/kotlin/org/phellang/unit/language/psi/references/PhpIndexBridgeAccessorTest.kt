@@ -0,0 +1,56 @@
+package org.phellang.unit.language.psi.references
+
+import com.intellij.openapi.progress.ProcessCanceledException
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import org.phellang.language.psi.references.PhpIndexBridge
+
+/**
+ * The bridge reads the PHP plugin's PSI through cached method handles rather than `getMethod` per
+ * call. The PHP plugin is not on the test classpath, so plain classes stand in for its PSI: what
+ * matters is that a cached handle keeps answering for each receiver, that a missing accessor stays
+ * "nothing", and that a handle — which does not wrap what the callee throws the way
+ * `Method.invoke` does — still lets cancellation through.
+ */
+class PhpIndexBridgeAccessorTest {
+
+    class FakeMember(private val name: String) {
+        fun getName(): String = name
+        fun isStatic(): Boolean = true
+    }
+
+    class CancellingMember {
+        fun getName(): String = throw ProcessCanceledException()
+    }
+
+    @Test
+    fun `reads an accessor from every instance of a class`() {
+        assertEquals("first", PhpIndexBridge.readProperty(FakeMember("first"), "getName"))
+        // The second read hits the cached handle; it must be bound to the receiver, not the first one.
+        assertEquals("second", PhpIndexBridge.readProperty(FakeMember("second"), "getName"))
+        assertEquals(true, PhpIndexBridge.readProperty(FakeMember("x"), "isStatic"))
+    }
+
+    @Test
+    fun `a missing accessor reads as nothing, every time`() {
+        assertNull(PhpIndexBridge.readProperty(FakeMember("x"), "getModifier"))
+        assertNull(PhpIndexBridge.readProperty(FakeMember("x"), "getModifier"))
+    }
+
+    @Test
+    fun `a null receiver reads as nothing`() {
+        assertNull(PhpIndexBridge.readProperty(null, "getName"))
+    }
+
+    @Test
+    fun `cancellation thrown by the accessor escapes unwrapped`() {
+        val thrown = assertThrows(ProcessCanceledException::class.java) {
+            PhpIndexBridge.readProperty(CancellingMember(), "getName")
+        }
+
+        assertSame(ProcessCanceledException::class.java, thrown.javaClass)
+    }
+}
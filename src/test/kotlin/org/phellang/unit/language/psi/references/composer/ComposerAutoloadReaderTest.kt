@@ -0,0 +1,73 @@
+package org.phellang.unit.language.psi.references.composer
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.phellang.language.psi.references.composer.ComposerAutoloadReader
+
+class ComposerAutoloadReaderTest {
+
+    private val roots = ComposerAutoloadReader.Roots(
+        vendorDir = "/work/app/vendor",
+        baseDir = "/work/app",
+        composerDir = "/work/app/vendor/composer",
+    )
+
+    @Test
+    fun `reads classmap entries against every root`() {
+        val classmap = """
+            <?php
+
+            // autoload_classmap.php @generated by Composer
+
+            ${'$'}vendorDir = dirname(__DIR__);
+            ${'$'}baseDir = dirname(${'$'}vendorDir);
+
+            return array(
+                'App\\Service\\Mailer' => ${'$'}baseDir . '/src/Service/Mailer.php',
+                'Composer\\InstalledVersions' => ${'$'}vendorDir . '/composer/InstalledVersions.php',
+                'Local' => __DIR__ . '/../../lib/Local.php',
+            );
+        """.trimIndent()
+
+        assertEquals(
+            mapOf(
+                "App\\Service\\Mailer" to "/work/app/src/Service/Mailer.php",
+                "Composer\\InstalledVersions" to "/work/app/vendor/composer/InstalledVersions.php",
+                "Local" to "/work/app/lib/Local.php",
+            ),
+            ComposerAutoloadReader.readClassmap(classmap, roots),
+        )
+    }
+
+    @Test
+    fun `reads every directory of a psr-4 prefix in order`() {
+        val psr4 = """
+            <?php
+            return array(
+                'Phel\\' => array(${'$'}vendorDir . '/phel-lang/phel-lang/src/php'),
+                'App\\' => array(${'$'}baseDir . '/src', ${'$'}baseDir . '/generated'),
+            );
+        """.trimIndent()
+
+        assertEquals(
+            mapOf(
+                "Phel\\" to listOf("/work/app/vendor/phel-lang/phel-lang/src/php"),
+                "App\\" to listOf("/work/app/src", "/work/app/generated"),
+            ),
+            ComposerAutoloadReader.readPsr4(psr4, roots),
+        )
+    }
+
+    @Test
+    fun `entries in another shape are skipped`() {
+        val text = """
+            <?php
+            return array(
+                'Dynamic' => getenv('HOME') . '/Dynamic.php',
+                'Kept' => ${'$'}baseDir . '/Kept.php',
+            );
+        """.trimIndent()
+
+        assertEquals(mapOf("Kept" to "/work/app/Kept.php"), ComposerAutoloadReader.readClassmap(text, roots))
+    }
+}
@@ -0,0 +1,113 @@
+package org.phellang.unit.language.psi.references.composer
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.phellang.language.psi.references.PhpClassResolver.MemberKind
+import org.phellang.language.psi.references.composer.PhpDeclarationScanner
+
+class PhpDeclarationScannerTest {
+
+    @Test
+    fun `reads the namespaced class and its members`() {
+        val source = """
+            <?php
+            namespace App\Service;
+
+            final class Mailer
+            {
+                public const DEFAULT_FROM = 'noreply@example.com', RETRIES = 3;
+                private const SECRET = 'x';
+
+                public function __construct(private Transport ${'$'}transport) {}
+
+                public static function create(string ${'$'}dsn, array ${'$'}options = []): self {}
+
+                protected function log(${'$'}message) {}
+
+                function &reference() {}
+            }
+        """.trimIndent()
+
+        val mailer = PhpDeclarationScanner.scan(source).single()
+        assertEquals("App\\Service\\Mailer", mailer.fqn)
+        assertEquals(source.indexOf("Mailer"), mailer.offset)
+
+        val members = mailer.members.associateBy { it.name }
+        assertEquals(
+            listOf("DEFAULT_FROM", "RETRIES", "SECRET", "__construct", "create", "log", "reference"),
+            mailer.members.map { it.name },
+        )
+        assertEquals(MemberKind.CONSTANT, members.getValue("RETRIES").kind)
+        assertFalse(members.getValue("SECRET").isPublic)
+
+        val create = members.getValue("create")
+        assertEquals(MemberKind.METHOD, create.kind)
+        assertTrue(create.isStatic)
+        assertEquals(listOf("dsn", "options"), create.parameters)
+        assertEquals(source.indexOf("create"), create.offset)
+
+        assertFalse(members.getValue("log").isPublic)
+        assertTrue(members.getValue("reference").isPublic, "no modifier means public")
+    }
+
+    @Test
+    fun `comments, strings and heredocs declare nothing`() {
+        val source = """
+            <?php
+            // class InLineComment {}
+            # class InHashComment {}
+            /** class InDocblock {} */
+            ${'$'}a = 'class InSingleQuotes {}';
+            ${'$'}b = "class InDoubleQuotes {}";
+            ${'$'}c = <<<EOT
+            class InHeredoc {}
+            EOT;
+            class Real {}
+        """.trimIndent()
+
+        assertEquals(listOf("Real"), PhpDeclarationScanner.scan(source).map { it.fqn })
+    }
+
+    @Test
+    fun `class constants and anonymous classes are not declarations`() {
+        val source = """
+            <?php
+            namespace App;
+            ${'$'}name = Foo::class;
+            ${'$'}x = new class extends Base { public function hidden() {} };
+            interface Shape { public function area(): float; }
+        """.trimIndent()
+
+        val declarations = PhpDeclarationScanner.scan(source)
+        assertEquals(listOf("App\\Shape"), declarations.map { it.fqn })
+        assertEquals(listOf("area"), declarations.single().members.map { it.name })
+    }
+
+    @Test
+    fun `functions in nested blocks are not members`() {
+        val source = """
+            <?php
+            class Outer {
+                public function run() {
+                    ${'$'}f = function (${'$'}x) { return ${'$'}x; };
+                }
+            }
+            function topLevel() {}
+        """.trimIndent()
+
+        assertEquals(listOf("run"), PhpDeclarationScanner.scan(source).single().members.map { it.name })
+    }
+
+    @Test
+    fun `braced namespaces scope each class`() {
+        val source = """
+            <?php
+            namespace First { class A {} }
+            namespace Second { trait B {} enum C {} }
+        """.trimIndent()
+
+        assertEquals(listOf("First\\A", "Second\\B", "Second\\C"), PhpDeclarationScanner.scan(source).map { it.fqn })
+    }
+}